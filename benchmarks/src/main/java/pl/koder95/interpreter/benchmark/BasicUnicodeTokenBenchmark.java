@@ -0,0 +1,76 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.koder95.interpreter.basic.AggregatingTokenizer;
+import pl.koder95.interpreter.basic.AggregationTable;
+import pl.koder95.interpreter.basic.BasicUnicodeToken;
+import pl.koder95.interpreter.basic.BasicUnicodeTokenizer;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static pl.koder95.interpreter.basic.TokenPattern.*;
+
+/**
+ * Mierzy koszt tworzenia {@link BasicUnicodeToken} (wraz ze sprawdzaniem kategorii znaków), odczytu kategorii
+ * oraz podziału tekstu na tokeny przez {@link BasicUnicodeTokenizer}, także z łączeniem tokenów w słowa i liczby
+ * przez {@link AggregatingTokenizer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BasicUnicodeTokenBenchmark {
+
+    private static final AggregationTable WORDS = AggregationTable.builder()
+            .rule("NUMBER", sequence(category(Character.DECIMAL_DIGIT_NUMBER),
+                    optional(sequence(literal("."), category(Character.DECIMAL_DIGIT_NUMBER)))))
+            .rule("WORD", oneOrMore(anyOf(category(Character.UPPERCASE_LETTER, Character.LOWERCASE_LETTER),
+                    literal("'"), literal("-"))))
+            .build();
+
+    private final List<String> values = new ArrayList<>();
+    private char[] text;
+
+    @Setup
+    public void split() {
+        String text = Sources.prose(64 * 1024);
+        this.text = text.toCharArray();
+        int start = 0;
+        for (int i = 1; i <= text.length(); i++) {
+            if (i == text.length() || Character.getType(text.charAt(i)) != Character.getType(text.charAt(start))) {
+                values.add(text.substring(start, i));
+                start = i;
+            }
+        }
+    }
+
+    @Benchmark
+    public void construct(Blackhole blackhole) {
+        for (String value : values) blackhole.consume(new BasicUnicodeToken(value));
+    }
+
+    @Benchmark
+    public void constructAndGetType(Blackhole blackhole) {
+        for (String value : values) blackhole.consume(new BasicUnicodeToken(value).getType());
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole blackhole) {
+        BasicUnicodeTokenizer tokenizer = new BasicUnicodeTokenizer();
+        tokenizer.setSource(CharBuffer.wrap(text));
+        while (tokenizer.hasNext()) blackhole.consume(tokenizer.next().getType());
+    }
+
+    @Benchmark
+    public void aggregate(Blackhole blackhole) {
+        AggregatingTokenizer tokenizer = new AggregatingTokenizer(WORDS);
+        tokenizer.setSource(CharBuffer.wrap(text));
+        while (tokenizer.hasNext()) blackhole.consume(tokenizer.next());
+    }
+}
@@ -0,0 +1,53 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.koder95.interpreter.BatchInterpreter;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mierzy przepustowość {@link BatchInterpreter} dla wielu małych skryptów przy różnej liczbie wątków.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+    private static final int SCRIPTS = 10_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private ForkJoinPool pool;
+    private BatchInterpreter<SortLanguage.Lines, List<String>> batch;
+    private List<String> scripts;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(parallelism);
+        batch = new BatchInterpreter<>(SortLanguage.CLIENT, SortLanguage.Lines::new, pool, 4 * parallelism);
+        scripts = new ArrayList<>(SCRIPTS);
+        String script = Sources.sortExaL(512);
+        for (int i = 0; i < SCRIPTS; i++) scripts.add(script);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCRIPTS)
+    public List<BatchInterpreter.Result<List<String>>> interpretAll() throws InterruptedException {
+        List<StringReader> sources = new ArrayList<>(SCRIPTS);
+        for (String script : scripts) sources.add(new StringReader(script));
+        return batch.interpretAll(sources);
+    }
+}
@@ -0,0 +1,61 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.koder95.interpreter.Example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mierzy czas pełnej interpretacji: {@link Example#interpret(Readable, String...)} dla tekstu w pamięci
+ * oraz interpretację pliku odwzorowanego w pamięci w porównaniu z odczytem przez {@link BufferedReader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EndToEndBenchmark {
+
+    @Param({Sources.KB_1, Sources.MB_1, Sources.MB_100})
+    public int size;
+
+    private String source;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        source = Sources.sortExaL(size);
+        file = Files.createTempFile("sortexal", ".txt");
+        Files.writeString(file, source);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<String> example() {
+        return Example.interpret(new StringReader(source));
+    }
+
+    @Benchmark
+    public List<String> mappedFile() throws IOException {
+        return SortLanguage.CLIENT.newInterpreter(new SortLanguage.Lines()).interpret(file);
+    }
+
+    @Benchmark
+    public List<String> bufferedReader() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return SortLanguage.CLIENT.newInterpreter(new SortLanguage.Lines()).interpret(reader);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.koder95.interpreter.MappedFileSource;
+import pl.koder95.interpreter.NonTerminalExpression;
+import pl.koder95.interpreter.Tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Porównuje tokenizację pliku odwzorowanego w pamięci ({@link MappedFileSource}) z tokenizacją pliku odczytywanego
+ * przez {@link Files#newBufferedReader(Path, java.nio.charset.Charset)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FileInputBenchmark {
+
+    @Param({Sources.KB_1, Sources.MB_1, Sources.MB_100})
+    public int size;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("sortexal", ".txt");
+        Files.writeString(file, Sources.sortExaL(size));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static int count(Readable source) {
+        Tokenizer tokenizer = new SortLanguage.LinesTokenizer();
+        tokenizer.setSource(source);
+        Queue<NonTerminalExpression<?>> tokens = tokenizer.stream();
+        int count = 0;
+        while (tokens.poll() != null) count++;
+        return count;
+    }
+
+    @Benchmark
+    public int mappedFile() throws IOException {
+        try (MappedFileSource source = new MappedFileSource(file)) {
+            return count(source);
+        }
+    }
+
+    @Benchmark
+    public int bufferedReader() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return count(reader);
+        }
+    }
+}
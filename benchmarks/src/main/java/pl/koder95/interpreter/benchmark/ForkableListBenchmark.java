@@ -0,0 +1,48 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.koder95.interpreter.ForkableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mierzy koszt przygotowania niezależnego stanu z wspólnego stanu bazowego: rozwidlenie {@link ForkableList}
+ * z dodaniem jednego elementu w porównaniu z kopią {@link ArrayList} z dodaniem jednego elementu.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ForkableListBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<String> copied;
+    private ForkableList<String> forked;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        copied = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) copied.add(Integer.toString(i));
+        forked = new ForkableList<>(copied);
+    }
+
+    @Benchmark
+    public List<String> copy() {
+        List<String> copy = new ArrayList<>(copied);
+        copy.add("line");
+        return copy;
+    }
+
+    @Benchmark
+    public List<String> fork() {
+        ForkableList<String> fork = forked.fork();
+        fork.add("line");
+        return fork;
+    }
+}
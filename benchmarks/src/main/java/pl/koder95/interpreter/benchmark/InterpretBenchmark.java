@@ -0,0 +1,36 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.koder95.interpreter.TerminalExpression;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mierzy czas wartościowania gotowego drzewa abstrakcyjnej syntaktyki
+ * ({@link TerminalExpression#interpret(pl.koder95.interpreter.Context)}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class InterpretBenchmark {
+
+    @Param({Sources.KB_1, Sources.MB_1, Sources.MB_100})
+    public int size;
+
+    private TerminalExpression<SortLanguage.Lines, List<String>> ast;
+
+    @Setup
+    public void prepare() {
+        ast = new SortLanguage.SortParser().buildAbstractSyntaxTree(new StringReader(Sources.sortExaL(size)));
+    }
+
+    @Benchmark
+    public List<String> interpret() {
+        return ast.interpret(new SortLanguage.Lines());
+    }
+}
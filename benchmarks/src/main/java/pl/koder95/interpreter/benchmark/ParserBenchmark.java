@@ -0,0 +1,76 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.koder95.interpreter.NonTerminalExpression;
+import pl.koder95.interpreter.TerminalExpression;
+import pl.koder95.interpreter.TokenBuffer;
+import pl.koder95.interpreter.Tokenizer;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mierzy czas budowania drzewa abstrakcyjnej syntaktyki
+ * ({@link pl.koder95.interpreter.Parser#buildAbstractSyntaxTree(Queue)}) z wcześniej przygotowanych tokenów,
+ * umieszczonych w kolejce opartej na tablicy, w kolejce blokującej i w {@link TokenBuffer buforze tokenów},
+ * oraz porównuje parser napisany ręcznie z parserem tablicowym ({@link SortLanguage#GRAMMAR_PARSER}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParserBenchmark {
+
+    @Param({Sources.KB_1, Sources.MB_1, Sources.MB_100})
+    public int size;
+
+    private final SortLanguage.SortParser parser = new SortLanguage.SortParser();
+    private Queue<NonTerminalExpression<?>> tokens;
+    private Queue<NonTerminalExpression<?>> queue;
+    private Queue<NonTerminalExpression<?>> blockingQueue;
+    private TokenBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void tokenize() {
+        Tokenizer tokenizer = parser.newTokenizer();
+        tokenizer.setSource(new StringReader(Sources.sortExaL(size)));
+        tokens = tokenizer.enqueue(new ArrayDeque<>());
+    }
+
+    @Setup(Level.Invocation)
+    public void copyTokens() {
+        queue = new ArrayDeque<>(tokens);
+        blockingQueue = new LinkedBlockingQueue<>(tokens);
+        if (buffer == null) {
+            buffer = new TokenBuffer(tokens.size());
+            buffer.addAll(tokens);
+        }
+        buffer.seek(0);
+    }
+
+    @Benchmark
+    public TerminalExpression<SortLanguage.Lines, List<String>> buildAbstractSyntaxTree() {
+        return parser.buildAbstractSyntaxTree(queue);
+    }
+
+    @Benchmark
+    public TerminalExpression<SortLanguage.Lines, List<String>> buildAbstractSyntaxTreeFromBlockingQueue() {
+        return parser.buildAbstractSyntaxTree(blockingQueue);
+    }
+
+    @Benchmark
+    public TerminalExpression<SortLanguage.Lines, List<String>> buildAbstractSyntaxTreeFromTokenBuffer() {
+        return parser.buildAbstractSyntaxTree(buffer);
+    }
+
+    @Benchmark
+    public TerminalExpression<SortLanguage.Lines, List<String>> buildAbstractSyntaxTreeWithGrammar() {
+        return SortLanguage.GRAMMAR_PARSER.buildAbstractSyntaxTree(queue);
+    }
+}
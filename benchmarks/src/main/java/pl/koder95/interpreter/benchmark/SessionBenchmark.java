@@ -0,0 +1,60 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.koder95.interpreter.Example;
+import pl.koder95.interpreter.InterpreterPool;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Porównuje interpretację małych skryptów przez nowy interpreter, kontekst i tokenizer dla każdego skryptu
+ * z interpretacją w {@link InterpreterPool.Session sesjach} pobieranych z {@link InterpreterPool puli}.
+ * Uruchomienie z profilerem {@code gc} (domyślnie w {@link BenchmarkRunner}) pokazuje liczbę alokowanych bajtów
+ * na operację w stanie ustalonym.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionBenchmark {
+
+    @Param({"256", Sources.KB_1})
+    public int size;
+
+    private String source;
+    private InterpreterPool<SortLanguage.Lines, List<String>, SortLanguage.SortInterpreter> pool;
+
+    @Setup
+    public void setUp() {
+        source = Sources.sortExaL(size);
+        pool = new InterpreterPool<>(SortLanguage.CLIENT, SortLanguage.Lines::new, 1);
+    }
+
+    @Benchmark
+    public int newInterpreter() {
+        return SortLanguage.CLIENT.newInterpreter(new SortLanguage.Lines()).interpret(new StringReader(source)).size();
+    }
+
+    @Benchmark
+    public int session() {
+        try (InterpreterPool.Session<SortLanguage.Lines, List<String>, SortLanguage.SortInterpreter> session =
+                     pool.acquire()) {
+            return session.interpret(new StringReader(source)).size();
+        }
+    }
+
+    @Benchmark
+    public List<String> example() {
+        return Example.interpret(new StringReader(source));
+    }
+
+    @Benchmark
+    public void examplePooled(Blackhole blackhole) {
+        Example.interpret(new StringReader(source), blackhole::consume);
+    }
+}
@@ -0,0 +1,268 @@
+package pl.koder95.interpreter.benchmark;
+
+import pl.koder95.interpreter.*;
+
+import java.util.*;
+
+/**
+ * Publiczna odmiana języka {@code SortExaL} z klasy {@link Example}, używana przez benchmarki, które potrzebują
+ * dostępu do poszczególnych etapów interpretacji (tokenizacji, parsowania i wartościowania).
+ */
+public final class SortLanguage {
+
+    private SortLanguage() {}
+
+    /**
+     * Kontekst przechowujący linie.
+     */
+    public static final class Lines implements Context {
+        final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void reset() {
+            lines.clear();
+        }
+    }
+
+    /**
+     * Token reprezentujący linię tekstu. Rodzaj linii wyznacza tokenizer, więc parsery nie porównują treści tokenów.
+     * @param content treść linii
+     * @param instruction {@code true}, jeśli linia jest instrukcją sortowania ({@value #INSTRUCTION}…)
+     */
+    public record Line(String content, boolean instruction) implements NonTerminalExpression<String> {
+        /**
+         * Początek instrukcji sortowania.
+         */
+        public static final String INSTRUCTION = "ORDER BY ";
+
+        /**
+         * Tworzy token linii z danymi, np. w {@link TokenPool puli tokenów}.
+         * @param content treść linii
+         */
+        public Line(String content) {
+            this(content, false);
+        }
+
+        @Override
+        public String getObject() {
+            return content;
+        }
+    }
+
+    private record Add(String line) implements TerminalExpression<Lines, List<String>> {
+        @Override
+        public List<String> interpret(Lines context) {
+            context.lines.add(line);
+            return context.lines;
+        }
+
+        @Override
+        public String asString() {
+            return line;
+        }
+    }
+
+    private record Sort(String type) implements TerminalExpression<Lines, List<String>> {
+        @Override
+        public List<String> interpret(Lines context) {
+            switch (type) {
+                case "ASC" -> context.lines.sort(Comparator.naturalOrder());
+                case "DSC" -> context.lines.sort(Comparator.reverseOrder());
+                case "REV" -> Collections.reverse(context.lines);
+                default -> throw new SyntaxException("Unknown ordering type");
+            }
+            return context.lines;
+        }
+
+        @Override
+        public String asString() {
+            return "ORDER BY " + type;
+        }
+    }
+
+    private record Program(List<TerminalExpression<Lines, List<String>>> instructions)
+            implements TerminalExpression<Lines, List<String>> {
+        @Override
+        public List<String> interpret(Lines context) {
+            for (TerminalExpression<Lines, List<String>> instruction : instructions) instruction.interpret(context);
+            return context.lines;
+        }
+
+        @Override
+        public String asString() {
+            return "PROGRAM";
+        }
+    }
+
+    /**
+     * Tokenizer dzielący źródło na linie, oparty na {@link BufferedTokenizer}.
+     */
+    public static final class LinesTokenizer extends BufferedTokenizer {
+        private final TokenPool<Line> pool;
+
+        /**
+         * Tworzy tokenizer, który każdą linię zamienia na nowy token.
+         */
+        public LinesTokenizer() {
+            this(null);
+        }
+
+        /**
+         * Tworzy tokenizer, który pobiera tokeny z puli.
+         * @param pool pula tokenów albo {@code null}, jeśli każda linia ma być nowym tokenem
+         */
+        public LinesTokenizer(TokenPool<Line> pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public Line next() {
+            if (atEnd()) throw new NoSuchElementException();
+            mark();
+            boolean instruction = startsWithInstruction();
+            advanceTo('\n', '\r');
+            Line line = instruction ? new Line(text(), true) : pool == null ? new Line(text()) : text(pool);
+            if (advance() == '\r' && peek() == '\n') advance();
+            return line;
+        }
+
+        private boolean startsWithInstruction() {
+            for (int i = 0; i < Line.INSTRUCTION.length(); i++) {
+                if (peek(i) != Line.INSTRUCTION.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !atEnd();
+        }
+    }
+
+    /**
+     * Tokenizer dzielący źródło na linie za pomocą {@link Scanner} – punkt odniesienia dla {@link LinesTokenizer}.
+     */
+    public static final class ScannerLinesTokenizer extends Tokenizer {
+        private Scanner scanner;
+
+        @Override
+        public void setSource(Readable source) {
+            super.setSource(source);
+            scanner = new Scanner(source);
+        }
+
+        @Override
+        public Line next() {
+            String line = scanner.nextLine();
+            return new Line(line, line.startsWith(Line.INSTRUCTION));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return scanner != null && scanner.hasNextLine();
+        }
+    }
+
+    /**
+     * Parser tworzący program z linii.
+     */
+    public static final class SortParser implements Parser<Lines, List<String>> {
+        @Override
+        public Tokenizer getTokenizer() {
+            return newTokenizer();
+        }
+
+        @Override
+        public Tokenizer newTokenizer() {
+            return new LinesTokenizer();
+        }
+
+        @Override
+        public TerminalExpression<Lines, List<String>> buildAbstractSyntaxTree(Queue<NonTerminalExpression<?>> tokens) {
+            List<TerminalExpression<Lines, List<String>>> instructions = new ArrayList<>();
+            NonTerminalExpression<?> token;
+            while ((token = tokens.poll()) != null) instructions.add(instruction((Line) token));
+            return new Program(instructions);
+        }
+
+        @Override
+        public TerminalExpression<Lines, List<String>> buildAbstractSyntaxTree(TokenBuffer tokens) {
+            List<TerminalExpression<Lines, List<String>>> instructions = new ArrayList<>(tokens.size());
+            for (int i = tokens.position(); i < tokens.length(); i++) instructions.add(instruction((Line) tokens.get(i)));
+            tokens.seek(tokens.length());
+            return new Program(instructions);
+        }
+
+        private static TerminalExpression<Lines, List<String>> instruction(Line line) {
+            return line.instruction() ? new Sort(line.content().substring(Line.INSTRUCTION.length()))
+                    : new Add(line.content());
+        }
+    }
+
+    /**
+     * Parser tablicowy tworzący ten sam program co {@link SortParser}, zbudowany z {@link Grammar gramatyki}:
+     * program to dowolna liczba instrukcji, a instrukcja to linia albo sortowanie.
+     */
+    public static final GrammarParser<Lines, List<String>> GRAMMAR_PARSER = grammarParser();
+
+    @SuppressWarnings("unchecked")
+    private static GrammarParser<Lines, List<String>> grammarParser() {
+        Grammar<Lines, List<String>> grammar = new Grammar<>();
+        Grammar.Terminal line = grammar.terminal("LINE");
+        Grammar.Terminal order = grammar.terminal("ORDER BY");
+        Grammar.Nonterminal program = grammar.nonterminal("program");
+        Grammar.Nonterminal instruction = grammar.nonterminal("instruction");
+        grammar.rule(program, values -> new Program((List<TerminalExpression<Lines, List<String>>>) values.get(0)),
+                        grammar.zeroOrMore(instruction))
+                .rule(instruction, values -> new Add(((Line) values.get(0)).content()), line)
+                .rule(instruction, values -> new Sort(((Line) values.get(0)).content().substring(Line.INSTRUCTION.length())),
+                        order);
+        return grammar.build(program,
+                token -> token instanceof Line l && l.instruction() ? order : line, LinesTokenizer::new);
+    }
+
+    /**
+     * Interpreter języka.
+     * @param context kontekst interpretacji
+     */
+    public record SortInterpreter(Lines context) implements Interpreter<Lines, List<String>> {
+        private static final SortParser PARSER = new SortParser();
+
+        @Override
+        public Lines getContext() {
+            return context;
+        }
+
+        @Override
+        public SortParser getParser() {
+            return PARSER;
+        }
+    }
+
+    /**
+     * Binarny format drzew języka.
+     */
+    public static final SyntaxTreeFormat<Lines> FORMAT = new SyntaxTreeFormat<Lines>(1)
+            .register(0, Program.class, SyntaxTreeFormat.NodeType.of(
+                    (program, out) -> {
+                        out.writeInt(program.instructions().size());
+                        for (TerminalExpression<Lines, List<String>> instruction : program.instructions()) {
+                            out.writeNode(instruction);
+                        }
+                    },
+                    in -> {
+                        int count = in.readInt();
+                        List<TerminalExpression<Lines, List<String>>> instructions = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) instructions.add(in.readNode());
+                        return new Program(instructions);
+                    }))
+            .register(1, Add.class, SyntaxTreeFormat.NodeType.of(
+                    (add, out) -> out.writeString(add.line()), in -> new Add(in.readString())))
+            .register(2, Sort.class, SyntaxTreeFormat.NodeType.of(
+                    (sort, out) -> out.writeString(sort.type()), in -> new Sort(in.readString())));
+
+    /**
+     * Klient tworzący interpreter języka.
+     */
+    public static final Client<Lines, List<String>, SortInterpreter> CLIENT = SortInterpreter::new;
+}
@@ -0,0 +1,92 @@
+package pl.koder95.interpreter.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generuje powtarzalne dane wejściowe w języku {@code SortExaL} o zadanym rozmiarze.
+ */
+public final class Sources {
+
+    /** Rozmiar danych wejściowych: 1 KB. */
+    public static final String KB_1 = "1024";
+    /** Rozmiar danych wejściowych: 1 MB. */
+    public static final String MB_1 = "1048576";
+    /** Rozmiar danych wejściowych: 100 MB. */
+    public static final String MB_100 = "104857600";
+
+    private static final String[] ORDERS = {"ORDER BY ASC", "ORDER BY DSC", "ORDER BY REV"};
+
+    private Sources() {}
+
+    /**
+     * Liczba instrukcji sortowania w kodzie źródłowym, niezależna od jego rozmiaru.
+     */
+    private static final int ORDER_INSTRUCTIONS = 8;
+
+    /**
+     * Tworzy kod źródłowy złożony z losowych słów, w którym co {@code 1/8} rozmiaru pojawia się instrukcja sortowania.
+     * Stała liczba sortowań sprawia, że czas wartościowania rośnie liniowo-logarytmicznie z rozmiarem danych.
+     * @param size przybliżona liczba znaków
+     * @return kod źródłowy w języku {@code SortExaL}
+     */
+    public static String sortExaL(int size) {
+        SplittableRandom random = new SplittableRandom(95);
+        StringBuilder builder = new StringBuilder(size + 32);
+        int step = Math.max(1, size / ORDER_INSTRUCTIONS);
+        int nextOrder = step;
+        while (builder.length() < size) {
+            if (builder.length() >= nextOrder) {
+                nextOrder += step;
+                builder.append(ORDERS[random.nextInt(ORDERS.length)]);
+            } else {
+                int length = 3 + random.nextInt(12);
+                for (int i = 0; i < length; i++) builder.append((char) ('a' + random.nextInt(26)));
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Tworzy kod źródłowy, którego linie wybierane są losowo ze stałego słownika – dane z dużą liczbą powtarzających się
+     * tokenów, np. słów kluczowych i identyfikatorów.
+     * @param size przybliżona liczba znaków
+     * @param words liczba różnych słów w słowniku
+     * @return kod źródłowy w języku {@code SortExaL}
+     */
+    public static String vocabulary(int size, int words) {
+        SplittableRandom random = new SplittableRandom(95);
+        String[] dictionary = new String[words];
+        for (int w = 0; w < words; w++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(12);
+            for (int i = 0; i < length; i++) word.append((char) ('a' + random.nextInt(26)));
+            dictionary[w] = word.toString();
+        }
+        StringBuilder builder = new StringBuilder(size + 32);
+        while (builder.length() < size) builder.append(dictionary[random.nextInt(words)]).append('\n');
+        return builder.toString();
+    }
+
+    /**
+     * Tworzy tekst złożony ze słów, liczb i znaków interpunkcyjnych, czyli z ciągów znaków różnych kategorii Unicode.
+     * @param size przybliżona liczba znaków
+     * @return tekst
+     */
+    public static String prose(int size) {
+        SplittableRandom random = new SplittableRandom(95);
+        StringBuilder builder = new StringBuilder(size + 32);
+        while (builder.length() < size) {
+            switch (random.nextInt(4)) {
+                case 0 -> builder.append(random.nextInt(100_000));
+                case 1 -> builder.append(", ");
+                default -> {
+                    int length = 2 + random.nextInt(8);
+                    for (int i = 0; i < length; i++) builder.append((char) ('a' + random.nextInt(26)));
+                    builder.append(' ');
+                }
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.koder95.interpreter.ParseResult;
+import pl.koder95.interpreter.SourceSpan;
+import pl.koder95.interpreter.SyntaxException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mierzy koszt zgłoszenia błędu składniowego z głębi stosu wywołań (jak w parserze zstępującym):
+ * wyrzucenie wyjątku ze śladem stosu, wyrzucenie wyjątku bez śladu stosu i zwrócenie go w {@link ParseResult}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyntaxExceptionBenchmark {
+
+    private static final SourceSpan SPAN = new SourceSpan(10, 20, 2, 1);
+
+    @Param({"10", "100"})
+    public int depth;
+
+    @Benchmark
+    public SyntaxException thrown() {
+        try {
+            throwAt(depth, true);
+            return null;
+        } catch (SyntaxException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public SyntaxException thrownWithoutStackTrace() {
+        try {
+            throwAt(depth, false);
+            return null;
+        } catch (SyntaxException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public ParseResult<?, ?> returned() {
+        return returnAt(depth);
+    }
+
+    private static void throwAt(int depth, boolean writableStackTrace) {
+        if (depth == 0) throw new SyntaxException("Unknown ordering type", SPAN, writableStackTrace);
+        throwAt(depth - 1, writableStackTrace);
+    }
+
+    private static ParseResult<?, ?> returnAt(int depth) {
+        if (depth == 0) return ParseResult.failure(new SyntaxException("Unknown ordering type", SPAN, false));
+        return returnAt(depth - 1);
+    }
+}
@@ -0,0 +1,57 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.koder95.interpreter.SyntaxTreeFormat;
+import pl.koder95.interpreter.TerminalExpression;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Porównuje zbudowanie drzewa przez tokenizację i parsowanie źródła z wczytaniem drzewa zapisanego
+ * w {@link SyntaxTreeFormat formacie binarnym}, razem ze sprawdzeniem odcisku źródła.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SyntaxTreeFormatBenchmark {
+
+    @Param({Sources.MB_1, Sources.MB_100})
+    public int size;
+
+    private Path source;
+    private Path cache;
+
+    @Setup
+    public void setUp() throws IOException {
+        String text = Sources.sortExaL(size);
+        source = Files.createTempFile("sortexal", ".txt");
+        cache = Files.createTempFile("sortexal", ".ast");
+        Files.writeString(source, text);
+        SortLanguage.FORMAT.write(parse(), SyntaxTreeFormat.fingerprint(source), cache);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(cache);
+    }
+
+    @Benchmark
+    public TerminalExpression<SortLanguage.Lines, List<String>> parse() throws IOException {
+        return SortLanguage.CLIENT.newInterpreter(new SortLanguage.Lines())
+                .prepare(new StringReader(Files.readString(source)));
+    }
+
+    @Benchmark
+    public TerminalExpression<SortLanguage.Lines, List<String>> load() throws IOException {
+        return SortLanguage.FORMAT.read(cache, SyntaxTreeFormat.fingerprint(source));
+    }
+}
@@ -0,0 +1,57 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.koder95.interpreter.NonTerminalExpression;
+import pl.koder95.interpreter.TokenPool;
+import pl.koder95.interpreter.Tokenizer;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Porównuje tokenizację danych z powtarzającymi się tokenami z {@link TokenPool pulą tokenów} i bez niej.
+ * Uruchomienie z profilerem {@code gc} pokazuje zmniejszenie liczby alokowanych bajtów na operację,
+ * a liczba różnych słów większa niż pojemność puli – koszt chybień.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TokenPoolBenchmark {
+
+    @Param({Sources.MB_1})
+    public int size;
+
+    @Param({"64", "1024", "65536"})
+    public int words;
+
+    @Param({"LEAST_RECENTLY_USED", "RETAIN_EXISTING"})
+    public TokenPool.Eviction eviction;
+
+    private String source;
+    private TokenPool<SortLanguage.Line> pool;
+
+    @Setup
+    public void setUp() {
+        source = Sources.vocabulary(size, words);
+        pool = new TokenPool<>(4096, TokenPool.DEFAULT_MAX_LENGTH, eviction, SortLanguage.Line::new);
+    }
+
+    @Benchmark
+    public Queue<NonTerminalExpression<?>> allocating() {
+        Tokenizer tokenizer = new SortLanguage.LinesTokenizer();
+        tokenizer.setSource(new StringReader(source));
+        return tokenizer.enqueue(new ArrayDeque<>());
+    }
+
+    @Benchmark
+    public Queue<NonTerminalExpression<?>> pooled() {
+        Tokenizer tokenizer = new SortLanguage.LinesTokenizer(pool);
+        tokenizer.setSource(new StringReader(source));
+        return tokenizer.enqueue(new ArrayDeque<>());
+    }
+}
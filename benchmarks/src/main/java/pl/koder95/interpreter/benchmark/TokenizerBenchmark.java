@@ -0,0 +1,83 @@
+package pl.koder95.interpreter.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.koder95.interpreter.NonTerminalExpression;
+import pl.koder95.interpreter.ParallelTokenizer;
+import pl.koder95.interpreter.TokenBoundary;
+import pl.koder95.interpreter.Tokenizer;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mierzy czas tokenizacji ({@link Tokenizer#enqueue()}) dla tokenizera opartego na buforze znaków
+ * i dla tokenizera opartego na {@link java.util.Scanner}, a także koszt kolekcji, do której trafiają tokeny
+ * i tokenizację równoległą ({@link ParallelTokenizer}) we fragmentach po 64 Ki znaków.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TokenizerBenchmark {
+
+    @Param({Sources.KB_1, Sources.MB_1, Sources.MB_100})
+    public int size;
+
+    private final ParallelTokenizer parallel = new ParallelTokenizer(SortLanguage.LinesTokenizer::new,
+            TokenBoundary.after('\n'), 1 << 16, ForkJoinPool.commonPool());
+    private String source;
+
+    @Setup
+    public void setUp() {
+        source = Sources.sortExaL(size);
+    }
+
+    @Benchmark
+    public Queue<NonTerminalExpression<?>> buffered() {
+        Tokenizer tokenizer = new SortLanguage.LinesTokenizer();
+        tokenizer.setSource(new StringReader(source));
+        return tokenizer.enqueue();
+    }
+
+    @Benchmark
+    public Queue<NonTerminalExpression<?>> scanner() {
+        Tokenizer tokenizer = new SortLanguage.ScannerLinesTokenizer();
+        tokenizer.setSource(new StringReader(source));
+        return tokenizer.enqueue();
+    }
+
+    @Benchmark
+    public int streamed() {
+        Tokenizer tokenizer = new SortLanguage.LinesTokenizer();
+        tokenizer.setSource(new StringReader(source));
+        int count = 0;
+        Queue<NonTerminalExpression<?>> tokens = tokenizer.stream();
+        while (tokens.poll() != null) count++;
+        return count;
+    }
+
+    @Benchmark
+    public Queue<NonTerminalExpression<?>> bufferedIntoArrayDeque() {
+        Tokenizer tokenizer = new SortLanguage.LinesTokenizer();
+        tokenizer.setSource(new StringReader(source));
+        return tokenizer.enqueue(new ArrayDeque<>());
+    }
+
+    @Benchmark
+    public Queue<NonTerminalExpression<?>> bufferedIntoBlockingQueue() {
+        Tokenizer tokenizer = new SortLanguage.LinesTokenizer();
+        tokenizer.setSource(new StringReader(source));
+        return tokenizer.enqueue(new LinkedBlockingQueue<>());
+    }
+
+    @Benchmark
+    public Queue<NonTerminalExpression<?>> parallel() {
+        return parallel.tokenize(source);
+    }
+}
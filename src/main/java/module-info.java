@@ -4,5 +4,8 @@
  */
 module pl.koder95.interpreter {
     requires java.base;
+    requires jdk.jfr;
     exports pl.koder95.interpreter;
-}
\ No newline at end of file
+    exports pl.koder95.interpreter.basic;
+    exports pl.koder95.interpreter.monitor;
+}
@@ -0,0 +1,154 @@
+package pl.koder95.interpreter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Interpretuje wiele źródeł znaków jednocześnie, rozdzielając je między wątki podanego {@link Executor wykonawcy}.
+ * Każde źródło interpretowane jest przez nowy {@link Interpreter interpreter} utworzony przez {@link Client klienta}
+ * z nowym {@link Context kontekstem}, więc parser języka musi być bezpieczny wątkowo
+ * (zob. {@link Parser#newTokenizer()}).
+ * <p>
+ * Wyniki zwracane są w kolejności źródeł. Wyjątek interpretacji jednego źródła (np. {@link SyntaxException})
+ * nie przerywa pracy, lecz zostaje zapisany w odpowiadającym mu {@link Result wyniku}. Błędy maszyny wirtualnej
+ * ({@link Error}, np. {@link OutOfMemoryError}) nie są zapisywane: po pierwszym z nich kolejne źródła nie są już
+ * pobierane, a po zakończeniu rozpoczętych interpretacji błąd wyrzucany jest w wątku wywołującym. Liczba źródeł
+ * interpretowanych jednocześnie jest ograniczona – po jej osiągnięciu wątek wywołujący czeka na zakończenie
+ * którejś z interpretacji, zanim pobierze kolejne źródło (przeciwciśnienie).
+ * </p><p>
+ * Na platformie Java 21 lub nowszej jako wykonawcę można podać {@code Executors.newVirtualThreadPerTaskExecutor()}.
+ * </p>
+ * @param <C> typ {@link Context kontekstu}
+ * @param <R> typ obiektu zwracanego przez interpreter
+ */
+public class BatchInterpreter<C extends Context, R> {
+
+    private final Client<C, R, ? extends Interpreter<C, R>> client;
+    private final Supplier<? extends C> contextFactory;
+    private final Executor executor;
+    private final int maxInFlight;
+
+    /**
+     * Tworzy interpreter wsadowy korzystający ze {@link ForkJoinPool#commonPool() wspólnej puli wątków}.
+     * Liczba jednoczesnych interpretacji ograniczona jest do dwukrotności poziomu równoległości puli.
+     * @param client klient tworzący interpretery
+     * @param contextFactory fabryka kontekstów; nowy kontekst tworzony jest dla każdego źródła
+     */
+    public BatchInterpreter(Client<C, R, ? extends Interpreter<C, R>> client, Supplier<? extends C> contextFactory) {
+        this(client, contextFactory, ForkJoinPool.commonPool(), 2 * ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Tworzy interpreter wsadowy.
+     * @param client klient tworzący interpretery
+     * @param contextFactory fabryka kontekstów; nowy kontekst tworzony jest dla każdego źródła
+     * @param executor wykonawca, w którego wątkach odbywa się interpretacja
+     * @param maxInFlight maksymalna liczba źródeł interpretowanych jednocześnie
+     * @throws IllegalArgumentException jeśli {@code maxInFlight} nie jest dodatnie
+     */
+    public BatchInterpreter(Client<C, R, ? extends Interpreter<C, R>> client, Supplier<? extends C> contextFactory,
+                            Executor executor, int maxInFlight) {
+        if (client == null) throw new NullPointerException("Client cannot be null");
+        if (contextFactory == null) throw new NullPointerException("Context factory cannot be null");
+        if (executor == null) throw new NullPointerException("Executor cannot be null");
+        if (maxInFlight <= 0) throw new IllegalArgumentException("Maximum number of sources in flight must be positive");
+        this.client = client;
+        this.contextFactory = contextFactory;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Interpretuje wszystkie źródła i czeka na zakończenie interpretacji.
+     * Źródła pobierane są z {@code sources} stopniowo, w miarę zwalniania miejsc, więc mogą być tworzone leniwie.
+     * @param sources źródła znaków do zinterpretowania
+     * @return lista wyników w kolejności źródeł
+     * @throws InterruptedException jeśli wątek wywołujący został przerwany podczas oczekiwania
+     * @throws Error pierwszy błąd maszyny wirtualnej, który wystąpił podczas interpretacji; kolejne dołączane są
+     *               do niego jako {@link Throwable#getSuppressed() wyjątki stłumione}
+     */
+    public List<Result<R>> interpretAll(Iterable<? extends Readable> sources) throws InterruptedException {
+        List<Result<R>> results = Collections.synchronizedList(new ArrayList<>());
+        Semaphore permits = new Semaphore(maxInFlight);
+        AtomicReference<Error> failure = new AtomicReference<>();
+        int index = 0;
+        try {
+            for (Readable source : sources) {
+                permits.acquire();
+                if (failure.get() != null) {
+                    permits.release();
+                    break;
+                }
+                int slot = index++;
+                results.add(null);
+                Runnable task = () -> {
+                    try {
+                        results.set(slot, interpret(source));
+                    } catch (Error e) {
+                        if (!failure.compareAndSet(null, e) && failure.get() != e) failure.get().addSuppressed(e);
+                    } finally {
+                        permits.release();
+                    }
+                };
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    results.set(slot, new Result<>(null, e));
+                    permits.release();
+                }
+            }
+        } finally {
+            // Każda interpretacja zwalnia swoje miejsce po zakończeniu, więc wszystkie miejsca są wolne dopiero wtedy,
+            // gdy zakończą się wszystkie interpretacje.
+            permits.acquire(maxInFlight);
+        }
+        Error error = failure.get();
+        if (error != null) throw error;
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Interpretuje jedno źródło w nowym kontekście, zapisując ewentualny wyjątek zamiast go wyrzucać.
+     */
+    private Result<R> interpret(Readable source) {
+        try {
+            return new Result<>(client.newInterpreter(contextFactory.get()).interpret(source), null);
+        } catch (RuntimeException e) {
+            return new Result<>(null, e);
+        }
+    }
+
+    /**
+     * Wynik interpretacji jednego źródła: wartość albo wyjątek, który wystąpił podczas interpretacji.
+     * @param value wynik interpretacji albo {@code null} w przypadku błędu
+     * @param error wyjątek interpretacji albo {@code null} w przypadku powodzenia
+     * @param <R> typ obiektu zwracanego przez interpreter
+     */
+    public record Result<R>(R value, Throwable error) {
+
+        /**
+         * @return {@code true}, jeśli interpretacja zakończyła się bez błędu
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * Zwraca wynik interpretacji albo wyrzuca błąd, który ją przerwał.
+         * @return wynik interpretacji
+         * @throws RuntimeException błąd interpretacji (np. {@link SyntaxException})
+         */
+        public R get() {
+            if (error instanceof RuntimeException e) throw e;
+            if (error != null) throw new IllegalStateException(error);
+            return value;
+        }
+    }
+}
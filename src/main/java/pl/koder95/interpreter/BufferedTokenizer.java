@@ -0,0 +1,311 @@
+package pl.koder95.interpreter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+
+/**
+ * Tokenizer odczytujący {@link Readable źródło znaków} do wielokrotnie używanego bufora {@link CharBuffer}.
+ * Dostarcza podklasom podstawowe operacje na znakach wejściowych: podglądanie ({@link #peek()}),
+ * przesuwanie kursora ({@link #advance()}), zaznaczanie ({@link #mark()}) i powrót do zaznaczenia ({@link #reset()}),
+ * a także śledzenie pozycji w źródle (przesunięcie, wiersz i kolumna).
+ * <p>
+ * Bufor jest alokowany raz i powiększany tylko wtedy, gdy zaznaczony fragment nie mieści się w nim w całości.
+ * Pojedyncze znaki nie są opakowywane w obiekty, a treść tokenu tworzona jest jednorazowo przez {@link #text()}.
+ * Wiersze są rozdzielane znakiem {@code '\n'}, {@code '\r'} albo parą {@code "\r\n"}, liczoną jako jeden koniec
+ * wiersza; wiersze i kolumny numerowane są od 1.
+ * </p>
+ */
+public abstract class BufferedTokenizer extends Tokenizer {
+
+    /**
+     * Domyślna początkowa pojemność bufora znaków.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * Wartość zwracana przez {@link #peek()} i {@link #advance()}, gdy skończyły się znaki wejściowe.
+     */
+    protected static final int EOF = -1;
+
+    private char[] chars;
+    private CharBuffer window;
+    private int position = 0;
+    private int limit = 0;
+    private boolean exhausted = true;
+    private long consumed = 0;
+    private int line = 1;
+    private int column = 1;
+    // Czy ostatnio pobrany znak to '\r', po którym '\n' nie rozpoczyna kolejnego wiersza.
+    private boolean carriageReturn = false;
+
+    private int markPosition = -1;
+    private long markConsumed = 0;
+    private int markLine = 1;
+    private int markColumn = 1;
+    private boolean markCarriageReturn = false;
+
+    /**
+     * Tworzy tokenizer z buforem o {@link #DEFAULT_CAPACITY domyślnej pojemności}.
+     */
+    public BufferedTokenizer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Tworzy tokenizer z buforem o podanej początkowej pojemności.
+     * @param capacity początkowa pojemność bufora znaków
+     * @throws IllegalArgumentException jeśli pojemność nie jest dodatnia
+     */
+    public BufferedTokenizer(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.chars = new char[capacity];
+        this.window = CharBuffer.wrap(chars);
+    }
+
+    /**
+     * Ustawia źródło znaków i zeruje stan tokenizera. Bufor znaków jest zachowywany i używany ponownie.
+     * @param source źródło znaków wczytywanych podczas procesu tokenizacji
+     */
+    @Override
+    public void setSource(Readable source) {
+        super.setSource(source);
+        position = 0;
+        limit = 0;
+        exhausted = source == null;
+        consumed = 0;
+        line = 1;
+        column = 1;
+        carriageReturn = false;
+        markPosition = -1;
+    }
+
+    /**
+     * Ustawia źródło znaków będące fragmentem większego tekstu (np. przy {@link ParallelTokenizer tokenizacji
+     * równoległej}), tak aby położenia tworzonych tokenów ({@link #span()}) odnosiły się do całego tekstu.
+     * Fragment nie może zaczynać się znakiem {@code '\n'} pary {@code "\r\n"}, ponieważ zostałby policzony jako
+     * kolejny koniec wiersza.
+     * @param source źródło znaków wczytywanych podczas procesu tokenizacji
+     * @param offset przesunięcie pierwszego znaku źródła w całym tekście
+     * @param line wiersz pierwszego znaku źródła (od 1)
+     * @param column kolumna pierwszego znaku źródła (od 1)
+     * @throws IllegalArgumentException jeśli przesunięcie jest ujemne albo wiersz lub kolumna nie są dodatnie
+     */
+    public void setSource(Readable source, long offset, int line, int column) {
+        if (offset < 0) throw new IllegalArgumentException("Offset cannot be negative");
+        if (line <= 0 || column <= 0) throw new IllegalArgumentException("Line and column must be positive");
+        setSource(source);
+        this.consumed = offset;
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Wczytuje kolejne znaki ze źródła do bufora, zachowując znaki od zaznaczenia (lub od kursora).
+     * @return {@code true}, jeśli w buforze pojawiły się nowe znaki
+     */
+    private boolean fill() {
+        if (exhausted) return false;
+        int keep = markPosition >= 0 ? markPosition : position;
+        if (keep > 0) {
+            System.arraycopy(chars, keep, chars, 0, limit - keep);
+            limit -= keep;
+            position -= keep;
+            if (markPosition >= 0) markPosition -= keep;
+        }
+        // Co najmniej dwa wolne miejsca, aby zmieściła się para surogatów dekodowana przez źródło.
+        if (chars.length - limit < 2) {
+            char[] grown = new char[chars.length * 2];
+            System.arraycopy(chars, 0, grown, 0, limit);
+            chars = grown;
+            window = CharBuffer.wrap(chars);
+        }
+        window.limit(chars.length).position(limit);
+        try {
+            int read;
+            do {
+                read = getSource().read(window);
+            } while (read == 0 && window.hasRemaining());
+            if (read < 0) {
+                exhausted = true;
+                return false;
+            }
+            limit += read;
+            return read > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return {@code true}, jeśli nie ma już znaków do odczytania
+     */
+    protected final boolean atEnd() {
+        return position >= limit && !fill();
+    }
+
+    /**
+     * Zwraca znak wskazywany przez kursor, nie przesuwając go.
+     * @return znak albo {@link #EOF}, jeśli skończyły się dane
+     */
+    protected final int peek() {
+        if (position >= limit && !fill()) return EOF;
+        return chars[position];
+    }
+
+    /**
+     * Zwraca znak oddalony o podaną liczbę pozycji od kursora, nie przesuwając go.
+     * @param ahead odległość od kursora; {@code 0} oznacza znak pod kursorem
+     * @return znak albo {@link #EOF}, jeśli dane kończą się wcześniej
+     */
+    protected final int peek(int ahead) {
+        while (position + ahead >= limit) {
+            if (!fill()) return EOF;
+        }
+        return chars[position + ahead];
+    }
+
+    /**
+     * Pobiera znak wskazywany przez kursor i przesuwa kursor na następny znak.
+     * @return pobrany znak albo {@link #EOF}, jeśli skończyły się dane
+     */
+    protected final int advance() {
+        if (position >= limit && !fill()) return EOF;
+        char c = chars[position++];
+        consumed++;
+        if (c == '\n') {
+            if (!carriageReturn) line++;
+            column = 1;
+            carriageReturn = false;
+        } else if (c == '\r') {
+            line++;
+            column = 1;
+            carriageReturn = true;
+        } else {
+            column++;
+            carriageReturn = false;
+        }
+        return c;
+    }
+
+    /**
+     * Przesuwa kursor aż do pierwszego wystąpienia jednego z podanych znaków (bez jego pobierania)
+     * lub do końca danych.
+     * @param first pierwszy poszukiwany znak
+     * @param second drugi poszukiwany znak
+     * @return znaleziony znak albo {@link #EOF}, jeśli dane skończyły się wcześniej
+     */
+    protected final int advanceTo(char first, char second) {
+        while (true) {
+            int i = position;
+            int end = limit;
+            char[] buf = chars;
+            int line = this.line;
+            int column = this.column;
+            boolean carriageReturn = this.carriageReturn;
+            while (i < end) {
+                char c = buf[i];
+                if (c == first || c == second) break;
+                if (c == '\n') {
+                    if (!carriageReturn) line++;
+                    column = 1;
+                    carriageReturn = false;
+                } else if (c == '\r') {
+                    line++;
+                    column = 1;
+                    carriageReturn = true;
+                } else {
+                    column++;
+                    carriageReturn = false;
+                }
+                i++;
+            }
+            this.line = line;
+            this.column = column;
+            this.carriageReturn = carriageReturn;
+            consumed += i - position;
+            position = i;
+            if (i < end) return buf[i];
+            if (!fill()) return EOF;
+        }
+    }
+
+    /**
+     * Zaznacza bieżącą pozycję kursora. Znaki od zaznaczenia są przechowywane w buforze aż do
+     * kolejnego zaznaczenia, więc {@link #text()} i {@link #reset()} mają do nich dostęp.
+     */
+    protected final void mark() {
+        markPosition = position;
+        markConsumed = consumed;
+        markLine = line;
+        markColumn = column;
+        markCarriageReturn = carriageReturn;
+    }
+
+    /**
+     * Przywraca kursor do ostatnio zaznaczonej pozycji.
+     * @throws IllegalStateException jeśli nie zaznaczono żadnej pozycji
+     */
+    protected final void reset() {
+        if (markPosition < 0) throw new IllegalStateException("Mark is not set");
+        position = markPosition;
+        consumed = markConsumed;
+        line = markLine;
+        column = markColumn;
+        carriageReturn = markCarriageReturn;
+    }
+
+    /**
+     * Tworzy ciąg znaków od zaznaczenia do kursora (bez znaku pod kursorem).
+     * @return treść zaznaczonego fragmentu
+     * @throws IllegalStateException jeśli nie zaznaczono żadnej pozycji
+     */
+    protected final String text() {
+        if (markPosition < 0) throw new IllegalStateException("Mark is not set");
+        return new String(chars, markPosition, position - markPosition);
+    }
+
+    /**
+     * Zwraca token o treści od zaznaczenia do kursora, pobrany z {@link TokenPool puli}.
+     * Jeśli token jest już w puli, nie jest tworzony ani on, ani ciąg znaków z jego treścią.
+     * @param pool pula tokenów
+     * @param <T> typ tokenów
+     * @return token o treści zaznaczonego fragmentu
+     * @throws IllegalStateException jeśli nie zaznaczono żadnej pozycji
+     */
+    protected final <T extends NonTerminalExpression<?>> T text(TokenPool<T> pool) {
+        if (markPosition < 0) throw new IllegalStateException("Mark is not set");
+        return pool.intern(chars, markPosition, position - markPosition);
+    }
+
+    /**
+     * Zwraca położenie w źródle fragmentu od zaznaczenia do kursora.
+     * @return fragment źródła odpowiadający zaznaczeniu
+     * @throws IllegalStateException jeśli nie zaznaczono żadnej pozycji
+     */
+    protected final SourceSpan span() {
+        if (markPosition < 0) throw new IllegalStateException("Mark is not set");
+        return new SourceSpan(markConsumed, consumed, markLine, markColumn);
+    }
+
+    /**
+     * @return liczba znaków pobranych ze źródła od jego ustawienia, czyli przesunięcie kursora
+     */
+    protected final long offset() {
+        return consumed;
+    }
+
+    /**
+     * @return numer wiersza, w którym znajduje się kursor (od 1)
+     */
+    protected final int line() {
+        return line;
+    }
+
+    /**
+     * @return numer kolumny, w której znajduje się kursor (od 1)
+     */
+    protected final int column() {
+        return column;
+    }
+}
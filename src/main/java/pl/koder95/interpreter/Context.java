@@ -7,4 +7,16 @@ package pl.koder95.interpreter;
  * Rozszerzenie interfejsu z dodaniem własnych metod umożliwi wykorzystanie go w gramatykach kontekstowych.
  */
 public interface Context {
+
+    /**
+     * Przywraca kontekst do stanu, w jakim był po utworzeniu, aby mógł zostać użyty ponownie przez kolejną
+     * interpretację (np. w {@link InterpreterPool puli interpreterów}). Kontekst powinien zachować bufory, które
+     * może wykorzystać ponownie, ale nie może zachować danych poprzedniej interpretacji.
+     * <p>
+     * Domyślna implementacja nic nie robi, co jest poprawne dla kontekstów bez stanu. Konteksty przechowujące stan
+     * muszą ją nadpisać, zanim zostaną użyte w puli.
+     * </p>
+     */
+    default void reset() {
+    }
 }
@@ -0,0 +1,31 @@
+package pl.koder95.interpreter;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * Źródło znaków zliczające znaki odczytane z innego źródła.
+ */
+final class CountingReadable implements Readable {
+
+    private final Readable source;
+    private long count = 0;
+
+    CountingReadable(Readable source) {
+        this.source = source;
+    }
+
+    /**
+     * @return liczba dotąd odczytanych znaków
+     */
+    long count() {
+        return count;
+    }
+
+    @Override
+    public int read(CharBuffer target) throws IOException {
+        int read = source.read(target);
+        if (read > 0) count += read;
+        return read;
+    }
+}
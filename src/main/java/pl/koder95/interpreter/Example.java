@@ -1,7 +1,15 @@
 package pl.koder95.interpreter;
 
-import java.io.StringReader;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 
 /**
  * Klasa zawierająca przykładową implementację interpretera.
@@ -9,16 +17,25 @@ import java.util.*;
  * {@code ORDER BY ASC} lub {@code ORDER BY DSC}, albo {@code ORDER BY REV}.
  * Dla pewnego porządku: język nazywa się {@code SortExaL} od
  * ang. <i><b>Sort</b>ing <b>Exa</b>mple <b>L</b>anguage</i> (przykładowy język sortowania).
+ * <p>
+ * Każda linia źródła, także pusta, jest instrukcją: linie kończą się znakami {@code \n}, {@code \r} albo
+ * {@code \r\n}, a znak końca linii na końcu źródła nie rozpoczyna nowej linii. Źródło złożone z samych białych
+ * znaków także dodaje linie (np. {@code "\n\n"} dwie puste), choć pierwotna wersja interpretera nie dodawała dla
+ * takiego źródła żadnej linii.
+ * </p>
  */
 public final class Example {
 
+    private static final InterpreterPool<ExampleContext, List<String>, ExampleInterpreter> SESSIONS =
+            new InterpreterPool<>(new ExampleClient(), ExampleContext::new, Runtime.getRuntime().availableProcessors());
+
     private Example() {}
 
     /**
      * Metoda interpretująca źródło znaków i wprowadzone linie.
      * @param readable źródło znaków do zinterpretowania
      * @param lines tablica linii umieszczonych w kontekście przed procesem interpretacji
-     * @return lista linii posortowanych zgodnie z instrukcjami
+     * @return nowa, modyfikowalna lista linii posortowanych zgodnie z instrukcjami
      */
     public static List<String> interpret(Readable readable, String... lines) {
         // Poniższy przykład pokazuje sposób korzystania z interpretera.
@@ -27,12 +44,150 @@ public final class Example {
         // Należy stworzyć najpierw instancję kontekstu, który będzie wykorzystywany przez interpreter:
         ExampleContext context = new ExampleContext();
         if (lines.length > 0) {// – sprawdzanie, czy są jakieś linie we wprowadzonej tablicy
-            context.lines.addAll(List.of(lines)); // – linie dodawane są do kontekstu
+            for (String line : lines) context.lines.add(line); // – linie dodawane są do kontekstu
         }
         // Aby utworzyć nową instancję interpretera, należy to zrobić za pośrednictwem klienta:
         ExampleInterpreter interpreter = client.newInterpreter(context);
-        // Interpreter dokonuje interpretacji źródła znaków i zwraca wynik w postaci listy linii:
-        return interpreter.interpret(readable);
+        // Interpreter dokonuje interpretacji źródła znaków i zwraca wynik w postaci listy linii. Lista jest widokiem
+        // kontekstu, dlatego zwracana jest jej kopia, którą wywołujący może dowolnie zmieniać:
+        return new ArrayList<>(interpreter.interpret(readable));
+    }
+
+    /**
+     * Metoda interpretująca źródło znaków i wprowadzone linie, która nie tworzy za każdym razem klienta, kontekstu,
+     * interpretera i tokenizera, lecz pobiera je z {@link InterpreterPool puli sesji}. Wynik jest taki sam jak
+     * w przypadku {@link #interpret(Readable, String...)}, ale linie przekazywane są kolejno do {@code output},
+     * ponieważ po zakończeniu interpretacji kontekst jest czyszczony i wraca do puli.
+     * @param readable źródło znaków do zinterpretowania
+     * @param output odbiorca linii posortowanych zgodnie z instrukcjami
+     * @param lines tablica linii umieszczonych w kontekście przed procesem interpretacji
+     */
+    public static void interpret(Readable readable, Consumer<? super String> output, String... lines) {
+        try (InterpreterPool.Session<ExampleContext, List<String>, ExampleInterpreter> session = SESSIONS.acquire()) {
+            for (String line : lines) session.context().lines.add(line);
+            session.interpret(readable).forEach(output);
+        }
+    }
+
+    /**
+     * Metoda interpretująca źródło znaków i wprowadzone linie, która przekazuje subskrybentowi linie kontekstu po
+     * każdej instrukcji, zamiast zwracać je dopiero po zinterpretowaniu całego źródła. Kolejna instrukcja
+     * interpretowana jest dopiero po zgłoszeniu przez subskrybenta zapotrzebowania na jej wynik. Przekazywana lista
+     * jest widokiem kontekstu, ważnym do zakończenia {@link Flow.Subscriber#onNext(Object)}; ostatni wynik jest
+     * taki sam jak w przypadku {@link #interpret(Readable, String...)}.
+     * @param readable źródło znaków do zinterpretowania
+     * @param lines tablica linii umieszczonych w kontekście przed procesem interpretacji
+     * @return wydawca list linii po kolejnych instrukcjach, przyjmujący jednego subskrybenta
+     */
+    public static Flow.Publisher<List<String>> publish(Readable readable, String... lines) {
+        ExampleClient client = new ExampleClient();
+        ExampleContext context = new ExampleContext();
+        for (String line : lines) context.lines.add(line);
+        ExampleInterpreter interpreter = client.newInterpreter(context);
+        return interpreter.publish(readable);
+    }
+
+    /**
+     * Metoda interpretująca tekst, który przed parsowaniem jest tokenizowany równolegle: dzielony jest na fragmenty
+     * na końcach linii, a fragmenty tokenizowane są w {@link java.util.concurrent.ForkJoinPool#commonPool() wspólnej
+     * puli wątków}. Wynik jest taki sam jak w przypadku {@link #interpret(Readable, String...)}.
+     * @param source tekst do zinterpretowania
+     * @param lines tablica linii umieszczonych w kontekście przed procesem interpretacji
+     * @return nowa, modyfikowalna lista linii posortowanych zgodnie z instrukcjami
+     */
+    public static List<String> interpretParallel(CharSequence source, String... lines) {
+        ExampleClient client = new ExampleClient();
+        ExampleContext context = new ExampleContext();
+        for (String line : lines) context.lines.add(line);
+        ExampleInterpreter interpreter = client.newInterpreter(context);
+        TerminalExpression<ExampleContext, List<String>> ast =
+                interpreter.prepare(source, new ParallelTokenizer(interpreter.getParser()));
+        return new ArrayList<>(ast.interpret(context));
+    }
+
+    /**
+     * Metoda interpretująca jedno źródło znaków dla wielu zestawów linii jednocześnie. Linie wspólne umieszczane są
+     * raz w kontekście bazowym, a każdy zestaw interpretowany jest w jego {@link ForkableContext#fork() rozwidleniu},
+     * które współdzieli z nim linie, więc wątki nie kopiują wspólnych linii i nie potrzebują blokad. Drzewo składniowe
+     * budowane jest raz i interpretowane współbieżnie.
+     * @param readable źródło znaków do zinterpretowania
+     * @param shared linie umieszczane w kontekście przed liniami każdego zestawu
+     * @param variants zestawy linii
+     * @return nowe, modyfikowalne listy linii posortowanych zgodnie z instrukcjami, w kolejności zestawów
+     */
+    public static List<List<String>> interpret(Readable readable, List<String> shared, List<? extends List<String>> variants) {
+        ExampleClient client = new ExampleClient();
+        ExampleContext base = new ExampleContext();
+        for (String line : shared) base.lines.add(line);
+        TerminalExpression<ExampleContext, List<String>> ast = client.newInterpreter(base).prepare(readable);
+        return variants.parallelStream().<List<String>>map(variant -> {
+            ExampleContext context = base.fork();
+            for (String line : variant) context.lines.add(line);
+            return new ArrayList<>(ast.interpret(context));
+        }).toList();
+    }
+
+    /**
+     * Metoda interpretująca źródło znaków, której linie mogą nie mieścić się w pamięci. Linie przekraczające budżet
+     * pamięci zapisywane są do plików tymczasowych, a sortowanie odbywa się przez scalanie posortowanych serii
+     * (sortowanie zewnętrzne). Wynik jest taki sam jak w przypadku {@link #interpret(Readable, String...)}, ale zamiast
+     * listy linie przekazywane są kolejno do {@code output}.
+     * @param readable źródło znaków do zinterpretowania
+     * @param memoryBudget przybliżona liczba bajtów pamięci, którą mogą zajmować linie przechowywane w pamięci
+     * @param directory katalog plików tymczasowych (usuwanych po zakończeniu interpretacji)
+     * @param output odbiorca linii posortowanych zgodnie z instrukcjami
+     * @throws UncheckedIOException w przypadku błędu zapisu lub odczytu plików tymczasowych
+     */
+    public static void interpret(Readable readable, long memoryBudget, Path directory, Consumer<? super String> output) {
+        ExampleClient client = new ExampleClient();
+        // Kontekst z magazynem linii zapisującym nadmiarowe linie na dysku; po interpretacji pliki są usuwane:
+        try (ExampleContext context = new ExampleContext(new SpillingLineStore(memoryBudget, directory))) {
+            // Interpreter nie buduje drzewa składniowego, które zajmowałoby tyle pamięci co dane, tylko interpretuje
+            // każdą instrukcję od razu po rozpoznaniu (ExampleParser#streamAbstractSyntaxTree):
+            client.newInterpreter(context).interpret(readable);
+            context.lines.forEach(output);
+        }
+    }
+
+    /**
+     * Metoda interpretująca plik źródłowy, której drzewo składniowe zapisywane jest w pliku pamięci podręcznej.
+     * Przy kolejnym wywołaniu dla niezmienionego pliku źródłowego drzewo jest wczytywane z pamięci podręcznej
+     * bez tokenizacji i parsowania; po zmianie pliku źródłowego drzewo jest budowane i zapisywane ponownie.
+     * @param script plik źródłowy zakodowany w {@code UTF-8}
+     * @param cache plik pamięci podręcznej drzewa składniowego
+     * @param lines tablica linii umieszczonych w kontekście przed procesem interpretacji
+     * @return nowa, modyfikowalna lista linii posortowanych zgodnie z instrukcjami
+     * @throws IOException w przypadku błędu odczytu lub zapisu plików
+     */
+    public static List<String> interpret(Path script, Path cache, String... lines) throws IOException {
+        ExampleClient client = new ExampleClient();
+        ExampleContext context = new ExampleContext();
+        for (String line : lines) context.lines.add(line);
+        ExampleInterpreter interpreter = client.newInterpreter(context);
+        // Odcisk pliku źródłowego pozwala wykryć, że drzewo w pamięci podręcznej jest nieaktualne:
+        TerminalExpression<ExampleContext, List<String>> ast;
+        try {
+            ast = ExampleInterpreter.FORMAT.load(cache, SyntaxTreeFormat.fingerprint(script), () -> {
+                try (MappedFileSource source = new MappedFileSource(script, StandardCharsets.UTF_8)) {
+                    return interpreter.prepare(source);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new ArrayList<>(ast.interpret(context));
+    }
+
+    /**
+     * Tworzy interpreter języka {@code SortExaL} z pustym kontekstem, np. do porównania ponownego parsowania
+     * zmienionego fragmentu ({@link Interpreter#prepare(TerminalExpression, TextEdit, String)}) z parsowaniem
+     * całego źródła.
+     * @return nowy interpreter
+     */
+    static Interpreter<?, List<String>> newInterpreter() {
+        return new ExampleClient().newInterpreter(new ExampleContext());
     }
 
     public static void main(String[] args) {
@@ -60,6 +215,8 @@ public final class Example {
     IMPLEMENTACJE
     =============
     * ExampleContext – implementuje przykładowy kontekst dla języka kontekstowego
+    * LineStore – definiuje magazyn linii kontekstu: w pamięci (ArrayLineStore) albo z zapisem na dysku
+      i sortowaniem zewnętrznym (SpillingLineStore)
     * Line – implementuje wyrażenie nieterminalne reprezentujące linię tekstu
     * OrderByType – definiuje typy sposobów porządkowania linii tekstu
     * Sort – implementuje wyrażenie terminalne, które zwraca posortowane linie według podanego sposobu
@@ -67,7 +224,8 @@ public final class Example {
     * Instructions – implementuje wyrażenie terminalne, które zawiera listę innych wyrażeń terminalnych
     * LineTokenizer – dokonuje tokenizacji dzieląc źródło znaków na linie
     * ExampleParser – implementuje parser, który tworzy AST (zwraca Instructions)
-    * ExampleInterpreter – implementuje interpreter przez określenie statycznego parsera i zmiennego kontekstu
+    * ExampleInterpreter – implementuje interpreter przez określenie statycznego (bezstanowego) parsera
+      i zmiennego kontekstu
     * ExampleClient – implementuje klienta tworzącego interpreter
 
     LineTokenizer pobiera znaki i przekształca je w linie (Line).
@@ -76,15 +234,586 @@ public final class Example {
     Interpreter (ExampleInterpreter) dokonuje interpretacji instrukcji i zwraca listę posortowanych linii.
     Klient zajmuje się utworzeniem interpretera, w zależności od kontekstu (w tym miejscu jest on ignorowany).
 */
-    private static class ExampleContext implements Context {
-        private final List<String> lines = new LinkedList<>();
+    private static class ExampleContext implements ForkableContext<ExampleContext>, AutoCloseable {
+        private final LineStore lines;
+
+        private ExampleContext() {
+            this(new ArrayLineStore());
+        }
+
+        private ExampleContext(LineStore lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public ExampleContext fork() {
+            return new ExampleContext(lines.fork());
+        }
+
+        @Override
+        public void reset() {
+            // Zamknięty magazyn jest pusty i można go używać dalej.
+            lines.close();
+        }
+
+        @Override
+        public void close() {
+            lines.close();
+        }
+    }
+
+    /**
+     * Uporządkowany ciąg linii kontekstu, który można sortować i odwracać w miejscu.
+     */
+    private interface LineStore extends Iterable<String>, AutoCloseable {
+        void add(String line);
+
+        void sort(Comparator<String> order);
+
+        void reverse();
+
+        long size();
+
+        /**
+         * Zwraca listę linii odzwierciedlającą bieżący stan magazynu (ważną do jego następnej zmiany).
+         */
+        List<String> asList();
+
+        /**
+         * Tworzy niezależną kopię magazynu (zob. {@link ForkableContext#fork()}).
+         * @throws UnsupportedOperationException jeśli magazyn nie może zostać rozwidlony
+         */
+        LineStore fork();
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Magazyn linii w dwóch {@link ForkableList listach rozwidlanych}: {@code back} zawiera linie w kolejności
+     * niezależnej od odwrócenia, a {@code front} – linie dodane przed nimi, zapisane od końca. Odwrócenie kolejności
+     * zmienia tylko kierunek odczytu, a linie dodawane po odwróceniu trafiają do {@code front}, więc żadna instrukcja
+     * nie kopiuje linii. Sortowanie korzysta z {@link Arrays#parallelSort(Object[], int, int, Comparator)}, które
+     * dla dużych tablic dzieli pracę między wątki. Rozwidlenie magazynu współdzieli bloki obu list.
+     */
+    private static final class ArrayLineStore implements LineStore {
+        private ForkableList<String> front;
+        private ForkableList<String> back;
+        private boolean reversed;
+
+        private ArrayLineStore() {
+            this(new ForkableList<>(), new ForkableList<>(), false);
+        }
+
+        private ArrayLineStore(ForkableList<String> front, ForkableList<String> back, boolean reversed) {
+            this.front = front;
+            this.back = back;
+            this.reversed = reversed;
+        }
+
+        @Override
+        public void add(String line) {
+            if (reversed) front.add(line);
+            else back.add(line);
+        }
+
+        @Override
+        public void sort(Comparator<String> order) {
+            // Kolejność przed sortowaniem nie ma znaczenia, więc linie z front wystarczy dołączyć na koniec back.
+            if (!front.isEmpty()) {
+                back.addAll(front);
+                front.clear();
+            }
+            back.sort(order);
+            reversed = false;
+        }
+
+        @Override
+        public void reverse() {
+            reversed = !reversed;
+        }
+
+        @Override
+        public long size() {
+            return front.size() + back.size();
+        }
+
+        @Override
+        public List<String> asList() {
+            return new View();
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return asList().iterator();
+        }
+
+        @Override
+        public ArrayLineStore fork() {
+            return new ArrayLineStore(front.fork(), back.fork(), reversed);
+        }
+
+        @Override
+        public void close() {
+            front.clear();
+            back.clear();
+            reversed = false;
+        }
+
+        /**
+         * Zwraca linię o podanym indeksie w kolejności bez odwrócenia: najpierw {@code front} od końca, potem
+         * {@code back}.
+         */
+        private String physical(int index) {
+            int prefix = front.size();
+            return index < prefix ? front.get(prefix - 1 - index) : back.get(index - prefix);
+        }
+
+        private final class View extends AbstractList<String> implements RandomAccess {
+            @Override
+            public String get(int index) {
+                int size = size();
+                Objects.checkIndex(index, size);
+                return physical(reversed ? size - 1 - index : index);
+            }
+
+            @Override
+            public int size() {
+                return front.size() + back.size();
+            }
+        }
+    }
+
+    /**
+     * Magazyn linii, który po przekroczeniu budżetu pamięci zapisuje linie do plików tymczasowych (segmentów).
+     * Sortowanie dzieli segmenty na posortowane w pamięci serie i scala je (k-drożnie) w jeden segment,
+     * a odwrócenie zmienia tylko kolejność segmentów i kierunek ich odczytu. Rekord w pliku to długość,
+     * bajty UTF-8 i ponownie długość, dzięki czemu segment można czytać od końca.
+     */
+    private static final class SpillingLineStore implements LineStore {
+        private static final int MAX_MERGE_WIDTH = 64;
+        private static final int BLOCK_SIZE = 1 << 16;
+
+        private final long memoryBudget;
+        private final Path directory;
+        private final List<Segment> segments = new ArrayList<>();
+        private final List<String> tail = new ArrayList<>();
+        // Czytniki segmentów, które nie odczytały jeszcze ostatniej linii; close() zamyka je przed usunięciem plików.
+        private final Set<SegmentReader> readers = Collections.newSetFromMap(new IdentityHashMap<>());
+        private long tailBytes = 0;
+        private long size = 0;
+
+        private record Segment(Path file, long count, boolean reversed) {
+            private Segment reverse() {
+                return new Segment(file, count, !reversed);
+            }
+        }
+
+        private SpillingLineStore(long memoryBudget, Path directory) {
+            if (memoryBudget <= 0) throw new IllegalArgumentException("Memory budget must be positive");
+            if (directory == null) throw new NullPointerException("Directory cannot be null");
+            this.memoryBudget = memoryBudget;
+            this.directory = directory;
+        }
+
+        /**
+         * Przybliżony rozmiar linii w pamięci: obiekt String, tablica znaków i miejsce na liście.
+         */
+        private static long footprint(String line) {
+            return 48L + 2L * line.length();
+        }
+
+        @Override
+        public void add(String line) {
+            tail.add(line);
+            tailBytes += footprint(line);
+            size++;
+            if (tailBytes > memoryBudget) spillTail();
+        }
+
+        private void spillTail() {
+            if (tail.isEmpty()) return;
+            segments.add(write(tail.iterator(), tail.size()));
+            tail.clear();
+            tailBytes = 0;
+        }
+
+        @Override
+        public void reverse() {
+            if (segments.isEmpty()) {
+                Collections.reverse(tail);
+                return;
+            }
+            spillTail();
+            Collections.reverse(segments);
+            segments.replaceAll(Segment::reverse);
+        }
+
+        @Override
+        public void sort(Comparator<String> order) {
+            if (segments.isEmpty()) {
+                tail.sort(order);
+                return;
+            }
+            // Serie: każdy segment dzielony jest na fragmenty mieszczące się w budżecie i sortowany w pamięci.
+            Deque<Segment> runs = new ArrayDeque<>();
+            List<String> chunk = new ArrayList<>();
+            for (Segment segment : segments) {
+                long chunkBytes = 0;
+                Iterator<String> lines = read(segment);
+                while (lines.hasNext()) {
+                    String line = lines.next();
+                    chunk.add(line);
+                    chunkBytes += footprint(line);
+                    if (chunkBytes > memoryBudget || !lines.hasNext()) {
+                        chunk.sort(order);
+                        runs.add(write(chunk.iterator(), chunk.size()));
+                        chunk.clear();
+                        chunkBytes = 0;
+                    }
+                }
+                delete(segment.file());
+            }
+            segments.clear();
+            tail.sort(order);
+            while (runs.size() + 1 > MAX_MERGE_WIDTH) {
+                List<Segment> group = new ArrayList<>();
+                while (group.size() < MAX_MERGE_WIDTH && !runs.isEmpty()) group.add(runs.poll());
+                runs.add(merge(group, List.of(), order));
+            }
+            segments.add(merge(new ArrayList<>(runs), tail, order));
+            tail.clear();
+            tailBytes = 0;
+        }
+
+        /**
+         * Scala posortowane serie (i posortowane linie z pamięci) w jeden segment, usuwając pliki serii.
+         */
+        private Segment merge(List<Segment> runs, List<String> sortedInMemory, Comparator<String> order) {
+            record Head(String line, Iterator<String> source) {}
+            PriorityQueue<Head> heads = new PriorityQueue<>(runs.size() + 1, (a, b) -> order.compare(a.line(), b.line()));
+            long count = sortedInMemory.size();
+            List<Iterator<String>> sources = new ArrayList<>();
+            for (Segment run : runs) {
+                sources.add(read(run));
+                count += run.count();
+            }
+            sources.add(sortedInMemory.iterator());
+            for (Iterator<String> source : sources) {
+                if (source.hasNext()) heads.add(new Head(source.next(), source));
+            }
+            Iterator<String> merged = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return !heads.isEmpty();
+                }
+
+                @Override
+                public String next() {
+                    Head head = heads.poll();
+                    if (head == null) throw new NoSuchElementException();
+                    if (head.source().hasNext()) heads.add(new Head(head.source().next(), head.source()));
+                    return head.line();
+                }
+            };
+            Segment segment = write(merged, count);
+            for (Segment run : runs) delete(run.file());
+            return segment;
+        }
+
+        private Segment write(Iterator<String> lines, long count) {
+            try {
+                Path file = Files.createTempFile(directory, "sortexal-", ".lines");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BLOCK_SIZE))) {
+                    while (lines.hasNext()) {
+                        byte[] bytes = lines.next().getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                        out.writeInt(bytes.length);
+                    }
+                }
+                return new Segment(file, count, false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private SegmentReader read(Segment segment) {
+            return segment.reversed() ? new BackwardReader(segment, readers) : new ForwardReader(segment, readers);
+        }
+
+        private static void delete(Path file) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Iterator porzucony przed końcem zamykany jest razem z magazynem ({@link #close()}).
+         */
+        @Override
+        public LineIterator iterator() {
+            return new LineIterator(List.copyOf(segments));
+        }
+
+        /**
+         * Odczytuje kolejno segmenty i linie z pamięci. Zamknięcie zamyka czytnik bieżącego segmentu.
+         */
+        private final class LineIterator implements Iterator<String>, AutoCloseable {
+            private final List<Segment> snapshot;
+            private int next = 0;
+            private Iterator<String> current = Collections.emptyIterator();
+
+            private LineIterator(List<Segment> snapshot) {
+                this.snapshot = snapshot;
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (next < snapshot.size()) current = read(snapshot.get(next));
+                    else if (next == snapshot.size()) current = tail.iterator();
+                    else return false;
+                    next++;
+                }
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+
+            @Override
+            public void close() {
+                if (current instanceof SegmentReader reader) reader.close();
+                current = Collections.emptyIterator();
+                next = snapshot.size() + 1;
+            }
+        }
+
+        /**
+         * Segmenty są usuwane wraz z magazynem, więc nie mogą być współdzielone z rozwidleniem.
+         */
+        @Override
+        public LineStore fork() {
+            throw new UnsupportedOperationException("Spilling line store cannot be forked");
+        }
+
+        /**
+         * Widok listy odczytuje linie sekwencyjnie; dostęp do kolejnych indeksów nie wymaga ponownego odczytu.
+         */
+        @Override
+        public List<String> asList() {
+            return new AbstractList<>() {
+                private LineIterator cursor;
+                private long cursorIndex;
+
+                @Override
+                public String get(int index) {
+                    Objects.checkIndex(index, size());
+                    if (cursor == null || index < cursorIndex) {
+                        if (cursor != null) cursor.close();
+                        cursor = SpillingLineStore.this.iterator();
+                        cursorIndex = 0;
+                    }
+                    while (cursorIndex < index) {
+                        cursor.next();
+                        cursorIndex++;
+                    }
+                    cursorIndex++;
+                    return cursor.next();
+                }
+
+                @Override
+                public Iterator<String> iterator() {
+                    return SpillingLineStore.this.iterator();
+                }
+
+                @Override
+                public int size() {
+                    return (int) Math.min(size, Integer.MAX_VALUE);
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            for (SegmentReader reader : List.copyOf(readers)) reader.close();
+            for (Segment segment : segments) delete(segment.file());
+            segments.clear();
+            tail.clear();
+            tailBytes = 0;
+            size = 0;
+        }
+    }
+
+    /**
+     * Czytnik segmentu. Dopóki nie odczyta ostatniej linii albo nie zostanie zamknięty, należy do zbioru otwartych
+     * czytników magazynu, aby zamknięcie magazynu zamknęło także jego plik.
+     */
+    private interface SegmentReader extends Iterator<String>, AutoCloseable {
+        /**
+         * Zamyka plik segmentu; kolejne wywołania nic nie robią.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Odczytuje segment od początku; plik jest zamykany po odczytaniu ostatniej linii.
+     */
+    private static final class ForwardReader implements SegmentReader {
+        private final DataInputStream in;
+        private final Set<SegmentReader> open;
+        private long remaining;
+
+        private ForwardReader(SpillingLineStore.Segment segment, Set<SegmentReader> open) {
+            try {
+                this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.file()),
+                        SpillingLineStore.BLOCK_SIZE));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.open = open;
+            this.remaining = segment.count();
+            open.add(this);
+            if (remaining == 0) close();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public String next() {
+            if (remaining <= 0) throw new NoSuchElementException();
+            try {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                in.readInt();
+                if (--remaining == 0) close();
+                return new String(bytes, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!open.remove(this)) return;
+            remaining = 0;
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
-    private record Line(String content) implements NonTerminalExpression<String> {
+    /**
+     * Odczytuje segment od końca, wczytując plik blokami od końca; plik jest zamykany po odczytaniu pierwszej linii.
+     */
+    private static final class BackwardReader implements SegmentReader {
+        private final FileChannel channel;
+        private final Set<SegmentReader> open;
+        private final byte[] block = new byte[SpillingLineStore.BLOCK_SIZE];
+        private long blockStart;
+        private long blockEnd;
+        private long position;
+        private long remaining;
+
+        private BackwardReader(SpillingLineStore.Segment segment, Set<SegmentReader> open) {
+            try {
+                this.channel = FileChannel.open(segment.file(), StandardOpenOption.READ);
+                this.position = channel.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.blockStart = position;
+            this.blockEnd = position;
+            this.open = open;
+            this.remaining = segment.count();
+            open.add(this);
+            if (remaining == 0) close();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public String next() {
+            if (remaining <= 0) throw new NoSuchElementException();
+            byte[] length = read(position - Integer.BYTES, Integer.BYTES);
+            int size = ByteBuffer.wrap(length).getInt();
+            byte[] bytes = read(position - Integer.BYTES - size, size);
+            position -= 2L * Integer.BYTES + size;
+            if (--remaining == 0) close();
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Odczytuje bajty z zakresu {@code [from, from + length)}, korzystając z bloku kończącego się na tym zakresie.
+         */
+        private byte[] read(long from, int length) {
+            byte[] bytes = new byte[length];
+            try {
+                if (length > block.length) {
+                    channel.read(ByteBuffer.wrap(bytes), from);
+                    return bytes;
+                }
+                if (from < blockStart || from + length > blockEnd) {
+                    blockEnd = from + length;
+                    blockStart = Math.max(0, blockEnd - block.length);
+                    ByteBuffer buffer = ByteBuffer.wrap(block, 0, (int) (blockEnd - blockStart));
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, blockStart + buffer.position()) < 0) throw new EOFException();
+                    }
+                }
+                System.arraycopy(block, (int) (from - blockStart), bytes, 0, length);
+                return bytes;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!open.remove(this)) return;
+            remaining = 0;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Linia źródła. Rodzaj linii (instrukcja sortowania albo linia z danymi) wyznacza tokenizer podczas odczytu
+     * znaków, więc parser nie porównuje treści tokenów.
+     */
+    private record Line(String content, SourceSpan span, boolean instruction) implements NonTerminalExpression<String> {
         @Override
         public String getObject() {
             return content;
         }
+
+        @Override
+        public SourceSpan getSpan() {
+            return span;
+        }
     }
 
     private enum OrderByType {
@@ -97,10 +826,32 @@ public final class Example {
         public List<String> interpret(ExampleContext context) {
             if (orderBy == OrderByType.ASC) context.lines.sort(Comparator.naturalOrder());
             else if (orderBy == OrderByType.DSC) context.lines.sort(Comparator.reverseOrder());
-            else if (orderBy == OrderByType.REV) Collections.reverse(context.lines);
-            List<String> ordered = new ArrayList<>(context.lines);
-            context.lines.clear();
-            return ordered;
+            else if (orderBy == OrderByType.REV) context.lines.reverse();
+            return context.lines.asList();
+        }
+
+        private static void write(Sort sort, SyntaxTreeFormat.Output<ExampleContext> out) {
+            out.writeByte(sort.orderBy == null ? -1 : sort.orderBy.ordinal());
+        }
+
+        private static Sort read(SyntaxTreeFormat.Input<ExampleContext> in) {
+            byte ordinal = in.readByte();
+            return new Sort(ordinal < 0 ? null : OrderByType.values()[ordinal]);
+        }
+
+        /**
+         * Łączy to sortowanie z następującym po nim: ASC i DSC zastępują wcześniejszy porządek, REV odwraca go
+         * (ASC na DSC, DSC na ASC, a dwa REV znoszą się), a puste ORDER BY niczego nie zmienia.
+         */
+        private Sort then(Sort next) {
+            if (next.orderBy == null) return this;
+            if (next.orderBy != OrderByType.REV) return next;
+            if (orderBy == null) return next;
+            return switch (orderBy) {
+                case ASC -> new Sort(OrderByType.DSC);
+                case DSC -> new Sort(OrderByType.ASC);
+                case REV -> new Sort(null);
+            };
         }
 
         @Override
@@ -109,93 +860,491 @@ public final class Example {
         }
     }
 
-    private record Add(Line line) implements TerminalExpression<ExampleContext, List<String>> {
+    private record Add(String line) implements TerminalExpression<ExampleContext, List<String>> {
         @Override
         public List<String> interpret(ExampleContext context) {
-            if (line != null) context.lines.add(line.content);
-            return context.lines;
+            if (line != null) context.lines.add(line);
+            return context.lines.asList();
         }
 
         @Override
         public String asString() {
-            return line == null? "null" : line.content();
+            return line == null? "null" : line;
+        }
+
+        private static void write(Add add, SyntaxTreeFormat.Output<ExampleContext> out) {
+            out.writeString(add.line);
+        }
+
+        private static Add read(SyntaxTreeFormat.Input<ExampleContext> in) {
+            return new Add(in.readString());
+        }
+    }
+
+    // Położenia instrukcji w źródle przechowywane są obok instrukcji, a nie w nich, dzięki czemu po zmianie tekstu
+    // instrukcje za zmienionym fragmentem są używane ponownie, a przesuwane są tylko ich położenia.
+    private static final class Spans {
+        private long[] starts;
+        private long[] ends;
+        private int[] lines;
+        private int[] columns;
+        private int[] endLines;
+        private int size = 0;
+        private boolean complete = true;
+
+        private Spans() {
+            this(16);
+        }
+
+        private Spans(int capacity) {
+            capacity = Math.max(capacity, 16);
+            starts = new long[capacity];
+            ends = new long[capacity];
+            lines = new int[capacity];
+            columns = new int[capacity];
+            endLines = new int[capacity];
+        }
+
+        private void add(long start, long end, int line, int column, int endLine) {
+            if (size == starts.length) {
+                int capacity = Math.max(16, size * 2);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+                endLines = Arrays.copyOf(endLines, capacity);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            lines[size] = line;
+            columns[size] = column;
+            endLines[size] = endLine;
+            size++;
+        }
+
+        private void add(SourceSpan span) {
+            if (span == null) {
+                complete = false;
+                add(0, 0, 1, 1, 1);
+            } else {
+                add(span.start(), span.end(), span.line(), span.column(), span.line());
+            }
+        }
+
+        /**
+         * Dodaje położenie obejmujące położenia od {@code first} do {@code last} z innego zbioru.
+         */
+        private void addUnion(Spans other, int first, int last) {
+            add(other.starts[first], other.ends[last], other.lines[first], other.columns[first], other.endLines[last]);
+        }
+
+        /**
+         * Rozszerza ostatnie położenie tak, aby obejmowało położenie {@code index} z innego zbioru.
+         */
+        private void extendLast(Spans other, int index) {
+            ends[size - 1] = other.ends[index];
+            endLines[size - 1] = other.endLines[index];
+        }
+
+        private void addAll(Spans other, int from, int to, long offsetDelta, int lineDelta) {
+            for (int i = from; i < to; i++) {
+                add(other.starts[i] + offsetDelta, other.ends[i] + offsetDelta, other.lines[i] + lineDelta,
+                        other.columns[i], other.endLines[i] + lineDelta);
+            }
+        }
+
+        private SourceSpan get(int index) {
+            Objects.checkIndex(index, size);
+            return complete ? new SourceSpan(starts[index], ends[index], lines[index], columns[index]) : null;
+        }
+
+        /**
+         * Zwraca indeks pierwszego położenia, które kończy się nie wcześniej niż podane przesunięcie.
+         */
+        private int firstEndingAtOrAfter(long offset) {
+            int low = 0, high = size - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (ends[middle] < offset) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", "[", "]");
+            for (int i = 0; i < size; i++) joiner.add(String.valueOf(get(i)));
+            return joiner.toString();
         }
     }
 
-    private record Instructions(List<TerminalExpression<ExampleContext, List<String>>> terminalExpressionList)
-            implements TerminalExpression<ExampleContext, List<String>> {
+    private record Instructions(List<TerminalExpression<ExampleContext, List<String>>> terminalExpressionList,
+                                Spans spans)
+            implements RewritableExpression<ExampleContext, List<String>>,
+                       SequentialExpression<ExampleContext, List<String>> {
+
         @Override
         public List<String> interpret(ExampleContext context) {
             for (TerminalExpression<ExampleContext, List<String>> expr : terminalExpressionList) {
-                List<String> interpreted = expr.interpret(context);
-                if (expr instanceof Sort) {
-                    context.lines.addAll(interpreted);
-                }
+                expr.interpret(context);
             }
-            return context.lines;
+            return context.lines.asList();
         }
 
         @Override
         public String asString() {
             return "INSTRUCTIONS";
         }
+
+        @Override
+        public List<TerminalExpression<ExampleContext, List<String>>> children() {
+            return terminalExpressionList;
+        }
+
+        @Override
+        public List<TerminalExpression<ExampleContext, List<String>>> steps() {
+            return terminalExpressionList;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Instructions withChildren(List<TerminalExpression<ExampleContext, ?>> children) {
+            List<TerminalExpression<ExampleContext, List<String>>> instructions = new ArrayList<>(children.size());
+            for (TerminalExpression<ExampleContext, ?> child : children) {
+                instructions.add((TerminalExpression<ExampleContext, List<String>>) child);
+            }
+            return new Instructions(instructions, spans);
+        }
+
+        /**
+         * Reguła optymalizacji: zastępuje każdą serię kolejnych sortowań jednym sortowaniem
+         * ({@link Sort#then(Sort)}), np. {@code ORDER BY ASC; ORDER BY DSC} sortowaniem DSC.
+         */
+        private Instructions fuseSorts() {
+            int count = terminalExpressionList.size();
+            int i = 1;
+            while (i < count && !(terminalExpressionList.get(i - 1) instanceof Sort
+                    && terminalExpressionList.get(i) instanceof Sort)) i++;
+            if (i >= count) return this;
+            boolean located = isLocated();
+            List<TerminalExpression<ExampleContext, List<String>>> fused = new ArrayList<>(count);
+            Spans fusedSpans = new Spans(count);
+            for (int from = 0; from < count; ) {
+                TerminalExpression<ExampleContext, List<String>> expr = terminalExpressionList.get(from);
+                int to = from + 1;
+                if (expr instanceof Sort sort) {
+                    while (to < count && terminalExpressionList.get(to) instanceof Sort next) {
+                        sort = sort.then(next);
+                        to++;
+                    }
+                    expr = sort;
+                }
+                fused.add(expr);
+                if (located) fusedSpans.addUnion(spans, from, to - 1);
+                from = to;
+            }
+            fusedSpans.complete = located;
+            return new Instructions(fused, fusedSpans);
+        }
+
+        /**
+         * Reguła optymalizacji: usuwa sortowania, które nie zmieniają kolejności linii ({@code ORDER BY} bez typu
+         * i połączone {@code ORDER BY REV; ORDER BY REV}). Położenie usuniętej instrukcji dołączane jest
+         * do położenia sąsiedniej, aby zmiana w jej tekście była uwzględniana przy ponownym parsowaniu.
+         */
+        private Instructions dropIdentitySorts() {
+            int count = terminalExpressionList.size();
+            int i = 0;
+            while (i < count && !(terminalExpressionList.get(i) instanceof Sort sort && sort.orderBy() == null)) i++;
+            if (i >= count) return this;
+            boolean located = isLocated();
+            List<TerminalExpression<ExampleContext, List<String>>> kept = new ArrayList<>(count);
+            Spans keptSpans = new Spans(count);
+            int dropped = -1;
+            for (int index = 0; index < count; index++) {
+                TerminalExpression<ExampleContext, List<String>> expr = terminalExpressionList.get(index);
+                if (expr instanceof Sort sort && sort.orderBy() == null) {
+                    if (!located) continue;
+                    if (keptSpans.size > 0) keptSpans.extendLast(spans, index);
+                    else if (dropped < 0) dropped = index;
+                    continue;
+                }
+                kept.add(expr);
+                if (located) keptSpans.addUnion(spans, dropped < 0 ? index : dropped, index);
+                dropped = -1;
+            }
+            keptSpans.complete = located;
+            return new Instructions(kept, keptSpans);
+        }
+
+        private boolean isLocated() {
+            return spans.complete && spans.size == terminalExpressionList.size();
+        }
+
+        // Położenia zapisywane są względem poprzedniej instrukcji, więc zwykle zajmują po jednym bajcie.
+        private static void write(Instructions instructions, SyntaxTreeFormat.Output<ExampleContext> out) {
+            List<TerminalExpression<ExampleContext, List<String>>> list = instructions.terminalExpressionList;
+            boolean located = instructions.isLocated();
+            Spans spans = instructions.spans;
+            out.writeInt(list.size());
+            out.writeBoolean(located);
+            long previousEnd = 0;
+            int previousLine = 1;
+            for (int i = 0; i < list.size(); i++) {
+                out.writeNode(list.get(i));
+                if (!located) continue;
+                out.writeLong(spans.starts[i] - previousEnd);
+                out.writeLong(spans.ends[i] - spans.starts[i]);
+                out.writeInt(spans.lines[i] - previousLine);
+                out.writeInt(spans.columns[i]);
+                out.writeInt(spans.endLines[i] - spans.lines[i]);
+                previousEnd = spans.ends[i];
+                previousLine = spans.endLines[i];
+            }
+        }
+
+        private static Instructions read(SyntaxTreeFormat.Input<ExampleContext> in) {
+            int count = in.readInt();
+            boolean located = in.readBoolean();
+            List<TerminalExpression<ExampleContext, List<String>>> list = new ArrayList<>(count);
+            Spans spans = new Spans(located ? count : 0);
+            long previousEnd = 0;
+            int previousLine = 1;
+            for (int i = 0; i < count; i++) {
+                list.add(in.readNode());
+                if (!located) continue;
+                long start = previousEnd + in.readLong();
+                long end = start + in.readLong();
+                int line = previousLine + in.readInt();
+                int column = in.readInt();
+                int endLine = line + in.readInt();
+                spans.add(start, end, line, column, endLine);
+                previousEnd = end;
+                previousLine = endLine;
+            }
+            spans.complete = located;
+            return new Instructions(list, spans);
+        }
     }
 
-    private static final class LinesTokenizer extends Tokenizer {
-        private final Queue<Line> lineQueue = new LinkedList<>();
-        private Scanner scanner = null;
+    /**
+     * Łączy kolejne sortowania w strumieniu instrukcji interpretowanych bez budowania drzewa, tak jak reguły
+     * {@link Instructions#fuseSorts()} i {@link Instructions#dropIdentitySorts()} w drzewie.
+     */
+    private static final class SortFusion implements Consumer<TerminalExpression<ExampleContext, List<String>>> {
+        private final Consumer<? super TerminalExpression<ExampleContext, List<String>>> downstream;
+        private Sort pending;
+
+        private SortFusion(Consumer<? super TerminalExpression<ExampleContext, List<String>>> downstream) {
+            this.downstream = downstream;
+        }
 
         @Override
-        public Line next() {
-            while (scanner != null && scanner.hasNextLine()) {
-                String content = scanner.nextLine();
-                lineQueue.add(new Line(content));
+        public void accept(TerminalExpression<ExampleContext, List<String>> instruction) {
+            if (instruction instanceof Sort sort) {
+                pending = pending == null ? sort : pending.then(sort);
+                return;
             }
-            return lineQueue.poll();
+            flush();
+            downstream.accept(instruction);
+        }
+
+        private void flush() {
+            if (pending != null && pending.orderBy() != null) downstream.accept(pending);
+            pending = null;
+        }
+    }
+
+    private static final class LinesTokenizer extends BufferedTokenizer {
+        private static final String INSTRUCTION = "ORDER BY";
+
+        @Override
+        public Line next() {
+            if (atEnd()) throw new NoSuchElementException();
+            mark();
+            boolean instruction = startsWithInstruction();
+            int terminator = advanceTo('\n', '\r');
+            Line line = new Line(text(), span(), instruction);
+            advance();
+            if (terminator == '\r' && peek() == '\n') advance();
+            return line;
         }
 
         @Override
         public boolean hasNext() {
-            return (scanner != null && scanner.hasNext()) || !lineQueue.isEmpty();
+            return !atEnd();
         }
 
-        @Override
-        public void setSource(Readable source) {
-            super.setSource(source);
-            scanner = new Scanner(source);
+        private boolean startsWithInstruction() {
+            for (int i = 0; i < INSTRUCTION.length(); i++) {
+                if (peek(i) != INSTRUCTION.charAt(i)) return false;
+            }
+            return true;
         }
     }
 
+    /**
+     * Parser języka {@code SortExaL}. Drzewo budowane jest przez {@link GrammarParser parser tablicowy} z gramatyki:
+     * program to dowolna liczba instrukcji, a instrukcja to linia z danymi albo instrukcja sortowania. Rodzaj tokenu
+     * wyznacza tokenizer, więc wybór produkcji nie porównuje treści tokenów. Z tego samego parsera korzystają wszystkie
+     * tryby: interpretacja bez budowania drzewa, wznawianie po błędach i ponowne parsowanie fragmentu.
+     */
     private static final class ExampleParser implements Parser<ExampleContext, List<String>> {
-        public static final Tokenizer TOKENIZER = new LinesTokenizer();
+        private static final ThreadLocal<Tokenizer> TOKENIZER = ThreadLocal.withInitial(LinesTokenizer::new);
+        private static final GrammarParser<ExampleContext, List<String>> GRAMMAR = grammar();
+
+        /**
+         * Instrukcja wraz z położeniem jej tokenu, przekazywana z produkcji instrukcji do produkcji programu,
+         * która zapisuje położenia obok instrukcji ({@link Spans}).
+         */
+        private record Located(TerminalExpression<ExampleContext, List<String>> instruction, SourceSpan span) {}
+
+        @SuppressWarnings("unchecked")
+        private static GrammarParser<ExampleContext, List<String>> grammar() {
+            Grammar<ExampleContext, List<String>> grammar = new Grammar<>();
+            Grammar.Terminal data = grammar.terminal("LINE");
+            Grammar.Terminal order = grammar.terminal("ORDER BY");
+            Grammar.Nonterminal program = grammar.nonterminal("program");
+            Grammar.Nonterminal instruction = grammar.nonterminal("instruction");
+            grammar.rule(program, values -> {
+                        List<Object> located = (List<Object>) values.get(0);
+                        List<TerminalExpression<ExampleContext, List<String>>> terminalExpressionList =
+                                new ArrayList<>(located.size());
+                        Spans spans = new Spans(located.size());
+                        for (Object value : located) {
+                            terminalExpressionList.add(((Located) value).instruction());
+                            spans.add(((Located) value).span());
+                        }
+                        return new Instructions(terminalExpressionList, spans);
+                    }, grammar.zeroOrMore(instruction))
+                    .rule(instruction, values -> {
+                        NonTerminalExpression<?> token = (NonTerminalExpression<?>) values.get(0);
+                        return new Located(new Add(token.asString()), token.getSpan());
+                    }, data)
+                    .rule(instruction, values -> {
+                        Line line = (Line) values.get(0);
+                        Sort sorting = recognizeSort(line);
+                        if (sorting == null) throw new SyntaxException("Unknown ordering type", line.getSpan());
+                        return new Located(sorting, line.getSpan());
+                    }, order);
+            return grammar.build(program, token -> token instanceof Line line && line.instruction() ? order : data,
+                    LinesTokenizer::new);
+        }
 
         @Override
         public Tokenizer getTokenizer() {
-            return TOKENIZER;
+            return TOKENIZER.get();
+        }
+
+        @Override
+        public Tokenizer newTokenizer() {
+            return new LinesTokenizer();
+        }
+
+        @Override
+        public TokenBoundary getTokenBoundary() {
+            // Linie nie zawierają znaku '\n', więc każda pozycja za nim rozpoczyna nowy token.
+            return TokenBoundary.after('\n');
         }
 
         @Override
         public TerminalExpression<ExampleContext, List<String>> buildAbstractSyntaxTree(Queue<NonTerminalExpression<?>> tokens) {
-            List<TerminalExpression<ExampleContext, List<String>>> terminalExpressionList = new LinkedList<>();
-            while (!tokens.isEmpty()) {
-                NonTerminalExpression<?> token = tokens.poll();
-                if (token instanceof Line line) {
-                    String content = line.content();
-                    String tag = "ORDER BY";
-                    if (content.startsWith(tag)) {
-                        Sort sorting = recognizeSort(content.substring(tag.length()).strip());
-                        terminalExpressionList.add(sorting);
-                    } else {
-                        terminalExpressionList.add(new Add(line));
-                    }
-                } else {
-                    terminalExpressionList.add(new Add(new Line(token.asString())));
-                }
+            return GRAMMAR.buildAbstractSyntaxTree(tokens);
+        }
+
+        /**
+         * Przekazuje instrukcje zaraz po ich rozpoznaniu, łącząc kolejne sortowania tak jak optymalizator drzewa
+         * ({@link SortFusion}), i zwraca pusty program, którego wynikiem są linie kontekstu.
+         */
+        @Override
+        public TerminalExpression<ExampleContext, List<String>> streamAbstractSyntaxTree(
+                Queue<NonTerminalExpression<?>> tokens,
+                Consumer<? super TerminalExpression<ExampleContext, List<String>>> steps) {
+            SortFusion instructions = new SortFusion(steps);
+            TerminalExpression<ExampleContext, List<String>> program =
+                    GRAMMAR.streamElements(tokens, located -> instructions.accept(((Located) located).instruction()));
+            instructions.flush();
+            return program;
+        }
+
+        /**
+         * Każda instrukcja zajmuje jedną linię, więc po błędzie parser wznawia pracę od następnej linii,
+         * a niepoprawna instrukcja jest pomijana.
+         */
+        @Override
+        public ParseResult<ExampleContext, List<String>> buildAbstractSyntaxTreeWithRecovery(Readable source) {
+            return GRAMMAR.buildAbstractSyntaxTreeWithRecovery(source);
+        }
+
+        @Override
+        public TerminalExpression<ExampleContext, List<String>> rebuildAbstractSyntaxTree(
+                TerminalExpression<ExampleContext, List<String>> previous, TextEdit edit, String source) {
+            if (!(previous instanceof Instructions old) || old.spans().size == 0 || !old.spans().complete
+                    || old.terminalExpressionList().size() != old.spans().size) {
+                return Parser.super.rebuildAbstractSyntaxTree(previous, edit, source);
             }
-            return new Instructions(terminalExpressionList);
+            Spans spans = old.spans();
+            int first = spans.firstEndingAtOrAfter(edit.offset());
+            // Zmiana wewnątrz "\r\n" albo "\n" dopisane tuż po "\r" dotyczy również linii poprzedzającej ten znak
+            // końca linii.
+            if (first > 0 && (edit.offset() < spans.starts[first] || isCarriageReturnLineFeed(source, (int) spans.starts[first]))) {
+                first--;
+            }
+            int last = first;
+            while (last < spans.size - 1 && spans.starts[last + 1] <= edit.end()) last++;
+            if (spans.ends[last] < edit.end() || spans.ends[last] + edit.delta() > source.length()) {
+                // Zmiana wykracza poza ostatnią linię (np. dopisanie tekstu na końcu źródła).
+                return Parser.super.rebuildAbstractSyntaxTree(previous, edit, source);
+            }
+            int start = (int) spans.starts[first];
+            int regionEnd = (int) spans.ends[last] + edit.delta();
+            int end = regionEnd;
+            if (end < source.length() && source.charAt(end) == '\r') end++;
+            if (end < source.length() && source.charAt(end) == '\n') end++;
+
+            List<TerminalExpression<ExampleContext, List<String>>> expressions = new ArrayList<>(old.terminalExpressionList().size());
+            expressions.addAll(old.terminalExpressionList().subList(0, first));
+            LinesTokenizer tokenizer = new LinesTokenizer();
+            tokenizer.setSource(new StringReader(source.substring(start, end)));
+            Instructions region;
+            try {
+                region = (Instructions) GRAMMAR.buildAbstractSyntaxTree(tokenizer.stream());
+            } catch (SyntaxException e) {
+                SourceSpan span = e.getSpan();
+                throw new SyntaxException(e.getMessage(), span == null ? null : span.shift(start, spans.lines[first] - 1));
+            }
+            Spans regionSpans = region.spans();
+            expressions.addAll(region.terminalExpressionList());
+            expressions.addAll(old.terminalExpressionList().subList(last + 1, spans.size));
+
+            // Koniec wiersza za fragmentem liczony jest razem z fragmentem, bo "\r" na końcu zmiany łączy się z następnym
+            // "\n" w jeden koniec wiersza, tak jak w BufferedTokenizer.
+            int lineDelta = spans.lines[first] - spans.endLines[last] - (end > regionEnd ? 1 : 0);
+            for (int i = start; i < end; i++) {
+                char c = source.charAt(i);
+                if (c == '\r' || c == '\n' && !isCarriageReturnLineFeed(source, i)) lineDelta++;
+            }
+            Spans rebuiltSpans = new Spans();
+            rebuiltSpans.addAll(spans, 0, first, 0, 0);
+            rebuiltSpans.addAll(regionSpans, 0, regionSpans.size, start, spans.lines[first] - 1);
+            rebuiltSpans.addAll(spans, last + 1, spans.size, edit.delta(), lineDelta);
+            return new Instructions(expressions, rebuiltSpans);
         }
 
-        private static Sort recognizeSort(String type) {
+        /**
+         * @return {@code true}, jeśli znak na podanej pozycji to {@code '\n'} poprzedzone przez {@code '\r'}
+         */
+        private static boolean isCarriageReturnLineFeed(String source, int index) {
+            return index > 0 && index < source.length() && source.charAt(index) == '\n' && source.charAt(index - 1) == '\r';
+        }
+
+        /**
+         * Rozpoznaje rodzaj sortowania w instrukcji.
+         * @return sortowanie albo {@code null}, jeśli rodzaj sortowania jest nieznany
+         */
+        private static Sort recognizeSort(Line instruction) {
+            String type = instruction.content().substring(LinesTokenizer.INSTRUCTION.length()).strip();
             Sort sorting;
             if (type.equals(OrderByType.ASC.name())) {
                 sorting = new Sort(OrderByType.ASC);
@@ -206,7 +1355,7 @@ public final class Example {
             } else if (type.isBlank()) {
                 sorting = new Sort(null);
             } else {
-                throw new SyntaxException("Unknown ordering type");
+                sorting = null;
             }
             return sorting;
         }
@@ -214,6 +1363,14 @@ public final class Example {
 
     private record ExampleInterpreter(ExampleContext context) implements Interpreter<ExampleContext, List<String>> {
         public static final ExampleParser PARSER = new ExampleParser();
+        // Reguły wykonywane są w tej kolejności, więc sortowania znoszące się po połączeniu są od razu usuwane.
+        public static final SyntaxTreeOptimizer<ExampleContext> OPTIMIZER = new SyntaxTreeOptimizer<>(List.of(
+                RewriteRule.forType(Instructions.class, Instructions::fuseSorts),
+                RewriteRule.forType(Instructions.class, Instructions::dropIdentitySorts)));
+        public static final SyntaxTreeFormat<ExampleContext> FORMAT = new SyntaxTreeFormat<ExampleContext>(1)
+                .register(0, Instructions.class, SyntaxTreeFormat.NodeType.of(Instructions::write, Instructions::read))
+                .register(1, Sort.class, SyntaxTreeFormat.NodeType.of(Sort::write, Sort::read))
+                .register(2, Add.class, SyntaxTreeFormat.NodeType.of(Add::write, Add::read));
 
         @Override
         public ExampleContext getContext() {
@@ -224,6 +1381,11 @@ public final class Example {
         public ExampleParser getParser() {
             return PARSER;
         }
+
+        @Override
+        public SyntaxTreeOptimizer<ExampleContext> getOptimizer() {
+            return OPTIMIZER;
+        }
     }
 
     private static final class ExampleClient implements Client<ExampleContext, List<String>, ExampleInterpreter> {
@@ -0,0 +1,23 @@
+package pl.koder95.interpreter;
+
+/**
+ * Kontekst, który można tanio rozwidlić: {@link #fork()} zwraca niezależną kopię, współdzielącą z oryginałem
+ * niezmienione części stanu. Dzięki temu jedno drzewo abstrakcyjnej syntaktyki może być interpretowane jednocześnie
+ * przez wiele wątków, z których każdy zaczyna od tego samego, wcześniej przygotowanego stanu, bez blokad i bez
+ * kopiowania całego stanu. Rozwidlenia mogą służyć też jako migawki, do których można wrócić po interpretacji.
+ * <p>
+ * Przykładowo {@link BatchInterpreter} z fabryką kontekstów {@code base::fork} interpretuje wiele źródeł,
+ * zaczynając każde od stanu {@code base}. Do przechowywania stanu kontekstu nadaje się {@link ForkableList}.
+ * </p>
+ * @param <C> typ kontekstu
+ */
+public interface ForkableContext<C extends ForkableContext<C>> extends Context {
+
+    /**
+     * Tworzy kopię kontekstu. Zmiany kopii nie są widoczne w tym kontekście, a zmiany tego kontekstu – w kopii.
+     * Rozwidlenie nie zmienia widocznego stanu kontekstu, więc może być wykonywane jednocześnie przez wiele wątków,
+     * o ile w tym czasie kontekst nie jest modyfikowany.
+     * @return nowy kontekst o tym samym stanie
+     */
+    C fork();
+}
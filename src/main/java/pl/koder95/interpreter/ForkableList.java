@@ -0,0 +1,194 @@
+package pl.koder95.interpreter;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Lista, którą można tanio rozwidlić ({@link #fork()}), przeznaczona do przechowywania stanu
+ * {@link ForkableContext rozwidlanych kontekstów}. Elementy przechowywane są w blokach po {@value #BLOCK_SIZE}.
+ * Rozwidlenie kopiuje tylko tablicę wskaźników do bloków, a bloki są współdzielone; blok jest kopiowany dopiero przy
+ * pierwszej zmianie w liście, która go współdzieli (kopiowanie przy zapisie). Po rozwidleniu dodanie elementu kopiuje
+ * więc co najwyżej ostatni blok, a zmiana elementu – jeden blok, niezależnie od długości listy.
+ * <p>
+ * Lista obsługuje dodawanie elementów na końcu, zmianę elementów, sortowanie i usuwanie wszystkich elementów.
+ * Wstawianie i usuwanie pojedynczych elementów ({@link #add(int, Object)}, {@link #remove(int)} i korzystające z nich
+ * metody, np. {@link #removeIf(java.util.function.Predicate)} albo {@link java.util.Iterator#remove()}) zgłasza
+ * {@link UnsupportedOperationException}, ponieważ przesuwałoby elementy wszystkich kolejnych bloków i kopiowało
+ * bloki współdzielone z rozwidleniami.
+ * </p>
+ * <p>
+ * Lista nie jest bezpieczna wątkowo, ale rozwidlenia są od siebie niezależne i mogą być używane przez różne wątki.
+ * </p>
+ * @param <E> typ elementów
+ */
+public final class ForkableList<E> extends AbstractList<E> implements RandomAccess {
+
+    /**
+     * Liczba elementów w jednym bloku.
+     */
+    public static final int BLOCK_SIZE = 64;
+    private static final int SHIFT = 6;
+    private static final int MASK = BLOCK_SIZE - 1;
+
+    private Object[][] blocks;
+    // Właściciel każdego bloku; lista zmienia w miejscu tylko bloki, których jest właścicielem.
+    private Object[] owners;
+    // Zmieniany przez fork(), także w innych wątkach niż wątek zmieniający listę, dlatego ulotny.
+    private volatile Object owner = new Object();
+    private int size;
+
+    /**
+     * Tworzy pustą listę.
+     */
+    public ForkableList() {
+        this.blocks = new Object[4][];
+        this.owners = new Object[4];
+    }
+
+    /**
+     * Tworzy listę z elementami podanej kolekcji.
+     * @param elements elementy listy
+     */
+    public ForkableList(Collection<? extends E> elements) {
+        this();
+        addAll(elements);
+    }
+
+    private ForkableList(ForkableList<E> base) {
+        this.blocks = base.blocks.clone();
+        this.owners = base.owners.clone();
+        this.size = base.size;
+    }
+
+    /**
+     * Tworzy kopię listy, która współdzieli z tą listą wszystkie bloki. Kolejne zmiany jednej z list kopiują zmieniane
+     * bloki, więc nie są widoczne w drugiej. Koszt rozwidlenia jest proporcjonalny do liczby bloków, a nie elementów.
+     * <p>
+     * Rozwidlenie nie zmienia elementów listy, ale zmienia jej znacznik właściciela bloków, aby od tej chwili również
+     * ta lista kopiowała współdzielone bloki. Znacznik jest polem ulotnym ({@code volatile}), a każda jego nowa wartość
+     * jest równie dobra, więc ta sama lista może być rozwidlana jednocześnie przez wiele wątków, o ile w tym czasie nie
+     * jest modyfikowana.
+     * </p>
+     * @return nowa lista o tych samych elementach
+     */
+    public ForkableList<E> fork() {
+        ForkableList<E> fork = new ForkableList<>(this);
+        // Nowy właściciel sprawia, że ta lista również kopiuje bloki, które od teraz są współdzielone.
+        owner = new Object();
+        return fork;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        return (E) blocks[index >>> SHIFT][index & MASK];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int index, E element) {
+        Objects.checkIndex(index, size);
+        Object[] block = writable(index >>> SHIFT);
+        E previous = (E) block[index & MASK];
+        block[index & MASK] = element;
+        return previous;
+    }
+
+    @Override
+    public boolean add(E element) {
+        int offset = size & MASK;
+        Object[] block = offset == 0 ? newBlock(size >>> SHIFT) : writable(size >>> SHIFT);
+        block[offset] = element;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> elements) {
+        Object[] array = elements.toArray();
+        append(array);
+        modCount++;
+        return array.length > 0;
+    }
+
+    /**
+     * Sortuje listę za pomocą {@link Arrays#parallelSort(Object[], Comparator)}. Elementy są raz kopiowane do tablicy,
+     * a po posortowaniu raz do nowych bloków, które zastępują wszystkie dotychczasowe, więc sortowanie nie kopiuje
+     * bloków współdzielonych z rozwidleniami.
+     * @param order porządek elementów albo {@code null} dla porządku naturalnego
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> order) {
+        Object[] array = toArray();
+        Arrays.parallelSort((E[]) array, order);
+        clear();
+        append(array);
+    }
+
+    /**
+     * Usuwa wszystkie elementy. Tablica wskaźników do bloków należy tylko do tej listy, więc jest zachowywana
+     * (tak jak pojemność {@link java.util.ArrayList#clear()}), a bloki, także współdzielone, są tylko porzucane.
+     */
+    @Override
+    public void clear() {
+        int used = (size + MASK) >>> SHIFT;
+        Arrays.fill(blocks, 0, used, null);
+        Arrays.fill(owners, 0, used, null);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size];
+        for (int from = 0, block = 0; from < size; from += BLOCK_SIZE, block++) {
+            System.arraycopy(blocks[block], 0, array, from, Math.min(BLOCK_SIZE, size - from));
+        }
+        return array;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void append(Object[] array) {
+        int from = 0;
+        while (from < array.length) {
+            int offset = size & MASK;
+            Object[] block = offset == 0 ? newBlock(size >>> SHIFT) : writable(size >>> SHIFT);
+            int count = Math.min(BLOCK_SIZE - offset, array.length - from);
+            System.arraycopy(array, from, block, offset, count);
+            from += count;
+            size += count;
+        }
+    }
+
+    private Object[] newBlock(int index) {
+        if (index == blocks.length) {
+            blocks = Arrays.copyOf(blocks, index * 2);
+            owners = Arrays.copyOf(owners, index * 2);
+        }
+        Object[] block = new Object[BLOCK_SIZE];
+        blocks[index] = block;
+        owners[index] = owner;
+        return block;
+    }
+
+    private Object[] writable(int index) {
+        Object[] block = blocks[index];
+        if (owners[index] != owner) {
+            block = block.clone();
+            blocks[index] = block;
+            owners[index] = owner;
+        }
+        return block;
+    }
+}
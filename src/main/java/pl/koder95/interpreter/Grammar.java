@@ -0,0 +1,199 @@
+package pl.koder95.interpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Gramatyka bezkontekstowa opisana w czasie działania programu, z której powstaje tablicowy parser LL(1)
+ * ({@link GrammarParser}). Gramatyka składa się z symboli terminalnych (rodzajów tokenów), symboli nieterminalnych
+ * i produkcji. Każda produkcja ma fabrykę węzłów ({@link NodeFactory}), która z wartości symboli prawej strony
+ * tworzy węzeł drzewa abstrakcyjnej syntaktyki; fabryka produkcji symbolu startowego musi tworzyć
+ * {@link TerminalExpression wyrażenie terminalne}.
+ * <p>
+ * Na przykład parser języka {@code SortExaL} z klasy {@link Example} tworzony jest z gramatyki, w której program
+ * to dowolna liczba instrukcji, a instrukcja to linia z danymi albo instrukcja sortowania. Rodzaj linii wyznacza
+ * tokenizer, a klasyfikator tylko go odczytuje:
+ * </p>
+ * <pre>{@code
+ * Grammar<ExampleContext, List<String>> grammar = new Grammar<>();
+ * Grammar.Terminal data = grammar.terminal("LINE"), order = grammar.terminal("ORDER BY");
+ * Grammar.Nonterminal program = grammar.nonterminal("program"), instruction = grammar.nonterminal("instruction");
+ * grammar.rule(program, values -> instructions((List<Object>) values.get(0)), grammar.zeroOrMore(instruction))
+ *        .rule(instruction, values -> add((Line) values.get(0)), data)
+ *        .rule(instruction, values -> sort((Line) values.get(0)), order);
+ * GrammarParser<ExampleContext, List<String>> parser = grammar.build(program,
+ *         token -> token instanceof Line line && line.instruction() ? order : data, LinesTokenizer::new);
+ * }</pre>
+ * Gramatyka nie jest bezpieczna wątkowo, ale utworzony z niej parser jest niezmienny.
+ * @param <C> typ kontekstu wykorzystywanego podczas interpretowania wyrażeń
+ * @param <R> typ wyniku interpretacji
+ */
+public final class Grammar<C extends Context, R> {
+
+    final List<Terminal> terminals = new ArrayList<>();
+    final List<Nonterminal> nonterminals = new ArrayList<>();
+    final List<Repetition> repetitions = new ArrayList<>();
+    final List<Nonterminal> heads = new ArrayList<>();
+    final List<Symbol[]> bodies = new ArrayList<>();
+    final List<NodeFactory> factories = new ArrayList<>();
+
+    /**
+     * Tworzy pustą gramatykę, do której dodawane są symbole i produkcje.
+     */
+    public Grammar() {
+    }
+
+    /**
+     * Dodaje symbol terminalny, czyli rodzaj tokenu rozpoznawany przez {@link Classifier klasyfikator}.
+     * @param name nazwa symbolu, używana w komunikatach o błędach
+     * @return symbol terminalny
+     */
+    public Terminal terminal(String name) {
+        Terminal terminal = new Terminal(this, Objects.requireNonNull(name, "Name cannot be null"), terminals.size());
+        terminals.add(terminal);
+        return terminal;
+    }
+
+    /**
+     * Dodaje symbol nieterminalny. Symbol musi mieć co najmniej jedną {@link #rule(Nonterminal, NodeFactory, Symbol...)
+     * produkcję}.
+     * @param name nazwa symbolu, używana w komunikatach o błędach
+     * @return symbol nieterminalny
+     */
+    public Nonterminal nonterminal(String name) {
+        Nonterminal nonterminal = new Nonterminal(this, Objects.requireNonNull(name, "Name cannot be null"),
+                nonterminals.size());
+        nonterminals.add(nonterminal);
+        return nonterminal;
+    }
+
+    /**
+     * Tworzy symbol dopasowujący dowolną liczbę (także zero) kolejnych wystąpień podanego symbolu. Wartością symbolu
+     * jest modyfikowalna lista wartości kolejnych wystąpień, którą fabryka węzłów może zatrzymać. Powtórzenia są
+     * parsowane w pętli, a nie przez rekursję, dlatego nadają się do długich list instrukcji.
+     * @param symbol powtarzany symbol; nie może dopasowywać pustego ciągu tokenów
+     * @return symbol powtórzenia
+     */
+    public Symbol zeroOrMore(Symbol symbol) {
+        Repetition repetition = new Repetition(this, own(symbol), repetitions.size());
+        repetitions.add(repetition);
+        return repetition;
+    }
+
+    /**
+     * Dodaje produkcję. Pusta prawa strona oznacza produkcję dopasowującą pusty ciąg tokenów.
+     * @param head symbol nieterminalny po lewej stronie produkcji
+     * @param factory fabryka węzła tworzonego z wartości symboli prawej strony
+     * @param body symbole prawej strony
+     * @return ta gramatyka
+     * @throws IllegalArgumentException jeśli któryś z symboli należy do innej gramatyki
+     */
+    public Grammar<C, R> rule(Nonterminal head, NodeFactory factory, Symbol... body) {
+        heads.add((Nonterminal) own(head));
+        factories.add(Objects.requireNonNull(factory, "Factory cannot be null"));
+        Symbol[] copy = body.clone();
+        for (Symbol symbol : copy) own(symbol);
+        bodies.add(copy);
+        return this;
+    }
+
+    private Symbol own(Symbol symbol) {
+        Objects.requireNonNull(symbol, "Symbol cannot be null");
+        if (symbol.grammar != this) throw new IllegalArgumentException("Symbol " + symbol + " belongs to another grammar");
+        return symbol;
+    }
+
+    /**
+     * Tworzy parser, wyznaczając zbiory FIRST i FOLLOW oraz tablicę parsowania LL(1).
+     * @param start symbol startowy
+     * @param classifier klasyfikator przypisujący tokenom symbole terminalne
+     * @param tokenizers dostawca nowych tokenizerów ({@link Parser#newTokenizer()})
+     * @return parser
+     * @throws IllegalArgumentException jeśli gramatyka nie jest LL(1) (np. jest lewostronnie rekurencyjna albo dwie
+     *                                  produkcje tego samego symbolu zaczynają się tym samym tokenem), któryś symbol
+     *                                  nieterminalny nie ma produkcji lub powtarzany symbol dopasowuje pusty ciąg
+     */
+    public GrammarParser<C, R> build(Nonterminal start, Classifier classifier, Supplier<? extends Tokenizer> tokenizers) {
+        return new GrammarParser<>(this, (Nonterminal) own(start),
+                Objects.requireNonNull(classifier, "Classifier cannot be null"),
+                Objects.requireNonNull(tokenizers, "Tokenizer supplier cannot be null"));
+    }
+
+    /**
+     * Klasyfikator przypisujący tokenom symbole terminalne gramatyki. Jest wywoływany raz dla każdego tokenu.
+     */
+    @FunctionalInterface
+    public interface Classifier {
+
+        /**
+         * @param token token
+         * @return symbol terminalny tokenu albo {@code null}, jeśli token nie należy do języka
+         */
+        Terminal classify(NonTerminalExpression<?> token);
+    }
+
+    /**
+     * Fabryka węzłów drzewa abstrakcyjnej syntaktyki, przypisana do produkcji.
+     */
+    @FunctionalInterface
+    public interface NodeFactory {
+
+        /**
+         * Tworzy węzeł z wartości symboli prawej strony produkcji: tokenów dla symboli terminalnych, węzłów
+         * utworzonych przez fabryki dla symboli nieterminalnych i list dla {@link Grammar#zeroOrMore(Symbol) powtórzeń}.
+         * @param values wartości symboli w kolejności prawej strony produkcji; lista jest tworzona dla każdego
+         *               wywołania, więc fabryka może ją zatrzymać, ale nie może zmieniać jej rozmiaru
+         * @return węzeł
+         */
+        Object create(List<Object> values);
+    }
+
+    /**
+     * Symbol gramatyki.
+     */
+    public abstract static sealed class Symbol {
+        final Grammar<?, ?> grammar;
+        final String name;
+        final int index;
+
+        private Symbol(Grammar<?, ?> grammar, String name, int index) {
+            this.grammar = grammar;
+            this.name = name;
+            this.index = index;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Symbol terminalny, czyli rodzaj tokenu.
+     */
+    public static final class Terminal extends Symbol {
+        private Terminal(Grammar<?, ?> grammar, String name, int index) {
+            super(grammar, name, index);
+        }
+    }
+
+    /**
+     * Symbol nieterminalny, definiowany przez produkcje.
+     */
+    public static final class Nonterminal extends Symbol {
+        private Nonterminal(Grammar<?, ?> grammar, String name, int index) {
+            super(grammar, name, index);
+        }
+    }
+
+    static final class Repetition extends Symbol {
+        final Symbol element;
+
+        private Repetition(Grammar<?, ?> grammar, Symbol element, int index) {
+            super(grammar, element + "*", index);
+            this.element = element;
+        }
+    }
+}
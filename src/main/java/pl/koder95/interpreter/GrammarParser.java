@@ -0,0 +1,454 @@
+package pl.koder95.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Tablicowy parser LL(1) utworzony z {@link Grammar gramatyki}. Każdy token jest raz klasyfikowany
+ * ({@link Grammar.Classifier}), a wybór produkcji to jeden odczyt z tablicy indeksowanej symbolem nieterminalnym
+ * i symbolem terminalnym podglądanego tokenu, więc czas parsowania jest liniowy względem liczby tokenów.
+ * Symbole do dopasowania i wartości symboli przechowywane są na jawnych stosach, dlatego głębokość zagnieżdżenia
+ * nie jest ograniczona stosem wywołań.
+ * <p>
+ * Ten sam algorytm obsługuje wszystkie tryby parsowania: budowę całego drzewa, przekazywanie elementów długich list
+ * zaraz po ich rozpoznaniu ({@link #streamElements(Queue, Consumer)}) i wznawianie po błędach w elementach powtórzeń
+ * ({@link #buildAbstractSyntaxTreeWithRecovery(Readable)}), więc tryby te akceptują te same dane wejściowe i zgłaszają
+ * te same błędy.
+ * </p>
+ * <p>
+ * Parser jest niezmienny; każde wywołanie ma własne stosy, a tokenizery tworzone są przez {@link #newTokenizer()},
+ * więc ten sam parser może być używany przez wiele wątków.
+ * </p>
+ * @param <C> typ kontekstu wykorzystywanego podczas interpretowania wyrażeń
+ * @param <R> typ wyniku interpretacji
+ */
+public final class GrammarParser<C extends Context, R> implements Parser<C, R> {
+
+    private final Grammar.Terminal[] terminals;
+    private final String[] nonterminalNames;
+    private final Grammar.Classifier classifier;
+    private final Supplier<? extends Tokenizer> tokenizers;
+    // Kody na stosie: symbole terminalne (ostatni to koniec wejścia), nieterminalne, powtórzenia, a dalej operacje:
+    // redukcja produkcji, pętla powtórzenia i dołączenie wartości do listy powtórzenia.
+    private final int end;
+    // Wiersze tablic mają dodatkową kolumnę dla tokenów, których klasyfikator nie rozpoznał; żadna produkcja jej nie
+    // wybiera, więc taki token zgłaszany jest jako błąd dopiero tam, gdzie parser go sprawdza.
+    private final int unknown;
+    private final int width;
+    private final int nonterminalBase;
+    private final int repetitionBase;
+    private final int reduceBase;
+    private final int loopBase;
+    private final int append;
+    private final int start;
+    private final int[] table;
+    private final boolean[] repeats;
+    // Tokeny, od których parser wznawia pracę po błędzie w elemencie powtórzenia: początek kolejnego elementu albo
+    // symbol następujący po powtórzeniu.
+    private final boolean[] resumes;
+    private final int[] repeated;
+    private final int[][] expansions;
+    // Produkcje, których prawa strona to jeden symbol terminalny: węzeł tworzony jest od razu z podglądanego tokenu.
+    private final boolean[] single;
+    private final Grammar.NodeFactory[] factories;
+
+    GrammarParser(Grammar<C, R> grammar, Grammar.Nonterminal start, Grammar.Classifier classifier,
+                  Supplier<? extends Tokenizer> tokenizers) {
+        this.terminals = grammar.terminals.toArray(new Grammar.Terminal[0]);
+        this.nonterminalNames = grammar.nonterminals.stream().map(Grammar.Symbol::toString).toArray(String[]::new);
+        this.classifier = classifier;
+        this.tokenizers = tokenizers;
+        int nonterminals = nonterminalNames.length;
+        int repetitions = grammar.repetitions.size();
+        int productions = grammar.heads.size();
+        this.end = terminals.length;
+        this.unknown = end + 1;
+        this.width = end + 2;
+        this.nonterminalBase = end + 1;
+        this.repetitionBase = nonterminalBase + nonterminals;
+        this.reduceBase = repetitionBase + repetitions;
+        this.loopBase = reduceBase + productions;
+        this.append = loopBase + repetitions;
+        this.start = code(start);
+
+        int[] heads = new int[productions];
+        int[][] bodies = new int[productions][];
+        boolean[] defined = new boolean[nonterminals];
+        for (int p = 0; p < productions; p++) {
+            heads[p] = code(grammar.heads.get(p));
+            defined[heads[p] - nonterminalBase] = true;
+            Grammar.Symbol[] body = grammar.bodies.get(p);
+            bodies[p] = new int[body.length];
+            for (int i = 0; i < body.length; i++) bodies[p][i] = code(body[i]);
+        }
+        for (int n = 0; n < nonterminals; n++) {
+            if (!defined[n]) throw new IllegalArgumentException("Nonterminal " + nonterminalNames[n] + " has no productions");
+        }
+        this.repeated = new int[repetitions];
+        for (int r = 0; r < repetitions; r++) repeated[r] = code(grammar.repetitions.get(r).element);
+        this.factories = grammar.factories.toArray(new Grammar.NodeFactory[0]);
+
+        // Zbiory FIRST i symbole dopasowujące pusty ciąg – iteracja do punktu stałego.
+        BitSet[] first = new BitSet[reduceBase];
+        boolean[] nullable = new boolean[reduceBase];
+        for (int symbol = 0; symbol < reduceBase; symbol++) {
+            first[symbol] = new BitSet(end + 1);
+            if (symbol <= end) first[symbol].set(symbol);
+        }
+        for (int r = 0; r < repetitions; r++) nullable[repetitionBase + r] = true;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < productions; p++) {
+                changed |= union(first[heads[p]], first(bodies[p], 0, first, nullable));
+                if (!nullable[heads[p]] && nullable(bodies[p], 0, nullable)) {
+                    nullable[heads[p]] = true;
+                    changed = true;
+                }
+            }
+            for (int r = 0; r < repetitions; r++) changed |= union(first[repetitionBase + r], first[repeated[r]]);
+        }
+
+        // Zbiory FOLLOW symboli nieterminalnych i powtórzeń.
+        BitSet[] follow = new BitSet[reduceBase];
+        for (int symbol = 0; symbol < reduceBase; symbol++) follow[symbol] = new BitSet(end + 1);
+        follow[this.start].set(end);
+        changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < productions; p++) {
+                int[] body = bodies[p];
+                for (int i = 0; i < body.length; i++) {
+                    if (body[i] <= end) continue;
+                    changed |= union(follow[body[i]], first(body, i + 1, first, nullable));
+                    if (nullable(body, i + 1, nullable)) changed |= union(follow[body[i]], follow[heads[p]]);
+                }
+            }
+            for (int r = 0; r < repetitions; r++) {
+                if (repeated[r] <= end) continue;
+                changed |= union(follow[repeated[r]], first[repeated[r]]);
+                changed |= union(follow[repeated[r]], follow[repetitionBase + r]);
+            }
+        }
+
+        this.repeats = new boolean[repetitions * width];
+        this.resumes = new boolean[repetitions * width];
+        for (int r = 0; r < repetitions; r++) {
+            String name = grammar.repetitions.get(r).toString();
+            if (nullable[repeated[r]]) {
+                throw new IllegalArgumentException("Repeated symbol in " + name + " matches an empty sequence");
+            }
+            BitSet conflicts = (BitSet) first[repeated[r]].clone();
+            conflicts.and(follow[repetitionBase + r]);
+            if (!conflicts.isEmpty()) {
+                throw new IllegalArgumentException("Grammar is not LL(1): " + name + " may be followed by "
+                        + terminalName(conflicts.nextSetBit(0)));
+            }
+            BitSet set = first[repeated[r]];
+            for (int t = set.nextSetBit(0); t >= 0; t = set.nextSetBit(t + 1)) repeats[r * width + t] = true;
+            set = (BitSet) set.clone();
+            set.or(follow[repetitionBase + r]);
+            for (int t = set.nextSetBit(0); t >= 0; t = set.nextSetBit(t + 1)) resumes[r * width + t] = true;
+        }
+
+        this.table = new int[nonterminals * width];
+        Arrays.fill(table, -1);
+        for (int p = 0; p < productions; p++) {
+            BitSet lookahead = first(bodies[p], 0, first, nullable);
+            if (nullable(bodies[p], 0, nullable)) lookahead.or(follow[heads[p]]);
+            int row = (heads[p] - nonterminalBase) * width;
+            for (int t = lookahead.nextSetBit(0); t >= 0; t = lookahead.nextSetBit(t + 1)) {
+                if (table[row + t] >= 0) {
+                    throw new IllegalArgumentException("Grammar is not LL(1): productions " + table[row + t]
+                            + " and " + p + " of " + nonterminalNames[heads[p] - nonterminalBase]
+                            + " both start with " + terminalName(t));
+                }
+                table[row + t] = p;
+            }
+        }
+
+        // Rozwinięcie produkcji w kolejności odkładania na stos: redukcja na dole, pierwszy symbol na wierzchu.
+        this.expansions = new int[productions][];
+        this.single = new boolean[productions];
+        for (int p = 0; p < productions; p++) {
+            single[p] = bodies[p].length == 1 && bodies[p][0] < end;
+            int[] body = bodies[p];
+            int[] expansion = new int[body.length + 1];
+            expansion[0] = reduceBase + p;
+            for (int i = 0; i < body.length; i++) expansion[body.length - i] = body[i];
+            expansions[p] = expansion;
+        }
+    }
+
+    private int code(Grammar.Symbol symbol) {
+        if (symbol instanceof Grammar.Terminal) return symbol.index;
+        if (symbol instanceof Grammar.Nonterminal) return nonterminalBase + symbol.index;
+        return repetitionBase + symbol.index;
+    }
+
+    private static BitSet first(int[] body, int from, BitSet[] first, boolean[] nullable) {
+        BitSet set = new BitSet();
+        for (int i = from; i < body.length; i++) {
+            set.or(first[body[i]]);
+            if (!nullable[body[i]]) break;
+        }
+        return set;
+    }
+
+    private static boolean nullable(int[] body, int from, boolean[] nullable) {
+        for (int i = from; i < body.length; i++) {
+            if (!nullable[body[i]]) return false;
+        }
+        return true;
+    }
+
+    private static boolean union(BitSet target, BitSet source) {
+        int before = target.cardinality();
+        target.or(source);
+        return target.cardinality() != before;
+    }
+
+    private String terminalName(int terminal) {
+        return terminal == end ? "end of input" : terminals[terminal].toString();
+    }
+
+    @Override
+    public Tokenizer getTokenizer() {
+        return newTokenizer();
+    }
+
+    @Override
+    public Tokenizer newTokenizer() {
+        return tokenizers.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws SyntaxException jeśli tokenu nie można sklasyfikować albo nie pasuje on do żadnej produkcji;
+     *                         wyjątek wskazuje fragment źródła tokenu, jeśli jest znany
+     * @throws IllegalStateException jeśli fabryka produkcji symbolu startowego nie utworzyła wyrażenia terminalnego
+     */
+    @Override
+    public TerminalExpression<C, R> buildAbstractSyntaxTree(Queue<NonTerminalExpression<?>> tokens) {
+        return root(parse(tokens, null, null));
+    }
+
+    /**
+     * Buduje drzewo tak jak {@link #buildAbstractSyntaxTree(Queue)}, ale elementy powtórzeń najwyższego poziomu,
+     * czyli powtórzeń, które nie są częścią elementu innego powtórzenia, przekazuje odbiorcy zaraz po ich
+     * rozpoznaniu, zamiast dołączać je do list. Fabryki produkcji otrzymują wtedy puste listy tych powtórzeń.
+     * Pozwala przetwarzać długie listy (np. instrukcji programu) w pamięci zależnej od pojedynczego elementu
+     * ({@link Parser#streamAbstractSyntaxTree(Queue, Consumer)}). Błąd składniowy zgłaszany jest po przekazaniu
+     * elementów, które go poprzedzają.
+     * @param tokens dane wejściowe poddane tokenizacji
+     * @param elements odbiorca wartości kolejnych elementów
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws SyntaxException jak w {@link #buildAbstractSyntaxTree(Queue)}
+     * @throws IllegalStateException jeśli fabryka produkcji symbolu startowego nie utworzyła wyrażenia terminalnego
+     */
+    public TerminalExpression<C, R> streamElements(Queue<NonTerminalExpression<?>> tokens, Consumer<Object> elements) {
+        return root(parse(tokens, Objects.requireNonNull(elements, "Consumer cannot be null"), null));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Po błędzie wewnątrz elementu powtórzenia (także wyrzuconym przez fabrykę węzłów) parser odrzuca ten element,
+     * pomija tokeny do najbliższego, od którego może się zacząć kolejny element albo to, co następuje po powtórzeniu,
+     * i kontynuuje pętlę powtórzenia. Błąd poza elementami powtórzeń kończy parsowanie; wynik nie zawiera wtedy
+     * drzewa.
+     * </p>
+     * @throws IllegalStateException jeśli fabryka produkcji symbolu startowego nie utworzyła wyrażenia terminalnego
+     */
+    @Override
+    public ParseResult<C, R> buildAbstractSyntaxTreeWithRecovery(Readable source) {
+        Tokenizer tokenizer = newTokenizer();
+        tokenizer.setSource(source);
+        List<SyntaxException> errors = new ArrayList<>();
+        Object root = parse(tokenizer.stream(), null, errors);
+        return new ParseResult<>(root == null ? null : root(root), errors);
+    }
+
+    @SuppressWarnings("unchecked")
+    private TerminalExpression<C, R> root(Object value) {
+        if (!(value instanceof TerminalExpression<?, ?> ast)) {
+            throw new IllegalStateException("Factory of the start symbol must create a terminal expression, got: "
+                    + value);
+        }
+        return (TerminalExpression<C, R>) ast;
+    }
+
+    /**
+     * @param elements odbiorca elementów powtórzeń najwyższego poziomu albo {@code null}, jeśli mają trafiać do list
+     * @param errors lista, do której trafiają błędy, jeśli parser ma wznawiać pracę po błędach, albo {@code null}
+     * @return wartość symbolu startowego albo {@code null}, jeśli błędu nie udało się obejść
+     */
+    @SuppressWarnings("unchecked")
+    private Object parse(Queue<NonTerminalExpression<?>> tokens, Consumer<Object> elements, List<SyntaxException> errors) {
+        // Pola kopiowane do zmiennych lokalnych, aby w pętli nie były odczytywane za każdym razem.
+        final int end = this.end, width = this.width, nonterminalBase = this.nonterminalBase;
+        final int repetitionBase = this.repetitionBase, reduceBase = this.reduceBase, loopBase = this.loopBase;
+        final int append = this.append;
+        final int[] table = this.table, repeated = this.repeated;
+        final boolean[] repeats = this.repeats;
+        final int[][] expansions = this.expansions;
+        final boolean[] single = this.single;
+        final Grammar.NodeFactory[] factories = this.factories;
+        final boolean recovering = errors != null;
+        int[] stack = new int[64];
+        int top = 0;
+        Object[] values = new Object[64];
+        int size = 0;
+        // Liczba elementów powtórzeń w trakcie parsowania. Przy wznawianiu po błędach dla każdego z nich zapisywany
+        // jest stan sprzed elementu: wierzchołek stosu symboli, liczba wartości i liczba pobranych tokenów.
+        int depth = 0;
+        int[] marks = recovering ? new int[3 * 8] : null;
+        int polled = 1;
+        stack[top++] = end;
+        stack[top++] = start;
+        NonTerminalExpression<?> token = tokens.poll();
+        int lookahead = classify(token);
+        while (true) {
+            try {
+                int code = stack[--top];
+                if (code <= end) {
+                    if (code != lookahead) throw unexpected(token, lookahead, expected(code));
+                    if (code == end) break;
+                    if (size == values.length) values = Arrays.copyOf(values, size * 2);
+                    values[size++] = token;
+                    token = tokens.poll();
+                    polled++;
+                    lookahead = classify(token);
+                } else if (code < repetitionBase) {
+                    int production = table[(code - nonterminalBase) * width + lookahead];
+                    if (production < 0) throw unexpected(token, lookahead, expected(code));
+                    if (single[production]) {
+                        // Produkcję wybrano po podglądanym tokenie, więc jest on jej jedynym symbolem.
+                        Object node = factories[production].create(Collections.singletonList(token));
+                        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+                        values[size++] = node;
+                        token = tokens.poll();
+                        polled++;
+                        lookahead = classify(token);
+                        continue;
+                    }
+                    int[] expansion = expansions[production];
+                    if (top + expansion.length > stack.length) stack = Arrays.copyOf(stack, (top + expansion.length) * 2);
+                    for (int symbol : expansion) stack[top++] = symbol;
+                } else if (code < reduceBase) {
+                    if (size == values.length) values = Arrays.copyOf(values, size * 2);
+                    values[size++] = new ArrayList<>();
+                    stack[top++] = loopBase + code - repetitionBase;
+                } else if (code < loopBase) {
+                    int production = code - reduceBase;
+                    int count = expansions[production].length - 1;
+                    List<Object> arguments = switch (count) {
+                        case 0 -> Collections.emptyList();
+                        case 1 -> Collections.singletonList(values[size - 1]);
+                        default -> Arrays.asList(Arrays.copyOfRange(values, size - count, size));
+                    };
+                    Object node = factories[production].create(arguments);
+                    for (int i = 0; i < count; i++) values[--size] = null;
+                    values[size++] = node;
+                } else if (code < append) {
+                    int repetition = code - loopBase;
+                    int row = repetition * width;
+                    // Przy wznawianiu po błędach token, który nie może ani rozpocząć elementu, ani wystąpić po
+                    // powtórzeniu, traktowany jest jak początek błędnego elementu, aby został pominięty.
+                    if (!repeats[row + lookahead] && (!recovering || lookahead == end || resumes[row + lookahead])) {
+                        continue;
+                    }
+                    stack[top++] = code;
+                    if (recovering) marks = mark(marks, depth, top, size, polled);
+                    int element = repeated[repetition];
+                    if (element >= nonterminalBase && element < repetitionBase) {
+                        int production = table[(element - nonterminalBase) * width + lookahead];
+                        if (production >= 0 && single[production]) {
+                            // Jak wyżej, a węzeł od razu dołączany jest do listy powtórzenia.
+                            if (recovering) depth++;
+                            Object node = factories[production].create(Collections.singletonList(token));
+                            if (recovering) depth--;
+                            if (depth == 0 && elements != null) elements.accept(node);
+                            else ((List<Object>) values[size - 1]).add(node);
+                            token = tokens.poll();
+                            polled++;
+                            lookahead = classify(token);
+                            continue;
+                        }
+                    }
+                    depth++;
+                    if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                    stack[top++] = append;
+                    stack[top++] = element;
+                } else {
+                    Object value = values[--size];
+                    values[size] = null;
+                    if (--depth == 0 && elements != null) elements.accept(value);
+                    else ((List<Object>) values[size - 1]).add(value);
+                }
+            } catch (SyntaxException e) {
+                if (!recovering) throw e;
+                errors.add(e);
+                if (depth == 0) return null;
+                // Porzucenie elementu: stos wraca do pętli powtórzenia, a wartości do jej listy.
+                int mark = 3 * --depth;
+                top = marks[mark];
+                while (size > marks[mark + 1]) values[--size] = null;
+                int row = (stack[top - 1] - loopBase) * width;
+                // Jeśli błąd wystąpił na pierwszym tokenie elementu, token jest pomijany, aby pętla nie utknęła.
+                boolean skip = polled == marks[mark + 2];
+                while (lookahead != end && (skip || !resumes[row + lookahead])) {
+                    token = tokens.poll();
+                    polled++;
+                    lookahead = classify(token);
+                    skip = false;
+                }
+            }
+        }
+        return values[0];
+    }
+
+    private static int[] mark(int[] marks, int depth, int top, int size, int polled) {
+        int at = 3 * depth;
+        if (at + 3 > marks.length) marks = Arrays.copyOf(marks, marks.length * 2);
+        marks[at] = top;
+        marks[at + 1] = size;
+        marks[at + 2] = polled;
+        return marks;
+    }
+
+    private int classify(NonTerminalExpression<?> token) {
+        if (token == null) return end;
+        Grammar.Terminal terminal = classifier.classify(token);
+        if (terminal == null) return unknown;
+        if (terminal.index >= end || terminals[terminal.index] != terminal) {
+            throw new IllegalArgumentException("Terminal " + terminal + " belongs to another grammar");
+        }
+        return terminal.index;
+    }
+
+    private String expected(int code) {
+        if (code <= end) return terminalName(code);
+        StringJoiner joiner = new StringJoiner(", ");
+        int row = (code - nonterminalBase) * width;
+        for (int t = 0; t <= end; t++) {
+            if (table[row + t] >= 0) joiner.add(terminalName(t));
+        }
+        return joiner.toString();
+    }
+
+    private SyntaxException unexpected(NonTerminalExpression<?> token, int lookahead, String expected) {
+        if (lookahead == end) return new SyntaxException("Unexpected end of input, expected: " + expected);
+        if (lookahead == unknown) return new SyntaxException("Unrecognized token: " + token.asString(), token.getSpan());
+        return new SyntaxException("Unexpected token " + terminalName(lookahead) + " (" + token.asString()
+                + "), expected: " + expected, token.getSpan());
+    }
+}
@@ -1,5 +1,19 @@
 package pl.koder95.interpreter;
 
+import pl.koder95.interpreter.monitor.InterpreterMonitor;
+import pl.koder95.interpreter.monitor.Phase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
 /**
  * Interfejs dostarcza metody do zbudowania drzewa abstrakcyjnej syntaktyki (AST) i interpretowania tej syntaktyki.
  *
@@ -18,10 +32,164 @@ public interface Interpreter<C extends Context, R> {
      */
     Parser<C, R> getParser();
 
+    /**
+     * @return pamięć podręczna drzew składniowych używana przez {@link #prepare(String)} albo {@code null},
+     *         jeśli drzewa mają być budowane za każdym razem (domyślnie)
+     */
+    default SyntaxTreeCache<C, R> getSyntaxTreeCache() {
+        return null;
+    }
+
+    /**
+     * @return optymalizator stosowany do drzew przygotowanych przez {@link #prepare(Readable)} i pozostałe metody
+     *         {@code prepare} albo {@code null}, jeśli drzewa nie są optymalizowane (domyślnie)
+     */
+    default SyntaxTreeOptimizer<C> getOptimizer() {
+        return null;
+    }
+
+    /**
+     * @return monitor otrzymujący pomiary procesu interpretacji; domyślnie {@link InterpreterMonitor#NONE},
+     *         czyli bez pomiarów
+     */
+    default InterpreterMonitor getMonitor() {
+        return InterpreterMonitor.NONE;
+    }
+
+    /**
+     * Przygotowuje dane wejściowe do interpretacji: tokenizuje je i buduje z nich drzewo abstrakcyjnej syntaktyki
+     * (AST), ale go nie interpretuje. Zwrócone drzewo można zinterpretować wielokrotnie, w różnych kontekstach,
+     * za pomocą {@link TerminalExpression#interpret(Context)}. Tokenizer tworzony jest osobno dla każdego wywołania
+     * ({@link Parser#newTokenizer()}). Drzewo jest optymalizowane, jeśli interpreter dostarcza
+     * {@link #getOptimizer() optymalizator}.
+     *
+     * @param readable dane odczytywane przez tokenizer i zamieniane na postać terminalną
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws IllegalStateException w przypadku niedostarczenia parsera lub
+     *                               w przypadku niedostarczenia tokenizera przez parser albo
+     *                               w przypadku niedostarczenia fabryki skanerów
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default TerminalExpression<C, R> prepare(Readable readable) {
+        Parser<C, R> parser = getParser();
+        if (parser == null) throw new IllegalStateException("Cannot use readable when parser is null", new NullPointerException());
+        return optimize(parser.buildAbstractSyntaxTree(readable, getMonitor()));
+    }
+
+    /**
+     * Przygotowuje dane wejściowe do interpretacji tak jak {@link #prepare(Readable)}, ale podanym tokenizerem zamiast
+     * tworzyć nowy dla każdego wywołania.
+     *
+     * @param readable dane odczytywane przez tokenizer i zamieniane na postać terminalną
+     * @param tokenizer tokenizer języka parsera, nieużywany w tym czasie przez inne wątki
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws IllegalStateException w przypadku niedostarczenia parsera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     * @see InterpreterPool
+     */
+    default TerminalExpression<C, R> prepare(Readable readable, Tokenizer tokenizer) {
+        Parser<C, R> parser = getParser();
+        if (parser == null) throw new IllegalStateException("Cannot use readable when parser is null", new NullPointerException());
+        return optimize(parser.buildAbstractSyntaxTree(readable, tokenizer, getMonitor()));
+    }
+
+    /**
+     * Przygotowuje tekst do interpretacji tak jak {@link #prepare(Readable)}, ale tokenizuje go równolegle.
+     * Opłaca się dla dużych tekstów w językach, które wskazują {@link Parser#getTokenBoundary() granice tokenów}.
+     *
+     * @param source tekst
+     * @param tokenizer tokenizer równoległy, np. {@code new ParallelTokenizer(getParser())}
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws IllegalStateException w przypadku niedostarczenia parsera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default TerminalExpression<C, R> prepare(CharSequence source, ParallelTokenizer tokenizer) {
+        Parser<C, R> parser = getParser();
+        if (parser == null) throw new IllegalStateException("Cannot use source when parser is null", new NullPointerException());
+        return optimize(parser.buildAbstractSyntaxTree(source, tokenizer, getMonitor()));
+    }
+
+    /**
+     * Przygotowuje dane wejściowe do interpretacji tak jak {@link #prepare(Readable)}, ale zwraca błędy składniowe
+     * zamiast je wyrzucać.
+     *
+     * @param readable dane odczytywane przez tokenizer i zamieniane na postać terminalną
+     * @return drzewo albo błędy składniowe
+     * @throws IllegalStateException w przypadku niedostarczenia parsera lub tokenizera
+     * @see Parser#tryBuildAbstractSyntaxTree(Readable)
+     */
+    default ParseResult<C, R> tryPrepare(Readable readable) {
+        Parser<C, R> parser = getParser();
+        if (parser == null) throw new IllegalStateException("Cannot use readable when parser is null", new NullPointerException());
+        ParseResult<C, R> result = parser.tryBuildAbstractSyntaxTree(readable);
+        if (!result.isSuccess()) return result;
+        return ParseResult.success(optimize(result.syntaxTree()));
+    }
+
+    /**
+     * Przygotowuje kod źródłowy do interpretacji, korzystając z {@link #getSyntaxTreeCache() pamięci podręcznej}
+     * (jeśli została dostarczona), aby nie budować ponownie drzewa dla tej samej treści.
+     *
+     * @param source kod źródłowy
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws IllegalStateException w przypadku niedostarczenia parsera lub tokenizera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     * @see #prepare(Readable)
+     */
+    default TerminalExpression<C, R> prepare(String source) {
+        SyntaxTreeCache<C, R> cache = getSyntaxTreeCache();
+        if (cache == null) return prepare(new StringReader(source));
+        return cache.get(source, s -> prepare(new StringReader(s)));
+    }
+
+    /**
+     * Przygotowuje do interpretacji kod źródłowy po zmianie, wykorzystując drzewo przygotowane dla kodu sprzed zmiany.
+     * Przydatne, gdy ten sam kod jest interpretowany po każdej drobnej zmianie (np. w edytorze).
+     *
+     * @param previous drzewo przygotowane dla kodu sprzed zmiany
+     * @param edit zmiana, która przekształciła poprzedni kod w {@code source}
+     * @param source kod źródłowy po zmianie
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws IllegalStateException w przypadku niedostarczenia parsera lub tokenizera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     * @see Parser#rebuildAbstractSyntaxTree(TerminalExpression, TextEdit, String)
+     */
+    default TerminalExpression<C, R> prepare(TerminalExpression<C, R> previous, TextEdit edit, String source) {
+        Parser<C, R> parser = getParser();
+        if (parser == null) throw new IllegalStateException("Cannot rebuild syntax tree when parser is null", new NullPointerException());
+        return optimize(parser.rebuildAbstractSyntaxTree(previous, edit, source));
+    }
+
+    /**
+     * Optymalizuje drzewo {@link #getOptimizer() optymalizatorem} interpretera, zgłaszając czas optymalizacji
+     * do monitora.
+     */
+    private TerminalExpression<C, R> optimize(TerminalExpression<C, R> ast) {
+        SyntaxTreeOptimizer<C> optimizer = getOptimizer();
+        if (optimizer == null) return ast;
+        InterpreterMonitor monitor = getMonitor();
+        if (monitor == null || !monitor.isEnabled()) return optimizer.optimize(ast);
+        long start = System.nanoTime();
+        try {
+            return optimizer.optimize(ast);
+        } finally {
+            monitor.phaseCompleted(Phase.OPTIMIZE, System.nanoTime() - start);
+        }
+    }
+
     /**
      * Dokonuje interpretacji danych wejściowych korzystając z {@link Context kontekstu}. Dane najpierw są tokenizowane
-     * i zamieniane na {@link NonTerminalExpression wyrażenia nieterminalne}, aby zbudować z nich drzewo abstrakcyjnej
-     * syntaktyki (AST).
+     * i zamieniane na {@link NonTerminalExpression wyrażenia nieterminalne}, z których parser tworzy wyrażenia
+     * terminalne.
+     * <p>
+     * Kroki przekazywane przez {@link Parser#streamAbstractSyntaxTree(Queue, Consumer)} interpretowane są zaraz po
+     * rozpoznaniu, więc dla parserów nadpisujących tę metodę całe drzewo nie jest budowane, a błąd składniowy może
+     * zostać zgłoszony po zinterpretowaniu poprzedzających go kroków. {@link #getOptimizer() Optymalizator} stosowany
+     * jest tylko do wyrażenia zwróconego po krokach. {@link #getMonitor() Monitor} nie zmienia tego przebiegu: pomiary
+     * zgłaszane są wokół tej samej ścieżki
+     * ({@link Parser#streamAbstractSyntaxTree(Readable, Tokenizer, Consumer, InterpreterMonitor)}), a czas
+     * wartościowania obejmuje kroki i wyrażenie zwrócone po nich.
+     * </p>
      *
      * @param readable dane odczytywane przez tokenizer i zamieniane na postać terminalną
      * @return wynik interpretacji
@@ -33,10 +201,146 @@ public interface Interpreter<C extends Context, R> {
     default R interpret(Readable readable) {
         Parser<C, R> parser = getParser();
         if (parser == null) throw new IllegalStateException("Cannot use readable when parser is null", new NullPointerException());
-        Tokenizer tokenizer = parser.getTokenizer();
-        if (tokenizer != null) tokenizer.setSource(readable);
-        else throw new IllegalStateException("Cannot use readable when tokenizer or scanner factory are null", new NullPointerException());
-        TerminalExpression<C, R> ast = parser.buildAbstractSyntaxTree();
-        return ast.interpret(getContext());
+        Tokenizer tokenizer = parser.newTokenizer();
+        if (tokenizer == null) throw new IllegalStateException("Cannot use readable when tokenizer is null", new NullPointerException());
+        return stream(parser, readable, tokenizer);
+    }
+
+    /**
+     * Dokonuje interpretacji danych wejściowych tak jak {@link #interpret(Readable)}, ale podanym tokenizerem.
+     *
+     * @param readable dane odczytywane przez tokenizer i zamieniane na postać terminalną
+     * @param tokenizer tokenizer języka parsera, nieużywany w tym czasie przez inne wątki
+     * @return wynik interpretacji
+     * @throws IllegalStateException w przypadku niedostarczenia parsera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default R interpret(Readable readable, Tokenizer tokenizer) {
+        Parser<C, R> parser = getParser();
+        if (parser == null) throw new IllegalStateException("Cannot use readable when parser is null", new NullPointerException());
+        if (tokenizer == null) throw new NullPointerException("Tokenizer cannot be null");
+        return stream(parser, readable, tokenizer);
+    }
+
+    /**
+     * Interpretuje kroki przekazywane przez parser w trakcie parsowania, a po nich wyrażenie zwrócone przez parser.
+     */
+    private R stream(Parser<C, R> parser, Readable readable, Tokenizer tokenizer) {
+        C context = getContext();
+        InterpreterMonitor monitor = getMonitor();
+        if (monitor == null || !monitor.isEnabled()) {
+            tokenizer.setSource(readable);
+            TerminalExpression<C, R> rest = parser.streamAbstractSyntaxTree(tokenizer.stream(), step -> step.interpret(context));
+            return optimize(rest).interpret(context);
+        }
+        long[] evaluating = new long[1];
+        TerminalExpression<C, R> rest = optimize(parser.streamAbstractSyntaxTree(readable, tokenizer, step -> {
+            long start = System.nanoTime();
+            try {
+                step.interpret(context);
+            } finally {
+                evaluating[0] += System.nanoTime() - start;
+            }
+        }, monitor));
+        long start = System.nanoTime();
+        try {
+            return rest.interpret(context);
+        } finally {
+            monitor.phaseCompleted(Phase.EVALUATE, evaluating[0] + System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Dokonuje interpretacji kodu źródłowego korzystając z {@link Context kontekstu}. Drzewo abstrakcyjnej syntaktyki
+     * pobierane jest z {@link #getSyntaxTreeCache() pamięci podręcznej}, jeśli została dostarczona.
+     *
+     * @param source kod źródłowy
+     * @return wynik interpretacji
+     * @throws IllegalStateException w przypadku niedostarczenia parsera lub tokenizera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     * @see #prepare(String)
+     */
+    default R interpret(String source) {
+        return evaluate(prepare(source));
+    }
+
+    /**
+     * Przygotowuje dane wejściowe do interpretacji tak jak {@link #prepare(Readable)} i zwraca wydawcę, który
+     * interpretuje drzewo w {@link #getContext() kontekście interpretera} na żądanie subskrybenta, przekazując wynik
+     * każdego kroku {@link SequentialExpression wyrażenia sekwencyjnego} zaraz po jego zinterpretowaniu.
+     * Kroki interpretowane są w wątku zgłaszającym zapotrzebowanie na wyniki.
+     *
+     * @param readable dane odczytywane przez tokenizer i zamieniane na postać terminalną
+     * @return wydawca wyników interpretacji, przyjmujący jednego subskrybenta
+     * @throws IllegalStateException w przypadku niedostarczenia parsera lub tokenizera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     * @see ResultPublisher
+     */
+    default Flow.Publisher<R> publish(Readable readable) {
+        return new ResultPublisher<>(prepare(readable), getContext());
+    }
+
+    /**
+     * Przygotowuje dane wejściowe do interpretacji i zwraca wydawcę wyników tak jak {@link #publish(Readable)}, ale
+     * kroki interpretowane są w wątkach podanego wykonawcy.
+     *
+     * @param readable dane odczytywane przez tokenizer i zamieniane na postać terminalną
+     * @param executor wykonawca, w którego wątkach interpretowane są kroki i wywoływane są metody subskrybenta
+     * @return wydawca wyników interpretacji, przyjmujący jednego subskrybenta
+     * @throws IllegalStateException w przypadku niedostarczenia parsera lub tokenizera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     * @see ResultPublisher
+     */
+    default Flow.Publisher<R> publish(Readable readable, Executor executor) {
+        return new ResultPublisher<>(prepare(readable), getContext(), executor);
+    }
+
+    /**
+     * Interpretuje drzewo w kontekście interpretera, zgłaszając czas wartościowania do monitora.
+     */
+    private R evaluate(TerminalExpression<C, R> ast) {
+        InterpreterMonitor monitor = getMonitor();
+        if (monitor == null || !monitor.isEnabled()) return ast.interpret(getContext());
+        long start = System.nanoTime();
+        try {
+            return ast.interpret(getContext());
+        } finally {
+            monitor.phaseCompleted(Phase.EVALUATE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Dokonuje interpretacji pliku zakodowanego w {@code UTF-8}.
+     * Plik jest odwzorowywany w pamięci ({@link MappedFileSource}) i dekodowany na bieżąco podczas tokenizacji.
+     *
+     * @param path ścieżka do pliku z danymi wejściowymi
+     * @return wynik interpretacji
+     * @throws IOException w przypadku błędu odczytu pliku lub niepoprawnie zakodowanych znaków
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     * @see #interpret(Readable)
+     */
+    default R interpret(Path path) throws IOException {
+        return interpret(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Dokonuje interpretacji pliku zakodowanego w podanym kodowaniu.
+     * Plik jest odwzorowywany w pamięci ({@link MappedFileSource}) i dekodowany na bieżąco podczas tokenizacji.
+     *
+     * @param path ścieżka do pliku z danymi wejściowymi
+     * @param charset kodowanie znaków w pliku
+     * @return wynik interpretacji
+     * @throws IOException w przypadku błędu odczytu pliku lub niepoprawnie zakodowanych znaków
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     * @see #interpret(Readable)
+     */
+    default R interpret(Path path, Charset charset) throws IOException {
+        try (MappedFileSource source = new MappedFileSource(path, charset)) {
+            InterpreterMonitor monitor = getMonitor();
+            if (monitor != null && monitor.isEnabled()) monitor.bytesRead(source.size());
+            return interpret(source);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 }
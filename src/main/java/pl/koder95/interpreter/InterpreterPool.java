@@ -0,0 +1,160 @@
+package pl.koder95.interpreter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Pula {@link Session sesji} interpretera, pozwalająca interpretować kolejne źródła bez tworzenia za każdym razem
+ * interpretera, kontekstu i tokenizera. Sesja pobierana jest przez {@link #acquire()}, a jej zamknięcie
+ * {@link Context#reset() przywraca kontekst do stanu początkowego} i zwraca interpreter, kontekst i tokenizer sesji
+ * do puli. Każde pobranie tworzy nowy obiekt sesji, więc zamknięcie sesji już zamkniętej nie wpływa na sesję, która
+ * w tym czasie używa tego samego interpretera w innym wątku. Tokenizer ({@link Parser#newTokenizer()}) i jego bufory
+ * są używane ponownie, więc w stanie ustalonym interpretacja alokuje tylko obiekt sesji, tokeny, drzewo składniowe
+ * i to, co tworzą wyrażenia.
+ * <p>
+ * Pula jest bezpieczna wątkowo, a pojedyncza sesja może być używana jednocześnie tylko przez jeden wątek. Jeśli
+ * w puli nie ma wolnej sesji, tworzona jest nowa; zamykane sesje ponad {@link #InterpreterPool(Client, Supplier, int)
+ * pojemność} puli są porzucane. Parser języka musi tworzyć nowy tokenizer przy każdym wywołaniu
+ * {@link Parser#newTokenizer()}, a kontekst stanowy musi nadpisywać {@link Context#reset()}.
+ * </p>
+ * @param <C> typ {@link Context kontekstu}
+ * @param <R> typ obiektu zwracanego przez interpreter
+ * @param <I> typ {@link Interpreter interpretera} tworzonego przez klienta
+ */
+public final class InterpreterPool<C extends Context, R, I extends Interpreter<C, R>> {
+
+    private final Client<C, R, ? extends I> client;
+    private final Supplier<? extends C> contextFactory;
+    private final ArrayBlockingQueue<Resources<C, R, I>> idle;
+
+    /**
+     * Tworzy pustą pulę; sesje tworzone są dopiero przy pobieraniu.
+     * @param client klient tworzący interpretery
+     * @param contextFactory fabryka kontekstów; nowy kontekst tworzony jest dla każdej nowej sesji
+     * @param capacity maksymalna liczba wolnych sesji przechowywanych w puli
+     * @throws IllegalArgumentException jeśli pojemność nie jest dodatnia
+     */
+    public InterpreterPool(Client<C, R, ? extends I> client, Supplier<? extends C> contextFactory, int capacity) {
+        if (client == null) throw new NullPointerException("Client cannot be null");
+        if (contextFactory == null) throw new NullPointerException("Context factory cannot be null");
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.client = client;
+        this.contextFactory = contextFactory;
+        this.idle = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Pobiera wolną sesję z puli albo tworzy nową, jeśli pula jest pusta.
+     * @return otwarta sesja; należy ją zamknąć po zakończeniu interpretacji (np. w {@code try}-with-resources)
+     */
+    public Session<C, R, I> acquire() {
+        Resources<C, R, I> resources = idle.poll();
+        if (resources == null) {
+            C context = contextFactory.get();
+            resources = new Resources<>(client.newInterpreter(context), context);
+        }
+        return new Session<>(this, resources);
+    }
+
+    /**
+     * @return liczba wolnych sesji w puli
+     */
+    public int idle() {
+        return idle.size();
+    }
+
+    /**
+     * Interpreter, jego kontekst i tokenizer przechowywane w puli między kolejnymi sesjami.
+     */
+    private static final class Resources<C extends Context, R, I extends Interpreter<C, R>> {
+        private final I interpreter;
+        private final C context;
+        private Tokenizer tokenizer;
+
+        private Resources(I interpreter, C context) {
+            this.interpreter = interpreter;
+            this.context = context;
+        }
+    }
+
+    /**
+     * Sesja interpretera: jedno pobranie z puli interpretera, jego kontekstu i tokenizera używanych ponownie
+     * w kolejnych sesjach. Wyniki będące widokami kontekstu są ważne tylko do {@link #close() zamknięcia sesji}.
+     * Po zamknięciu metody sesji zgłaszają {@link IllegalStateException}, a ponowne zamknięcie nic nie robi, także
+     * wtedy, gdy interpreter sesji został już pobrany w innym wątku.
+     * @param <C> typ {@link Context kontekstu}
+     * @param <R> typ obiektu zwracanego przez interpreter
+     * @param <I> typ {@link Interpreter interpretera}
+     */
+    public static final class Session<C extends Context, R, I extends Interpreter<C, R>> implements AutoCloseable {
+        private final InterpreterPool<C, R, I> pool;
+        private final Resources<C, R, I> resources;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Session(InterpreterPool<C, R, I> pool, Resources<C, R, I> resources) {
+            this.pool = pool;
+            this.resources = resources;
+        }
+
+        /**
+         * @return interpreter sesji
+         * @throws IllegalStateException jeśli sesja została zamknięta
+         */
+        public I interpreter() {
+            checkOpen();
+            return resources.interpreter;
+        }
+
+        /**
+         * @return kontekst sesji, w którym interpretowane są źródła
+         * @throws IllegalStateException jeśli sesja została zamknięta
+         */
+        public C context() {
+            checkOpen();
+            return resources.context;
+        }
+
+        /**
+         * Dokonuje interpretacji danych wejściowych tokenizerem sesji ({@link Interpreter#interpret(Readable, Tokenizer)}).
+         * Kolejne interpretacje w tej samej sesji korzystają z kontekstu zmienionego przez poprzednie.
+         * @param readable dane odczytywane przez tokenizer i zamieniane na postać terminalną
+         * @return wynik interpretacji
+         * @throws IllegalStateException jeśli sesja została zamknięta albo w przypadku niedostarczenia parsera
+         *                               lub tokenizera
+         * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+         */
+        public R interpret(Readable readable) {
+            checkOpen();
+            Tokenizer tokenizer = resources.tokenizer;
+            if (tokenizer == null) {
+                Parser<C, R> parser = resources.interpreter.getParser();
+                if (parser == null) throw new IllegalStateException("Cannot use readable when parser is null", new NullPointerException());
+                tokenizer = parser.newTokenizer();
+                if (tokenizer == null) throw new IllegalStateException("Cannot use readable when tokenizer is null", new NullPointerException());
+                resources.tokenizer = tokenizer;
+            }
+            try {
+                return resources.interpreter.interpret(readable, tokenizer);
+            } finally {
+                // Tokenizer nie przetrzymuje źródła do następnej interpretacji.
+                tokenizer.setSource(null);
+            }
+        }
+
+        /**
+         * Przywraca kontekst do stanu początkowego i zwraca interpreter, kontekst i tokenizer sesji do puli.
+         * Kolejne wywołania nic nie robią. Jeśli {@link Context#reset()} zgłosi wyjątek, nic nie wraca do puli.
+         */
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            resources.context.reset();
+            pool.idle.offer(resources);
+        }
+
+        private void checkOpen() {
+            if (closed.get()) throw new IllegalStateException("Session is closed");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package pl.koder95.interpreter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Ograniczona pamięć podręczna drzew abstrakcyjnej syntaktyki, która usuwa najdawniej używane drzewa (LRU).
+ * Limit dotyczy zarówno liczby zapamiętanych drzew, jak i łącznej długości źródeł, z których zostały zbudowane.
+ * <p>
+ * Instancja jest bezpieczna wątkowo. Drzewa budowane są poza blokadą, więc parsowanie dużego źródła nie wstrzymuje
+ * odczytów innych wątków; jeśli dwa wątki zbudują jednocześnie drzewo dla tego samego źródła,
+ * zapamiętane zostanie pierwsze z nich.
+ * </p>
+ * @param <C> typ {@link Context kontekstu} dla {@link TerminalExpression wyrażenia terminalnego}
+ * @param <R> typ obiektu zwracanego przez interpreter
+ */
+public class LruSyntaxTreeCache<C extends Context, R> implements SyntaxTreeCache<C, R> {
+
+    private final int maxEntries;
+    private final long maxSourceLength;
+    private final LinkedHashMap<String, TerminalExpression<C, R>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sourceLength = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Tworzy pamięć podręczną ograniczoną tylko liczbą drzew.
+     * @param maxEntries maksymalna liczba zapamiętanych drzew
+     * @throws IllegalArgumentException jeśli limit nie jest dodatni
+     */
+    public LruSyntaxTreeCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Tworzy pamięć podręczną ograniczoną liczbą drzew i łączną długością źródeł.
+     * @param maxEntries maksymalna liczba zapamiętanych drzew
+     * @param maxSourceLength maksymalna łączna liczba znaków źródeł zapamiętanych drzew
+     * @throws IllegalArgumentException jeśli którykolwiek z limitów nie jest dodatni
+     */
+    public LruSyntaxTreeCache(int maxEntries, long maxSourceLength) {
+        if (maxEntries <= 0) throw new IllegalArgumentException("Maximum number of entries must be positive");
+        if (maxSourceLength <= 0) throw new IllegalArgumentException("Maximum source length must be positive");
+        this.maxEntries = maxEntries;
+        this.maxSourceLength = maxSourceLength;
+    }
+
+    @Override
+    public TerminalExpression<C, R> get(String source,
+                                        Function<? super String, ? extends TerminalExpression<C, R>> builder) {
+        synchronized (this) {
+            TerminalExpression<C, R> cached = entries.get(source);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        TerminalExpression<C, R> built = builder.apply(source);
+        if (built == null || source.length() > maxSourceLength) return built;
+        synchronized (this) {
+            TerminalExpression<C, R> previous = entries.putIfAbsent(source, built);
+            if (previous != null) return previous;
+            sourceLength += source.length();
+            evict();
+        }
+        return built;
+    }
+
+    /**
+     * Usuwa najdawniej używane drzewa, dopóki limity są przekroczone.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, TerminalExpression<C, R>>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || sourceLength > maxSourceLength) && eldest.hasNext()) {
+            sourceLength -= eldest.next().getKey().length();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        sourceLength = 0;
+    }
+
+    @Override
+    public synchronized Statistics statistics() {
+        return new Statistics(hits, misses, evictions, entries.size());
+    }
+}
@@ -0,0 +1,160 @@
+package pl.koder95.interpreter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link Readable Źródło znaków} odczytujące plik odwzorowany w pamięci za pomocą {@link FileChannel#map}.
+ * Plik mapowany jest fragmentami (regionami), a bajty dekodowane są leniwie, bezpośrednio do bufora przekazanego
+ * w {@link #read(CharBuffer)}, bez pośredniego bufora znaków i bez kopiowania przez {@link java.io.Reader}.
+ * Dla kodowań zgodnych z ASCII ({@code UTF-8}, {@code US-ASCII}) ciągi bajtów z zakresu ASCII przepisywane są
+ * bezpośrednio, z pominięciem dekodera.
+ * <p>
+ * Instancja nie jest bezpieczna wątkowo i powinna zostać zamknięta po zakończeniu odczytu.
+ * </p>
+ */
+public final class MappedFileSource implements Readable, Closeable {
+
+    /**
+     * Maksymalny rozmiar jednego regionu pliku odwzorowanego w pamięci.
+     */
+    private static final long REGION_SIZE = 1L << 28;
+
+    private final FileChannel channel;
+    private final long size;
+    private final CharsetDecoder decoder;
+    private final boolean asciiCompatible;
+    private ByteBuffer bytes = ByteBuffer.allocate(0);
+    private long regionStart = 0;
+    private boolean flushed = false;
+
+    /**
+     * Otwiera plik zakodowany w {@code UTF-8}.
+     * @param path ścieżka do pliku
+     * @throws IOException w przypadku błędu otwarcia pliku
+     */
+    public MappedFileSource(Path path) throws IOException {
+        this(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Otwiera plik zakodowany w podanym kodowaniu.
+     * @param path ścieżka do pliku
+     * @param charset kodowanie znaków w pliku
+     * @throws IOException w przypadku błędu otwarcia pliku
+     */
+    public MappedFileSource(Path path, Charset charset) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        this.asciiCompatible = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return rozmiar pliku w bajtach
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Odwzorowuje w pamięci kolejny region pliku, zaczynając od pierwszego nieodczytanego bajtu.
+     * @return {@code false}, jeśli w pliku nie ma już bajtów do odczytania
+     */
+    private boolean mapNextRegion() throws IOException {
+        long start = regionStart + bytes.position();
+        if (start >= size) return false;
+        regionStart = start;
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+        return true;
+    }
+
+    /**
+     * @return {@code true}, jeśli aktualny region kończy się razem z plikiem
+     */
+    private boolean lastRegion() {
+        return regionStart + bytes.limit() >= size;
+    }
+
+    /**
+     * Przepisuje bajty z zakresu ASCII bezpośrednio jako znaki, aż do napotkania innego bajtu.
+     */
+    private void copyAscii(CharBuffer target) {
+        int n = Math.min(target.remaining(), bytes.remaining());
+        int from = bytes.position();
+        int i = 0;
+        if (target.hasArray()) {
+            char[] array = target.array();
+            int offset = target.arrayOffset() + target.position();
+            for (; i < n; i++) {
+                byte b = bytes.get(from + i);
+                if (b < 0) break;
+                array[offset + i] = (char) b;
+            }
+            target.position(target.position() + i);
+        } else {
+            for (; i < n; i++) {
+                byte b = bytes.get(from + i);
+                if (b < 0) break;
+                target.put((char) b);
+            }
+        }
+        bytes.position(from + i);
+    }
+
+    @Override
+    public int read(CharBuffer target) throws IOException {
+        if (!channel.isOpen()) throw new IOException("Source is closed");
+        int start = target.position();
+        boolean overflow = false;
+        while (target.hasRemaining()) {
+            if (!bytes.hasRemaining() && !mapNextRegion()) break;
+            if (asciiCompatible) {
+                copyAscii(target);
+                if (!target.hasRemaining() || !bytes.hasRemaining()) continue;
+            }
+            boolean last = lastRegion();
+            CoderResult result = decoder.decode(bytes, target, last);
+            if (result.isError()) result.throwException();
+            if (result.isOverflow()) {
+                overflow = true;
+                break;
+            }
+            if (bytes.hasRemaining()) {
+                // Niepełna sekwencja bajtów na granicy regionu – kolejny region zaczyna się od niej.
+                if (last) throw new CharacterCodingException();
+                mapNextRegion();
+            }
+        }
+        int read = target.position() - start;
+        if (read > 0) return read;
+        if (overflow || !target.hasRemaining()) return 0;
+        if (!flushed) {
+            CoderResult result = decoder.decode(bytes, target, true);
+            if (!result.isError()) result = decoder.flush(target);
+            if (result.isError()) result.throwException();
+            flushed = !result.isOverflow();
+            read = target.position() - start;
+            if (read > 0) return read;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -16,6 +16,16 @@ public non-sealed interface NonTerminalExpression<T> extends Expression {
      */
     T getObject();
 
+    /**
+     * Zwraca fragment źródła, z którego powstało wyrażenie. Tokenizery śledzące pozycję w źródle
+     * (np. {@link BufferedTokenizer#span()}) mogą go dołączać do tworzonych tokenów, co pozwala m.in. na
+     * {@link Parser#rebuildAbstractSyntaxTree(TerminalExpression, TextEdit, String) przyrostowe parsowanie}.
+     * @return fragment źródła albo {@code null}, jeśli pozycja nie jest znana (domyślnie)
+     */
+    default SourceSpan getSpan() {
+        return null;
+    }
+
     @Override
     default String asString() {
         return Objects.toString(getObject());
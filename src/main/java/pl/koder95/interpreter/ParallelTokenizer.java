@@ -0,0 +1,242 @@
+package pl.koder95.interpreter;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Tokenizuje duże źródła równolegle. Tekst dzielony jest na fragmenty o zbliżonej długości w
+ * {@link TokenBoundary bezpiecznych miejscach} wskazanych przez język, każdy fragment tokenizowany jest osobnym
+ * tokenizerem w {@link ForkJoinPool puli wątków}, a tokeny łączone są w kolejności fragmentów w jeden
+ * {@link TokenBuffer bufor tokenów}, który przyjmuje {@link Parser#buildAbstractSyntaxTree(TokenBuffer)}.
+ * <p>
+ * Tokenizery {@link BufferedTokenizer} otrzymują położenie początku fragmentu w całym tekście, więc położenia
+ * tokenów ({@link NonTerminalExpression#getSpan()}) są takie same jak przy tokenizacji sekwencyjnej. Wiersz i kolumna
+ * początku każdego fragmentu wyznaczane są przed tokenizacją, również równolegle, przez zliczenie końców wierszy
+ * ({@code '\n'}, {@code '\r'} i {@code "\r\n"}, tak jak w {@link BufferedTokenizer}). Miejsce podziału nigdy nie
+ * rozdziela pary {@code "\r\n"}.
+ * </p><p>
+ * Błąd tokenizacji (np. {@link SyntaxException}) zgłaszany jest dla najwcześniejszego fragmentu, w którym wystąpił,
+ * tak jak przy tokenizacji sekwencyjnej. Instancja nie przechowuje stanu tokenizacji i może być używana przez wiele
+ * wątków, jeśli dostawca tokenizerów tworzy nowe instancje.
+ * </p>
+ */
+public final class ParallelTokenizer {
+
+    /**
+     * Domyślna długość fragmentu (w znakach).
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final Supplier<? extends Tokenizer> tokenizers;
+    private final TokenBoundary boundary;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Tworzy tokenizer równoległy dla języka parsera, korzystający ze {@link ForkJoinPool#commonPool() wspólnej puli}.
+     * @param parser parser, którego {@link Parser#newTokenizer()} zwraca nowy tokenizer przy każdym wywołaniu
+     * @throws IllegalArgumentException jeśli parser nie wskazuje {@link Parser#getTokenBoundary() granicy tokenów}
+     */
+    public ParallelTokenizer(Parser<?, ?> parser) {
+        this(parser::newTokenizer, boundary(parser));
+    }
+
+    /**
+     * Tworzy tokenizer równoległy z fragmentami o {@link #DEFAULT_CHUNK_SIZE domyślnej długości}, korzystający
+     * ze {@link ForkJoinPool#commonPool() wspólnej puli}.
+     * @param tokenizers dostawca nowych tokenizerów
+     * @param boundary granica tokenów
+     */
+    public ParallelTokenizer(Supplier<? extends Tokenizer> tokenizers, TokenBoundary boundary) {
+        this(tokenizers, boundary, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tworzy tokenizer równoległy.
+     * @param tokenizers dostawca nowych tokenizerów
+     * @param boundary granica tokenów
+     * @param chunkSize przybliżona długość fragmentu (w znakach); fragment kończy się w pierwszym miejscu podziału
+     *                  nie wcześniejszym niż ta długość
+     * @param pool pula wątków tokenizujących fragmenty
+     * @throws IllegalArgumentException jeśli długość fragmentu nie jest dodatnia
+     */
+    public ParallelTokenizer(Supplier<? extends Tokenizer> tokenizers, TokenBoundary boundary, int chunkSize,
+                             ForkJoinPool pool) {
+        if (tokenizers == null) throw new NullPointerException("Tokenizer supplier cannot be null");
+        if (boundary == null) throw new NullPointerException("Boundary cannot be null");
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+        if (pool == null) throw new NullPointerException("Pool cannot be null");
+        this.tokenizers = tokenizers;
+        this.boundary = boundary;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    private static TokenBoundary boundary(Parser<?, ?> parser) {
+        TokenBoundary boundary = parser.getTokenBoundary();
+        if (boundary == null) throw new IllegalArgumentException("Parser does not provide token boundaries");
+        return boundary;
+    }
+
+    /**
+     * Tokenizuje tekst.
+     * @param source tekst do tokenizacji
+     * @return bufor wszystkich tokenów tekstu, w kolejności ich wystąpienia
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     * @throws IllegalStateException jeśli granica tokenów wskazała pozycję wcześniejszą niż żądana
+     */
+    public TokenBuffer tokenize(CharSequence source) {
+        int[] bounds = split(source);
+        int chunks = bounds.length - 1;
+        if (chunks == 1) {
+            Tokenizer tokenizer = tokenizers.get();
+            tokenizer.setSource(new Chunk(source, 0, source.length()));
+            return tokenizer.buffer();
+        }
+
+        // Położenie początku każdego fragmentu: liczba końców wierszy i pozycja ostatniego znaku końca wiersza
+        // w każdym fragmencie. Znak '\n' po '\r' nie jest osobnym końcem wiersza.
+        int[] newlines = new int[chunks];
+        int[] lastNewline = new int[chunks];
+        runAll(chunks, chunk -> {
+            int count = 0;
+            int last = -1;
+            int end = bounds[chunk + 1];
+            if (source instanceof String string) {
+                // String.indexOf przeszukuje tekst znacznie szybciej niż pętla po charAt.
+                for (int i = string.indexOf('\n', bounds[chunk]); i >= 0 && i < end; i = string.indexOf('\n', i + 1)) {
+                    if (i == 0 || string.charAt(i - 1) != '\r') count++;
+                    last = i;
+                }
+                for (int i = string.indexOf('\r', bounds[chunk]); i >= 0 && i < end; i = string.indexOf('\r', i + 1)) {
+                    count++;
+                    last = Math.max(last, i);
+                }
+            } else {
+                for (int i = bounds[chunk]; i < end; i++) {
+                    char c = source.charAt(i);
+                    if (c == '\r' || c == '\n' && (i == 0 || source.charAt(i - 1) != '\r')) count++;
+                    if (c == '\r' || c == '\n') last = i;
+                }
+            }
+            newlines[chunk] = count;
+            lastNewline[chunk] = last;
+        });
+        int[] lines = new int[chunks];
+        int[] columns = new int[chunks];
+        int line = 1;
+        int last = -1;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            lines[chunk] = line;
+            columns[chunk] = bounds[chunk] - last;
+            line += newlines[chunk];
+            if (lastNewline[chunk] >= 0) last = lastNewline[chunk];
+        }
+
+        TokenBuffer[] buffers = new TokenBuffer[chunks];
+        runAll(chunks, chunk -> {
+            Tokenizer tokenizer = tokenizers.get();
+            Readable text = new Chunk(source, bounds[chunk], bounds[chunk + 1]);
+            if (tokenizer instanceof BufferedTokenizer buffered) {
+                buffered.setSource(text, bounds[chunk], lines[chunk], columns[chunk]);
+            } else {
+                tokenizer.setSource(text);
+            }
+            buffers[chunk] = tokenizer.buffer();
+        });
+        int total = 0;
+        for (TokenBuffer buffer : buffers) total += buffer.size();
+        TokenBuffer tokens = new TokenBuffer(total);
+        for (TokenBuffer buffer : buffers) {
+            for (int i = 0, size = buffer.length(); i < size; i++) tokens.add(buffer.get(i));
+        }
+        return tokens;
+    }
+
+    /**
+     * Wyznacza granice fragmentów: {@code 0}, kolejne miejsca podziału i długość tekstu.
+     */
+    private int[] split(CharSequence source) {
+        int length = source.length();
+        int[] bounds = new int[Math.max(2, length / chunkSize + 2)];
+        int count = 1;
+        int position = 0;
+        while (length - position > chunkSize) {
+            int next = boundary.next(source, position + chunkSize);
+            // Fragment zaczynający się od '\n' pary "\r\n" policzyłby ten koniec wiersza drugi raz.
+            while (next > 0 && next < length && source.charAt(next - 1) == '\r' && source.charAt(next) == '\n') {
+                next = next + 1 < length ? boundary.next(source, next + 1) : -1;
+            }
+            if (next < 0 || next >= length) break;
+            if (next < position + chunkSize) {
+                throw new IllegalStateException("Boundary " + next + " precedes requested position " + (position + chunkSize));
+            }
+            if (count == bounds.length - 1) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            bounds[count++] = next;
+            position = next;
+        }
+        bounds[count++] = length;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Wykonuje zadanie dla każdego fragmentu w puli i czeka na wszystkie. Wyjątki są przechwytywane w zadaniach,
+     * a nie przez {@link ForkJoinTask#join()}, które mogłoby zastąpić je kopią bez dodatkowych danych
+     * (np. bez położenia błędu składniowego).
+     */
+    private void runAll(int count, IntConsumer task) {
+        Throwable[] failures = new Throwable[count];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int chunk = i;
+            tasks.add(pool.submit(() -> {
+                try {
+                    task.accept(chunk);
+                } catch (RuntimeException | Error e) {
+                    failures[chunk] = e;
+                }
+            }));
+        }
+        for (ForkJoinTask<?> submitted : tasks) submitted.join();
+        for (Throwable failure : failures) {
+            if (failure instanceof RuntimeException e) throw e;
+            if (failure instanceof Error e) throw e;
+        }
+    }
+
+    /**
+     * Fragment tekstu jako źródło znaków. Znaki {@link String ciągu znaków} kopiowane są blokami bezpośrednio
+     * do tablicy bufora tokenizera, bez kopiowania fragmentu i bez kopiowania pojedynczych znaków.
+     */
+    private static final class Chunk implements Readable {
+        private final CharSequence source;
+        private final int end;
+        private int position;
+
+        private Chunk(CharSequence source, int start, int end) {
+            this.source = source;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(CharBuffer target) {
+            if (position >= end) return -1;
+            int count = Math.min(target.remaining(), end - position);
+            if (source instanceof String string && target.hasArray()) {
+                string.getChars(position, position + count, target.array(), target.arrayOffset() + target.position());
+                target.position(target.position() + count);
+            } else {
+                target.append(source, position, position + count);
+            }
+            position += count;
+            return count;
+        }
+    }
+}
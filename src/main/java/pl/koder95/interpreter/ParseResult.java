@@ -0,0 +1,61 @@
+package pl.koder95.interpreter;
+
+import java.util.List;
+
+/**
+ * Wynik parsowania bez wyrzucania wyjątków: drzewo abstrakcyjnej syntaktyki i błędy składniowe.
+ * Jeśli parser przerywa pracę po pierwszym błędzie, drzewa nie ma; jeśli po błędach wznawia analizę,
+ * drzewo jest częściowe – zawiera tylko poprawne fragmenty danych wejściowych.
+ * @param syntaxTree wyrażenie terminalne najwyższego poziomu (być może częściowe) albo {@code null},
+ *                   jeśli drzewa nie zbudowano
+ * @param errors błędy składniowe w kolejności ich wystąpienia
+ * @param <C> typ {@link Context kontekstu} dla {@link TerminalExpression wyrażenia terminalnego}
+ * @param <R> typ obiektu zwracanego przez interpreter
+ * @see Parser#tryBuildAbstractSyntaxTree(Readable)
+ * @see Parser#buildAbstractSyntaxTreeWithRecovery(Readable)
+ */
+public record ParseResult<C extends Context, R>(TerminalExpression<C, R> syntaxTree, List<SyntaxException> errors) {
+
+    public ParseResult {
+        errors = errors == null ? List.of() : List.copyOf(errors);
+    }
+
+    /**
+     * Tworzy wynik poprawnego parsowania.
+     * @param syntaxTree wyrażenie terminalne najwyższego poziomu
+     * @return wynik bez błędów
+     * @param <C> typ kontekstu
+     * @param <R> typ obiektu zwracanego przez interpreter
+     */
+    public static <C extends Context, R> ParseResult<C, R> success(TerminalExpression<C, R> syntaxTree) {
+        return new ParseResult<>(syntaxTree, List.of());
+    }
+
+    /**
+     * Tworzy wynik parsowania przerwanego przez błąd składniowy.
+     * @param error błąd składniowy
+     * @return wynik bez drzewa
+     * @param <C> typ kontekstu
+     * @param <R> typ obiektu zwracanego przez interpreter
+     */
+    public static <C extends Context, R> ParseResult<C, R> failure(SyntaxException error) {
+        return new ParseResult<>(null, List.of(error));
+    }
+
+    /**
+     * @return {@code true}, jeśli parsowanie zakończyło się bez błędów
+     */
+    public boolean isSuccess() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * Zwraca drzewo albo wyrzuca pierwszy błąd składniowy.
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws SyntaxException pierwszy błąd, jeśli parsowanie się nie powiodło
+     */
+    public TerminalExpression<C, R> get() {
+        if (!errors.isEmpty()) throw errors.get(0);
+        return syntaxTree;
+    }
+}
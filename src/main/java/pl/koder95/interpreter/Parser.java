@@ -1,6 +1,13 @@
 package pl.koder95.interpreter;
 
+import pl.koder95.interpreter.monitor.InterpreterMonitor;
+import pl.koder95.interpreter.monitor.Phase;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Queue;
+import java.util.function.Consumer;
 
 /**
  * Interfejs dostarczający metodę, która buduje drzewo abstrakcyjnej syntaktyki.
@@ -10,10 +17,40 @@ import java.util.Queue;
 public interface Parser<C extends Context, R> {
 
     /**
+     * Zwraca tokenizer, z którego korzystają {@link #buildAbstractSyntaxTree()} i {@link Tokenizer#setSource(Readable)}.
+     * Tokenizer przechowuje stan odczytu, dlatego zwracana instancja nie powinna być współdzielona między wątkami.
      * @return {@link Tokenizer tokenizer} używany do budowy drzewa składni
+     * @see #newTokenizer()
      */
     Tokenizer getTokenizer();
 
+    /**
+     * Tworzy tokenizer przeznaczony do jednokrotnego użycia, w ramach jednego wywołania
+     * {@link #buildAbstractSyntaxTree(Readable)}. Dzięki temu stan tokenizacji nie jest współdzielony i ten sam
+     * parser może być używany jednocześnie przez wiele wątków.
+     * <p>
+     * Domyślna implementacja zwraca {@link #getTokenizer()}, co zachowuje zgodność z istniejącymi parserami,
+     * ale nie zapewnia bezpieczeństwa wątkowego. Parsery używane współbieżnie powinny zwracać nową instancję.
+     * </p>
+     * @return tokenizer bez ustawionego źródła znaków
+     */
+    default Tokenizer newTokenizer() {
+        return getTokenizer();
+    }
+
+    /**
+     * Zwraca granicę tokenów, według której {@link ParallelTokenizer} dzieli duże źródła na fragmenty tokenizowane
+     * równolegle tokenizerami z {@link #newTokenizer()}.
+     * <p>
+     * Domyślna implementacja zwraca {@code null}, co oznacza, że język nie wskazuje miejsc podziału i źródło musi być
+     * tokenizowane sekwencyjnie.
+     * </p>
+     * @return granica tokenów albo {@code null}
+     */
+    default TokenBoundary getTokenBoundary() {
+        return null;
+    }
+
     /**
      * Buduje drzewo abstrakcyjnej syntaktyki.
      * @param tokens dane wejściowe poddane tokenizacji
@@ -22,12 +59,260 @@ public interface Parser<C extends Context, R> {
      */
     TerminalExpression<C, R> buildAbstractSyntaxTree(Queue<NonTerminalExpression<?>> tokens);
 
+    /**
+     * Buduje drzewo abstrakcyjnej syntaktyki z tokenów dostępnych według indeksu. Parsery mogą nadpisać tę metodę,
+     * aby korzystać z podglądu i powrotów ({@link TokenBuffer#peek(int)}, {@link TokenBuffer#seek(int)}) albo
+     * z liczby tokenów znanej z góry.
+     * <p>
+     * Domyślna implementacja traktuje bufor jak zwykłą kolejkę ({@link #buildAbstractSyntaxTree(Queue)}).
+     * </p>
+     * @param tokens dane wejściowe poddane tokenizacji ({@link Tokenizer#buffer()})
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default TerminalExpression<C, R> buildAbstractSyntaxTree(TokenBuffer tokens) {
+        return buildAbstractSyntaxTree((Queue<NonTerminalExpression<?>>) tokens);
+    }
+
+    /**
+     * Parsuje tokeny i przekazuje odbiorcy kolejne kroki wyrażenia najwyższego poziomu (np. instrukcje) zaraz po ich
+     * rozpoznaniu, zamiast budować z nich całe drzewo. Pozwala interpretować źródło w trakcie parsowania, w pamięci
+     * zależnej od pojedynczego kroku, a nie od rozmiaru źródła ({@link Interpreter#interpret(Readable)}).
+     * Zinterpretowanie przekazanych kroków w kolejności ich przekazania, a po nich zwróconego wyrażenia, zmienia
+     * kontekst tak samo jak zinterpretowanie drzewa z {@link #buildAbstractSyntaxTree(Queue)}, a wynik zwróconego
+     * wyrażenia jest wynikiem całego drzewa.
+     * <p>
+     * Domyślna implementacja nie przekazuje żadnego kroku i zwraca całe drzewo z
+     * {@link #buildAbstractSyntaxTree(Queue)}. Błąd składniowy zgłaszany jest dopiero po przekazaniu kroków, które go
+     * poprzedzają.
+     * </p>
+     * @param tokens dane wejściowe poddane tokenizacji, np. {@link Tokenizer#stream()}
+     * @param steps odbiorca kolejnych kroków
+     * @return wyrażenie interpretowane po przekazanych krokach
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default TerminalExpression<C, R> streamAbstractSyntaxTree(Queue<NonTerminalExpression<?>> tokens,
+                                                              Consumer<? super TerminalExpression<C, R>> steps) {
+        return buildAbstractSyntaxTree(tokens);
+    }
+
+    /**
+     * Parsuje źródło znaków podanym tokenizerem i przekazuje kroki tak jak
+     * {@link #streamAbstractSyntaxTree(Queue, Consumer)}, zgłaszając pomiary do monitora tak jak
+     * {@link #buildAbstractSyntaxTree(Readable, Tokenizer, InterpreterMonitor)}. Czas spędzony w odbiorcy kroków
+     * nie jest wliczany do czasu parsowania, a liczba węzłów obejmuje przekazane kroki i zwrócone wyrażenie.
+     * Jeśli monitor jest {@link InterpreterMonitor#isEnabled() wyłączony}, niczego nie mierzy.
+     * @param source źródło znaków
+     * @param tokenizer tokenizer tego języka, nieużywany w tym czasie przez inne wątki
+     * @param steps odbiorca kolejnych kroków
+     * @param monitor odbiorca pomiarów albo {@code null}
+     * @return wyrażenie interpretowane po przekazanych krokach
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default TerminalExpression<C, R> streamAbstractSyntaxTree(Readable source, Tokenizer tokenizer,
+                                                              Consumer<? super TerminalExpression<C, R>> steps,
+                                                              InterpreterMonitor monitor) {
+        if (tokenizer == null) throw new NullPointerException("Tokenizer cannot be null");
+        if (monitor == null || !monitor.isEnabled()) {
+            tokenizer.setSource(source);
+            return streamAbstractSyntaxTree(tokenizer.stream(), steps);
+        }
+        CountingReadable counted = new CountingReadable(source);
+        tokenizer.setSource(counted);
+        TokenStream tokens = new TokenStream(tokenizer, true);
+        // Czas w odbiorcy i liczba węzłów przekazanych kroków.
+        long[] consumed = new long[2];
+        long start = System.nanoTime();
+        TerminalExpression<C, R> rest = streamAbstractSyntaxTree(tokens, step -> {
+            consumed[1] += countNodes(step);
+            long accepted = System.nanoTime();
+            try {
+                steps.accept(step);
+            } finally {
+                consumed[0] += System.nanoTime() - accepted;
+            }
+        });
+        long elapsed = System.nanoTime() - start - consumed[0];
+        monitor.phaseCompleted(Phase.TOKENIZE, tokens.getTokenizingNanos());
+        monitor.phaseCompleted(Phase.PARSE, elapsed - tokens.getTokenizingNanos());
+        monitor.charactersRead(counted.count());
+        monitor.tokensRead(tokens.getTokenCount());
+        monitor.syntaxTreeBuilt(consumed[1] + countNodes(rest));
+        return rest;
+    }
+
     /**
      * Buduje drzewo abstrakcyjnej syntaktyki, wykorzystując kolejkę tokenów dostarczoną przez tokenizer.
+     * Tokeny są pobierane strumieniowo ({@link Tokenizer#stream()}), więc tokenizacja odbywa się na bieżąco
+     * w trakcie budowania drzewa, a nie przed nim.
      * @return wyrażenie terminalne najwyższego poziomu
      * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
      */
     default TerminalExpression<C, R> buildAbstractSyntaxTree() {
-        return buildAbstractSyntaxTree(getTokenizer().enqueue());
+        return buildAbstractSyntaxTree(getTokenizer().stream());
+    }
+
+    /**
+     * Buduje drzewo abstrakcyjnej syntaktyki z podanego źródła znaków, używając tokenizera utworzonego przez
+     * {@link #newTokenizer()}. Cały stan tokenizacji należy do tego wywołania.
+     * @param source źródło znaków
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws IllegalStateException w przypadku niedostarczenia tokenizera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default TerminalExpression<C, R> buildAbstractSyntaxTree(Readable source) {
+        Tokenizer tokenizer = newTokenizer();
+        if (tokenizer == null) throw new IllegalStateException("Cannot use readable when tokenizer is null", new NullPointerException());
+        tokenizer.setSource(source);
+        return buildAbstractSyntaxTree(tokenizer.stream());
+    }
+
+    /**
+     * Buduje drzewo abstrakcyjnej syntaktyki z podanego źródła znaków, zgłaszając pomiary do monitora:
+     * czas tokenizacji i parsowania, liczbę odczytanych znaków i tokenów oraz liczbę węzłów drzewa.
+     * Jeśli monitor jest {@link InterpreterMonitor#isEnabled() wyłączony}, działa jak
+     * {@link #buildAbstractSyntaxTree(Readable)} i niczego nie mierzy.
+     * @param source źródło znaków
+     * @param monitor odbiorca pomiarów
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws IllegalStateException w przypadku niedostarczenia tokenizera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default TerminalExpression<C, R> buildAbstractSyntaxTree(Readable source, InterpreterMonitor monitor) {
+        if (monitor == null || !monitor.isEnabled()) return buildAbstractSyntaxTree(source);
+        Tokenizer tokenizer = newTokenizer();
+        if (tokenizer == null) throw new IllegalStateException("Cannot use readable when tokenizer is null", new NullPointerException());
+        return buildAbstractSyntaxTree(source, tokenizer, monitor);
+    }
+
+    /**
+     * Buduje drzewo abstrakcyjnej syntaktyki z podanego źródła znaków tak jak
+     * {@link #buildAbstractSyntaxTree(Readable, InterpreterMonitor)}, ale podanym tokenizerem zamiast tokenizera
+     * z {@link #newTokenizer()}. Pozwala używać ponownie tokenizera i jego buforów w kolejnych wywołaniach
+     * (np. w {@link InterpreterPool.Session sesji interpretera}).
+     * @param source źródło znaków
+     * @param tokenizer tokenizer tego języka, nieużywany w tym czasie przez inne wątki
+     * @param monitor odbiorca pomiarów albo {@code null}
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default TerminalExpression<C, R> buildAbstractSyntaxTree(Readable source, Tokenizer tokenizer,
+                                                            InterpreterMonitor monitor) {
+        if (tokenizer == null) throw new NullPointerException("Tokenizer cannot be null");
+        if (monitor == null || !monitor.isEnabled()) {
+            tokenizer.setSource(source);
+            return buildAbstractSyntaxTree(tokenizer.stream());
+        }
+        CountingReadable counted = new CountingReadable(source);
+        tokenizer.setSource(counted);
+        TokenStream tokens = new TokenStream(tokenizer, true);
+        long start = System.nanoTime();
+        TerminalExpression<C, R> ast = buildAbstractSyntaxTree(tokens);
+        long elapsed = System.nanoTime() - start;
+        monitor.phaseCompleted(Phase.TOKENIZE, tokens.getTokenizingNanos());
+        monitor.phaseCompleted(Phase.PARSE, elapsed - tokens.getTokenizingNanos());
+        monitor.charactersRead(counted.count());
+        monitor.tokensRead(tokens.getTokenCount());
+        monitor.syntaxTreeBuilt(countNodes(ast));
+        return ast;
+    }
+
+    /**
+     * Buduje drzewo abstrakcyjnej syntaktyki z tekstu tokenizowanego równolegle, zgłaszając pomiary do monitora
+     * tak jak {@link #buildAbstractSyntaxTree(Readable, InterpreterMonitor)}. Tokenizacja kończy się przed
+     * rozpoczęciem parsowania, a parser otrzymuje {@link TokenBuffer bufor tokenów}.
+     * @param source tekst
+     * @param tokenizer tokenizer równoległy, np. {@code new ParallelTokenizer(this)}
+     * @param monitor odbiorca pomiarów albo {@code null}
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default TerminalExpression<C, R> buildAbstractSyntaxTree(CharSequence source, ParallelTokenizer tokenizer,
+                                                            InterpreterMonitor monitor) {
+        if (monitor == null || !monitor.isEnabled()) return buildAbstractSyntaxTree(tokenizer.tokenize(source));
+        long start = System.nanoTime();
+        TokenBuffer tokens = tokenizer.tokenize(source);
+        long tokenized = System.nanoTime();
+        TerminalExpression<C, R> ast = buildAbstractSyntaxTree(tokens);
+        monitor.phaseCompleted(Phase.TOKENIZE, tokenized - start);
+        monitor.phaseCompleted(Phase.PARSE, System.nanoTime() - tokenized);
+        monitor.charactersRead(source.length());
+        monitor.tokensRead(tokens.length());
+        monitor.syntaxTreeBuilt(countNodes(ast));
+        return ast;
+    }
+
+    /**
+     * Buduje drzewo abstrakcyjnej syntaktyki, zwracając błędy składniowe zamiast je wyrzucać. Przydatne, gdy wiele
+     * danych wejściowych jest niepoprawnych (np. podczas walidacji), a błąd jest spodziewanym wynikiem.
+     * <p>
+     * Domyślna implementacja przechwytuje wyjątek wyrzucony przez {@link #buildAbstractSyntaxTree(Readable)}.
+     * Parsery mogą ją nadpisać, aby zgłaszać błędy bez ich wyrzucania i bez wypełniania śladu stosu
+     * ({@link SyntaxException#SyntaxException(String, SourceSpan, boolean)}).
+     * </p>
+     * @param source źródło znaków
+     * @return drzewo albo błędy składniowe
+     * @throws IllegalStateException w przypadku niedostarczenia tokenizera
+     */
+    default ParseResult<C, R> tryBuildAbstractSyntaxTree(Readable source) {
+        try {
+            return ParseResult.success(buildAbstractSyntaxTree(source));
+        } catch (SyntaxException e) {
+            return ParseResult.failure(e);
+        }
+    }
+
+    /**
+     * Buduje drzewo abstrakcyjnej syntaktyki, kontynuując pracę po błędach składniowych. Po każdym błędzie parser
+     * wznawia analizę od najbliższego miejsca, od którego może ją bezpiecznie kontynuować (np. od następnej
+     * instrukcji), dzięki czemu jedno przejście zgłasza wszystkie błędy w danych wejściowych, a wynik zawiera
+     * częściowe drzewo złożone z poprawnych fragmentów.
+     * <p>
+     * Domyślna implementacja nie potrafi wznowić analizy: działa jak {@link #tryBuildAbstractSyntaxTree(Readable)}
+     * i zwraca co najwyżej jeden błąd, bez drzewa.
+     * </p>
+     * @param source źródło znaków
+     * @return drzewo (częściowe, jeśli wystąpiły błędy) i wszystkie błędy składniowe w kolejności ich wystąpienia
+     * @throws IllegalStateException w przypadku niedostarczenia tokenizera
+     */
+    default ParseResult<C, R> buildAbstractSyntaxTreeWithRecovery(Readable source) {
+        return tryBuildAbstractSyntaxTree(source);
+    }
+
+    /**
+     * Buduje drzewo abstrakcyjnej syntaktyki dla kodu źródłowego po zmianie, wykorzystując drzewo zbudowane dla kodu
+     * sprzed zmiany. Parsery, których tokeny niosą {@link NonTerminalExpression#getSpan() położenie w źródle}, mogą
+     * tokenizować ponownie tylko fragment objęty zmianą i zachować niezmienione poddrzewa.
+     * <p>
+     * Domyślna implementacja buduje całe drzewo od nowa za pomocą {@link #buildAbstractSyntaxTree(Readable)}.
+     * </p>
+     * @param previous drzewo zbudowane przez ten parser dla kodu sprzed zmiany
+     * @param edit zmiana, która przekształciła poprzedni kod w {@code source}
+     * @param source kod źródłowy po zmianie
+     * @return wyrażenie terminalne najwyższego poziomu dla kodu po zmianie
+     * @throws IllegalStateException w przypadku niedostarczenia tokenizera
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    default TerminalExpression<C, R> rebuildAbstractSyntaxTree(TerminalExpression<C, R> previous, TextEdit edit,
+                                                               String source) {
+        return buildAbstractSyntaxTree(new StringReader(source));
+    }
+
+    /**
+     * Zlicza węzły drzewa, przeglądając je za pomocą {@link TerminalExpression#children()}.
+     */
+    private static long countNodes(TerminalExpression<?, ?> root) {
+        if (root == null) return 0;
+        long count = 0;
+        Deque<TerminalExpression<?, ?>> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            TerminalExpression<?, ?> node = pending.pop();
+            count++;
+            for (TerminalExpression<?, ?> child : node.children()) {
+                if (child != null) pending.push(child);
+            }
+        }
+        return count;
     }
 }
@@ -0,0 +1,161 @@
+package pl.koder95.interpreter;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wydawca ({@link Flow.Publisher}) wyników interpretacji drzewa abstrakcyjnej syntaktyki. Jeśli drzewo jest
+ * {@link SequentialExpression wyrażeniem sekwencyjnym}, subskrybent otrzymuje wynik każdego kroku (np. instrukcji
+ * najwyższego poziomu) zaraz po jego zinterpretowaniu; w przeciwnym razie otrzymuje jeden wynik całego drzewa.
+ * <p>
+ * Interpretacja odbywa się na żądanie subskrybenta ({@link Flow.Subscription#request(long)}) – kolejny krok
+ * interpretowany jest dopiero wtedy, gdy subskrybent zgłosił zapotrzebowanie na jego wynik, więc wydawca niczego nie
+ * buforuje (przeciwciśnienie), a anulowanie subskrypcji przerywa interpretację przed następnym krokiem. Kolejny krok
+ * nie rozpoczyna się, zanim {@link Flow.Subscriber#onNext(Object)} nie zwróci sterowania, dlatego wyniki będące
+ * widokami kontekstu są aktualne przez cały czas ich obsługi.
+ * </p><p>
+ * Kontekst zmieniany jest podczas interpretacji, dlatego wydawca przyjmuje tylko jednego subskrybenta.
+ * Błąd interpretacji (np. {@link SyntaxException}) przekazywany jest do {@link Flow.Subscriber#onError(Throwable)}.
+ * </p>
+ * @param <C> typ kontekstu wykorzystywanego podczas interpretowania wyrażeń
+ * @param <R> typ wyników interpretacji
+ */
+public final class ResultPublisher<C extends Context, R> implements Flow.Publisher<R> {
+
+    private final List<? extends TerminalExpression<C, ? extends R>> steps;
+    private final C context;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Tworzy wydawcę, który interpretuje kroki w wątku zgłaszającym zapotrzebowanie na wyniki.
+     * @param ast drzewo abstrakcyjnej syntaktyki, np. przygotowane przez {@link Interpreter#prepare(Readable)}
+     * @param context kontekst interpretacji
+     */
+    public ResultPublisher(TerminalExpression<C, R> ast, C context) {
+        this(ast, context, Runnable::run);
+    }
+
+    /**
+     * Tworzy wydawcę, który interpretuje kroki w wątkach podanego wykonawcy.
+     * @param ast drzewo abstrakcyjnej syntaktyki, np. przygotowane przez {@link Interpreter#prepare(Readable)}
+     * @param context kontekst interpretacji
+     * @param executor wykonawca, w którego wątkach interpretowane są kroki i wywoływane są metody subskrybenta
+     */
+    public ResultPublisher(TerminalExpression<C, R> ast, C context, Executor executor) {
+        if (ast == null) throw new NullPointerException("Syntax tree cannot be null");
+        if (executor == null) throw new NullPointerException("Executor cannot be null");
+        List<? extends TerminalExpression<C, ? extends R>> steps =
+                ast instanceof SequentialExpression<C, R> sequence ? sequence.steps() : List.of();
+        this.steps = steps.isEmpty() ? List.of(ast) : steps;
+        this.context = context;
+        this.executor = executor;
+    }
+
+    /**
+     * Rozpoczyna subskrypcję. Kolejny subskrybent otrzymuje {@link IllegalStateException} przez
+     * {@link Flow.Subscriber#onError(Throwable)}.
+     * @param subscriber subskrybent
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super R> subscriber) {
+        Objects.requireNonNull(subscriber, "Subscriber cannot be null");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Publisher allows only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription(subscriber));
+    }
+
+    /**
+     * Subskrypcja, w której kroki interpretuje ten wątek, który jako pierwszy zwiększył licznik pracy od zera;
+     * zapotrzebowanie zgłoszone w trakcie (także z wnętrza {@link Flow.Subscriber#onNext(Object)}) obsługuje on
+     * w pętli, bez rekurencji.
+     */
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super R> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private int index;
+
+        private Subscription(Flow.Subscriber<? super R> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Number of requested results must be positive: " + n);
+            } else {
+                requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void schedule() {
+            if (work.getAndIncrement() != 0) return;
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                cancelled = true;
+                subscriber.onError(e);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (cancelled) return;
+                if (invalidRequest != null) {
+                    cancelled = true;
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                long demand = requested.get();
+                long emitted = 0;
+                while (emitted != demand && index < steps.size()) {
+                    R result;
+                    try {
+                        result = steps.get(index++).interpret(context);
+                    } catch (RuntimeException | Error e) {
+                        cancelled = true;
+                        subscriber.onError(e);
+                        return;
+                    }
+                    subscriber.onNext(result);
+                    emitted++;
+                    if (cancelled) return;
+                }
+                if (index == steps.size()) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                if (emitted != 0 && demand != Long.MAX_VALUE) requested.addAndGet(-emitted);
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package pl.koder95.interpreter;
+
+import java.util.List;
+
+/**
+ * Wyrażenie złożone z innych wyrażeń, które potrafi utworzyć swoją kopię z innymi poddrzewami.
+ * Pozwala {@link SyntaxTreeOptimizer optymalizatorowi} zastąpić przepisane poddrzewa bez znajomości typu węzła.
+ * Wyrażenia, które tego interfejsu nie implementują, są optymalizowane tylko jako całość.
+ * @param <C> typ kontekstu wykorzystywanego podczas interpretowania wyrażenia
+ * @param <R> typ obiektu zwracanego w wyniku interpretacji
+ */
+public interface RewritableExpression<C extends Context, R> extends TerminalExpression<C, R> {
+
+    /**
+     * Tworzy wyrażenie tego samego rodzaju, ale z podanymi poddrzewami w miejsce {@link #children()}.
+     * @param children nowe poddrzewa, w tej samej liczbie i kolejności co {@link #children()}
+     * @return nowe wyrażenie; to wyrażenie pozostaje niezmienione
+     */
+    TerminalExpression<C, R> withChildren(List<TerminalExpression<C, ?>> children);
+}
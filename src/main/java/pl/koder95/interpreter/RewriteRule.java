@@ -0,0 +1,39 @@
+package pl.koder95.interpreter;
+
+import java.util.function.Function;
+
+/**
+ * Reguła przepisywania węzłów drzewa abstrakcyjnej syntaktyki, stosowana przez {@link SyntaxTreeOptimizer}.
+ * Reguła zastępuje węzeł tańszym w interpretacji węzłem, który daje ten sam wynik w każdym kontekście, np. zwija
+ * wyrażenie stałe do jego wartości albo usuwa z listy instrukcje, które nie mają wpływu na wynik.
+ * <p>
+ * Węzeł zwrócony przez regułę musi dawać wynik tego samego typu co węzeł zastępowany. Reguła nie może modyfikować
+ * węzłów, ponieważ drzewa mogą być współdzielone (np. przez {@link SyntaxTreeCache pamięć podręczną}).
+ * </p>
+ * @param <C> typ kontekstu wykorzystywanego podczas interpretowania wyrażeń
+ */
+@FunctionalInterface
+public interface RewriteRule<C extends Context> {
+
+    /**
+     * Przepisuje węzeł drzewa. Poddrzewa węzła zostały już zoptymalizowane.
+     * @param node węzeł drzewa
+     * @return węzeł zastępujący {@code node} albo {@code node}, jeśli reguła nie ma zastosowania
+     */
+    TerminalExpression<C, ?> rewrite(TerminalExpression<C, ?> node);
+
+    /**
+     * Tworzy regułę stosowaną tylko do węzłów podanego typu.
+     * @param type typ węzłów, które przepisuje reguła
+     * @param rewriter funkcja zwracająca węzeł zastępujący albo węzeł otrzymany, jeśli reguła nie ma zastosowania
+     * @param <C> typ kontekstu
+     * @param <T> typ węzłów
+     * @return reguła przepisywania
+     */
+    static <C extends Context, T extends TerminalExpression<C, ?>> RewriteRule<C> forType(
+            Class<T> type, Function<? super T, ? extends TerminalExpression<C, ?>> rewriter) {
+        if (type == null) throw new NullPointerException("Type cannot be null");
+        if (rewriter == null) throw new NullPointerException("Rewriter cannot be null");
+        return node -> type.isInstance(node) ? rewriter.apply(type.cast(node)) : node;
+    }
+}
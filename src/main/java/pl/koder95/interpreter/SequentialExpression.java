@@ -0,0 +1,19 @@
+package pl.koder95.interpreter;
+
+import java.util.List;
+
+/**
+ * Wyrażenie złożone z kolejno interpretowanych kroków (np. instrukcji programu), których wyniki można przekazywać
+ * odbiorcy, zanim zostanie zinterpretowane całe wyrażenie. Wykorzystywane przez {@link ResultPublisher}.
+ * @param <C> typ kontekstu wykorzystywanego podczas interpretowania wyrażenia
+ * @param <R> typ obiektu zwracanego w wyniku interpretacji
+ */
+public interface SequentialExpression<C extends Context, R> extends TerminalExpression<C, R> {
+
+    /**
+     * Zwraca kroki tego wyrażenia. Zinterpretowanie ich po kolei w tym samym kontekście zmienia kontekst tak samo
+     * jak {@link #interpret(Context)}, a wynik ostatniego kroku jest równy wynikowi {@link #interpret(Context)}.
+     * @return lista kroków w kolejności interpretacji; pusta lista oznacza, że wyrażenie interpretowane jest w całości
+     */
+    List<? extends TerminalExpression<C, ? extends R>> steps();
+}
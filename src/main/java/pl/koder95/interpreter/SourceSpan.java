@@ -0,0 +1,45 @@
+package pl.koder95.interpreter;
+
+/**
+ * Fragment źródła znaków, z którego powstało wyrażenie: przesunięcie pierwszego znaku, przesunięcie za ostatnim znakiem
+ * oraz wiersz i kolumna pierwszego znaku. Przesunięcia liczone są od 0, a wiersze i kolumny od 1.
+ * @param start przesunięcie pierwszego znaku
+ * @param end przesunięcie za ostatnim znakiem
+ * @param line wiersz pierwszego znaku
+ * @param column kolumna pierwszego znaku
+ */
+public record SourceSpan(long start, long end, int line, int column) {
+
+    /**
+     * @throws IllegalArgumentException jeśli przesunięcia są ujemne lub koniec poprzedza początek,
+     *                                  albo wiersz lub kolumna nie są dodatnie
+     */
+    public SourceSpan {
+        if (start < 0 || end < start) throw new IllegalArgumentException("Invalid span: " + start + ".." + end);
+        if (line <= 0 || column <= 0) throw new IllegalArgumentException("Line and column must be positive");
+    }
+
+    /**
+     * @return liczba znaków fragmentu
+     */
+    public long length() {
+        return end - start;
+    }
+
+    /**
+     * Przesuwa fragment, np. po zmianie tekstu przed nim. Kolumna pozostaje bez zmian, więc przesunięcie jest poprawne
+     * tylko wtedy, gdy zmiana nie dotyczyła wiersza, w którym fragment się zaczyna.
+     * @param offsetDelta zmiana przesunięcia
+     * @param lineDelta zmiana numeru wiersza
+     * @return przesunięty fragment
+     */
+    public SourceSpan shift(long offsetDelta, int lineDelta) {
+        if (offsetDelta == 0 && lineDelta == 0) return this;
+        return new SourceSpan(start + offsetDelta, end + offsetDelta, line + lineDelta, column);
+    }
+
+    @Override
+    public String toString() {
+        return line + ":" + column + " [" + start + ".." + end + ")";
+    }
+}
@@ -0,0 +1,22 @@
+package pl.koder95.interpreter;
+
+import java.io.IOException;
+
+/**
+ * Wyjątek wyrzucany podczas odczytu zserializowanego drzewa abstrakcyjnej syntaktyki, które nie może zostać użyte:
+ * zostało zapisane w innej wersji formatu lub języka, dla innego źródła albo jest uszkodzone.
+ * Drzewo należy wtedy zbudować ponownie ze źródła.
+ * @see SyntaxTreeFormat#load(java.nio.file.Path, long, java.util.function.Supplier)
+ */
+public class StaleSyntaxTreeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Tworzy wyjątek z komunikatem opisującym przyczynę.
+     * @param message przyczyna odrzucenia zserializowanego drzewa
+     */
+    public StaleSyntaxTreeException(String message) {
+        super(message);
+    }
+}
@@ -2,13 +2,27 @@ package pl.koder95.interpreter;
 
 /**
  * Wyjątek wyrzucany w przypadku błędów syntaktycznych podczas działania interpretera.
+ * <p>
+ * Wyjątek może wskazywać {@link #getSpan() fragment źródła}, w którym wystąpił błąd; jest on dołączany do
+ * {@link #toString()}, a {@link #getMessage()} zwraca samą wiadomość. Parsery, które zgłaszają wiele błędów
+ * (np. podczas {@link Parser#tryBuildAbstractSyntaxTree(Readable) parsowania bez wyrzucania wyjątków}), mogą tworzyć
+ * wyjątki bez śladu stosu – jego wypełnianie jest najdroższą częścią tworzenia wyjątku, a położenie błędu i tak
+ * określa fragment źródła.
+ * </p>
+ * <p>
+ * Klasa rozszerza {@link RuntimeException}, a nie {@link IllegalArgumentException}, ponieważ tylko ta pierwsza
+ * pozwala w konstruktorze wyłączyć wypełnianie śladu stosu.
+ * </p>
  */
-public class SyntaxException extends IllegalArgumentException {
+public class SyntaxException extends RuntimeException {
+
+    private final SourceSpan span;
 
     /**
      * Tworzy ogólny wyjątek.
      */
     public SyntaxException() {
+        this.span = null;
     }
 
     /**
@@ -17,7 +31,30 @@ public class SyntaxException extends IllegalArgumentException {
      * @param message wiadomość wyjaśniająca wyrzucenie wyjątku
      */
     public SyntaxException(String message) {
-        super(message);
+        this(message, null, true);
+    }
+
+    /**
+     * Tworzy wyjątek, który przekazuje wiadomość wyjaśniającą jego wyrzucenie oraz położenie błędu w źródle.
+     *
+     * @param message wiadomość wyjaśniająca wyrzucenie wyjątku
+     * @param span fragment źródła, w którym wystąpił błąd, albo {@code null}, jeśli nie jest znany
+     */
+    public SyntaxException(String message, SourceSpan span) {
+        this(message, span, true);
+    }
+
+    /**
+     * Tworzy wyjątek, który przekazuje wiadomość wyjaśniającą jego wyrzucenie oraz położenie błędu w źródle.
+     *
+     * @param message wiadomość wyjaśniająca wyrzucenie wyjątku
+     * @param span fragment źródła, w którym wystąpił błąd, albo {@code null}, jeśli nie jest znany
+     * @param writableStackTrace {@code false}, jeśli ślad stosu ma nie być wypełniany (wyjątek jest wtedy tańszy
+     *                           w tworzeniu, a {@link #getStackTrace()} zwraca pustą tablicę)
+     */
+    public SyntaxException(String message, SourceSpan span, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+        this.span = span;
     }
 
     /**
@@ -28,6 +65,7 @@ public class SyntaxException extends IllegalArgumentException {
      */
     public SyntaxException(String message, Throwable cause) {
         super(message, cause);
+        this.span = null;
     }
 
     /**
@@ -37,5 +75,35 @@ public class SyntaxException extends IllegalArgumentException {
      */
     public SyntaxException(Throwable cause) {
         super(cause);
+        this.span = null;
+    }
+
+    /**
+     * @return fragment źródła, w którym wystąpił błąd, albo {@code null}, jeśli nie jest znany
+     */
+    public SourceSpan getSpan() {
+        return span;
+    }
+
+    /**
+     * @return wiersz (od 1), w którym wystąpił błąd, albo {@code 0}, jeśli nie jest znany
+     */
+    public int getLine() {
+        return span == null ? 0 : span.line();
+    }
+
+    /**
+     * @return kolumna (od 1), w której wystąpił błąd, albo {@code 0}, jeśli nie jest znana
+     */
+    public int getColumn() {
+        return span == null ? 0 : span.column();
+    }
+
+    /**
+     * @return nazwa klasy i wiadomość ({@link Throwable#toString()}), a za nimi fragment źródła, jeśli jest znany
+     */
+    @Override
+    public String toString() {
+        return span == null ? super.toString() : super.toString() + " at " + span;
     }
 }
@@ -0,0 +1,53 @@
+package pl.koder95.interpreter;
+
+import java.util.function.Function;
+
+/**
+ * Pamięć podręczna drzew abstrakcyjnej syntaktyki, w której kluczem jest treść źródła.
+ * Pozwala pominąć tokenizację i parsowanie, gdy ten sam kod jest interpretowany wielokrotnie,
+ * np. w różnych {@link Context kontekstach}. Przechowywane drzewa muszą być niezmienne, ponieważ mogą być
+ * interpretowane jednocześnie przez wiele wątków.
+ * @param <C> typ {@link Context kontekstu} dla {@link TerminalExpression wyrażenia terminalnego}
+ * @param <R> typ obiektu zwracanego przez interpreter
+ * @see Interpreter#prepare(String)
+ * @see LruSyntaxTreeCache
+ */
+public interface SyntaxTreeCache<C extends Context, R> {
+
+    /**
+     * Zwraca drzewo zbudowane dla podanego źródła, a jeśli nie ma go w pamięci podręcznej, buduje je i zapamiętuje.
+     * @param source treść źródła
+     * @param builder funkcja budująca drzewo z treści źródła
+     * @return wyrażenie terminalne najwyższego poziomu
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych (drzewo nie jest zapamiętywane)
+     */
+    TerminalExpression<C, R> get(String source, Function<? super String, ? extends TerminalExpression<C, R>> builder);
+
+    /**
+     * Usuwa wszystkie zapamiętane drzewa.
+     */
+    void clear();
+
+    /**
+     * @return statystyki użycia pamięci podręcznej
+     */
+    Statistics statistics();
+
+    /**
+     * Statystyki użycia pamięci podręcznej.
+     * @param hits liczba odczytów, które znalazły zapamiętane drzewo
+     * @param misses liczba odczytów, które wymagały zbudowania drzewa
+     * @param evictions liczba drzew usuniętych w celu zwolnienia miejsca
+     * @param size liczba aktualnie zapamiętanych drzew
+     */
+    record Statistics(long hits, long misses, long evictions, int size) {
+
+        /**
+         * @return stosunek trafień do wszystkich odczytów albo {@code 0}, jeśli nie było odczytów
+         */
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+}
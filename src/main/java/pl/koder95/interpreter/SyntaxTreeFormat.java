@@ -0,0 +1,494 @@
+package pl.koder95.interpreter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Binarny format zapisu drzew abstrakcyjnej syntaktyki, który pozwala wczytać zbudowane wcześniej drzewo bez
+ * ponownej tokenizacji i parsowania, np. podczas uruchamiania usługi interpretującej wiele dużych skryptów.
+ * <p>
+ * Język rejestruje {@link NodeType typy węzłów} ({@link #register(int, Class, NodeType)}) – każdy z nich otrzymuje
+ * liczbowy znacznik i zapisuje swoje pola oraz poddrzewa za pomocą {@link Output}, a odtwarza je z {@link Input}.
+ * Liczby zapisywane są w kodowaniu o zmiennej długości, a powtarzające się ciągi znaków tylko raz.
+ * </p><p>
+ * Plik zaczyna się nagłówkiem z wersją formatu, {@link #getLanguageVersion() wersją języka},
+ * {@link #fingerprint(CharSequence) odciskiem źródła} i sumą kontrolną CRC32 zapisanego drzewa. Plik jest
+ * odwzorowywany w pamięci podczas odczytu; po sprawdzeniu sumy kontrolnej drzewo jest kopiowane jednym blokiem
+ * do tablicy bajtów, z której dekodowanie jest szybsze niż z bufora poza stertą. Drzewo, które nie pasuje do
+ * nagłówka, jest odrzucane
+ * ({@link StaleSyntaxTreeException}). Wersję języka należy zmienić po każdej zmianie zapisu węzłów.
+ * Metoda {@link #load(Path, long, Supplier)} buduje i zapisuje drzewo ponownie, jeśli zapisane jest nieaktualne.
+ * </p>
+ * Rejestracja typów nie jest bezpieczna wątkowo; zarejestrowany format może być używany przez wiele wątków.
+ * Zapis i odczyt są rekurencyjne, więc głębokość drzewa jest ograniczona rozmiarem stosu wywołań.
+ * @param <C> typ kontekstu wykorzystywanego podczas interpretowania wyrażeń
+ */
+public final class SyntaxTreeFormat<C extends Context> {
+
+    /**
+     * Wersja formatu pliku; pliki zapisane w innej wersji są odrzucane.
+     */
+    public static final short FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x4B415354; // "KAST"
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Integer.BYTES + Long.BYTES
+            + Integer.BYTES + Integer.BYTES;
+
+    private final int languageVersion;
+    private final Map<Class<?>, Registration<C, ?>> byType = new HashMap<>();
+    private final Map<Integer, Registration<C, ?>> byTag = new HashMap<>();
+
+    /**
+     * Tworzy format bez zarejestrowanych typów węzłów.
+     * @param languageVersion wersja języka zapisywana w nagłówku; należy ją zmienić, gdy zmienia się zapis węzłów
+     */
+    public SyntaxTreeFormat(int languageVersion) {
+        this.languageVersion = languageVersion;
+    }
+
+    /**
+     * @return wersja języka zapisywana w nagłówku
+     */
+    public int getLanguageVersion() {
+        return languageVersion;
+    }
+
+    /**
+     * Rejestruje typ węzła.
+     * @param tag znacznik typu zapisywany przed każdym węzłem; nieujemny i niepowtarzalny w formacie
+     * @param type klasa węzłów (dokładna, bez podklas)
+     * @param nodeType zapis i odczyt węzłów
+     * @param <T> typ węzłów
+     * @return ten format
+     * @throws IllegalArgumentException jeśli znacznik jest ujemny albo znacznik lub klasa są już zarejestrowane
+     */
+    public <T extends TerminalExpression<C, ?>> SyntaxTreeFormat<C> register(int tag, Class<T> type,
+                                                                           NodeType<C, T> nodeType) {
+        if (tag < 0) throw new IllegalArgumentException("Tag cannot be negative");
+        if (type == null) throw new NullPointerException("Type cannot be null");
+        if (nodeType == null) throw new NullPointerException("Node type cannot be null");
+        if (byTag.containsKey(tag)) throw new IllegalArgumentException("Tag " + tag + " is already registered");
+        if (byType.containsKey(type)) throw new IllegalArgumentException(type.getName() + " is already registered");
+        Registration<C, T> registration = new Registration<>(tag, type, nodeType);
+        byTag.put(tag, registration);
+        byType.put(type, registration);
+        return this;
+    }
+
+    /**
+     * Zapisuje drzewo do pliku. Plik jest najpierw zapisywany obok pliku docelowego i dopiero gotowy zastępuje
+     * plik docelowy, więc inne procesy nie odczytają niepełnego drzewa.
+     * @param ast drzewo abstrakcyjnej syntaktyki
+     * @param fingerprint odcisk źródła, z którego zbudowano drzewo
+     * @param file plik docelowy
+     * @throws IOException w przypadku błędu zapisu
+     * @throws IllegalArgumentException jeśli drzewo zawiera węzeł niezarejestrowanego typu
+     */
+    public void write(TerminalExpression<C, ?> ast, long fingerprint, Path file) throws IOException {
+        Output<C> out = new Output<>(this);
+        out.writeNode(ast);
+        CRC32 crc = new CRC32();
+        crc.update(out.bytes, 0, out.size);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC).putShort(FORMAT_VERSION).putInt(languageVersion).putLong(fingerprint)
+                .putInt(out.size).putInt((int) crc.getValue())
+                .flip();
+        Path absolute = file.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer payload = ByteBuffer.wrap(out.bytes, 0, out.size);
+                while (header.hasRemaining()) channel.write(header);
+                while (payload.hasRemaining()) channel.write(payload);
+            }
+            try {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Wczytuje drzewo z pliku odwzorowanego w pamięci.
+     * @param file plik zapisany przez {@link #write(TerminalExpression, long, Path)}
+     * @param fingerprint odcisk aktualnego źródła
+     * @param <R> typ wyniku interpretacji drzewa
+     * @return wczytane drzewo
+     * @throws StaleSyntaxTreeException jeśli plik zapisano w innej wersji formatu lub języka, dla innego źródła
+     *                                  albo jest uszkodzony
+     * @throws IOException w przypadku błędu odczytu
+     */
+    @SuppressWarnings("unchecked")
+    public <R> TerminalExpression<C, R> read(Path file, long fingerprint) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) throw new StaleSyntaxTreeException("Truncated header");
+            if (size - HEADER_SIZE > Integer.MAX_VALUE) throw new StaleSyntaxTreeException("Syntax tree is too large");
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mapped.getInt() != MAGIC) throw new StaleSyntaxTreeException("Not a syntax tree file");
+            short version = mapped.getShort();
+            if (version != FORMAT_VERSION) throw new StaleSyntaxTreeException("Unsupported format version " + version);
+            int language = mapped.getInt();
+            if (language != languageVersion) throw new StaleSyntaxTreeException("Language version " + language
+                    + " does not match " + languageVersion);
+            if (mapped.getLong() != fingerprint) throw new StaleSyntaxTreeException("Source has changed");
+            int length = mapped.getInt();
+            int checksum = mapped.getInt();
+            if (length != size - HEADER_SIZE) throw new StaleSyntaxTreeException("Truncated syntax tree");
+            ByteBuffer payload = mapped.slice(HEADER_SIZE, length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) throw new StaleSyntaxTreeException("Checksum mismatch");
+            byte[] bytes = new byte[length];
+            payload.get(bytes);
+            Input<C> in = new Input<>(this, bytes);
+            TerminalExpression<C, ?> ast = in.readNode();
+            if (in.position != length) throw new StaleSyntaxTreeException("Unexpected data after syntax tree");
+            return (TerminalExpression<C, R>) ast;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Wczytuje drzewo z pliku, a jeśli pliku nie ma lub jest {@link StaleSyntaxTreeException nieaktualny},
+     * buduje drzewo i zapisuje je w pliku do następnego użycia.
+     * @param file plik z zapisanym drzewem
+     * @param fingerprint odcisk aktualnego źródła
+     * @param builder funkcja budująca drzewo ze źródła
+     * @param <R> typ wyniku interpretacji drzewa
+     * @return wczytane lub zbudowane drzewo
+     * @throws IOException w przypadku błędu odczytu lub zapisu pliku
+     * @throws SyntaxException w przypadku błędów składniowych w źródle (plik nie jest zapisywany)
+     */
+    public <R> TerminalExpression<C, R> load(Path file, long fingerprint,
+                                            Supplier<? extends TerminalExpression<C, R>> builder) throws IOException {
+        try {
+            return read(file, fingerprint);
+        } catch (NoSuchFileException | StaleSyntaxTreeException e) {
+            TerminalExpression<C, R> ast = builder.get();
+            write(ast, fingerprint, file);
+            return ast;
+        }
+    }
+
+    /**
+     * Oblicza 64-bitowy odcisk treści źródła, złożony z sum kontrolnych CRC32 i CRC32C.
+     * @param source treść źródła
+     * @return odcisk źródła
+     */
+    public static long fingerprint(CharSequence source) {
+        CRC32 crc = new CRC32();
+        CRC32C crcc = new CRC32C();
+        byte[] chunk = new byte[8192];
+        int length = source.length();
+        for (int from = 0; from < length; from += chunk.length / 2) {
+            int to = Math.min(length, from + chunk.length / 2);
+            int bytes = 0;
+            for (int i = from; i < to; i++) {
+                char c = source.charAt(i);
+                chunk[bytes++] = (byte) (c >>> 8);
+                chunk[bytes++] = (byte) c;
+            }
+            crc.update(chunk, 0, bytes);
+            crcc.update(chunk, 0, bytes);
+        }
+        return crc.getValue() << 32 | crcc.getValue();
+    }
+
+    /**
+     * Oblicza 64-bitowy odcisk zawartości pliku źródłowego (bez dekodowania znaków), złożony z sum kontrolnych
+     * CRC32 i CRC32C. Odcisk pliku różni się od {@link #fingerprint(CharSequence) odcisku jego treści}.
+     * @param file plik źródłowy
+     * @return odcisk pliku
+     * @throws IOException w przypadku błędu odczytu pliku
+     */
+    public static long fingerprint(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        CRC32C crcc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(Integer.MAX_VALUE, size - position));
+                crc.update(mapped.duplicate());
+                crcc.update(mapped);
+            }
+        }
+        return crc.getValue() << 32 | crcc.getValue();
+    }
+
+    private Registration<C, ?> registration(TerminalExpression<C, ?> node) {
+        Registration<C, ?> registration = byType.get(node.getClass());
+        if (registration == null) throw new IllegalArgumentException("Unregistered node type: " + node.getClass().getName());
+        return registration;
+    }
+
+    /**
+     * Zapis i odczyt węzłów jednego typu.
+     * @param <C> typ kontekstu
+     * @param <T> typ węzłów
+     */
+    public interface NodeType<C extends Context, T extends TerminalExpression<C, ?>> {
+
+        /**
+         * Zapisuje pola i poddrzewa węzła.
+         * @param node węzeł
+         * @param out miejsce zapisu
+         */
+        void write(T node, Output<C> out);
+
+        /**
+         * Odtwarza węzeł, odczytując dane w tej samej kolejności, w jakiej zapisała je {@link #write(TerminalExpression, Output)}.
+         * @param in źródło danych
+         * @return odtworzony węzeł
+         */
+        T read(Input<C> in);
+
+        /**
+         * Tworzy typ węzła z funkcji zapisu i odczytu.
+         * @param writer funkcja zapisująca węzeł
+         * @param reader funkcja odtwarzająca węzeł
+         * @param <C> typ kontekstu
+         * @param <T> typ węzłów
+         * @return typ węzła
+         */
+        static <C extends Context, T extends TerminalExpression<C, ?>> NodeType<C, T> of(
+                BiConsumer<? super T, Output<C>> writer, Function<Input<C>, ? extends T> reader) {
+            if (writer == null) throw new NullPointerException("Writer cannot be null");
+            if (reader == null) throw new NullPointerException("Reader cannot be null");
+            return new NodeType<>() {
+                @Override
+                public void write(T node, Output<C> out) {
+                    writer.accept(node, out);
+                }
+
+                @Override
+                public T read(Input<C> in) {
+                    return reader.apply(in);
+                }
+            };
+        }
+    }
+
+    /**
+     * Miejsce zapisu węzłów drzewa.
+     * @param <C> typ kontekstu
+     */
+    public static final class Output<C extends Context> {
+        private final SyntaxTreeFormat<C> format;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private byte[] bytes = new byte[4096];
+        private int size = 0;
+
+        private Output(SyntaxTreeFormat<C> format) {
+            this.format = format;
+        }
+
+        private void ensure(int count) {
+            if (bytes.length - size < count) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + count));
+        }
+
+        /**
+         * @param value zapisywana wartość logiczna
+         */
+        public void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        /**
+         * @param value zapisywany bajt (młodsze 8 bitów)
+         */
+        public void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        /**
+         * Zapisuje liczbę w kodowaniu o zmiennej długości; małe wartości bezwzględne zajmują mniej bajtów.
+         * @param value zapisywana liczba
+         */
+        public void writeInt(int value) {
+            writeLong(value);
+        }
+
+        /**
+         * Zapisuje liczbę w kodowaniu o zmiennej długości; małe wartości bezwzględne zajmują mniej bajtów.
+         * @param value zapisywana liczba
+         */
+        public void writeLong(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        private void writeUnsigned(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        /**
+         * Zapisuje ciąg znaków w UTF-8. Ciąg, który wystąpił już w drzewie, zapisywany jest jako odwołanie.
+         * @param value zapisywany ciąg znaków albo {@code null}
+         */
+        public void writeString(String value) {
+            if (value == null) {
+                writeUnsigned(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeUnsigned(index + 2L);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(1);
+            writeUnsigned(encoded.length);
+            ensure(encoded.length);
+            System.arraycopy(encoded, 0, bytes, size, encoded.length);
+            size += encoded.length;
+        }
+
+        /**
+         * Zapisuje węzeł zarejestrowanego typu razem z jego znacznikiem.
+         * @param node węzeł
+         * @throws IllegalArgumentException jeśli typ węzła nie jest zarejestrowany
+         */
+        public void writeNode(TerminalExpression<C, ?> node) {
+            if (node == null) throw new NullPointerException("Node cannot be null");
+            Registration<C, ?> registration = format.registration(node);
+            writeUnsigned(registration.tag());
+            registration.write(node, this);
+        }
+    }
+
+    /**
+     * Źródło danych węzłów drzewa.
+     * @param <C> typ kontekstu
+     */
+    public static final class Input<C extends Context> {
+        private final SyntaxTreeFormat<C> format;
+        private final byte[] bytes;
+        private final List<String> strings = new ArrayList<>();
+        private int position = 0;
+
+        private Input(SyntaxTreeFormat<C> format, byte[] bytes) {
+            this.format = format;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return odczytana wartość logiczna
+         */
+        public boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        /**
+         * @return odczytany bajt
+         */
+        public byte readByte() {
+            if (position >= bytes.length) throw corrupted("Truncated syntax tree");
+            return bytes[position++];
+        }
+
+        /**
+         * @return liczba zapisana przez {@link Output#writeInt(int)}
+         */
+        public int readInt() {
+            long value = readLong();
+            if ((int) value != value) throw corrupted("Integer out of range");
+            return (int) value;
+        }
+
+        /**
+         * @return liczba zapisana przez {@link Output#writeLong(long)}
+         */
+        public long readLong() {
+            long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readUnsigned() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw corrupted("Malformed number");
+        }
+
+        /**
+         * @return ciąg znaków zapisany przez {@link Output#writeString(String)} albo {@code null}
+         */
+        public String readString() {
+            long reference = readUnsigned();
+            if (reference == 0) return null;
+            if (reference > 1) {
+                if (reference - 2 >= strings.size()) throw corrupted("Invalid string reference");
+                return strings.get((int) (reference - 2));
+            }
+            long length = readUnsigned();
+            if (length > bytes.length - position) throw corrupted("Truncated syntax tree");
+            String value = new String(bytes, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            strings.add(value);
+            return value;
+        }
+
+        /**
+         * Odczytuje węzeł zapisany przez {@link Output#writeNode(TerminalExpression)}.
+         * Typ wyniku nie jest sprawdzany – odpowiada mu typ węzła zapisanego w tym miejscu.
+         * @param <R> typ wyniku interpretacji węzła
+         * @return odtworzony węzeł
+         */
+        @SuppressWarnings("unchecked")
+        public <R> TerminalExpression<C, R> readNode() {
+            long tag = readUnsigned();
+            Registration<C, ?> registration = tag > Integer.MAX_VALUE ? null : format.byTag.get((int) tag);
+            if (registration == null) throw corrupted("Unknown node tag " + tag);
+            TerminalExpression<C, ?> node = registration.nodeType().read(this);
+            if (node == null) throw new NullPointerException("Node type returned null node");
+            return (TerminalExpression<C, R>) node;
+        }
+
+        private static UncheckedIOException corrupted(String message) {
+            return new UncheckedIOException(new StaleSyntaxTreeException(message));
+        }
+    }
+
+    private record Registration<C extends Context, T extends TerminalExpression<C, ?>>(
+            int tag, Class<T> type, NodeType<C, T> nodeType) {
+
+        private void write(TerminalExpression<C, ?> node, Output<C> out) {
+            nodeType.write(type.cast(node), out);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package pl.koder95.interpreter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Optymalizator drzewa abstrakcyjnej syntaktyki, działający między budowaniem drzewa a jego interpretacją.
+ * Przegląda drzewo od liści do korzenia i do każdego węzła stosuje {@link RewriteRule reguły przepisywania}
+ * zarejestrowane przez język, dopóki któraś z nich zmienia węzeł. Jeśli zmieniły się poddrzewa węzła
+ * {@link RewritableExpression przepisywalnego}, jest on najpierw tworzony na nowo z przepisanymi poddrzewami.
+ * <p>
+ * Optymalizacja opłaca się, gdy to samo drzewo jest interpretowane wiele razy; zoptymalizowane drzewo trafia
+ * do {@link SyntaxTreeCache pamięci podręcznej} zamiast oryginalnego ({@link Interpreter#getOptimizer()}).
+ * Optymalizator nie przechowuje stanu poza regułami, więc jest bezpieczny wątkowo, jeśli reguły są bezpieczne.
+ * </p>
+ * @param <C> typ kontekstu wykorzystywanego podczas interpretowania wyrażeń
+ */
+public final class SyntaxTreeOptimizer<C extends Context> {
+
+    /**
+     * Domyślna maksymalna liczba przepisań jednego węzła.
+     */
+    public static final int DEFAULT_MAX_REWRITES = 16;
+
+    private final List<RewriteRule<C>> rules;
+    private final int maxRewrites;
+
+    /**
+     * Tworzy optymalizator stosujący podane reguły w podanej kolejności.
+     * @param rules reguły przepisywania
+     */
+    public SyntaxTreeOptimizer(List<? extends RewriteRule<C>> rules) {
+        this(rules, DEFAULT_MAX_REWRITES);
+    }
+
+    /**
+     * Tworzy optymalizator stosujący podane reguły w podanej kolejności.
+     * @param rules reguły przepisywania
+     * @param maxRewrites maksymalna liczba przepisań jednego węzła; chroni przed regułami, które wzajemnie
+     *                    odwracają swoje zmiany
+     * @throws IllegalArgumentException jeśli maksymalna liczba przepisań nie jest dodatnia
+     */
+    public SyntaxTreeOptimizer(List<? extends RewriteRule<C>> rules, int maxRewrites) {
+        if (maxRewrites <= 0) throw new IllegalArgumentException("Maximum number of rewrites must be positive");
+        this.rules = List.copyOf(rules);
+        this.maxRewrites = maxRewrites;
+    }
+
+    /**
+     * Optymalizuje drzewo. Węzły niezmienione przez reguły są współdzielone z drzewem wejściowym.
+     * @param ast drzewo abstrakcyjnej syntaktyki
+     * @param <R> typ wyniku interpretacji
+     * @return drzewo dające te same wyniki co {@code ast}; {@code ast}, jeśli żadna reguła nie miała zastosowania
+     */
+    @SuppressWarnings("unchecked")
+    public <R> TerminalExpression<C, R> optimize(TerminalExpression<C, R> ast) {
+        if (ast == null || rules.isEmpty()) return ast;
+        // Przegląd w porządku wstecznym bez rekursji, aby głębokie drzewa nie przepełniały stosu wywołań.
+        Deque<Frame<C>> pending = new ArrayDeque<>();
+        pending.push(new Frame<>(ast));
+        TerminalExpression<C, ?> result = null;
+        while (true) {
+            Frame<C> frame = pending.peek();
+            if (frame.next < frame.children.size()) {
+                TerminalExpression<C, ?> child = frame.children.get(frame.next++);
+                if (child == null) {
+                    frame.optimized.add(null);
+                } else {
+                    pending.push(new Frame<>(child));
+                }
+                continue;
+            }
+            pending.pop();
+            TerminalExpression<C, ?> node = rewrite(frame.rebuild());
+            if (pending.isEmpty()) {
+                result = node;
+                break;
+            }
+            pending.peek().optimized.add(node);
+        }
+        return (TerminalExpression<C, R>) result;
+    }
+
+    private TerminalExpression<C, ?> rewrite(TerminalExpression<C, ?> node) {
+        for (int rewrites = 0; rewrites < maxRewrites; ) {
+            TerminalExpression<C, ?> before = node;
+            for (RewriteRule<C> rule : rules) {
+                TerminalExpression<C, ?> rewritten = rule.rewrite(node);
+                if (rewritten == null) throw new NullPointerException("Rewrite rule returned null");
+                if (rewritten != node) {
+                    node = rewritten;
+                    if (++rewrites == maxRewrites) break;
+                }
+            }
+            if (node == before) break;
+        }
+        return node;
+    }
+
+    /**
+     * Węzeł oczekujący na optymalizację swoich poddrzew.
+     */
+    private static final class Frame<C extends Context> {
+        private final TerminalExpression<C, ?> node;
+        private final List<? extends TerminalExpression<C, ?>> children;
+        private final List<TerminalExpression<C, ?>> optimized;
+        private int next = 0;
+
+        private Frame(TerminalExpression<C, ?> node) {
+            this.node = node;
+            this.children = node instanceof RewritableExpression<C, ?> ? node.children() : List.of();
+            this.optimized = new ArrayList<>(children.size());
+        }
+
+        private TerminalExpression<C, ?> rebuild() {
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i) != optimized.get(i)) {
+                    return ((RewritableExpression<C, ?>) node).withChildren(optimized);
+                }
+            }
+            return node;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package pl.koder95.interpreter;
 
+import java.util.List;
+
 /**
  * Wyrażenie terminalne to takie, które można zinterpretować, dlatego interfejs dostarcza
  * metodę zwracającą obiekt żądanego typu uzyskany w wyniku interpretacji.
@@ -15,4 +17,13 @@ public non-sealed interface TerminalExpression<C extends Context, R> extends Exp
      * @throws SyntaxException błąd składniowy wewnątrz wyrażenia
      */
     R interpret(C context);
+
+    /**
+     * Zwraca wyrażenia terminalne, z których składa się to wyrażenie, czyli jego bezpośrednie poddrzewa.
+     * Wykorzystywane do przeglądania drzewa abstrakcyjnej syntaktyki, np. do zliczania jego węzłów.
+     * @return lista bezpośrednich poddrzew; domyślnie pusta, co oznacza liść drzewa
+     */
+    default List<? extends TerminalExpression<C, ?>> children() {
+        return List.of();
+    }
 }
@@ -0,0 +1,46 @@
+package pl.koder95.interpreter;
+
+/**
+ * Zmiana kodu źródłowego: zastąpienie {@code removedLength} znaków, począwszy od {@code offset},
+ * tekstem {@code insertedText}. Wstawienie ma zerową długość usuniętego fragmentu, a usunięcie – pusty tekst.
+ * @param offset przesunięcie pierwszego zmienionego znaku w źródle sprzed zmiany
+ * @param removedLength liczba usuniętych znaków
+ * @param insertedText wstawiony tekst
+ * @see Parser#rebuildAbstractSyntaxTree(TerminalExpression, TextEdit, String)
+ */
+public record TextEdit(int offset, int removedLength, String insertedText) {
+
+    /**
+     * @throws IllegalArgumentException jeśli przesunięcie lub długość są ujemne
+     */
+    public TextEdit {
+        if (offset < 0) throw new IllegalArgumentException("Offset cannot be negative");
+        if (removedLength < 0) throw new IllegalArgumentException("Removed length cannot be negative");
+        if (insertedText == null) throw new NullPointerException("Inserted text cannot be null");
+    }
+
+    /**
+     * @return przesunięcie za ostatnim usuniętym znakiem w źródle sprzed zmiany
+     */
+    public int end() {
+        return offset + removedLength;
+    }
+
+    /**
+     * @return zmiana długości źródła po wprowadzeniu zmiany
+     */
+    public int delta() {
+        return insertedText.length() - removedLength;
+    }
+
+    /**
+     * Wprowadza zmianę do kodu źródłowego.
+     * @param source kod źródłowy sprzed zmiany
+     * @return kod źródłowy po zmianie
+     * @throws IndexOutOfBoundsException jeśli zmieniany fragment wykracza poza kod źródłowy
+     */
+    public String apply(String source) {
+        if (end() > source.length()) throw new IndexOutOfBoundsException("Edit exceeds source length: " + end());
+        return source.substring(0, offset) + insertedText + source.substring(end());
+    }
+}
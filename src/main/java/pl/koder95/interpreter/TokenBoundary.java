@@ -0,0 +1,32 @@
+package pl.koder95.interpreter;
+
+/**
+ * Wskazuje w tekście bezpieczne miejsca podziału, czyli pozycje, od których tokenizacja daje te same tokeny co
+ * tokenizacja całego tekstu. Dla języków, w których tokeny nie przekraczają końca wiersza, są to pozycje
+ * za znakiem {@code '\n'} ({@link #after(char)}). Wykorzystywane przez {@link ParallelTokenizer}.
+ */
+@FunctionalInterface
+public interface TokenBoundary {
+
+    /**
+     * Znajduje najbliższe bezpieczne miejsce podziału, nie wcześniejsze niż {@code from}.
+     * @param source tekst
+     * @param from pozycja, od której szukane jest miejsce podziału ({@code 0 < from < source.length()})
+     * @return pozycja miejsca podziału ({@code >= from}) albo {@code -1}, jeśli do końca tekstu nie ma takiego miejsca
+     */
+    int next(CharSequence source, int from);
+
+    /**
+     * Tworzy granicę wskazującą pozycje bezpośrednio za znakiem ogranicznika, np. za końcem wiersza.
+     * @param delimiter znak ogranicznika, którego nie może zawierać żaden token poza ostatnim znakiem
+     * @return granica tokenów
+     */
+    static TokenBoundary after(char delimiter) {
+        return (source, from) -> {
+            for (int i = from - 1, length = source.length(); i < length; i++) {
+                if (source.charAt(i) == delimiter) return i + 1;
+            }
+            return -1;
+        };
+    }
+}
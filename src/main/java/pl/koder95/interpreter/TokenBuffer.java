@@ -0,0 +1,155 @@
+package pl.koder95.interpreter;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Bufor tokenów oparty na tablicy, przeznaczony do użycia przez jeden wątek.
+ * Jest domyślną kolekcją tworzoną przez {@link Tokenizer#enqueue()}.
+ * <p>
+ * Pobranie tokenu ({@link #poll()}) przesuwa jedynie kursor, więc tokeny pozostają w buforze i są dostępne według
+ * indeksu ({@link #get(int)}), a parser może podglądać dowolnie daleko ({@link #peek(int)}) lub wrócić do wcześniejszej
+ * pozycji ({@link #seek(int)}). Dodanie i pobranie tokenu nie wymaga blokad ani tworzenia węzłów listy.
+ * Metody odziedziczone po {@link java.util.Queue} ({@link #size()}, {@link #iterator()} itp.) dotyczą tylko tokenów
+ * od kursora do końca bufora.
+ * </p>
+ * Do przekazywania tokenów między wątkami należy użyć kolejki blokującej, np.
+ * {@code tokenizer.enqueue(new LinkedBlockingQueue<>())}.
+ */
+public class TokenBuffer extends AbstractQueue<NonTerminalExpression<?>> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private NonTerminalExpression<?>[] tokens;
+    private int count = 0;
+    private int position = 0;
+    private int modifications = 0;
+
+    /**
+     * Tworzy pusty bufor o domyślnej pojemności.
+     */
+    public TokenBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Tworzy pusty bufor o podanej początkowej pojemności.
+     * @param capacity początkowa pojemność
+     * @throws IllegalArgumentException jeśli pojemność jest ujemna
+     */
+    public TokenBuffer(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity cannot be negative");
+        this.tokens = new NonTerminalExpression<?>[capacity];
+    }
+
+    /**
+     * @return liczba wszystkich tokenów w buforze, łącznie z już pobranymi
+     */
+    public int length() {
+        return count;
+    }
+
+    /**
+     * @return indeks tokenu, który zostanie zwrócony przez następne wywołanie {@link #poll()}
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * Ustawia kursor na podanym indeksie, np. aby ponownie przeanalizować tokeny po nieudanej próbie dopasowania.
+     * @param position nowy indeks kursora
+     * @throws IndexOutOfBoundsException jeśli indeks wykracza poza bufor
+     */
+    public void seek(int position) {
+        this.position = Objects.checkIndex(position, count + 1);
+    }
+
+    /**
+     * Zwraca token o podanym indeksie, niezależnie od położenia kursora.
+     * @param index indeks tokenu
+     * @return token
+     * @throws IndexOutOfBoundsException jeśli indeks wykracza poza bufor
+     */
+    public NonTerminalExpression<?> get(int index) {
+        return tokens[Objects.checkIndex(index, count)];
+    }
+
+    /**
+     * Zwraca token oddalony o podaną liczbę pozycji od kursora, nie przesuwając go.
+     * @param ahead odległość od kursora; {@code 0} oznacza token zwracany przez {@link #peek()}
+     * @return token albo {@code null}, jeśli bufor kończy się wcześniej
+     */
+    public NonTerminalExpression<?> peek(int ahead) {
+        int index = position + ahead;
+        return index >= 0 && index < count ? tokens[index] : null;
+    }
+
+    @Override
+    public boolean offer(NonTerminalExpression<?> token) {
+        if (token == null) throw new NullPointerException("Token cannot be null");
+        if (count == tokens.length) tokens = Arrays.copyOf(tokens, Math.max(DEFAULT_CAPACITY, count + (count >> 1)));
+        tokens[count++] = token;
+        modifications++;
+        return true;
+    }
+
+    @Override
+    public NonTerminalExpression<?> poll() {
+        return position < count ? tokens[position++] : null;
+    }
+
+    @Override
+    public NonTerminalExpression<?> peek() {
+        return position < count ? tokens[position] : null;
+    }
+
+    @Override
+    public int size() {
+        return count - position;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return position >= count;
+    }
+
+    /**
+     * Usuwa wszystkie tokeny i ustawia kursor na początku, zachowując tablicę do ponownego użycia.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(tokens, 0, count, null);
+        count = 0;
+        position = 0;
+        modifications++;
+    }
+
+    /**
+     * Iterator przegląda tokeny od kursora do końca bufora. Usuwanie tokenów przez iterator nie jest obsługiwane.
+     */
+    @Override
+    public Iterator<NonTerminalExpression<?>> iterator() {
+        return new Iterator<>() {
+            private int next = position;
+            private final int expectedModifications = modifications;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public NonTerminalExpression<?> next() {
+                if (modifications != expectedModifications) throw new ConcurrentModificationException();
+                if (next >= count) throw new NoSuchElementException();
+                return tokens[next++];
+            }
+        };
+    }
+}
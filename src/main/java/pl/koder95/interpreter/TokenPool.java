@@ -0,0 +1,200 @@
+package pl.koder95.interpreter;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Ograniczona pula współdzielonych tokenów (wzorzec pyłek), w której kluczem jest treść tokenu.
+ * Tokenizer, który z niej korzysta, zamiast tworzyć nowy token dla każdego wystąpienia tego samego słowa kluczowego
+ * lub identyfikatora, otrzymuje wcześniej utworzoną instancję, co zmniejsza liczbę alokacji i obciążenie GC.
+ * Wyszukiwanie w puli nie tworzy ciągu znaków – nowy ciąg powstaje tylko wtedy, gdy tokenu nie ma w puli.
+ * <p>
+ * Pula ma stałą pojemność i jest dwudrożną pamięcią asocjacyjną: każdy ciąg znaków może zająć jedno z dwóch miejsc
+ * wyznaczonych przez jego skrót, a o tym, który token zostaje usunięty po zapełnieniu obu miejsc, decyduje
+ * {@link Eviction strategia usuwania}. Ciągi dłuższe niż {@link #getMaxLength() maksymalna długość} nie są
+ * przechowywane. Pula jest bezpieczna wątkowo i nie używa blokad; przy jednoczesnym zapisie ten sam token może zostać
+ * utworzony więcej niż raz, ale zawsze zwracany jest token o poprawnej treści.
+ * </p>
+ * Przechowywane tokeny muszą być niezmienne, a ich {@link NonTerminalExpression#asString()} musi zwracać treść,
+ * z której zostały utworzone.
+ * @param <T> typ tokenów
+ */
+public class TokenPool<T extends NonTerminalExpression<?>> {
+
+    /**
+     * Domyślna maksymalna długość ciągu znaków przechowywanego w puli.
+     */
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    /**
+     * Strategia usuwania tokenów, gdy oba miejsca przeznaczone dla danego ciągu znaków są zajęte.
+     */
+    public enum Eviction {
+        /**
+         * Nowy token zastępuje dawniej użyty (przybliżenie LRU); pula szybko dostosowuje się do zmiany słownictwa.
+         */
+        LEAST_RECENTLY_USED,
+        /**
+         * Tokeny raz umieszczone w puli pozostają w niej; nowe ciągi trafiają do puli tylko na wolne miejsca.
+         * Chroni przed wypieraniem słów kluczowych przez wiele jednorazowych identyfikatorów.
+         */
+        RETAIN_EXISTING
+    }
+
+    private final AtomicReferenceArray<Entry<T>> slots;
+    private final int mask;
+    private final int maxLength;
+    private final Eviction eviction;
+    private final Function<String, ? extends T> factory;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Tworzy pulę o podanej pojemności, z domyślną maksymalną długością i strategią
+     * {@link Eviction#LEAST_RECENTLY_USED}.
+     * @param capacity maksymalna liczba tokenów (zaokrąglana w górę do potęgi dwójki)
+     * @param factory funkcja tworząca token z jego treści
+     */
+    public TokenPool(int capacity, Function<String, ? extends T> factory) {
+        this(capacity, DEFAULT_MAX_LENGTH, Eviction.LEAST_RECENTLY_USED, factory);
+    }
+
+    /**
+     * Tworzy pulę.
+     * @param capacity maksymalna liczba tokenów (zaokrąglana w górę do potęgi dwójki, co najmniej 2)
+     * @param maxLength maksymalna długość ciągu znaków przechowywanego w puli
+     * @param eviction strategia usuwania tokenów
+     * @param factory funkcja tworząca token z jego treści
+     * @throws IllegalArgumentException jeśli pojemność lub maksymalna długość nie są dodatnie
+     */
+    public TokenPool(int capacity, int maxLength, Eviction eviction, Function<String, ? extends T> factory) {
+        if (capacity <= 0 || capacity > 1 << 30) throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        if (maxLength <= 0) throw new IllegalArgumentException("Maximum length must be positive");
+        if (eviction == null) throw new NullPointerException("Eviction cannot be null");
+        if (factory == null) throw new NullPointerException("Factory cannot be null");
+        int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 2;
+        this.maxLength = maxLength;
+        this.eviction = eviction;
+        this.factory = factory;
+    }
+
+    /**
+     * @return maksymalna długość ciągu znaków przechowywanego w puli
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return liczba wyszukiwań, które zwróciły token z puli
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return liczba wyszukiwań, które wymagały utworzenia nowego tokenu
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Zwraca token o podanej treści z puli albo tworzy go i umieszcza w puli.
+     * @param content treść tokenu
+     * @return token o podanej treści
+     */
+    public T intern(CharSequence content) {
+        int length = content.length();
+        if (length > maxLength) return create(content.toString());
+        int hash = 0;
+        for (int i = 0; i < length; i++) hash = 31 * hash + content.charAt(i);
+        int index = spread(hash) & mask;
+        for (int way = 0; way < 2; way++) {
+            Entry<T> entry = slots.get(index + way);
+            if (entry != null && entry.hash == hash && entry.content.contentEquals(content)) {
+                return hit(index, way, entry);
+            }
+        }
+        return miss(index, hash, content.toString());
+    }
+
+    /**
+     * Zwraca token o treści będącej fragmentem tablicy znaków z puli albo tworzy go i umieszcza w puli.
+     * @param chars tablica znaków
+     * @param offset pozycja pierwszego znaku treści
+     * @param length długość treści
+     * @return token o podanej treści
+     */
+    public T intern(char[] chars, int offset, int length) {
+        if (length > maxLength) return create(new String(chars, offset, length));
+        int hash = 0;
+        for (int i = 0; i < length; i++) hash = 31 * hash + chars[offset + i];
+        int index = spread(hash) & mask;
+        for (int way = 0; way < 2; way++) {
+            Entry<T> entry = slots.get(index + way);
+            if (entry != null && entry.hash == hash && equal(entry.content, chars, offset, length)) {
+                return hit(index, way, entry);
+            }
+        }
+        return miss(index, hash, new String(chars, offset, length));
+    }
+
+    /**
+     * Usuwa wszystkie tokeny z puli i zeruje statystyki.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) slots.set(i, null);
+        hits.reset();
+        misses.reset();
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) << 1;
+    }
+
+    private static boolean equal(String content, char[] chars, int offset, int length) {
+        if (content.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (content.charAt(i) != chars[offset + i]) return false;
+        }
+        return true;
+    }
+
+    private T hit(int index, int way, Entry<T> entry) {
+        hits.increment();
+        if (way == 1 && eviction == Eviction.LEAST_RECENTLY_USED) {
+            // Ostatnio użyty token przechodzi na pierwsze miejsce, aby przy następnym chybieniu został zachowany.
+            Entry<T> first = slots.get(index);
+            if (slots.compareAndSet(index, first, entry)) slots.compareAndSet(index + 1, entry, first);
+        }
+        return entry.token;
+    }
+
+    private T miss(int index, int hash, String content) {
+        misses.increment();
+        T token = create(content);
+        Entry<T> first = slots.get(index);
+        if (first != null && slots.get(index + 1) != null && eviction == Eviction.RETAIN_EXISTING) return token;
+        Entry<T> entry = new Entry<>(hash, content, token);
+        if (first == null && slots.compareAndSet(index, null, entry)) return token;
+        if (slots.compareAndSet(index + 1, null, entry)) return token;
+        if (eviction == Eviction.LEAST_RECENTLY_USED) {
+            slots.set(index + 1, slots.get(index));
+            slots.set(index, entry);
+        }
+        return token;
+    }
+
+    private T create(String content) {
+        T token = factory.apply(content);
+        if (token == null) throw new NullPointerException("Factory returned null token");
+        return token;
+    }
+
+    private record Entry<T>(int hash, String content, T token) {
+    }
+}
@@ -0,0 +1,161 @@
+package pl.koder95.interpreter;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Kolejka tokenów pobieranych leniwie z {@link Tokenizer tokenizera}.
+ * Token jest tworzony dopiero wtedy, gdy parser o niego poprosi, dlatego tokenizacja i budowanie drzewa abstrakcyjnej
+ * syntaktyki przeplatają się, a w pamięci przechowywane są tylko tokeny, które zostały podejrzane
+ * (np. przez {@link #peek()}), ale jeszcze nie pobrane z kolejki.
+ * <p>
+ * Metody wymagające znajomości całej zawartości kolejki ({@link #size()}, {@link #contains(Object)} itp.) wczytują
+ * wszystkie pozostałe tokeny do bufora, co niweluje zysk pamięciowy, ale zachowuje zgodność z interfejsem
+ * {@link java.util.Queue}.
+ * </p>
+ * Instancja nie jest bezpieczna wątkowo.
+ */
+public class TokenStream extends AbstractQueue<NonTerminalExpression<?>> {
+
+    private final Tokenizer tokenizer;
+    private final boolean timed;
+    private final ArrayDeque<NonTerminalExpression<?>> lookahead = new ArrayDeque<>();
+    private long tokenCount = 0;
+    private long tokenizingNanos = 0;
+
+    /**
+     * Tworzy nową kolejkę pobierającą tokeny z podanego tokenizera.
+     * @param tokenizer tokenizer z ustawionym źródłem znaków
+     */
+    public TokenStream(Tokenizer tokenizer) {
+        this(tokenizer, false);
+    }
+
+    /**
+     * Tworzy nową kolejkę pobierającą tokeny z podanego tokenizera.
+     * @param tokenizer tokenizer z ustawionym źródłem znaków
+     * @param timed {@code true}, jeśli czas spędzony w tokenizerze ma być mierzony ({@link #getTokenizingNanos()})
+     */
+    public TokenStream(Tokenizer tokenizer, boolean timed) {
+        if (tokenizer == null) throw new NullPointerException("Tokenizer cannot be null");
+        this.tokenizer = tokenizer;
+        this.timed = timed;
+    }
+
+    /**
+     * @return liczba tokenów pobranych dotąd z tokenizera
+     */
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * @return łączny czas (w nanosekundach) spędzony w metodach tokenizera albo {@code 0}, jeśli czas nie był mierzony
+     */
+    public long getTokenizingNanos() {
+        return tokenizingNanos;
+    }
+
+    /**
+     * Sprawdza, czy tokenizer może dostarczyć kolejny token.
+     */
+    private boolean available() {
+        if (!timed) return tokenizer.hasNext();
+        long start = System.nanoTime();
+        try {
+            return tokenizer.hasNext();
+        } finally {
+            tokenizingNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Pobiera kolejny token z tokenizera.
+     */
+    private NonTerminalExpression<?> pull() {
+        tokenCount++;
+        if (!timed) return tokenizer.next();
+        long start = System.nanoTime();
+        try {
+            return tokenizer.next();
+        } finally {
+            tokenizingNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Pobiera następny token z tokenizera do bufora podglądu.
+     * @return {@code true}, jeśli udało się pobrać token
+     */
+    private boolean fill() {
+        if (!available()) return false;
+        lookahead.add(pull());
+        return true;
+    }
+
+    /**
+     * Wczytuje wszystkie pozostałe tokeny do bufora.
+     */
+    private void fillAll() {
+        while (fill()) ;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return lookahead.isEmpty() && !available();
+    }
+
+    @Override
+    public int size() {
+        fillAll();
+        return lookahead.size();
+    }
+
+    /**
+     * Dodawanie tokenów do strumienia nie jest obsługiwane, ponieważ ich źródłem jest wyłącznie tokenizer.
+     * @throws UnsupportedOperationException zawsze
+     */
+    @Override
+    public boolean offer(NonTerminalExpression<?> token) {
+        throw new UnsupportedOperationException("Tokens can only be supplied by the tokenizer");
+    }
+
+    @Override
+    public NonTerminalExpression<?> poll() {
+        if (lookahead.isEmpty() && !fill()) return null;
+        return lookahead.poll();
+    }
+
+    @Override
+    public NonTerminalExpression<?> peek() {
+        if (lookahead.isEmpty() && !fill()) return null;
+        return lookahead.peek();
+    }
+
+    @Override
+    public Iterator<NonTerminalExpression<?>> iterator() {
+        return new Iterator<>() {
+            private final Iterator<NonTerminalExpression<?>> buffered = lookahead.iterator();
+            private boolean exhausted = false;
+
+            @Override
+            public boolean hasNext() {
+                if (!exhausted && buffered.hasNext()) return true;
+                exhausted = true;
+                return available();
+            }
+
+            @Override
+            public NonTerminalExpression<?> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                if (!exhausted) return buffered.next();
+                // Token pobrany podczas iteracji trafia do bufora, aby kolejne wywołanie poll() go zwróciło.
+                NonTerminalExpression<?> token = pull();
+                lookahead.add(token);
+                return token;
+            }
+        };
+    }
+}
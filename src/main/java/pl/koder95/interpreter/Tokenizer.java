@@ -1,11 +1,12 @@
 package pl.koder95.interpreter;
 
 import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Definiuje sposób podziału danych wejściowych na tokeny.
  * Korzysta ze {@link Readable źródła znaków}, aby dostarczać ciąg odczytywanych znaków.
+ * Tokenizer przechowuje stan odczytu źródła, dlatego jedna instancja nie może być używana jednocześnie przez kilka
+ * wątków (zob. {@link Parser#newTokenizer()}).
  */
 public abstract class Tokenizer {
 
@@ -35,7 +36,9 @@ public abstract class Tokenizer {
     }
 
     /**
-     * Umieszcza w kolejce wszystkie możliwe do odczytania tokeny.
+     * Umieszcza w kolejce wszystkie możliwe do odczytania tokeny. Jeśli tokeny mają być pobierane przez inny wątek
+     * (potokowo, jeszcze w trakcie tokenizacji), należy podać kolejkę bezpieczną wątkowo, np.
+     * {@link java.util.concurrent.LinkedBlockingQueue}.
      * @param queue kolejka wyrażeń nieterminalnych (tokenów)
      * @return {@code queue}
      * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
@@ -47,11 +50,35 @@ public abstract class Tokenizer {
 
     /**
      * Tworzy nową kolejkę wyrażeń nieterminalnych (tokenów) i umieszcza w niej odczytane tokeny z wejścia.
+     * Kolejka jest {@link TokenBuffer buforem tokenów} przeznaczonym dla jednego wątku.
      * @return nowa instancja kolejki {@link NonTerminalExpression wyrażeń nieterminalnych (tokenów)}
      * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     * @see #buffer()
      */
     public Queue<NonTerminalExpression<?>> enqueue() {
-        return enqueue(new LinkedBlockingQueue<>());
+        return buffer();
+    }
+
+    /**
+     * Tworzy nowy {@link TokenBuffer bufor tokenów} i umieszcza w nim odczytane tokeny z wejścia.
+     * @return bufor z tokenami dostępnymi według indeksu
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych
+     */
+    public TokenBuffer buffer() {
+        TokenBuffer buffer = new TokenBuffer();
+        while (hasNext()) buffer.add(next());
+        return buffer;
+    }
+
+    /**
+     * Tworzy kolejkę, która pobiera tokeny z wejścia dopiero w momencie ich odczytu.
+     * W przeciwieństwie do {@link #enqueue()} nie wczytuje całego źródła znaków przed rozpoczęciem parsowania,
+     * dzięki czemu zużycie pamięci nie zależy od rozmiaru danych wejściowych.
+     * @return nowa instancja {@link TokenStream strumienia tokenów}
+     * @throws SyntaxException w przypadku błędów składniowych w dostarczonych danych (podczas odczytu tokenów)
+     */
+    public TokenStream stream() {
+        return new TokenStream(this);
     }
 
     /**
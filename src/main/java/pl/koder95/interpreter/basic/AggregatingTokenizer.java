@@ -0,0 +1,183 @@
+package pl.koder95.interpreter.basic;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import pl.koder95.interpreter.Expression;
+import pl.koder95.interpreter.NonTerminalExpression;
+import pl.koder95.interpreter.Tokenizer;
+
+/**
+ * Tokenizer łączący {@link BasicUnicodeToken podstawowe tokeny} w tokeny złożone według
+ * {@link AggregationTable tabeli agregacji}, np. cyfry, kropkę i cyfry w liczbę dziesiętną.
+ * Tokeny, od których nie zaczyna się żadne dopasowanie, przekazywane są bez zmian.
+ * <p>
+ * Tokeny przetwarzane są metodą najdłuższego dopasowania: każdy token zmienia stan automatu jednym odczytem z tabeli
+ * przejść. Tokeny odczytane za najdłuższym dopasowaniem (np. kropka, po której nie ma cyfr) są przetwarzane ponownie
+ * od następnej pozycji, ale tokenizer zapamiętuje pary (stan, pozycja), od których nie da się osiągnąć żadnego
+ * dopasowania, i nie sprawdza ich drugi raz (tablicowanie Repsa). Każda pozycja jest więc odwiedzana co najwyżej raz
+ * w każdym stanie automatu, a całkowity czas jest liniowy względem liczby tokenów.
+ * </p>
+ */
+public class AggregatingTokenizer extends Tokenizer {
+
+    private final AggregationTable table;
+    private final Tokenizer tokenizer;
+    private NonTerminalExpression<?>[] pending = new NonTerminalExpression<?>[16];
+    // Symbol każdego oczekującego tokenu (obok pending), aby nie wyznaczać go ponownie przy kolejnych dopasowaniach.
+    private int[] symbols = new int[16];
+    // Zbiory stanów bez osiągalnego dopasowania dla każdego oczekującego tokenu (obok pending), po words słów.
+    private long[] dead;
+    private final int words;
+    private int[] trail = new int[16];
+    private int head = 0;
+    private int count = 0;
+
+    /**
+     * Tworzy tokenizer łączący tokeny {@link BasicUnicodeTokenizer}.
+     * @param table tabela agregacji
+     */
+    public AggregatingTokenizer(AggregationTable table) {
+        this(table, new BasicUnicodeTokenizer());
+    }
+
+    /**
+     * Tworzy tokenizer łączący tokeny innego tokenizera.
+     * @param table tabela agregacji
+     * @param tokenizer tokenizer dostarczający podstawowe tokeny
+     */
+    public AggregatingTokenizer(AggregationTable table, Tokenizer tokenizer) {
+        if (table == null) throw new NullPointerException("Table cannot be null");
+        if (tokenizer == null) throw new NullPointerException("Tokenizer cannot be null");
+        this.table = table;
+        this.tokenizer = tokenizer;
+        this.words = (table.getStateCount() + 63) >>> 6;
+        this.dead = new long[pending.length * words];
+    }
+
+    @Override
+    public void setSource(Readable source) {
+        super.setSource(source);
+        tokenizer.setSource(source);
+        Arrays.fill(pending, null);
+        Arrays.fill(dead, 0);
+        head = 0;
+        count = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return count > 0 || tokenizer.hasNext();
+    }
+
+    @Override
+    public NonTerminalExpression<?> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        int state = 0;
+        int matched = 0;
+        int rule = -1;
+        int i = 0;
+        for (; ; i++) {
+            if (i == trail.length) trail = Arrays.copyOf(trail, i * 2);
+            trail[i] = state;
+            // Z tego stanu na tej pozycji żadne dopasowanie nie jest osiągalne, co ustalił jeden z wcześniejszych
+            // przebiegów.
+            if (peek(i) == null || i > 0 && isDead(i, state)) break;
+            state = table.next(state, symbols[head + i]);
+            if (state < 0) break;
+            int accepted = table.accepting(state);
+            if (accepted >= 0) {
+                matched = i + 1;
+                rule = accepted;
+            }
+        }
+        // Od stanów odwiedzonych za najdłuższym dopasowaniem nie da się osiągnąć kolejnego dopasowania.
+        for (int j = Math.max(matched, 1); j <= i && j < count; j++) markDead(j, trail[j]);
+        if (rule < 0) return poll();
+        return aggregate(rule, matched);
+    }
+
+    private boolean isDead(int index, int state) {
+        return (dead[(head + index) * words + (state >>> 6)] & 1L << state) != 0;
+    }
+
+    private void markDead(int index, int state) {
+        dead[(head + index) * words + (state >>> 6)] |= 1L << state;
+    }
+
+    /**
+     * Zwraca token oddalony o podaną liczbę pozycji od pierwszego nieprzetworzonego tokenu, wczytując brakujące.
+     */
+    private NonTerminalExpression<?> peek(int index) {
+        while (count <= index) {
+            if (!tokenizer.hasNext()) return null;
+            if (head + count == pending.length) {
+                if (head > 0) {
+                    System.arraycopy(pending, head, pending, 0, count);
+                    Arrays.fill(pending, count, head + count, null);
+                    System.arraycopy(symbols, head, symbols, 0, count);
+                    System.arraycopy(dead, head * words, dead, 0, count * words);
+                    Arrays.fill(dead, count * words, (head + count) * words, 0);
+                    head = 0;
+                } else {
+                    pending = Arrays.copyOf(pending, pending.length * 2);
+                    symbols = Arrays.copyOf(symbols, pending.length);
+                    dead = Arrays.copyOf(dead, pending.length * words);
+                }
+            }
+            NonTerminalExpression<?> token = tokenizer.next();
+            pending[head + count] = token;
+            symbols[head + count] = table.symbol(token);
+            count++;
+        }
+        return pending[head + index];
+    }
+
+    private NonTerminalExpression<?> poll() {
+        NonTerminalExpression<?> token = pending[head];
+        pending[head] = null;
+        Arrays.fill(dead, head * words, (head + 1) * words, 0);
+        head = --count == 0 ? 0 : head + 1;
+        return token;
+    }
+
+    private NonTerminalExpression<?> aggregate(int rule, int length) {
+        Aggregator aggregator = table.aggregator(rule);
+        NonTerminalExpression<?> result;
+        if (aggregator == null) {
+            result = compound(table.kind(rule), length);
+            for (int i = 0; i < length; i++) poll();
+        } else {
+            Expression aggregated = poll();
+            for (int i = 1; i < length; i++) aggregated = aggregator.aggregate(aggregated, poll());
+            if (!(aggregated instanceof NonTerminalExpression<?> token)) {
+                throw new IllegalStateException("Aggregator of rule " + table.kind(rule)
+                        + " returned a terminal expression");
+            }
+            result = token;
+        }
+        return result;
+    }
+
+    /**
+     * Tworzy token złożony z pierwszych {@code length} tokenów. Tokeny {@link BasicUnicodeTokenizer} leżą obok
+     * siebie w jednym buforze, więc token złożony wskazuje fragment tego bufora.
+     */
+    private CompoundToken compound(String kind, int length) {
+        BasicUnicodeToken first = (BasicUnicodeToken) pending[head];
+        BasicUnicodeToken last = (BasicUnicodeToken) pending[head + length - 1];
+        char[] source = first.source();
+        if (source != null && source == last.source()
+                && last.sourceEnd() - first.sourceStart() == totalLength(length)) {
+            return new CompoundToken(kind, source, first.base(), first.sourceStart(), last.sourceEnd());
+        }
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < length; i++) value.append(pending[head + i].asString());
+        return new CompoundToken(kind, value.toString());
+    }
+
+    private int totalLength(int length) {
+        int total = 0;
+        for (int i = 0; i < length; i++) total += ((BasicUnicodeToken) pending[head + i]).length();
+        return total;
+    }
+}
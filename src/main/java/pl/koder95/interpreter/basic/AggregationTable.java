@@ -0,0 +1,242 @@
+package pl.koder95.interpreter.basic;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import pl.koder95.interpreter.NonTerminalExpression;
+
+/**
+ * Tabela przejść, według której {@link AggregatingTokenizer} łączy {@link BasicUnicodeToken podstawowe tokeny}
+ * w tokeny złożone. Każda reguła ma nazwę (rodzaj tokenu złożonego), {@link TokenPattern wzorzec} ciągu tokenów
+ * i opcjonalnie {@link Aggregator agregator}, który łączy dopasowane tokeny.
+ * <p>
+ * Wszystkie reguły kompilowane są do jednego automatu deterministycznego, którego przejścia zapisane są w tablicy
+ * indeksowanej stanem i symbolem tokenu (kategorią Unicode albo treścią występującą we wzorcach). Dzięki temu
+ * każdy token sprawdzany jest jednym odczytem z tablicy, niezależnie od liczby reguł. Wybierane jest najdłuższe
+ * dopasowanie, a przy dopasowaniach równej długości – reguła dodana wcześniej.
+ * </p>
+ * Tabela jest niezmienna i może być współdzielona przez wiele tokenizerów i wątków.
+ */
+public final class AggregationTable {
+
+    /**
+     * Liczba kategorii Unicode rozróżnianych przez tabelę ({@link Character#getType(int)} zwraca wartości mniejsze).
+     */
+    static final int CATEGORIES = 32;
+
+    private final String[] kinds;
+    private final Aggregator[] aggregators;
+    private final String[] literals;
+    private final int[][] literalsByCategory;
+    private final int symbols;
+    private final int[] transitions;
+    private final int[] accepting;
+
+    private AggregationTable(Builder builder) {
+        int rules = builder.kinds.size();
+        this.kinds = builder.kinds.toArray(new String[0]);
+        this.aggregators = builder.aggregators.toArray(new Aggregator[0]);
+
+        List<String> literals = new ArrayList<>();
+        for (TokenPattern pattern : builder.patterns) pattern.collectLiterals(literals);
+        this.literals = literals.toArray(new String[0]);
+        this.symbols = CATEGORIES + literals.size();
+        int[] literalCategories = new int[literals.size()];
+        List<List<Integer>> byCategory = new ArrayList<>();
+        for (int category = 0; category < CATEGORIES; category++) byCategory.add(new ArrayList<>());
+        for (int i = 0; i < literalCategories.length; i++) {
+            literalCategories[i] = new BasicUnicodeToken(literals.get(i)).getType();
+            byCategory.get(literalCategories[i]).add(CATEGORIES + i);
+        }
+        this.literalsByCategory = new int[CATEGORIES][];
+        for (int category = 0; category < CATEGORIES; category++) {
+            literalsByCategory[category] = byCategory.get(category).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // Automat niedeterministyczny: stan 0 prowadzi przejściami pustymi do początków wszystkich reguł.
+        TokenPattern.Automaton automaton = new TokenPattern.Automaton();
+        int start = automaton.newState();
+        List<int[]> accepts = new ArrayList<>();
+        for (int rule = 0; rule < rules; rule++) {
+            int ruleStart = automaton.newState();
+            automaton.epsilon(start, ruleStart);
+            accepts.add(new int[] {builder.patterns.get(rule).compile(automaton, ruleStart), rule});
+        }
+        int[] acceptRule = new int[automaton.size()];
+        Arrays.fill(acceptRule, -1);
+        for (int[] accept : accepts) acceptRule[accept[0]] = accept[1];
+
+        // Konstrukcja podzbiorów: każdy stan deterministyczny to zbiór stanów niedeterministycznych.
+        Map<BitSet, Integer> states = new HashMap<>();
+        List<BitSet> pending = new ArrayList<>();
+        BitSet initial = closure(automaton, single(start));
+        states.put(initial, 0);
+        pending.add(initial);
+        int[] table = new int[symbols * 16];
+        int[] accepting = new int[16];
+        for (int index = 0; index < pending.size(); index++) {
+            BitSet state = pending.get(index);
+            if ((index + 1) * symbols > table.length) table = Arrays.copyOf(table, table.length * 2);
+            if (index >= accepting.length) accepting = Arrays.copyOf(accepting, accepting.length * 2);
+            int rule = -1;
+            for (int s = state.nextSetBit(0); s >= 0; s = state.nextSetBit(s + 1)) {
+                if (acceptRule[s] >= 0 && (rule < 0 || acceptRule[s] < rule)) rule = acceptRule[s];
+            }
+            accepting[index] = rule;
+            for (int symbol = 0; symbol < symbols; symbol++) {
+                BitSet next = new BitSet();
+                for (int s = state.nextSetBit(0); s >= 0; s = state.nextSetBit(s + 1)) {
+                    TokenPattern.Single label = automaton.labels.get(s);
+                    if (label != null && matches(label, symbol, literalCategories)) {
+                        next.set(automaton.targets.get(s)[0]);
+                    }
+                }
+                if (next.isEmpty()) {
+                    table[index * symbols + symbol] = -1;
+                    continue;
+                }
+                next = closure(automaton, next);
+                Integer target = states.get(next);
+                if (target == null) {
+                    target = pending.size();
+                    states.put(next, target);
+                    pending.add(next);
+                }
+                table[index * symbols + symbol] = target;
+            }
+        }
+        if (accepting[0] >= 0) {
+            throw new IllegalArgumentException("Rule " + kinds[accepting[0]] + " matches an empty sequence");
+        }
+        this.transitions = Arrays.copyOf(table, pending.size() * symbols);
+        this.accepting = Arrays.copyOf(accepting, pending.size());
+    }
+
+    private boolean matches(TokenPattern.Single label, int symbol, int[] literalCategories) {
+        if (symbol < CATEGORIES) return label.literal == null && label.categories.get(symbol);
+        String literal = literals[symbol - CATEGORIES];
+        return label.matches(literalCategories[symbol - CATEGORIES], literal);
+    }
+
+    private static BitSet single(int state) {
+        BitSet set = new BitSet();
+        set.set(state);
+        return set;
+    }
+
+    private static BitSet closure(TokenPattern.Automaton automaton, BitSet states) {
+        BitSet closure = (BitSet) states.clone();
+        Deque<Integer> pending = new ArrayDeque<>();
+        for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) pending.push(s);
+        while (!pending.isEmpty()) {
+            for (int next : automaton.epsilons.get(pending.pop())) {
+                if (!closure.get(next)) {
+                    closure.set(next);
+                    pending.push(next);
+                }
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * @return nowy budowniczy tabeli
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return liczba stanów automatu
+     */
+    public int getStateCount() {
+        return accepting.length;
+    }
+
+    /**
+     * Wyznacza symbol tokenu: treść występującą we wzorcach albo kategorię Unicode.
+     * @return symbol albo {@code -1} dla tokenów, które nie są {@link BasicUnicodeToken podstawowe}
+     */
+    int symbol(NonTerminalExpression<?> token) {
+        if (!(token instanceof BasicUnicodeToken basic)) return -1;
+        int category = basic.getType();
+        for (int symbol : literalsByCategory[category]) {
+            if (basic.contentEquals(literals[symbol - CATEGORIES])) return symbol;
+        }
+        return category;
+    }
+
+    /**
+     * @return stan po przejściu ze stanu {@code state} symbolem {@code symbol} albo {@code -1}, jeśli przejścia nie ma
+     */
+    int next(int state, int symbol) {
+        return symbol < 0 ? -1 : transitions[state * symbols + symbol];
+    }
+
+    /**
+     * @return indeks reguły dopasowanej w stanie albo {@code -1}, jeśli stan nie kończy dopasowania
+     */
+    int accepting(int state) {
+        return accepting[state];
+    }
+
+    String kind(int rule) {
+        return kinds[rule];
+    }
+
+    Aggregator aggregator(int rule) {
+        return aggregators[rule];
+    }
+
+    /**
+     * Budowniczy {@link AggregationTable tabeli agregacji}.
+     */
+    public static final class Builder {
+        private final List<String> kinds = new ArrayList<>();
+        private final List<TokenPattern> patterns = new ArrayList<>();
+        private final List<Aggregator> aggregators = new ArrayList<>();
+
+        private Builder() {}
+
+        /**
+         * Dodaje regułę, która tworzy {@link CompoundToken} obejmujący dopasowane tokeny.
+         * @param kind rodzaj tworzonego tokenu
+         * @param pattern wzorzec ciągu tokenów
+         * @return ten budowniczy
+         */
+        public Builder rule(String kind, TokenPattern pattern) {
+            return rule(kind, pattern, null);
+        }
+
+        /**
+         * Dodaje regułę, która łączy dopasowane tokeny za pomocą agregatora: wynik agregacji pierwszego i drugiego
+         * tokenu agregowany jest z trzecim itd. Dopasowanie jednego tokenu zwracane jest bez zmian.
+         * @param kind rodzaj tworzonego tokenu
+         * @param pattern wzorzec ciągu tokenów
+         * @param aggregator agregator, którego wyniki muszą być wyrażeniami nieterminalnymi, albo {@code null},
+         *                   aby tworzyć {@link CompoundToken}
+         * @return ten budowniczy
+         */
+        public Builder rule(String kind, TokenPattern pattern, Aggregator aggregator) {
+            kinds.add(Objects.requireNonNull(kind, "Kind cannot be null"));
+            patterns.add(Objects.requireNonNull(pattern, "Pattern cannot be null"));
+            aggregators.add(aggregator);
+            return this;
+        }
+
+        /**
+         * Kompiluje reguły do tabeli przejść.
+         * @return tabela agregacji
+         * @throws IllegalArgumentException jeśli któraś reguła dopasowuje pusty ciąg tokenów
+         */
+        public AggregationTable build() {
+            return new AggregationTable(this);
+        }
+    }
+}
@@ -8,9 +8,19 @@ import pl.koder95.interpreter.NonTerminalExpression;
  * Klasa ta implementuje interfejs {@link pl.koder95.interpreter.NonTerminalExpression NonTerminalExpression} dla typu {@link String}.
  * Token jest uważany za "podstawowy", ponieważ zawiera znaki tylko jednej kategorii Unicode,
  * co odróżnia go od tokenów złożonych, które mogą zawierać znaki różnych kategorii.
+ * <p>
+ * Tokeny tworzone przez {@link BasicUnicodeTokenizer} przechowują jedynie położenie w buforze źródła, a ciąg znaków
+ * tworzony jest dopiero przy pierwszym odczycie wartości. Kategoria Unicode jest zapamiętywana w tokenie.
+ * Para surogatów traktowana jest jako jeden znak (punkt kodowy).
+ * </p>
  */
 public class BasicUnicodeToken implements NonTerminalExpression<String> {
-    private final String value;
+    private final char[] source;
+    private final int base;
+    private final int start;
+    private final int end;
+    private final int type;
+    private String value;
 
     /**
      * Tworzy nowy podstawowy token z podaną wartością.
@@ -26,21 +36,46 @@ public class BasicUnicodeToken implements NonTerminalExpression<String> {
             throw new IllegalArgumentException("Value cannot be empty");
         }
 
-        // Sprawdź, czy wszystkie znaki mają tę samą kategorię Unicode
-        int firstCharType = Character.getType(value.charAt(0));
-        for (int i = 1; i < value.length(); i++) {
-            if (Character.getType(value.charAt(i)) != firstCharType) {
+        // Sprawdź, czy wszystkie znaki (punkty kodowe) mają tę samą kategorię Unicode
+        int firstCharType = UnicodeCategories.of(value.codePointAt(0));
+        for (int i = Character.charCount(value.codePointAt(0)); i < value.length(); ) {
+            int codePoint = value.codePointAt(i);
+            int charType = UnicodeCategories.of(codePoint);
+            if (charType != firstCharType) {
                 throw new IllegalArgumentException(
                     "All characters in the value must be of the same Unicode category. " +
                     "Mismatch at position " + i + ": expected category " + firstCharType +
-                    ", but found " + Character.getType(value.charAt(i))
+                    ", but found " + charType
                 );
             }
+            i += Character.charCount(codePoint);
         }
 
+        this.source = null;
+        this.base = 0;
+        this.start = 0;
+        this.end = value.length();
+        this.type = firstCharType;
         this.value = value;
     }
 
+    /**
+     * Tworzy token wskazujący fragment bufora źródła, bez sprawdzania kategorii znaków.
+     *
+     * @param source bufor znaków źródła; nie może być później modyfikowany
+     * @param base pozycja w buforze, od której zaczyna się źródło
+     * @param start pozycja pierwszego znaku tokenu w buforze
+     * @param end pozycja za ostatnim znakiem tokenu w buforze
+     * @param type kategoria Unicode wszystkich znaków tokenu
+     */
+    BasicUnicodeToken(char[] source, int base, int start, int end, int type) {
+        this.source = source;
+        this.base = base;
+        this.start = start;
+        this.end = end;
+        this.type = type;
+    }
+
     /**
      * Zwraca wartość tokenu jako ciąg znaków.
      *
@@ -48,6 +83,11 @@ public class BasicUnicodeToken implements NonTerminalExpression<String> {
      */
     @Override
     public String getObject() {
+        String value = this.value;
+        if (value == null) {
+            value = new String(source, start, end - start);
+            this.value = value;
+        }
         return value;
     }
 
@@ -58,21 +98,78 @@ public class BasicUnicodeToken implements NonTerminalExpression<String> {
      */
     @Override
     public String asString() {
-        return value;
+        return getObject();
     }
 
     /**
-     * Zwraca kategorię Unicode dla pierwszego znaku w wartości tokenu.
+     * Zwraca kategorię Unicode znaków tokenu, zapamiętaną podczas jego tworzenia.
      * Kategoria Unicode jest określana za pomocą metody {@link Character#getType(int)}.
      *
      * @return kategoria Unicode jako wartość całkowita.
-     * @throws IllegalStateException jeśli wartość tokenu jest pusta.
      */
     public int getType() {
-        if (value.isEmpty()) {
-            throw new IllegalStateException("Value is empty, cannot determine type");
+        return type;
+    }
+
+    /**
+     * @return pozycja pierwszego znaku tokenu w źródle (dla tokenów utworzonych z ciągu znaków – {@code 0})
+     */
+    public int getStart() {
+        return start - base;
+    }
+
+    /**
+     * @return pozycja za ostatnim znakiem tokenu w źródle
+     */
+    public int getEnd() {
+        return end - base;
+    }
+
+    /**
+     * @return liczba znaków ({@code char}) tokenu
+     */
+    public int length() {
+        return end - start;
+    }
+
+    /**
+     * Porównuje treść tokenu z ciągiem znaków, nie tworząc ciągu znaków tokenu.
+     */
+    boolean contentEquals(String text) {
+        if (text.length() != end - start) return false;
+        if (value != null || source == null) return getObject().equals(text);
+        for (int i = 0; i < text.length(); i++) {
+            if (source[start + i] != text.charAt(i)) return false;
         }
-        return Character.getType(value.charAt(0));
+        return true;
+    }
+
+    /**
+     * @return bufor znaków źródła albo {@code null} dla tokenów utworzonych z ciągu znaków
+     */
+    char[] source() {
+        return source;
+    }
+
+    /**
+     * @return pozycja pierwszego znaku tokenu w buforze źródła
+     */
+    int sourceStart() {
+        return start;
+    }
+
+    /**
+     * @return pozycja za ostatnim znakiem tokenu w buforze źródła
+     */
+    int sourceEnd() {
+        return end;
+    }
+
+    /**
+     * @return pozycja w buforze, od której zaczyna się źródło
+     */
+    int base() {
+        return base;
     }
 
     /**
@@ -82,6 +179,6 @@ public class BasicUnicodeToken implements NonTerminalExpression<String> {
      */
     @Override
     public String toString() {
-        return "Token: " + value + ", Type: " + getType();
+        return "Token: " + getObject() + ", Type: " + type;
     }
-}
\ No newline at end of file
+}
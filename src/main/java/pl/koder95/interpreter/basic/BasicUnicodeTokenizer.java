@@ -0,0 +1,104 @@
+package pl.koder95.interpreter.basic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import pl.koder95.interpreter.Tokenizer;
+
+/**
+ * Tokenizer dzielący źródło znaków na {@link BasicUnicodeToken podstawowe tokeny}, czyli najdłuższe ciągi znaków
+ * tej samej kategorii Unicode. Kategorie znaków odczytywane są z tablicy obliczonej z góry, a para surogatów
+ * traktowana jest jako jeden punkt kodowy.
+ * <p>
+ * Źródło wczytywane jest w całości do jednego bufora znaków, a tokeny przechowują jedynie położenie w tym buforze,
+ * więc tokenizacja nie tworzy podciągów ani innych obiektów poza samymi tokenami. Jeśli źródłem jest
+ * {@link CharBuffer} oparty na tablicy, jego tablica jest używana bezpośrednio (bez kopiowania i bez zmiany pozycji
+ * bufora), dlatego nie może być modyfikowana, dopóki tokeny są w użyciu.
+ * </p>
+ */
+public class BasicUnicodeTokenizer extends Tokenizer {
+
+    private static final int CHUNK = 8192;
+    private static final char[] EMPTY = new char[0];
+
+    private char[] chars = EMPTY;
+    private int base = 0;
+    private int position = 0;
+    private int limit = 0;
+
+    /**
+     * Tworzy tokenizer bez źródła. Dla poprawnego funkcjonowania należy wywołać metodę {@link #setSource(Readable)}.
+     */
+    public BasicUnicodeTokenizer() {
+    }
+
+    /**
+     * Ustawia źródło znaków i wczytuje je do bufora.
+     * @param source źródło znaków wczytywanych podczas procesu tokenizacji
+     * @throws UncheckedIOException w przypadku błędu odczytu źródła
+     */
+    @Override
+    public void setSource(Readable source) {
+        super.setSource(source);
+        if (source instanceof CharBuffer buffer && buffer.hasArray()) {
+            chars = buffer.array();
+            base = buffer.arrayOffset() + buffer.position();
+            limit = buffer.arrayOffset() + buffer.limit();
+        } else if (source != null) {
+            chars = readAll(source);
+            base = 0;
+        } else {
+            chars = EMPTY;
+            base = 0;
+            limit = 0;
+        }
+        position = base;
+    }
+
+    /**
+     * Wczytuje wszystkie znaki ze źródła i ustawia {@link #limit}.
+     */
+    private char[] readAll(Readable source) {
+        char[] buffer = new char[CHUNK];
+        CharBuffer window = CharBuffer.wrap(buffer);
+        int length = 0;
+        try {
+            while (true) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    window = CharBuffer.wrap(buffer);
+                }
+                window.limit(buffer.length).position(length);
+                int read = source.read(window);
+                if (read < 0) break;
+                length += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        limit = length;
+        return buffer;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < limit;
+    }
+
+    @Override
+    public BasicUnicodeToken next() {
+        if (position >= limit) throw new NoSuchElementException();
+        char[] chars = this.chars;
+        int limit = this.limit;
+        int start = position;
+        int type = UnicodeCategories.at(chars, start, limit);
+        int i = start + UnicodeCategories.width(chars, start, limit);
+        while (i < limit && UnicodeCategories.at(chars, i, limit) == type) {
+            i += UnicodeCategories.width(chars, i, limit);
+        }
+        position = i;
+        return new BasicUnicodeToken(chars, base, start, i, type);
+    }
+}
@@ -0,0 +1,90 @@
+package pl.koder95.interpreter.basic;
+
+import java.util.Objects;
+import pl.koder95.interpreter.NonTerminalExpression;
+
+/**
+ * Token złożony z kolejnych {@link BasicUnicodeToken podstawowych tokenów}, np. liczba z częścią dziesiętną
+ * albo identyfikator z podkreśleniami. Tworzony jest przez {@link AggregatingTokenizer} dla reguł
+ * {@link AggregationTable tabeli agregacji} bez własnego {@link Aggregator agregatora}.
+ * <p>
+ * Token utworzony z tokenów {@link BasicUnicodeTokenizer} przechowuje jedynie położenie w buforze źródła,
+ * a ciąg znaków tworzony jest dopiero przy pierwszym odczycie wartości.
+ * </p>
+ */
+public class CompoundToken implements NonTerminalExpression<String> {
+    private final String kind;
+    private final char[] source;
+    private final int base;
+    private final int start;
+    private final int end;
+    private String value;
+
+    /**
+     * Tworzy token złożony o podanej wartości.
+     *
+     * @param kind rodzaj tokenu, czyli nazwa reguły agregacji
+     * @param value wartość tokenu
+     * @throws NullPointerException jeśli rodzaj lub wartość jest {@code null}
+     */
+    public CompoundToken(String kind, String value) {
+        this.kind = Objects.requireNonNull(kind, "Kind cannot be null");
+        this.value = Objects.requireNonNull(value, "Value cannot be null");
+        this.source = null;
+        this.base = 0;
+        this.start = 0;
+        this.end = value.length();
+    }
+
+    /**
+     * Tworzy token wskazujący fragment bufora źródła.
+     */
+    CompoundToken(String kind, char[] source, int base, int start, int end) {
+        this.kind = kind;
+        this.source = source;
+        this.base = base;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return rodzaj tokenu, czyli nazwa reguły agregacji, która go utworzyła
+     */
+    public String getKind() {
+        return kind;
+    }
+
+    @Override
+    public String getObject() {
+        String value = this.value;
+        if (value == null) {
+            value = new String(source, start, end - start);
+            this.value = value;
+        }
+        return value;
+    }
+
+    /**
+     * @return pozycja pierwszego znaku tokenu w źródle (dla tokenów utworzonych z ciągu znaków – {@code 0})
+     */
+    public int getStart() {
+        return start - base;
+    }
+
+    /**
+     * @return pozycja za ostatnim znakiem tokenu w źródle
+     */
+    public int getEnd() {
+        return end - base;
+    }
+
+    /**
+     * Zwraca czytelny opis tokenu, zawierający jego wartość oraz rodzaj.
+     *
+     * @return opis tokenu w formacie "Token: [wartość], Kind: [rodzaj]".
+     */
+    @Override
+    public String toString() {
+        return "Token: " + getObject() + ", Kind: " + kind;
+    }
+}
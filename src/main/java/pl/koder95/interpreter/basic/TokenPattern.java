@@ -0,0 +1,246 @@
+package pl.koder95.interpreter.basic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Wzorzec ciągu {@link BasicUnicodeToken podstawowych tokenów}, z których {@link AggregationTable reguła agregacji}
+ * tworzy token złożony. Najprostsze wzorce dopasowują jeden token o podanej kategorii Unicode
+ * ({@link #category(int...)}) lub o podanej treści ({@link #literal(String)}), a złożone powstają z nich podobnie jak
+ * wyrażenia regularne: przez sekwencję, alternatywę i powtórzenia.
+ * <p>
+ * Na przykład liczba z częścią dziesiętną to
+ * {@code sequence(category(DECIMAL_DIGIT_NUMBER), optional(sequence(literal("."), category(DECIMAL_DIGIT_NUMBER))))}.
+ * Wzorce są niezmienne.
+ * </p>
+ */
+public abstract sealed class TokenPattern {
+
+    private TokenPattern() {}
+
+    /**
+     * Tworzy wzorzec dopasowujący jeden token o jednej z podanych kategorii.
+     * @param categories kategorie Unicode ({@link Character#getType(int)})
+     * @return wzorzec
+     * @throws IllegalArgumentException jeśli nie podano kategorii lub kategoria jest niepoprawna
+     */
+    public static TokenPattern category(int... categories) {
+        if (categories.length == 0) throw new IllegalArgumentException("At least one category is required");
+        BitSet set = new BitSet(AggregationTable.CATEGORIES);
+        for (int category : categories) {
+            if (category < 0 || category >= AggregationTable.CATEGORIES) {
+                throw new IllegalArgumentException("Invalid Unicode category: " + category);
+            }
+            set.set(category);
+        }
+        return new Single(set, null);
+    }
+
+    /**
+     * Tworzy wzorzec dopasowujący jeden token o podanej treści, np. {@code "."} albo {@code "_"}.
+     * Treść musi składać się ze znaków jednej kategorii, ponieważ tylko taki token może powstać
+     * w {@link BasicUnicodeTokenizer}. Podstawowy token obejmuje cały ciąg znaków tej samej kategorii, więc np.
+     * {@code literal("_")} nie dopasowuje {@code "__"} – do tego służy
+     * {@code category(Character.CONNECTOR_PUNCTUATION)}.
+     * @param text treść tokenu
+     * @return wzorzec
+     * @throws IllegalArgumentException jeśli treść jest pusta lub zawiera znaki różnych kategorii
+     */
+    public static TokenPattern literal(String text) {
+        return new Single(null, new BasicUnicodeToken(text).asString());
+    }
+
+    /**
+     * @param patterns kolejno dopasowywane wzorce
+     * @return wzorzec dopasowujący ciągi pasujące kolejno do podanych wzorców
+     */
+    public static TokenPattern sequence(TokenPattern... patterns) {
+        return new Sequence(copy(patterns));
+    }
+
+    /**
+     * @param patterns wzorce alternatywne
+     * @return wzorzec dopasowujący ciągi pasujące do któregokolwiek z podanych wzorców
+     */
+    public static TokenPattern anyOf(TokenPattern... patterns) {
+        return new AnyOf(copy(patterns));
+    }
+
+    /**
+     * @param pattern wzorzec
+     * @return wzorzec dopasowujący ciąg pasujący do {@code pattern} albo ciąg pusty
+     */
+    public static TokenPattern optional(TokenPattern pattern) {
+        return new Repeat(Objects.requireNonNull(pattern, "Pattern cannot be null"), true, false);
+    }
+
+    /**
+     * @param pattern wzorzec
+     * @return wzorzec dopasowujący dowolną liczbę (także zero) kolejnych ciągów pasujących do {@code pattern}
+     */
+    public static TokenPattern zeroOrMore(TokenPattern pattern) {
+        return new Repeat(Objects.requireNonNull(pattern, "Pattern cannot be null"), true, true);
+    }
+
+    /**
+     * @param pattern wzorzec
+     * @return wzorzec dopasowujący co najmniej jeden ciąg pasujący do {@code pattern}
+     */
+    public static TokenPattern oneOrMore(TokenPattern pattern) {
+        return new Repeat(Objects.requireNonNull(pattern, "Pattern cannot be null"), false, true);
+    }
+
+    private static List<TokenPattern> copy(TokenPattern[] patterns) {
+        if (patterns.length == 0) throw new IllegalArgumentException("At least one pattern is required");
+        return List.of(patterns);
+    }
+
+    /**
+     * Dodaje wzorzec do automatu niedeterministycznego jako fragment od stanu {@code from} do zwróconego stanu.
+     */
+    abstract int compile(Automaton automaton, int from);
+
+    /**
+     * Zbiera treści tokenów występujące we wzorcu.
+     */
+    abstract void collectLiterals(List<String> literals);
+
+    /**
+     * Automat niedeterministyczny budowany z wzorców (konstrukcja Thompsona). Przejścia etykietowane są
+     * {@link Single pojedynczymi wzorcami}, a przejścia puste zapisywane są osobno.
+     */
+    static final class Automaton {
+        final List<Single> labels = new ArrayList<>();
+        final List<int[]> targets = new ArrayList<>();
+        final List<int[]> epsilons = new ArrayList<>();
+
+        int newState() {
+            labels.add(null);
+            targets.add(new int[0]);
+            epsilons.add(new int[0]);
+            return labels.size() - 1;
+        }
+
+        void transition(int from, Single label, int to) {
+            labels.set(from, label);
+            targets.set(from, new int[] {to});
+        }
+
+        void epsilon(int from, int to) {
+            int[] previous = epsilons.get(from);
+            int[] next = Arrays.copyOf(previous, previous.length + 1);
+            next[previous.length] = to;
+            epsilons.set(from, next);
+        }
+
+        int size() {
+            return labels.size();
+        }
+    }
+
+    static final class Single extends TokenPattern {
+        final BitSet categories;
+        final String literal;
+
+        private Single(BitSet categories, String literal) {
+            this.categories = categories;
+            this.literal = literal;
+        }
+
+        /**
+         * Sprawdza, czy wzorzec dopasowuje token o podanej kategorii i treści (albo {@code null}, jeśli treść
+         * tokenu nie jest żadną z treści występujących w tabeli).
+         */
+        boolean matches(int category, String text) {
+            return literal == null ? categories.get(category) : literal.equals(text);
+        }
+
+        @Override
+        int compile(Automaton automaton, int from) {
+            int to = automaton.newState();
+            automaton.transition(from, this, to);
+            return to;
+        }
+
+        @Override
+        void collectLiterals(List<String> literals) {
+            if (literal != null && !literals.contains(literal)) literals.add(literal);
+        }
+    }
+
+    private static final class Sequence extends TokenPattern {
+        private final List<TokenPattern> patterns;
+
+        private Sequence(List<TokenPattern> patterns) {
+            this.patterns = patterns;
+        }
+
+        @Override
+        int compile(Automaton automaton, int from) {
+            int state = from;
+            for (TokenPattern pattern : patterns) state = pattern.compile(automaton, state);
+            return state;
+        }
+
+        @Override
+        void collectLiterals(List<String> literals) {
+            for (TokenPattern pattern : patterns) pattern.collectLiterals(literals);
+        }
+    }
+
+    private static final class AnyOf extends TokenPattern {
+        private final List<TokenPattern> patterns;
+
+        private AnyOf(List<TokenPattern> patterns) {
+            this.patterns = patterns;
+        }
+
+        @Override
+        int compile(Automaton automaton, int from) {
+            int end = automaton.newState();
+            for (TokenPattern pattern : patterns) {
+                int start = automaton.newState();
+                automaton.epsilon(from, start);
+                automaton.epsilon(pattern.compile(automaton, start), end);
+            }
+            return end;
+        }
+
+        @Override
+        void collectLiterals(List<String> literals) {
+            for (TokenPattern pattern : patterns) pattern.collectLiterals(literals);
+        }
+    }
+
+    private static final class Repeat extends TokenPattern {
+        private final TokenPattern pattern;
+        private final boolean optional;
+        private final boolean repeated;
+
+        private Repeat(TokenPattern pattern, boolean optional, boolean repeated) {
+            this.pattern = pattern;
+            this.optional = optional;
+            this.repeated = repeated;
+        }
+
+        @Override
+        int compile(Automaton automaton, int from) {
+            int start = automaton.newState();
+            int end = automaton.newState();
+            automaton.epsilon(from, start);
+            int last = pattern.compile(automaton, start);
+            automaton.epsilon(last, end);
+            if (repeated) automaton.epsilon(last, start);
+            if (optional) automaton.epsilon(from, end);
+            return end;
+        }
+
+        @Override
+        void collectLiterals(List<String> literals) {
+            pattern.collectLiterals(literals);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package pl.koder95.interpreter.basic;
+
+/**
+ * Tablica kategorii Unicode ({@link Character#getType(int)}) obliczona z góry dla wszystkich znaków
+ * z podstawowej płaszczyzny wielojęzycznej (BMP). Pozostałe punkty kodowe sprawdzane są bezpośrednio.
+ */
+final class UnicodeCategories {
+
+    private static final byte[] BMP = new byte[Character.MAX_VALUE + 1];
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) BMP[c] = (byte) Character.getType(c);
+    }
+
+    private UnicodeCategories() {}
+
+    /**
+     * @param codePoint punkt kodowy
+     * @return kategoria Unicode punktu kodowego, zgodna z {@link Character#getType(int)}
+     */
+    static int of(int codePoint) {
+        return codePoint <= Character.MAX_VALUE ? BMP[codePoint] : Character.getType(codePoint);
+    }
+
+    /**
+     * Wyznacza kategorię punktu kodowego zaczynającego się na podanej pozycji. Para surogatów traktowana jest
+     * jako jeden punkt kodowy, a niesparowany surogat ma kategorię {@link Character#SURROGATE}.
+     * @param chars znaki
+     * @param index pozycja pierwszego znaku punktu kodowego
+     * @param limit pozycja za ostatnim dostępnym znakiem
+     * @return kategoria Unicode
+     */
+    static int at(char[] chars, int index, int limit) {
+        char c = chars[index];
+        if (Character.isHighSurrogate(c) && index + 1 < limit && Character.isLowSurrogate(chars[index + 1])) {
+            return of(Character.toCodePoint(c, chars[index + 1]));
+        }
+        return BMP[c];
+    }
+
+    /**
+     * @param chars znaki
+     * @param index pozycja pierwszego znaku punktu kodowego
+     * @param limit pozycja za ostatnim dostępnym znakiem
+     * @return liczba znaków zajmowanych przez punkt kodowy (1 albo 2)
+     */
+    static int width(char[] chars, int index, int limit) {
+        return Character.isHighSurrogate(chars[index]) && index + 1 < limit
+                && Character.isLowSurrogate(chars[index + 1]) ? 2 : 1;
+    }
+}
@@ -0,0 +1,23 @@
+package pl.koder95.interpreter.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Zdarzenie JFR opisujące wartość licznika zgłoszoną podczas interpretacji.
+ */
+@Name("pl.koder95.interpreter.Counter")
+@Label("Interpreter Counter")
+@Category("Interpreter")
+@Description("Number of bytes, characters, tokens or syntax tree nodes processed by a single interpretation")
+final class CounterEvent extends Event {
+
+    @Label("Counter")
+    String counter;
+
+    @Label("Value")
+    long value;
+}
@@ -0,0 +1,106 @@
+package pl.koder95.interpreter.monitor;
+
+import java.util.List;
+
+/**
+ * Odbiorca pomiarów procesu interpretacji: czasów poszczególnych {@link Phase etapów} oraz liczby odczytanych znaków,
+ * bajtów, tokenów i węzłów zbudowanego drzewa. Wszystkie metody mają domyślne, puste implementacje, więc wystarczy
+ * nadpisać tylko te, które są potrzebne.
+ * <p>
+ * Monitor {@link #NONE} jest domyślny i zgłasza się jako {@link #isEnabled() wyłączony} – wtedy interpreter
+ * nie wykonuje żadnych pomiarów. Implementacje mogą być wywoływane jednocześnie z wielu wątków.
+ * </p>
+ * @see pl.koder95.interpreter.Interpreter#getMonitor()
+ */
+public interface InterpreterMonitor {
+
+    /**
+     * Monitor, który niczego nie mierzy.
+     */
+    InterpreterMonitor NONE = new InterpreterMonitor() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * Tworzy monitor przekazujący pomiary do wszystkich podanych monitorów.
+     * @param monitors monitory odbierające pomiary
+     * @return monitor złożony
+     */
+    static InterpreterMonitor of(InterpreterMonitor... monitors) {
+        List<InterpreterMonitor> enabled = List.of(monitors).stream().filter(InterpreterMonitor::isEnabled).toList();
+        if (enabled.isEmpty()) return NONE;
+        if (enabled.size() == 1) return enabled.get(0);
+        return new InterpreterMonitor() {
+            @Override
+            public void phaseCompleted(Phase phase, long nanos) {
+                for (InterpreterMonitor monitor : enabled) monitor.phaseCompleted(phase, nanos);
+            }
+
+            @Override
+            public void bytesRead(long count) {
+                for (InterpreterMonitor monitor : enabled) monitor.bytesRead(count);
+            }
+
+            @Override
+            public void charactersRead(long count) {
+                for (InterpreterMonitor monitor : enabled) monitor.charactersRead(count);
+            }
+
+            @Override
+            public void tokensRead(long count) {
+                for (InterpreterMonitor monitor : enabled) monitor.tokensRead(count);
+            }
+
+            @Override
+            public void syntaxTreeBuilt(long nodes) {
+                for (InterpreterMonitor monitor : enabled) monitor.syntaxTreeBuilt(nodes);
+            }
+        };
+    }
+
+    /**
+     * @return {@code true}, jeśli monitor przyjmuje pomiary; w przeciwnym razie interpreter ich nie wykonuje
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Zgłasza zakończenie etapu interpretacji.
+     * @param phase etap interpretacji
+     * @param nanos czas trwania etapu w nanosekundach
+     */
+    default void phaseCompleted(Phase phase, long nanos) {
+    }
+
+    /**
+     * Zgłasza liczbę bajtów odczytanych z pliku.
+     * @param count liczba bajtów
+     */
+    default void bytesRead(long count) {
+    }
+
+    /**
+     * Zgłasza liczbę znaków odczytanych ze źródła przez tokenizer.
+     * @param count liczba znaków
+     */
+    default void charactersRead(long count) {
+    }
+
+    /**
+     * Zgłasza liczbę tokenów przekazanych do parsera.
+     * @param count liczba tokenów
+     */
+    default void tokensRead(long count) {
+    }
+
+    /**
+     * Zgłasza zbudowanie drzewa abstrakcyjnej syntaktyki.
+     * @param nodes liczba węzłów drzewa (zob. {@link pl.koder95.interpreter.TerminalExpression#children()})
+     */
+    default void syntaxTreeBuilt(long nodes) {
+    }
+}
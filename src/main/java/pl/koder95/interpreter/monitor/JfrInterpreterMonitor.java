@@ -0,0 +1,58 @@
+package pl.koder95.interpreter.monitor;
+
+import jdk.jfr.EventType;
+
+/**
+ * Monitor zapisujący pomiary jako zdarzenia JDK Flight Recorder:
+ * {@code pl.koder95.interpreter.Phase} (czas trwania etapu) i {@code pl.koder95.interpreter.Counter}
+ * (liczba bajtów, znaków, tokenów albo węzłów). Gdy zdarzenia nie są nagrywane, pomiary są pomijane bez alokacji.
+ */
+public class JfrInterpreterMonitor implements InterpreterMonitor {
+
+    private static final EventType PHASE = EventType.getEventType(PhaseEvent.class);
+    private static final EventType COUNTER = EventType.getEventType(CounterEvent.class);
+
+    /**
+     * Tworzy monitor zapisujący pomiary jako zdarzenia; zdarzenia nagrywane są tylko podczas nagrania JFR,
+     * w którym są włączone.
+     */
+    public JfrInterpreterMonitor() {
+    }
+
+    @Override
+    public void phaseCompleted(Phase phase, long nanos) {
+        if (!PHASE.isEnabled()) return;
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase.name();
+        event.elapsed = nanos;
+        event.commit();
+    }
+
+    @Override
+    public void bytesRead(long count) {
+        counter("bytes", count);
+    }
+
+    @Override
+    public void charactersRead(long count) {
+        counter("characters", count);
+    }
+
+    @Override
+    public void tokensRead(long count) {
+        counter("tokens", count);
+    }
+
+    @Override
+    public void syntaxTreeBuilt(long nodes) {
+        counter("nodes", nodes);
+    }
+
+    private static void counter(String name, long value) {
+        if (!COUNTER.isEnabled()) return;
+        CounterEvent event = new CounterEvent();
+        event.counter = name;
+        event.value = value;
+        event.commit();
+    }
+}
@@ -0,0 +1,34 @@
+package pl.koder95.interpreter.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram czasów trwania o przedziałach będących kolejnymi potęgami dwójki (w nanosekundach).
+ * Zapis jest nieblokujący i nie alokuje pamięci.
+ */
+final class LatencyHistogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos czas trwania w nanosekundach
+     */
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos | 1));
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    MetricsSnapshot.Latency snapshot() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) counts[i] = buckets.get(i);
+        return new MetricsSnapshot.Latency(count.sum(), total.sum(), max.get(), counts);
+    }
+}
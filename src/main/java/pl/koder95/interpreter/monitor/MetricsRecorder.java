@@ -0,0 +1,62 @@
+package pl.koder95.interpreter.monitor;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monitor gromadzący pomiary w pamięci procesu: histogramy czasów trwania etapów oraz liczniki znaków, bajtów,
+ * tokenów i węzłów. Aktualny stan można w każdej chwili pobrać jako {@link MetricsSnapshot migawkę}.
+ * Instancja jest bezpieczna wątkowo i może być współdzielona przez wiele interpreterów.
+ */
+public class MetricsRecorder implements InterpreterMonitor {
+
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder syntaxTrees = new LongAdder();
+
+    /**
+     * Tworzy monitor z pustymi histogramami i wyzerowanymi licznikami.
+     */
+    public MetricsRecorder() {
+        for (Phase phase : Phase.values()) latencies.put(phase, new LatencyHistogram());
+    }
+
+    @Override
+    public void phaseCompleted(Phase phase, long nanos) {
+        latencies.get(phase).record(nanos);
+    }
+
+    @Override
+    public void bytesRead(long count) {
+        bytes.add(count);
+    }
+
+    @Override
+    public void charactersRead(long count) {
+        characters.add(count);
+    }
+
+    @Override
+    public void tokensRead(long count) {
+        tokens.add(count);
+    }
+
+    @Override
+    public void syntaxTreeBuilt(long nodes) {
+        this.nodes.add(nodes);
+        syntaxTrees.increment();
+    }
+
+    /**
+     * @return aktualny stan pomiarów
+     */
+    public MetricsSnapshot snapshot() {
+        Map<Phase, MetricsSnapshot.Latency> phases = new EnumMap<>(Phase.class);
+        latencies.forEach((phase, histogram) -> phases.put(phase, histogram.snapshot()));
+        return new MetricsSnapshot(phases, bytes.sum(), characters.sum(), tokens.sum(), nodes.sum(), syntaxTrees.sum());
+    }
+}
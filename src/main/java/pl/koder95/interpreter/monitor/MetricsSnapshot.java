@@ -0,0 +1,67 @@
+package pl.koder95.interpreter.monitor;
+
+import java.util.Map;
+
+/**
+ * Migawka pomiarów zgromadzonych przez {@link MetricsRecorder}.
+ * @param latencies rozkład czasów trwania dla każdego etapu interpretacji
+ * @param bytes łączna liczba bajtów odczytanych z plików
+ * @param characters łączna liczba znaków odczytanych przez tokenizery
+ * @param tokens łączna liczba tokenów przekazanych do parserów
+ * @param nodes łączna liczba węzłów zbudowanych drzew
+ * @param syntaxTrees liczba zbudowanych drzew abstrakcyjnej syntaktyki
+ */
+public record MetricsSnapshot(Map<Phase, Latency> latencies, long bytes, long characters, long tokens, long nodes,
+                              long syntaxTrees) {
+
+    public MetricsSnapshot {
+        latencies = Map.copyOf(latencies);
+    }
+
+    /**
+     * Rozkład czasów trwania jednego etapu.
+     * @param count liczba pomiarów
+     * @param totalNanos suma czasów w nanosekundach
+     * @param maxNanos najdłuższy czas w nanosekundach
+     * @param buckets liczba pomiarów w przedziałach {@code [2^i, 2^(i+1))} nanosekund
+     */
+    public record Latency(long count, long totalNanos, long maxNanos, long[] buckets) {
+
+        public Latency {
+            buckets = buckets.clone();
+        }
+
+        @Override
+        public long[] buckets() {
+            return buckets.clone();
+        }
+
+        /**
+         * @return średni czas w nanosekundach albo {@code 0}, jeśli nie było pomiarów
+         */
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Szacuje kwantyl rozkładu jako górną granicę przedziału, w którym się znajduje.
+         * @param quantile kwantyl z przedziału {@code [0, 1]}, np. {@code 0.99}
+         * @return oszacowanie kwantyla w nanosekundach (nie większe niż {@link #maxNanos()})
+         * @throws IllegalArgumentException jeśli kwantyl jest spoza przedziału {@code [0, 1]}
+         */
+        public long quantileNanos(double quantile) {
+            if (quantile < 0 || quantile > 1) throw new IllegalArgumentException("Quantile must be between 0 and 1");
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    long upper = i >= Long.SIZE - 2 ? Long.MAX_VALUE : (2L << i) - 1;
+                    return Math.min(upper, maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
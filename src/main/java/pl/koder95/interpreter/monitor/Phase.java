@@ -0,0 +1,23 @@
+package pl.koder95.interpreter.monitor;
+
+/**
+ * Etapy procesu interpretacji mierzone przez {@link InterpreterMonitor}.
+ */
+public enum Phase {
+    /**
+     * Tokenizacja – czas spędzony w metodach {@link pl.koder95.interpreter.Tokenizer tokenizera}.
+     */
+    TOKENIZE,
+    /**
+     * Budowanie drzewa abstrakcyjnej syntaktyki bez czasu tokenizacji.
+     */
+    PARSE,
+    /**
+     * Optymalizacja drzewa abstrakcyjnej syntaktyki ({@link pl.koder95.interpreter.SyntaxTreeOptimizer}).
+     */
+    OPTIMIZE,
+    /**
+     * Wartościowanie drzewa abstrakcyjnej syntaktyki w kontekście.
+     */
+    EVALUATE
+}
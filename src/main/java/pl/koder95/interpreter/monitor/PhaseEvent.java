@@ -0,0 +1,25 @@
+package pl.koder95.interpreter.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Zdarzenie JFR opisujące zakończony etap interpretacji.
+ */
+@Name("pl.koder95.interpreter.Phase")
+@Label("Interpreter Phase")
+@Category("Interpreter")
+@Description("Duration of a single interpretation phase")
+final class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+}
@@ -0,0 +1,13 @@
+/**
+ * Paczka dostarcza pomiary procesu interpretacji.
+ * <p>
+ * {@link pl.koder95.interpreter.monitor.InterpreterMonitor Monitor} zwracany przez
+ * {@link pl.koder95.interpreter.Interpreter#getMonitor()} otrzymuje czasy trwania
+ * {@link pl.koder95.interpreter.monitor.Phase etapów} (tokenizacji, parsowania i wartościowania) oraz liczbę
+ * odczytanych bajtów, znaków, tokenów i węzłów drzewa. Pomiary mogą być gromadzone w pamięci procesu
+ * ({@link pl.koder95.interpreter.monitor.MetricsRecorder}) albo zapisywane jako zdarzenia JDK Flight Recorder
+ * ({@link pl.koder95.interpreter.monitor.JfrInterpreterMonitor}).
+ * </p>
+ * @see pl.koder95.interpreter.monitor.InterpreterMonitor
+ */
+package pl.koder95.interpreter.monitor;
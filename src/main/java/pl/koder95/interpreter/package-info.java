@@ -17,7 +17,8 @@
  * oraz {@link pl.koder95.interpreter.Tokenizer tokenizera},
  * które wykorzystywane są podczas budowania drzewa abstrakcyjnej syntaktyki za pomocą metod
  * {@link pl.koder95.interpreter.Parser#buildAbstractSyntaxTree(java.util.Queue) buildAbstractSyntaxTree(java.util.Queue)}
- * oraz {@link pl.koder95.interpreter.Tokenizer#enqueue() enqueue()}.
+ * oraz {@link pl.koder95.interpreter.Tokenizer#enqueue() enqueue()}, która domyślnie umieszcza tokeny
+ * w {@link pl.koder95.interpreter.TokenBuffer buforze tokenów} opartym na tablicy.
  * </p>
  * @see pl.koder95.interpreter.Client
  * @see pl.koder95.interpreter.Context
@@ -0,0 +1,169 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sprawdza {@link BatchInterpreter}: kolejność wyników, ograniczenie liczby jednoczesnych interpretacji, zapisywanie
+ * wyjątków w wynikach i przekazywanie błędów maszyny wirtualnej do wątku wywołującego.
+ */
+class BatchInterpreterTest {
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    /**
+     * Interpreter zamieniający tekst źródła na wielkie litery. Źródło {@code fail} kończy się błędem składniowym,
+     * a źródło {@code overflow} przepełnieniem stosu.
+     */
+    private final class Upper implements Interpreter<Context, String> {
+        private final Context context;
+
+        private Upper(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public Context getContext() {
+            return context;
+        }
+
+        @Override
+        public Parser<Context, String> getParser() {
+            return null;
+        }
+
+        @Override
+        public String interpret(Readable readable) {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                String text = read(readable);
+                Thread.sleep(1);
+                return switch (text) {
+                    case "fail" -> throw new SyntaxException("Unknown source");
+                    case "overflow" -> throw new StackOverflowError();
+                    default -> text.toUpperCase();
+                };
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    private static String read(Readable readable) {
+        StringBuilder text = new StringBuilder();
+        CharBuffer buffer = CharBuffer.allocate(64);
+        try {
+            while (readable.read(buffer) >= 0) {
+                buffer.flip();
+                text.append(buffer);
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+
+    private BatchInterpreter<Context, String> batch(Executor executor, int maxInFlight) {
+        return new BatchInterpreter<>(Upper::new, () -> new Context() {}, executor, maxInFlight);
+    }
+
+    private static List<Readable> sources(String... texts) {
+        List<Readable> sources = new ArrayList<>();
+        for (String text : texts) sources.add(new StringReader(text));
+        return sources;
+    }
+
+    @Test
+    void returnsResultsInSourceOrderWithinLimit() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<String> texts = new ArrayList<>();
+            for (int i = 0; i < 200; i++) texts.add("s" + i);
+            List<BatchInterpreter.Result<String>> results =
+                    batch(executor, 3).interpretAll(sources(texts.toArray(String[]::new)));
+            assertEquals(texts.size(), results.size());
+            for (int i = 0; i < texts.size(); i++) assertEquals("S" + i, results.get(i).get());
+            assertTrue(maxActive.get() <= 3, "Sources in flight: " + maxActive.get());
+            assertEquals(0, active.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void recordsExceptionsOfSingleSources() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<BatchInterpreter.Result<String>> results = batch(executor, 2).interpretAll(sources("a", "fail", "b"));
+            assertEquals("A", results.get(0).get());
+            assertFalse(results.get(1).isSuccess());
+            assertInstanceOf(SyntaxException.class, results.get(1).error());
+            assertThrows(SyntaxException.class, results.get(1)::get);
+            assertEquals("B", results.get(2).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void errorStopsBatchAndReachesCaller() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AtomicInteger taken = new AtomicInteger();
+            Iterable<Readable> sources = () -> new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return taken.get() < 1000;
+                }
+
+                @Override
+                public Readable next() {
+                    return new StringReader(taken.getAndIncrement() == 5 ? "overflow" : "x");
+                }
+            };
+            assertThrows(StackOverflowError.class, () -> batch(executor, 2).interpretAll(sources));
+            assertEquals(0, active.get());
+            assertTrue(taken.get() < 1000, "Sources taken after the error: " + taken.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void recordsRejectedSources() throws InterruptedException {
+        List<BatchInterpreter.Result<String>> results = batch(task -> {
+            throw new RejectedExecutionException("Executor is shut down");
+        }, 1).interpretAll(sources("a", "b"));
+        assertEquals(2, results.size());
+        for (BatchInterpreter.Result<String> result : results) {
+            assertInstanceOf(RejectedExecutionException.class, result.error());
+        }
+    }
+
+    @Test
+    void rejectsInvalidLimit() {
+        assertThrows(IllegalArgumentException.class, () -> batch(Runnable::run, 0));
+    }
+}
@@ -0,0 +1,235 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Sprawdza położenia tokenów wyznaczane przez {@link BufferedTokenizer}, w szczególności końce wierszy {@code '\r'},
+ * {@code '\n'} i {@code "\r\n"}, także gdy para {@code "\r\n"} jest rozdzielona między kolejne odczyty źródła,
+ * oraz odczyt tokenów dłuższych niż bufor.
+ */
+class BufferedTokenizerTest {
+
+    private record Word(String text, SourceSpan span) implements NonTerminalExpression<String> {
+        @Override
+        public String getObject() {
+            return text;
+        }
+
+        @Override
+        public SourceSpan getSpan() {
+            return span;
+        }
+    }
+
+    /**
+     * Słowa rozdzielone spacjami i końcami wierszy, odczytywane znak po znaku ({@link #advance()}).
+     */
+    private static final class Words extends BufferedTokenizer {
+        private Words(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (isSeparator(peek())) advance();
+            return !atEnd();
+        }
+
+        @Override
+        public Word next() {
+            hasNext();
+            mark();
+            while (!atEnd() && !isSeparator(peek())) advance();
+            return new Word(text(), span());
+        }
+
+        private static boolean isSeparator(int c) {
+            return c == ' ' || c == '\n' || c == '\r';
+        }
+    }
+
+    /**
+     * Fragmenty rozdzielone spacjami, wyszukiwanymi przez {@link #advanceTo(char, char)}; końce wierszy są częścią
+     * fragmentów.
+     */
+    private static final class Pieces extends BufferedTokenizer {
+        private Pieces(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !atEnd();
+        }
+
+        @Override
+        public Word next() {
+            mark();
+            advanceTo(' ', '\t');
+            Word word = new Word(text(), span());
+            advance();
+            return word;
+        }
+    }
+
+    /**
+     * Źródło zwracające jeden znak przy każdym odczycie.
+     */
+    private static final class Trickle implements Readable {
+        private final String text;
+        private int index = 0;
+
+        private Trickle(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(CharBuffer buffer) {
+            if (index == text.length()) return -1;
+            buffer.put(text.charAt(index++));
+            return 1;
+        }
+    }
+
+    @Test
+    void countsEveryKindOfLineBreakOnce() {
+        String text = "a\nb\rc\r\nd\n\re\r\rf\n\ng";
+        List<Word> words = words(new Words(4), new StringReader(text));
+        List<String> positions = new ArrayList<>();
+        for (Word word : words) positions.add(word.text() + "@" + word.span().line() + ":" + word.span().column());
+        assertEquals(List.of("a@1:1", "b@2:1", "c@3:1", "d@4:1", "e@6:1", "f@8:1", "g@10:1"), positions);
+    }
+
+    @Test
+    void matchesReferencePositionsForRandomText() {
+        Random random = new Random(2);
+        char[] alphabet = {'a', 'b', ' ', '\n', '\r'};
+        for (int run = 0; run < 500; run++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(60);
+            for (int i = 0; i < length; i++) text.append(alphabet[random.nextInt(alphabet.length)]);
+            String source = text.toString();
+            for (int capacity : new int[]{1, 3, 8192}) {
+                assertReference(source, words(new Words(capacity), new StringReader(source)));
+                assertReference(source, words(new Words(capacity), new Trickle(source)));
+                assertReference(source, words(new Pieces(capacity), new StringReader(source)));
+                assertReference(source, words(new Pieces(capacity), new Trickle(source)));
+            }
+        }
+    }
+
+    @Test
+    void positionsOfFragmentReferToWholeText() {
+        Words words = new Words(16);
+        words.setSource(new StringReader("x\r\ny"), 10, 3, 5);
+        Word first = words.next();
+        Word second = words.next();
+        assertEquals(new SourceSpan(10, 11, 3, 5), first.span());
+        assertEquals(new SourceSpan(13, 14, 4, 1), second.span());
+    }
+
+    @Test
+    void readsTokensLongerThanBuffer() {
+        String longWord = "w".repeat(1000);
+        List<Word> words = words(new Words(2), new Trickle("a " + longWord + "\r\nb"));
+        assertEquals(List.of("a", longWord, "b"), words.stream().map(Word::text).toList());
+        assertEquals(new SourceSpan(2, 1002, 1, 3), words.get(1).span());
+        assertEquals(new SourceSpan(1004, 1005, 2, 1), words.get(2).span());
+    }
+
+    @Test
+    void resetRestoresLineState() {
+        // Po powrocie do zaznaczenia za '\r' znak '\n' nadal nie rozpoczyna kolejnego wiersza.
+        BufferedTokenizer tokenizer = new BufferedTokenizer(2) {
+            @Override
+            public boolean hasNext() {
+                return !atEnd();
+            }
+
+            @Override
+            public Word next() {
+                advance();
+                mark();
+                advance();
+                advance();
+                reset();
+                advance();
+                mark();
+                advance();
+                return new Word(text(), span());
+            }
+        };
+        tokenizer.setSource(new StringReader("\r\nab"));
+        assertEquals(new SourceSpan(2, 3, 2, 1), tokenizer.next().getSpan());
+    }
+
+    @Test
+    void internsTokensFromPool() {
+        TokenPool<Word> pool = new TokenPool<>(16, text -> new Word(text.toString(), null));
+        BufferedTokenizer tokenizer = new BufferedTokenizer(2) {
+            @Override
+            public boolean hasNext() {
+                while (peek() == ' ') advance();
+                return !atEnd();
+            }
+
+            @Override
+            public Word next() {
+                hasNext();
+                mark();
+                advanceTo(' ', ' ');
+                return text(pool);
+            }
+        };
+        List<Word> words = words(tokenizer, new StringReader("ab cd ab"));
+        assertEquals(List.of("ab", "cd", "ab"), words.stream().map(Word::text).toList());
+        assertSame(words.get(0), words.get(2));
+    }
+
+    private static List<Word> words(BufferedTokenizer tokenizer, Readable source) {
+        tokenizer.setSource(source);
+        List<Word> words = new ArrayList<>();
+        while (tokenizer.hasNext()) words.add((Word) tokenizer.next());
+        return words;
+    }
+
+    /**
+     * Porównuje położenia tokenów z położeniami wyznaczonymi wprost z tekstu.
+     */
+    private static void assertReference(String source, List<Word> words) {
+        int[] lines = new int[source.length() + 1];
+        int[] columns = new int[source.length() + 1];
+        int line = 1, column = 1;
+        for (int i = 0; i < source.length(); i++) {
+            lines[i] = line;
+            columns[i] = column;
+            char c = source.charAt(i);
+            if (c == '\r' || c == '\n' && (i == 0 || source.charAt(i - 1) != '\r')) {
+                line++;
+                column = 1;
+            } else if (c == '\n') {
+                column = 1;
+            } else {
+                column++;
+            }
+        }
+        lines[source.length()] = line;
+        columns[source.length()] = column;
+        for (Word word : words) {
+            SourceSpan span = word.span();
+            String message = '"' + source.replace("\r", "\\r").replace("\n", "\\n") + '"';
+            assertEquals(word.text(), source.substring((int) span.start(), (int) span.end()), message);
+            assertEquals(lines[(int) span.start()], span.line(), message);
+            assertEquals(columns[(int) span.start()], span.column(), message);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Sprawdza publiczne metody {@link Example}.
+ */
+class ExampleTest {
+
+    private static final String SOURCE = "b\nc\na\nORDER BY ASC\n";
+    private static final String[] INSTRUCTIONS = {"ORDER BY ASC", "ORDER BY DSC", "ORDER BY REV", "ORDER BY",
+            "ORDER BY XYZ"};
+
+    @Test
+    void returnsModifiableCopies() {
+        List<String> sorted = Example.interpret(new StringReader(SOURCE));
+        sorted.add("d");
+        sorted.sort(null);
+        sorted.set(0, "z");
+        assertEquals(List.of("z", "b", "c", "d"), sorted);
+
+        List<String> parallel = Example.interpretParallel(SOURCE);
+        parallel.add("d");
+        assertEquals(List.of("a", "b", "c", "d"), parallel);
+
+        List<List<String>> variants = Example.interpret(new StringReader(SOURCE), List.of("e"), List.of(List.of(), List.of("f")));
+        variants.get(0).add("x");
+        assertEquals(List.of(List.of("a", "b", "c", "e", "x"), List.of("a", "b", "c", "e", "f")), variants);
+    }
+
+    /**
+     * Wszystkie tryby parsowania korzystają z tego samego parsera tablicowego, więc muszą akceptować te same
+     * programy i zgłaszać te same błędy.
+     */
+    @Test
+    void parsingModesAgree() {
+        Random random = new Random(21);
+        for (int run = 0; run < 500; run++) {
+            String source = randomProgram(random);
+            assertModesAgree(Example.newInterpreter(), source);
+        }
+    }
+
+    private static <C extends Context> void assertModesAgree(Interpreter<C, List<String>> interpreter, String source) {
+        Parser<C, List<String>> parser = interpreter.getParser();
+        String message = source.replace("\n", "\\n");
+        String built = outcome(() -> parser.buildAbstractSyntaxTree(new StringReader(source))
+                .interpret(interpreter.getContext()));
+        interpreter.getContext().reset();
+        assertEquals(built, outcome(() -> interpreter.interpret(new StringReader(source))), message);
+        interpreter.getContext().reset();
+
+        ParseResult<C, List<String>> tried = parser.tryBuildAbstractSyntaxTree(new StringReader(source));
+        assertEquals(built, tried.isSuccess() ? String.valueOf(tried.syntaxTree().interpret(interpreter.getContext()))
+                : tried.errors().get(0).toString(), message);
+        interpreter.getContext().reset();
+
+        // Po wznowieniu drzewo zawiera wszystkie linie poza niepoprawnymi instrukcjami.
+        ParseResult<C, List<String>> recovered = parser.buildAbstractSyntaxTreeWithRecovery(new StringReader(source));
+        List<String> errors = new ArrayList<>();
+        recovered.errors().forEach(e -> errors.add(e.toString()));
+        StringBuilder valid = new StringBuilder();
+        List<String> expectedErrors = new ArrayList<>();
+        // Każda linia programu kończy się znakiem '\n', więc ostatni element podziału jest pusty.
+        String[] lines = source.split("\n", -1);
+        for (int i = 0, offset = 0; i < lines.length - 1; offset += lines[i++].length() + 1) {
+            if (lines[i].equals("ORDER BY XYZ")) {
+                expectedErrors.add(new SyntaxException("Unknown ordering type",
+                        new SourceSpan(offset, offset + lines[i].length(), i + 1, 1)).toString());
+            } else {
+                valid.append(lines[i]).append('\n');
+            }
+        }
+        assertEquals(expectedErrors, errors, message);
+        String withoutErrors = outcome(() -> parser.buildAbstractSyntaxTree(new StringReader(valid.toString()))
+                .interpret(interpreter.getContext()));
+        interpreter.getContext().reset();
+        assertEquals(withoutErrors, String.valueOf(recovered.syntaxTree().interpret(interpreter.getContext())), message);
+        interpreter.getContext().reset();
+    }
+
+    private static String outcome(Supplier<List<String>> interpretation) {
+        try {
+            return String.valueOf(interpretation.get());
+        } catch (SyntaxException e) {
+            return e.toString();
+        }
+    }
+
+    private static String randomProgram(Random random) {
+        StringBuilder source = new StringBuilder();
+        int lines = random.nextInt(20);
+        for (int i = 0; i < lines; i++) {
+            if (random.nextInt(4) == 0) {
+                source.append(INSTRUCTIONS[random.nextInt(INSTRUCTIONS.length)]);
+            } else {
+                int length = random.nextInt(6);
+                for (int c = 0; c < length; c++) source.append((char) ('a' + random.nextInt(4)));
+            }
+            source.append('\n');
+        }
+        return source.toString();
+    }
+}
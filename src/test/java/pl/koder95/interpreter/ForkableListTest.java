@@ -0,0 +1,195 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Sprawdza kopiowanie przy zapisie {@link ForkableList}: zmiany listy po rozwidleniu, także w blokach
+ * współdzielonych i przez sortowanie, nie mogą być widoczne w rozwidleniu, i odwrotnie.
+ */
+class ForkableListTest {
+
+    private static final int[] SIZES = {0, 1, ForkableList.BLOCK_SIZE - 1, ForkableList.BLOCK_SIZE,
+            ForkableList.BLOCK_SIZE + 1, 5 * ForkableList.BLOCK_SIZE + 7};
+
+    @Test
+    void writesAfterForkAreNotVisibleInSibling() {
+        for (int size : SIZES) {
+            ForkableList<Integer> base = new ForkableList<>(range(size));
+            ForkableList<Integer> fork = base.fork();
+            base.add(-1);
+            fork.add(-2);
+            if (size > 0) {
+                base.set(0, -3);
+                fork.set(size - 1, -4);
+            }
+            List<Integer> expectedBase = new ArrayList<>(range(size));
+            List<Integer> expectedFork = new ArrayList<>(range(size));
+            expectedBase.add(-1);
+            expectedFork.add(-2);
+            if (size > 0) {
+                expectedBase.set(0, -3);
+                expectedFork.set(size - 1, -4);
+            }
+            assertEquals(expectedBase, base, "Base of size " + size);
+            assertEquals(expectedFork, fork, "Fork of size " + size);
+        }
+    }
+
+    @Test
+    void sortDoesNotChangeSharedBlocks() {
+        for (int size : SIZES) {
+            List<Integer> shuffled = shuffled(size, new Random(size));
+            ForkableList<Integer> base = new ForkableList<>(shuffled);
+            ForkableList<Integer> fork = base.fork();
+            base.sort(null);
+            assertEquals(shuffled, fork, "Fork after sorting base of size " + size);
+            fork.sort(Comparator.reverseOrder());
+            assertEquals(range(size), base, "Base after sorting fork of size " + size);
+            List<Integer> descending = new ArrayList<>(range(size));
+            Collections.reverse(descending);
+            assertEquals(descending, fork, "Fork of size " + size);
+        }
+    }
+
+    @Test
+    void forkOfForkIsIndependent() {
+        ForkableList<Integer> base = new ForkableList<>(range(3 * ForkableList.BLOCK_SIZE));
+        ForkableList<Integer> first = base.fork();
+        first.set(ForkableList.BLOCK_SIZE, -1);
+        ForkableList<Integer> second = first.fork();
+        second.set(ForkableList.BLOCK_SIZE, -2);
+        first.clear();
+        assertEquals(range(3 * ForkableList.BLOCK_SIZE), base);
+        assertEquals(0, first.size());
+        assertEquals(-2, second.get(ForkableList.BLOCK_SIZE));
+        assertEquals(3 * ForkableList.BLOCK_SIZE, second.size());
+    }
+
+    @Test
+    void matchesArrayListUnderRandomOperations() {
+        Random random = new Random(22);
+        List<ForkableList<Integer>> lists = new ArrayList<>(List.of(new ForkableList<>()));
+        List<List<Integer>> expected = new ArrayList<>(List.of(new ArrayList<>()));
+        for (int step = 0; step < 20_000; step++) {
+            int which = random.nextInt(lists.size());
+            ForkableList<Integer> list = lists.get(which);
+            List<Integer> model = expected.get(which);
+            switch (random.nextInt(10)) {
+                case 0 -> {
+                    lists.add(list.fork());
+                    expected.add(new ArrayList<>(model));
+                }
+                case 1 -> {
+                    list.sort(null);
+                    model.sort(null);
+                }
+                case 2 -> {
+                    if (random.nextInt(20) == 0) {
+                        list.clear();
+                        model.clear();
+                    }
+                }
+                case 3 -> {
+                    List<Integer> more = shuffled(random.nextInt(100), random);
+                    list.addAll(more);
+                    model.addAll(more);
+                }
+                case 4, 5 -> {
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        list.set(index, step);
+                        model.set(index, step);
+                    }
+                }
+                default -> {
+                    list.add(step);
+                    model.add(step);
+                }
+            }
+            if (lists.size() > 16) {
+                lists.remove(0);
+                expected.remove(0);
+            }
+        }
+        for (int i = 0; i < lists.size(); i++) assertEquals(expected.get(i), lists.get(i));
+    }
+
+    @Test
+    void concurrentForksOfOneListAreIndependent() throws Exception {
+        ForkableList<Integer> base = new ForkableList<>(range(10 * ForkableList.BLOCK_SIZE));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int task = 0; task < 64; task++) {
+                int value = -task - 1;
+                results.add(executor.submit(() -> {
+                    ForkableList<Integer> fork = base.fork();
+                    for (int i = 0; i < fork.size(); i += 7) fork.set(i, value);
+                    fork.add(value);
+                    return fork;
+                }));
+            }
+            for (int task = 0; task < results.size(); task++) {
+                List<Integer> expected = new ArrayList<>(range(10 * ForkableList.BLOCK_SIZE));
+                for (int i = 0; i < expected.size(); i += 7) expected.set(i, -task - 1);
+                expected.add(-task - 1);
+                assertEquals(expected, results.get(task).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        base.set(0, 100);
+        List<Integer> expected = new ArrayList<>(range(10 * ForkableList.BLOCK_SIZE));
+        expected.set(0, 100);
+        assertEquals(expected, base);
+    }
+
+    @Test
+    void forkedExampleContextsMatchSeparateInterpretation() {
+        // Linie dodane po ORDER BY REV trafiają do drugiej listy magazynu, a sortowanie dołącza je bez kopiowania
+        // linii z powrotem do kontekstu.
+        String source = "x\nORDER BY REV\nb\nORDER BY ASC\nORDER BY REV\nz\na\nORDER BY REV\n";
+        List<String> shared = new ArrayList<>();
+        for (int i = 0; i < 3 * ForkableList.BLOCK_SIZE; i++) shared.add("s" + i);
+        List<List<String>> variants = List.of(List.of(), List.of("v1"), List.of("v2", "a", "s5"), shared);
+        List<List<String>> forked = Example.interpret(new StringReader(source), shared, variants);
+        for (int i = 0; i < variants.size(); i++) {
+            List<String> lines = new ArrayList<>(shared);
+            lines.addAll(variants.get(i));
+            assertEquals(Example.interpret(new StringReader(source), lines.toArray(String[]::new)), forked.get(i));
+        }
+    }
+
+    @Test
+    void positionalInsertAndRemoveAreUnsupported() {
+        ForkableList<Integer> list = new ForkableList<>(range(3));
+        assertThrows(UnsupportedOperationException.class, () -> list.add(0, 1));
+        assertThrows(UnsupportedOperationException.class, () -> list.remove(0));
+        assertThrows(UnsupportedOperationException.class, () -> list.removeIf(element -> element == 1));
+        assertEquals(range(3), list);
+    }
+
+    private static List<Integer> range(int size) {
+        return IntStream.range(0, size).boxed().toList();
+    }
+
+    private static List<Integer> shuffled(int size, Random random) {
+        List<Integer> list = new ArrayList<>(range(size));
+        Collections.shuffle(list, random);
+        return list;
+    }
+}
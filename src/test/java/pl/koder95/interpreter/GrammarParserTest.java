@@ -0,0 +1,277 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Scanner;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sprawdza parser tablicowy utworzony z {@link Grammar gramatyki}: wybór produkcji według zbiorów FIRST i FOLLOW,
+ * wykrywanie gramatyk, które nie są LL(1), powtórzenia elementów nieterminalnych, przekazywanie elementów
+ * ({@link GrammarParser#streamElements(Queue, java.util.function.Consumer)}) i wznawianie po błędach.
+ */
+class GrammarParserTest {
+
+    /**
+     * Token z tekstu rozdzielonego spacjami; jego kolumna to numer tokenu (od 1).
+     */
+    private record Word(String text, SourceSpan span) implements NonTerminalExpression<String> {
+        @Override
+        public String getObject() {
+            return text;
+        }
+
+        @Override
+        public SourceSpan getSpan() {
+            return span;
+        }
+    }
+
+    /**
+     * Korzeń drzewa przechowujący wartość symbolu startowego.
+     */
+    private record Tree(Object value) implements TerminalExpression<Context, Object> {
+        @Override
+        public Object interpret(Context context) {
+            return value;
+        }
+
+        @Override
+        public String asString() {
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * Tokenizer dzielący tekst na słowa rozdzielone spacjami.
+     */
+    private static final class Words extends Tokenizer {
+        private final Queue<NonTerminalExpression<?>> words = new ArrayDeque<>();
+
+        @Override
+        public void setSource(Readable source) {
+            super.setSource(source);
+            words.clear();
+            StringBuilder text = new StringBuilder();
+            try (Scanner scanner = new Scanner(source)) {
+                while (scanner.hasNextLine()) text.append(scanner.nextLine());
+            }
+            words.addAll(tokens(text.toString()));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !words.isEmpty();
+        }
+
+        @Override
+        public NonTerminalExpression<?> next() {
+            return words.remove();
+        }
+    }
+
+    private static Queue<NonTerminalExpression<?>> tokens(String text) {
+        Queue<NonTerminalExpression<?>> tokens = new ArrayDeque<>();
+        int offset = 0;
+        for (String word : text.split(" ")) {
+            if (!word.isEmpty()) {
+                tokens.add(new Word(word, new SourceSpan(offset, offset + word.length(), 1, tokens.size() + 1)));
+            }
+            offset += word.length() + 1;
+        }
+        return tokens;
+    }
+
+    /**
+     * Gramatyka z pustymi produkcjami: S → A B c, A → a A | ε, B → b | ε.
+     */
+    private static GrammarParser<Context, Object> nullable() {
+        Grammar<Context, Object> grammar = new Grammar<>();
+        Grammar.Terminal a = grammar.terminal("a"), b = grammar.terminal("b"), c = grammar.terminal("c");
+        Grammar.Terminal d = grammar.terminal("d");
+        Grammar.Nonterminal s = grammar.nonterminal("S"), as = grammar.nonterminal("A"), bs = grammar.nonterminal("B");
+        grammar.rule(s, values -> new Tree(values.get(0) + "|" + values.get(1)), as, bs, c)
+                .rule(as, values -> "a" + values.get(1), a, as)
+                .rule(as, values -> "")
+                .rule(bs, values -> "b", b)
+                .rule(bs, values -> "");
+        return grammar.build(s, token -> switch (token.asString()) {
+            case "a" -> a;
+            case "b" -> b;
+            case "c" -> c;
+            case "d" -> d;
+            default -> null;
+        }, Words::new);
+    }
+
+    @Test
+    void choosesEmptyProductionsByFollowSets() {
+        GrammarParser<Context, Object> parser = nullable();
+        assertEquals("|", parse(parser, "c"));
+        assertEquals("aaa|", parse(parser, "a a a c"));
+        assertEquals("|b", parse(parser, "b c"));
+        assertEquals("a|b", parse(parser, "a b c"));
+    }
+
+    @Test
+    void reportsExpectedTerminalsFromFirstAndFollowSets() {
+        GrammarParser<Context, Object> parser = nullable();
+        // FIRST(S) = {a, b, c}, bo A i B mogą być puste.
+        assertEquals("Unexpected token d (d), expected: a, b, c at 1:1 [0..1)", error(parser, "d"));
+        // A → ε wybierane jest po FOLLOW(A) = {b, c}.
+        assertEquals("Unexpected token d (d), expected: a, b, c at 1:2 [2..3)", error(parser, "a d"));
+        assertEquals("Unexpected token a (a), expected: c at 1:2 [2..3)", error(parser, "b a"));
+        assertEquals("Unexpected end of input, expected: a, b, c", error(parser, "a"));
+        assertEquals("Unrecognized token: x at 1:2 [2..3)", error(parser, "a x c"));
+    }
+
+    @Test
+    void rejectsGrammarsThatAreNotLl1() {
+        Grammar<Context, Object> common = new Grammar<>();
+        Grammar.Terminal a = common.terminal("a"), b = common.terminal("b");
+        Grammar.Nonterminal s = common.nonterminal("S");
+        common.rule(s, values -> null, a).rule(s, values -> null, a, b);
+        assertEquals("Grammar is not LL(1): productions 0 and 1 of S both start with a",
+                assertThrows(IllegalArgumentException.class, () -> build(common, s)).getMessage());
+
+        Grammar<Context, Object> leftRecursive = new Grammar<>();
+        Grammar.Terminal plus = leftRecursive.terminal("+"), n = leftRecursive.terminal("n");
+        Grammar.Nonterminal e = leftRecursive.nonterminal("E");
+        leftRecursive.rule(e, values -> null, e, plus, n).rule(e, values -> null, n);
+        assertEquals("Grammar is not LL(1): productions 0 and 1 of E both start with n",
+                assertThrows(IllegalArgumentException.class, () -> build(leftRecursive, e)).getMessage());
+
+        Grammar<Context, Object> ambiguousRepetition = new Grammar<>();
+        Grammar.Terminal x = ambiguousRepetition.terminal("x");
+        Grammar.Nonterminal list = ambiguousRepetition.nonterminal("L");
+        ambiguousRepetition.rule(list, values -> null, ambiguousRepetition.zeroOrMore(x), x);
+        assertEquals("Grammar is not LL(1): x* may be followed by x",
+                assertThrows(IllegalArgumentException.class, () -> build(ambiguousRepetition, list)).getMessage());
+
+        Grammar<Context, Object> emptyElement = new Grammar<>();
+        Grammar.Nonterminal program = emptyElement.nonterminal("P"), empty = emptyElement.nonterminal("E");
+        emptyElement.rule(program, values -> null, emptyElement.zeroOrMore(empty)).rule(empty, values -> null);
+        assertEquals("Repeated symbol in E* matches an empty sequence",
+                assertThrows(IllegalArgumentException.class, () -> build(emptyElement, program)).getMessage());
+
+        Grammar<Context, Object> undefined = new Grammar<>();
+        Grammar.Nonterminal start = undefined.nonterminal("S"), missing = undefined.nonterminal("M");
+        undefined.rule(start, values -> null, missing);
+        assertEquals("Nonterminal M has no productions",
+                assertThrows(IllegalArgumentException.class, () -> build(undefined, start)).getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> undefined.rule(start, values -> null, a));
+    }
+
+    private static GrammarParser<Context, Object> build(Grammar<Context, Object> grammar, Grammar.Nonterminal start) {
+        return grammar.build(start, token -> null, Words::new);
+    }
+
+    @Test
+    void repeatsNonterminalElements() {
+        GrammarParser<Context, Object> parser = nested();
+        assertEquals("", parse(parser, ""));
+        assertEquals("1,[2,[],3],[[4]],5", parse(parser, "1 ( 2 ( ) 3 ) ( ( 4 ) ) 5"));
+        assertEquals("Unexpected end of input, expected: )", error(parser, "( 1"));
+        assertEquals("Unexpected token ) ()), expected: end of input at 1:2 [2..3)", error(parser, "1 )"));
+        assertEquals("Zero is not allowed at 1:3 [4..5)", error(parser, "( 1 0 )"));
+
+        // Zagnieżdżenie i długość listy nie są ograniczone stosem wywołań.
+        int depth = 100_000;
+        String deep = "( ".repeat(depth) + ") ".repeat(depth);
+        assertEquals("[".repeat(depth) + "]".repeat(depth), parse(parser, deep));
+        String longList = "1 ".repeat(depth);
+        assertEquals(depth, ((String) parse(parser, longList)).split(",").length);
+    }
+
+    @Test
+    void streamsTopLevelElementsOnly() {
+        GrammarParser<Context, Object> parser = nested();
+        List<Object> elements = new ArrayList<>();
+        TerminalExpression<Context, Object> tree = parser.streamElements(tokens("1 ( 2 ( 3 ) ) 4"), elements::add);
+        assertEquals(List.of("1", "[2,[3]]", "4"), elements);
+        assertEquals("", tree.interpret(null));
+
+        elements.clear();
+        SyntaxException e = assertThrows(SyntaxException.class,
+                () -> parser.streamElements(tokens("1 ( 2 ) 0 3"), elements::add));
+        assertEquals("Zero is not allowed at 1:5 [8..9)", description(e));
+        assertEquals(List.of("1", "[2]"), elements);
+    }
+
+    @Test
+    void recoversFromErrorsInRepeatedElements() {
+        GrammarParser<Context, Object> parser = nested();
+        ParseResult<Context, Object> result = parser.buildAbstractSyntaxTreeWithRecovery(
+                new StringReader("1 0 ( 2 0 3 ) x ; 4 ( 5 ; ) 6"));
+        assertEquals("1,[2,3],4,[5],6", result.syntaxTree().interpret(null));
+        assertEquals(List.of("Zero is not allowed at 1:2 [2..3)", "Zero is not allowed at 1:5 [8..9)",
+                        "Unrecognized token: x at 1:8 [14..15)", "Unrecognized token: ; at 1:13 [24..25)"),
+                descriptions(result));
+
+        // Niedokończony element jest porzucany w całości.
+        ParseResult<Context, Object> unclosed = parser.buildAbstractSyntaxTreeWithRecovery(new StringReader("1 ( 2"));
+        assertEquals("1", unclosed.syntaxTree().interpret(null));
+        assertEquals(List.of("Unexpected end of input, expected: )"), descriptions(unclosed));
+
+        ParseResult<Context, Object> valid = parser.buildAbstractSyntaxTreeWithRecovery(new StringReader("1 ( 2 )"));
+        assertTrue(valid.isSuccess());
+        assertEquals(parse(parser, "1 ( 2 )"), valid.syntaxTree().interpret(null));
+    }
+
+    @Test
+    void recoveryWithoutRepetitionReturnsNoTree() {
+        ParseResult<Context, Object> result = nullable().buildAbstractSyntaxTreeWithRecovery(new StringReader("a d c"));
+        assertNull(result.syntaxTree());
+        assertEquals(List.of("Unexpected token d (d), expected: a, b, c at 1:2 [2..3)"), descriptions(result));
+    }
+
+    private static GrammarParser<Context, Object> nested() {
+        Grammar<Context, Object> grammar = new Grammar<>();
+        Grammar.Terminal open = grammar.terminal("("), close = grammar.terminal(")"), n = grammar.terminal("n");
+        Grammar.Nonterminal program = grammar.nonterminal("P"), item = grammar.nonterminal("I");
+        Grammar.Symbol items = grammar.zeroOrMore(item);
+        grammar.rule(program, values -> new Tree(join(values.get(0))), items)
+                .rule(item, values -> "[" + join(values.get(1)) + "]", open, items, close)
+                .rule(item, values -> {
+                    Word word = (Word) values.get(0);
+                    if (word.text().equals("0")) throw new SyntaxException("Zero is not allowed", word.getSpan());
+                    return word.text();
+                }, n);
+        return grammar.build(program, token -> switch (token.asString()) {
+            case "(" -> open;
+            case ")" -> close;
+            default -> Character.isDigit(token.asString().charAt(0)) ? n : null;
+        }, Words::new);
+    }
+
+    private static String join(Object list) {
+        return ((List<?>) list).stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private static Object parse(GrammarParser<Context, Object> parser, String text) {
+        return parser.buildAbstractSyntaxTree(tokens(text)).interpret(null);
+    }
+
+    private static String error(GrammarParser<Context, Object> parser, String text) {
+        return description(assertThrows(SyntaxException.class, () -> parser.buildAbstractSyntaxTree(tokens(text))));
+    }
+
+    private static List<String> descriptions(ParseResult<?, ?> result) {
+        return result.errors().stream().map(GrammarParserTest::description).collect(Collectors.toList());
+    }
+
+    private static String description(SyntaxException e) {
+        return e.getSpan() == null ? e.getMessage() : e.getMessage() + " at " + e.getSpan();
+    }
+}
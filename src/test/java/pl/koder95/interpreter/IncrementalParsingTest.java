@@ -0,0 +1,87 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Porównuje ponowne parsowanie zmienionego fragmentu ({@link Parser#rebuildAbstractSyntaxTree(TerminalExpression,
+ * TextEdit, String)}) w języku przykładu ({@link Example}) z parsowaniem całego zmienionego źródła: drzewa muszą mieć
+ * te same instrukcje i te same położenia, a błędy składniowe te same komunikaty.
+ */
+class IncrementalParsingTest {
+
+    private static final String[] PIECES = {
+            "a", "b", "xy", "", "\n", "\r\n", "\r",
+            "ORDER BY ASC\n", "ORDER BY REV", "ORDER BY REV\n", "ORDER BY\n", "ORDER BY DSC\r\n", "ORDER BY X\n"
+    };
+
+    @Test
+    void rebuiltTreeEqualsFullParse() {
+        check(Example.newInterpreter(), false);
+    }
+
+    @Test
+    void rebuiltOptimizedTreeHasSameInstructionsAsFullParse() {
+        check(Example.newInterpreter(), true);
+    }
+
+    private static <C extends Context> void check(Interpreter<C, List<String>> interpreter, boolean optimized) {
+        Parser<C, List<String>> parser = interpreter.getParser();
+        Random random = new Random(12);
+        int checked = 0;
+        for (int run = 0; run < 50_000; run++) {
+            String source = randomSource(random);
+            TerminalExpression<C, List<String>> previous;
+            try {
+                previous = optimized ? interpreter.prepare(new StringReader(source))
+                        : parser.buildAbstractSyntaxTree(new StringReader(source));
+            } catch (SyntaxException e) {
+                continue;
+            }
+            int offset = random.nextInt(source.length() + 1);
+            TextEdit edit = new TextEdit(offset, random.nextInt(source.length() - offset + 1),
+                    PIECES[random.nextInt(PIECES.length)]);
+            String edited = edit.apply(source);
+            String full = describe(() -> optimized ? interpreter.prepare(new StringReader(edited))
+                    : parser.buildAbstractSyntaxTree(new StringReader(edited)), optimized);
+            String rebuilt = describe(() -> optimized ? interpreter.prepare(previous, edit, edited)
+                    : parser.rebuildAbstractSyntaxTree(previous, edit, edited), optimized);
+            assertEquals(full, rebuilt, () -> "Source: " + escape(source) + ", edit: " + edit);
+            checked++;
+        }
+        assertTrue(checked > 10_000, "Too few valid sources: " + checked);
+    }
+
+    private static String randomSource(Random random) {
+        StringBuilder source = new StringBuilder();
+        int pieces = random.nextInt(8);
+        for (int i = 0; i < pieces; i++) source.append(PIECES[random.nextInt(PIECES.length)]);
+        return source.toString();
+    }
+
+    /**
+     * Opisuje drzewo: zapis rekordu drzewa przykładu zawiera instrukcje i ich położenia. Położenia drzewa
+     * zoptymalizowanego mogą się różnić, bo położenia usuniętych instrukcji dołączane są do sąsiednich, dlatego
+     * porównywane są wtedy tylko instrukcje.
+     */
+    private static String describe(Supplier<? extends TerminalExpression<?, ?>> tree,
+                                   boolean optimized) {
+        try {
+            TerminalExpression<?, ?> ast = tree.get();
+            return optimized ? ast.children().toString() : ast.toString();
+        } catch (SyntaxException e) {
+            return e.toString();
+        }
+    }
+
+    private static String escape(String source) {
+        return '"' + source.replace("\r", "\\r").replace("\n", "\\n") + '"';
+    }
+}
@@ -0,0 +1,259 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sprawdza {@link InterpreterPool}: ponowne użycie interpretera, kontekstu i tokenizera w kolejnych sesjach,
+ * czyszczenie kontekstu przy zamknięciu, rozdzielność jednocześnie otwartych sesji oraz zamykanie sesji
+ * już zamkniętych.
+ */
+class InterpreterPoolTest {
+
+    private final AtomicInteger contexts = new AtomicInteger();
+    private final AtomicInteger tokenizers = new AtomicInteger();
+
+    /**
+     * Kontekst zbierający słowa; słowo {@code reset-fails} powoduje błąd czyszczenia kontekstu.
+     */
+    private static final class Notes implements Context {
+        private final List<String> words = new ArrayList<>();
+
+        @Override
+        public void reset() {
+            if (words.contains("reset-fails")) throw new IllegalStateException("Cannot reset");
+            words.clear();
+        }
+    }
+
+    private record Word(String text) implements NonTerminalExpression<String> {
+        @Override
+        public String getObject() {
+            return text;
+        }
+    }
+
+    /**
+     * Słowa rozdzielone spacjami; słowo {@code !} jest błędem składniowym.
+     */
+    private static final class Words extends BufferedTokenizer {
+        private Words() {
+            super(8);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (peek() == ' ') advance();
+            return !atEnd();
+        }
+
+        @Override
+        public Word next() {
+            hasNext();
+            mark();
+            advanceTo(' ', ' ');
+            if (text().equals("!")) throw new SyntaxException("Unexpected token: !", span());
+            return new Word(text());
+        }
+    }
+
+    private record Append(List<String> words) implements TerminalExpression<Notes, List<String>> {
+        @Override
+        public List<String> interpret(Notes context) {
+            context.words.addAll(words);
+            return List.copyOf(context.words);
+        }
+
+        @Override
+        public String asString() {
+            return String.join(" ", words);
+        }
+    }
+
+    private final class NotesParser implements Parser<Notes, List<String>> {
+        @Override
+        public Tokenizer getTokenizer() {
+            return newTokenizer();
+        }
+
+        @Override
+        public Tokenizer newTokenizer() {
+            tokenizers.incrementAndGet();
+            return new Words();
+        }
+
+        @Override
+        public TerminalExpression<Notes, List<String>> buildAbstractSyntaxTree(Queue<NonTerminalExpression<?>> tokens) {
+            List<String> words = new ArrayList<>();
+            for (NonTerminalExpression<?> token; (token = tokens.poll()) != null; ) words.add(((Word) token).text());
+            return new Append(words);
+        }
+    }
+
+    private record NotesInterpreter(Notes context, Parser<Notes, List<String>> parser)
+            implements Interpreter<Notes, List<String>> {
+        @Override
+        public Notes getContext() {
+            return context;
+        }
+
+        @Override
+        public Parser<Notes, List<String>> getParser() {
+            return parser;
+        }
+    }
+
+    private InterpreterPool<Notes, List<String>, NotesInterpreter> pool(int capacity) {
+        NotesParser parser = new NotesParser();
+        Client<Notes, List<String>, NotesInterpreter> client = context -> new NotesInterpreter(context, parser);
+        return new InterpreterPool<>(client, () -> {
+            contexts.incrementAndGet();
+            return new Notes();
+        }, capacity);
+    }
+
+    @Test
+    void reusesResourcesOfClosedSession() {
+        InterpreterPool<Notes, List<String>, NotesInterpreter> pool = pool(2);
+        NotesInterpreter interpreter;
+        try (InterpreterPool.Session<Notes, List<String>, NotesInterpreter> session = pool.acquire()) {
+            interpreter = session.interpreter();
+            assertEquals(List.of("a", "b"), session.interpret(new StringReader("a b")));
+            // Kolejne źródła w tej samej sesji korzystają z kontekstu zmienionego przez poprzednie.
+            assertEquals(List.of("a", "b", "c"), session.interpret(new StringReader("c")));
+        }
+        assertEquals(1, pool.idle());
+        try (InterpreterPool.Session<Notes, List<String>, NotesInterpreter> session = pool.acquire()) {
+            assertSame(interpreter, session.interpreter());
+            assertEquals(List.of(), session.context().words);
+            assertEquals(List.of("d"), session.interpret(new StringReader("d")));
+        }
+        assertEquals(1, contexts.get());
+        assertEquals(1, tokenizers.get());
+    }
+
+    @Test
+    void separatesOpenSessions() {
+        InterpreterPool<Notes, List<String>, NotesInterpreter> pool = pool(2);
+        InterpreterPool.Session<Notes, List<String>, NotesInterpreter> first = pool.acquire();
+        InterpreterPool.Session<Notes, List<String>, NotesInterpreter> second = pool.acquire();
+        assertNotSame(first.context(), second.context());
+        first.interpret(new StringReader("a"));
+        assertEquals(List.of("b"), second.interpret(new StringReader("b")));
+        assertEquals(List.of("a"), first.context().words);
+        first.close();
+        second.close();
+        assertEquals(2, pool.idle());
+    }
+
+    @Test
+    void keepsAtMostCapacityIdleSessions() {
+        InterpreterPool<Notes, List<String>, NotesInterpreter> pool = pool(2);
+        List<InterpreterPool.Session<Notes, List<String>, NotesInterpreter>> sessions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) sessions.add(pool.acquire());
+        sessions.forEach(InterpreterPool.Session::close);
+        assertEquals(2, pool.idle());
+        assertEquals(3, contexts.get());
+    }
+
+    @Test
+    void closingClosedSessionDoesNotAffectNextSession() {
+        InterpreterPool<Notes, List<String>, NotesInterpreter> pool = pool(2);
+        InterpreterPool.Session<Notes, List<String>, NotesInterpreter> closed = pool.acquire();
+        closed.close();
+        assertThrows(IllegalStateException.class, closed::interpreter);
+        assertThrows(IllegalStateException.class, closed::context);
+        assertThrows(IllegalStateException.class, () -> closed.interpret(new StringReader("a")));
+
+        InterpreterPool.Session<Notes, List<String>, NotesInterpreter> next = pool.acquire();
+        next.interpret(new StringReader("a"));
+        closed.close();
+        // Ponowne zamknięcie nie wyczyściło kontekstu i nie zwróciło do puli zasobów używanych przez inną sesję.
+        assertEquals(List.of("a"), next.context().words);
+        assertEquals(0, pool.idle());
+        next.close();
+        next.close();
+        assertEquals(1, pool.idle());
+    }
+
+    @Test
+    void recoversTokenizerAfterSyntaxError() {
+        InterpreterPool<Notes, List<String>, NotesInterpreter> pool = pool(1);
+        try (InterpreterPool.Session<Notes, List<String>, NotesInterpreter> session = pool.acquire()) {
+            assertThrows(SyntaxException.class, () -> session.interpret(new StringReader("a ! b")));
+        }
+        try (InterpreterPool.Session<Notes, List<String>, NotesInterpreter> session = pool.acquire()) {
+            assertEquals(List.of("c"), session.interpret(new StringReader("c")));
+        }
+        assertEquals(1, tokenizers.get());
+    }
+
+    @Test
+    void dropsSessionWhoseContextCannotBeReset() {
+        InterpreterPool<Notes, List<String>, NotesInterpreter> pool = pool(1);
+        InterpreterPool.Session<Notes, List<String>, NotesInterpreter> session = pool.acquire();
+        session.interpret(new StringReader("reset-fails"));
+        assertThrows(IllegalStateException.class, session::close);
+        assertEquals(0, pool.idle());
+        try (InterpreterPool.Session<Notes, List<String>, NotesInterpreter> next = pool.acquire()) {
+            assertEquals(List.of(), next.context().words);
+        }
+        assertEquals(2, contexts.get());
+    }
+
+    @Test
+    void isolatesSessionsOfManyThreads() throws Exception {
+        InterpreterPool<Notes, List<String>, NotesInterpreter> pool = pool(4);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        String word = thread + "-" + i;
+                        try (InterpreterPool.Session<Notes, List<String>, NotesInterpreter> session = pool.acquire()) {
+                            assertEquals(List.of(word, word), session.interpret(new StringReader(word + " " + word)));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) task.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.idle() <= 4);
+        assertEquals(contexts.get(), tokenizers.get());
+    }
+
+    @Test
+    void examplePoolMatchesFreshInterpreter() {
+        String source = "b\nORDER BY DSC\na\nORDER BY ASC\nc\n";
+        for (int i = 0; i < 3; i++) {
+            List<String> output = new ArrayList<>();
+            Example.interpret(new StringReader(source), output::add, "d");
+            assertEquals(Example.interpret(new StringReader(source), "d"), output);
+        }
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> pool(0));
+        assertThrows(NullPointerException.class,
+                () -> new InterpreterPool<Notes, List<String>, NotesInterpreter>(null, Notes::new, 1));
+    }
+}
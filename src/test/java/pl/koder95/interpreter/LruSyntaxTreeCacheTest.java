@@ -0,0 +1,182 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sprawdza {@link LruSyntaxTreeCache}: trafienia, usuwanie najdawniej używanych drzew po przekroczeniu limitów,
+ * pomijanie niepoprawnych źródeł oraz korzystanie z pamięci podręcznej przez {@link Interpreter#prepare(String)}.
+ */
+class LruSyntaxTreeCacheTest {
+
+    private record Tree(String source) implements TerminalExpression<Context, String> {
+        @Override
+        public String interpret(Context context) {
+            return source;
+        }
+
+        @Override
+        public String asString() {
+            return source;
+        }
+    }
+
+    private final AtomicInteger builds = new AtomicInteger();
+
+    private final Function<String, TerminalExpression<Context, String>> builder = source -> {
+        builds.incrementAndGet();
+        if (source.contains("!")) throw new SyntaxException("Unexpected token: !");
+        return new Tree(source);
+    };
+
+    private record Cached<C extends Context, R>(Interpreter<C, R> delegate, SyntaxTreeCache<C, R> cache)
+            implements Interpreter<C, R> {
+
+        @Override
+        public C getContext() {
+            return delegate.getContext();
+        }
+
+        @Override
+        public Parser<C, R> getParser() {
+            return delegate.getParser();
+        }
+
+        @Override
+        public SyntaxTreeOptimizer<C> getOptimizer() {
+            return delegate.getOptimizer();
+        }
+
+        @Override
+        public SyntaxTreeCache<C, R> getSyntaxTreeCache() {
+            return cache;
+        }
+    }
+
+    @Test
+    void returnsCachedTree() {
+        LruSyntaxTreeCache<Context, String> cache = new LruSyntaxTreeCache<>(4);
+        TerminalExpression<Context, String> first = cache.get("a", builder);
+        assertSame(first, cache.get("a", builder));
+        assertNotSame(first, cache.get("b", builder));
+        assertEquals(2, builds.get());
+        assertEquals(new SyntaxTreeCache.Statistics(1, 2, 0, 2), cache.statistics());
+        assertEquals(1 / 3.0, cache.statistics().hitRate(), 1e-9);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedTree() {
+        LruSyntaxTreeCache<Context, String> cache = new LruSyntaxTreeCache<>(2);
+        TerminalExpression<Context, String> a = cache.get("a", builder);
+        cache.get("b", builder);
+        cache.get("a", builder);
+        cache.get("c", builder);
+        // Drzewo "b" było używane najdawniej, więc zostało usunięte jako pierwsze.
+        assertSame(a, cache.get("a", builder));
+        assertEquals(3, builds.get());
+        cache.get("b", builder);
+        assertEquals(4, builds.get());
+        assertEquals(2, cache.statistics().evictions());
+        assertEquals(2, cache.statistics().size());
+    }
+
+    @Test
+    void limitsTotalSourceLength() {
+        LruSyntaxTreeCache<Context, String> cache = new LruSyntaxTreeCache<>(100, 5);
+        cache.get("abc", builder);
+        cache.get("de", builder);
+        assertEquals(2, cache.statistics().size());
+        cache.get("fg", builder);
+        assertEquals(new SyntaxTreeCache.Statistics(0, 3, 1, 2), cache.statistics());
+        // Źródło dłuższe niż cały limit nie jest zapamiętywane i nie usuwa innych drzew.
+        cache.get("longer", builder);
+        cache.get("longer", builder);
+        assertEquals(new SyntaxTreeCache.Statistics(0, 5, 1, 2), cache.statistics());
+        cache.get("de", builder);
+        assertEquals(5, builds.get());
+    }
+
+    @Test
+    void doesNotCacheInvalidSources() {
+        LruSyntaxTreeCache<Context, String> cache = new LruSyntaxTreeCache<>(4);
+        assertThrows(SyntaxException.class, () -> cache.get("a!", builder));
+        assertThrows(SyntaxException.class, () -> cache.get("a!", builder));
+        assertEquals(2, builds.get());
+        assertEquals(0, cache.statistics().size());
+    }
+
+    @Test
+    void clearRemovesTrees() {
+        LruSyntaxTreeCache<Context, String> cache = new LruSyntaxTreeCache<>(4, 4);
+        cache.get("abcd", builder);
+        cache.clear();
+        assertEquals(0, cache.statistics().size());
+        // Po wyczyszczeniu cały limit długości źródeł jest znów dostępny.
+        cache.get("abcd", builder);
+        cache.get("abcd", builder);
+        assertEquals(2, builds.get());
+        assertEquals(0, cache.statistics().evictions());
+    }
+
+    @Test
+    void keepsFirstOfConcurrentlyBuiltTrees() throws Exception {
+        LruSyntaxTreeCache<Context, String> cache = new LruSyntaxTreeCache<>(4);
+        CountDownLatch building = new CountDownLatch(2);
+        Function<String, TerminalExpression<Context, String>> slow = source -> {
+            building.countDown();
+            try {
+                assertTrue(building.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return new Tree(source);
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<TerminalExpression<Context, String>> first = executor.submit(() -> cache.get("a", slow));
+            Future<TerminalExpression<Context, String>> second = executor.submit(() -> cache.get("a", slow));
+            assertSame(first.get(), second.get());
+            assertEquals(new SyntaxTreeCache.Statistics(0, 2, 0, 1), cache.statistics());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new LruSyntaxTreeCache<>(0));
+        assertThrows(IllegalArgumentException.class, () -> new LruSyntaxTreeCache<>(1, 0));
+    }
+
+    @Test
+    void interpreterReusesPreparedTrees() {
+        assertCachedInterpretation(Example.newInterpreter());
+    }
+
+    private static <C extends Context> void assertCachedInterpretation(Interpreter<C, List<String>> example) {
+        LruSyntaxTreeCache<C, List<String>> cache = new LruSyntaxTreeCache<>(8);
+        Interpreter<C, List<String>> interpreter = new Cached<>(example, cache);
+        String source = "b\na\nORDER BY ASC\n";
+        assertSame(interpreter.prepare(source), interpreter.prepare(source));
+        assertEquals(List.of("a", "b"), interpreter.interpret(source));
+        interpreter.getContext().reset();
+        assertEquals(List.of("a", "b"), interpreter.interpret(source));
+        assertEquals(new SyntaxTreeCache.Statistics(3, 1, 0, 1), cache.statistics());
+        assertThrows(SyntaxException.class, () -> interpreter.prepare("ORDER BY XYZ\n"));
+        assertEquals(1, cache.statistics().size());
+    }
+}
@@ -0,0 +1,103 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Sprawdza dekodowanie plików przez {@link MappedFileSource} dla buforów różnej wielkości i rodzaju, zgłaszanie
+ * niepoprawnie zakodowanych bajtów oraz interpretację plików przez {@link Interpreter#interpret(Path)}.
+ */
+class MappedFileSourceTest {
+
+    private static final String TEXT = "Zażółć gęślą jaźń\r\nascii only line\n😀 emoji €\n" + "x".repeat(5000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void decodesTextForEveryBufferSize() throws IOException {
+        for (Charset charset : List.of(StandardCharsets.UTF_8, StandardCharsets.UTF_16LE)) {
+            Path file = write(TEXT.getBytes(charset));
+            // Para surogatów wymaga miejsca na dwa znaki, więc najmniejszy bufor ma długość 2.
+            for (int capacity : new int[]{2, 3, 7, 64, 8192}) {
+                assertEquals(TEXT, readAll(file, charset, CharBuffer.allocate(capacity)), charset + "/" + capacity);
+                CharBuffer direct = ByteBuffer.allocateDirect(capacity * 2).asCharBuffer();
+                assertEquals(TEXT, readAll(file, charset, direct), charset + "/direct " + capacity);
+            }
+        }
+    }
+
+    @Test
+    void decodesSingleByteCharset() throws IOException {
+        Charset charset = Charset.forName("ISO-8859-2");
+        String text = "Zażółć gęślą jaźń";
+        assertEquals(text, readAll(write(text.getBytes(charset)), charset, CharBuffer.allocate(4)));
+    }
+
+    @Test
+    void readsEmptyFile() throws IOException {
+        try (MappedFileSource source = new MappedFileSource(write(new byte[0]))) {
+            assertEquals(0, source.size());
+            assertEquals(-1, source.read(CharBuffer.allocate(8)));
+            assertEquals(-1, source.read(CharBuffer.allocate(8)));
+        }
+    }
+
+    @Test
+    void reportsMalformedBytes() throws IOException {
+        Path malformed = write(new byte[]{'a', 'b', (byte) 0xFF, 'c'});
+        assertThrows(CharacterCodingException.class,
+                () -> readAll(malformed, StandardCharsets.UTF_8, CharBuffer.allocate(16)));
+        // Plik kończy się w połowie dwubajtowej sekwencji znaku 'ż'.
+        Path truncated = write(new byte[]{'a', (byte) 0xC5});
+        assertThrows(CharacterCodingException.class,
+                () -> readAll(truncated, StandardCharsets.UTF_8, CharBuffer.allocate(16)));
+    }
+
+    @Test
+    void rejectsReadAfterClose() throws IOException {
+        MappedFileSource source = new MappedFileSource(write("abc".getBytes(StandardCharsets.UTF_8)));
+        source.close();
+        assertThrows(IOException.class, () -> source.read(CharBuffer.allocate(8)));
+    }
+
+    @Test
+    void interpretsFileLikeReader() throws IOException {
+        String program = "ż\nb\na\nORDER BY ASC\nc\nORDER BY DSC\n";
+        Path file = write(program.getBytes(StandardCharsets.UTF_8));
+        assertEquals(Example.newInterpreter().interpret(new StringReader(program)),
+                Example.newInterpreter().interpret(file));
+        Path malformed = write(new byte[]{'a', '\n', (byte) 0xFF, '\n'});
+        assertThrows(CharacterCodingException.class, () -> Example.newInterpreter().interpret(malformed));
+    }
+
+    private Path write(byte[] bytes) throws IOException {
+        return Files.write(Files.createTempFile(directory, "source", ".txt"), bytes);
+    }
+
+    private static String readAll(Path file, Charset charset, CharBuffer buffer) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (MappedFileSource source = new MappedFileSource(file, charset)) {
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                text.append(buffer);
+                buffer.clear();
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+import pl.koder95.interpreter.monitor.InterpreterMonitor;
+import pl.koder95.interpreter.monitor.MetricsRecorder;
+import pl.koder95.interpreter.monitor.MetricsSnapshot;
+import pl.koder95.interpreter.monitor.Phase;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Sprawdza, że włączony {@link InterpreterMonitor monitor} nie zmienia przebiegu
+ * {@link Interpreter#interpret(Readable)}: kroki interpretowane są w trakcie parsowania w obu trybach,
+ * a monitor otrzymuje pomiary tej samej ścieżki.
+ */
+class MonitoredInterpretationTest {
+
+    private static final String[] INSTRUCTIONS = {"ORDER BY ASC", "ORDER BY DSC", "ORDER BY REV", "ORDER BY"};
+
+    private record Monitored<C extends Context, R>(Interpreter<C, R> delegate, InterpreterMonitor monitor)
+            implements Interpreter<C, R> {
+
+        @Override
+        public C getContext() {
+            return delegate.getContext();
+        }
+
+        @Override
+        public Parser<C, R> getParser() {
+            return delegate.getParser();
+        }
+
+        @Override
+        public SyntaxTreeOptimizer<C> getOptimizer() {
+            return delegate.getOptimizer();
+        }
+
+        @Override
+        public InterpreterMonitor getMonitor() {
+            return monitor;
+        }
+    }
+
+    private static <C extends Context, R> Interpreter<C, R> monitored(Interpreter<C, R> interpreter,
+                                                                    InterpreterMonitor monitor) {
+        return new Monitored<>(interpreter, monitor);
+    }
+
+    @Test
+    void syntaxErrorLeavesSameContextInBothModes() {
+        String source = "b\nORDER BY DSC\na\nORDER BY XYZ\nc\n";
+        Interpreter<?, List<String>> plain = Example.newInterpreter();
+        Interpreter<?, List<String>> measured = monitored(Example.newInterpreter(), new MetricsRecorder());
+        SyntaxException plainError = assertThrows(SyntaxException.class, () -> plain.interpret(new StringReader(source)));
+        SyntaxException measuredError = assertThrows(SyntaxException.class,
+                () -> measured.interpret(new StringReader(source)));
+        assertEquals(plainError.toString(), measuredError.toString());
+        // Linie sprzed błędu zostały już dodane do kontekstu w obu trybach.
+        assertEquals(List.of("a", "b"), plain.interpret(new StringReader("ORDER BY ASC\n")));
+        assertEquals(List.of("a", "b"), measured.interpret(new StringReader("ORDER BY ASC\n")));
+    }
+
+    @Test
+    void monitoredInterpretationMatchesPlainInterpretation() {
+        Random random = new Random(1);
+        for (int run = 0; run < 300; run++) {
+            StringBuilder source = new StringBuilder();
+            int lines = random.nextInt(20);
+            for (int i = 0; i < lines; i++) {
+                if (random.nextInt(4) == 0) source.append(INSTRUCTIONS[random.nextInt(INSTRUCTIONS.length)]);
+                else source.append((char) ('a' + random.nextInt(6)));
+                source.append('\n');
+            }
+            String text = source.toString();
+            assertEquals(Example.newInterpreter().interpret(new StringReader(text)),
+                    monitored(Example.newInterpreter(), new MetricsRecorder()).interpret(new StringReader(text)), text);
+        }
+    }
+
+    @Test
+    void reportsMeasurementsOfStreamedInterpretation() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        String source = "b\na\nORDER BY ASC\n";
+        assertEquals(List.of("a", "b"), monitored(Example.newInterpreter(), recorder).interpret(new StringReader(source)));
+        MetricsSnapshot snapshot = recorder.snapshot();
+        for (Phase phase : Phase.values()) assertEquals(1, snapshot.latencies().get(phase).count(), phase.name());
+        assertEquals(source.length(), snapshot.characters());
+        assertEquals(3, snapshot.tokens());
+        // Dwie linie i sortowanie przekazane jako kroki oraz pusty program zwrócony po nich.
+        assertEquals(4, snapshot.nodes());
+        assertEquals(1, snapshot.syntaxTrees());
+    }
+}
@@ -0,0 +1,165 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Sprawdza, że {@link ParallelTokenizer} daje te same tokeny i położenia co tokenizacja sekwencyjna niezależnie
+ * od długości fragmentów, także gdy miejsce podziału wypada przy parze {@code "\r\n"}, oraz że zgłasza błąd
+ * najwcześniejszego fragmentu.
+ */
+class ParallelTokenizerTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    private record Word(String text, SourceSpan span) implements NonTerminalExpression<String> {
+        @Override
+        public String getObject() {
+            return text;
+        }
+
+        @Override
+        public SourceSpan getSpan() {
+            return span;
+        }
+    }
+
+    /**
+     * Słowa rozdzielone spacjami i końcami wierszy; słowo {@code !} jest błędem składniowym.
+     */
+    private static final class Words extends BufferedTokenizer {
+        private Words() {
+            super(16);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (peek() == ' ' || peek() == '\n' || peek() == '\r') advance();
+            return !atEnd();
+        }
+
+        @Override
+        public Word next() {
+            hasNext();
+            mark();
+            while (!atEnd() && peek() != ' ' && peek() != '\n' && peek() != '\r') advance();
+            if (text().equals("!")) throw new SyntaxException("Unexpected token: !", span());
+            return new Word(text(), span());
+        }
+    }
+
+    private static List<Word> sequential(String source) {
+        Words words = new Words();
+        words.setSource(new StringReader(source));
+        return tokens(words.buffer());
+    }
+
+    private static List<Word> tokens(TokenBuffer buffer) {
+        List<Word> words = new ArrayList<>();
+        for (int i = 0; i < buffer.length(); i++) words.add((Word) buffer.get(i));
+        return words;
+    }
+
+    private static ParallelTokenizer parallel(TokenBoundary boundary, int chunkSize) {
+        return new ParallelTokenizer(Words::new, boundary, chunkSize, POOL);
+    }
+
+    @Test
+    void matchesSequentialTokenization() {
+        Random random = new Random(23);
+        char[] alphabet = {'a', 'b', ' ', '\n', '\r'};
+        for (int run = 0; run < 300; run++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(80);
+            for (int i = 0; i < length; i++) text.append(alphabet[random.nextInt(alphabet.length)]);
+            String source = text.toString();
+            List<Word> expected = sequential(source);
+            String message = '"' + source.replace("\r", "\\r").replace("\n", "\\n") + '"';
+            for (int chunkSize : new int[]{1, 2, 5, 16, 1000}) {
+                for (TokenBoundary boundary : List.of(TokenBoundary.after('\n'), TokenBoundary.after('\r'))) {
+                    assertEquals(expected, tokens(parallel(boundary, chunkSize).tokenize(source)), message);
+                    // Tekst inny niż String przeglądany jest znak po znaku.
+                    assertEquals(expected, tokens(parallel(boundary, chunkSize).tokenize(text)), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void neverSplitsCarriageReturnLineFeed() {
+        // Za dwoma pierwszymi znakami '\r' stoi '\n', więc jedynym możliwym miejscem podziału jest pozycja przed "d".
+        String source = "a\r\nb\r\nc\rd";
+        List<Word> words = tokens(parallel(TokenBoundary.after('\r'), 1).tokenize(source));
+        assertEquals(sequential(source), words);
+        assertEquals(new SourceSpan(8, 9, 4, 1), words.get(3).span());
+    }
+
+    @Test
+    void reportsErrorOfEarliestChunk() {
+        String source = "a\nb\n!\nc\nd\n!\n";
+        SyntaxException expected = assertThrows(SyntaxException.class, () -> sequential(source));
+        for (int chunkSize : new int[]{1, 2, 4}) {
+            SyntaxException actual = assertThrows(SyntaxException.class,
+                    () -> parallel(TokenBoundary.after('\n'), chunkSize).tokenize(source));
+            assertEquals(expected.toString(), actual.toString());
+            assertEquals(new SourceSpan(4, 5, 3, 1), actual.getSpan());
+        }
+    }
+
+    @Test
+    void rejectsBoundaryBeforeRequestedPosition() {
+        assertThrows(IllegalStateException.class, () -> parallel((source, from) -> from - 1, 2).tokenize("a b c d"));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> parallel(TokenBoundary.after('\n'), 0));
+        assertThrows(NullPointerException.class, () -> parallel(null, 1));
+        assertThrows(NullPointerException.class, () -> new ParallelTokenizer(null, TokenBoundary.after('\n')));
+    }
+
+    @Test
+    void findsPositionsAfterDelimiter() {
+        TokenBoundary boundary = TokenBoundary.after('\n');
+        assertEquals(2, boundary.next("a\nb\nc", 2));
+        assertEquals(4, boundary.next("a\nb\nc", 3));
+        assertEquals(-1, boundary.next("a\nb\nc", 5));
+        assertEquals(-1, boundary.next("abc", 1));
+    }
+
+    @Test
+    void parsesTokensOfParallelChunks() {
+        Random random = new Random(230);
+        String[] instructions = {"ORDER BY ASC", "ORDER BY DSC", "ORDER BY REV", "ORDER BY"};
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            if (random.nextInt(5) == 0) source.append(instructions[random.nextInt(instructions.length)]);
+            else source.append(random.nextInt(100));
+            source.append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+        assertParallelParsing(Example.newInterpreter(), source.toString());
+    }
+
+    private static <C extends Context> void assertParallelParsing(Interpreter<C, List<String>> interpreter,
+                                                                  String source) {
+        Parser<C, List<String>> parser = interpreter.getParser();
+        List<String> expected = List.copyOf(interpreter.prepare(new StringReader(source)).interpret(interpreter.getContext()));
+        interpreter.getContext().reset();
+        ParallelTokenizer tokenizer = new ParallelTokenizer(parser::newTokenizer, parser.getTokenBoundary(), 100, POOL);
+        assertEquals(expected, interpreter.prepare(source, tokenizer).interpret(interpreter.getContext()));
+    }
+}
@@ -0,0 +1,262 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sprawdza {@link ResultPublisher}: interpretację kroków tylko na żądanie subskrybenta, anulowanie, zapotrzebowanie
+ * zgłaszane z wnętrza {@link Flow.Subscriber#onNext(Object)}, przekazywanie błędów oraz publikowanie wyników
+ * interpretacji przez {@link Interpreter#publish(Readable)}.
+ */
+class ResultPublisherTest {
+
+    private static final class Counter implements Context {
+        private int interpreted = 0;
+
+        @Override
+        public void reset() {
+            interpreted = 0;
+        }
+    }
+
+    /**
+     * Krok zwracający swój numer; krok o numerze ujemnym kończy się błędem składniowym.
+     */
+    private record Step(int number) implements TerminalExpression<Counter, Integer> {
+        @Override
+        public Integer interpret(Counter context) {
+            context.interpreted++;
+            if (number < 0) throw new SyntaxException("Invalid step");
+            return number;
+        }
+
+        @Override
+        public String asString() {
+            return String.valueOf(number);
+        }
+    }
+
+    private record Steps(List<Step> steps) implements SequentialExpression<Counter, Integer> {
+        @Override
+        public Integer interpret(Counter context) {
+            Integer last = null;
+            for (Step step : steps) last = step.interpret(context);
+            return last;
+        }
+
+        @Override
+        public String asString() {
+            return "STEPS";
+        }
+    }
+
+    private static Steps steps(int... numbers) {
+        List<Step> steps = new ArrayList<>();
+        for (int number : numbers) steps.add(new Step(number));
+        return new Steps(steps);
+    }
+
+    private static Steps range(int count) {
+        List<Step> steps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) steps.add(new Step(i));
+        return new Steps(steps);
+    }
+
+    private static final class Recorder<T> implements Flow.Subscriber<T> {
+        private final List<T> items = new ArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final BiConsumer<Recorder<T>, T> onItem;
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        private Recorder() {
+            this((recorder, item) -> { });
+        }
+
+        private Recorder(BiConsumer<Recorder<T>, T> onItem) {
+            this.onItem = onItem;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+            onItem.accept(this, item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+    }
+
+    @Test
+    void interpretsStepsOnDemand() {
+        Counter context = new Counter();
+        Recorder<Integer> recorder = new Recorder<>();
+        new ResultPublisher<>(range(5), context).subscribe(recorder);
+        assertEquals(0, context.interpreted);
+        recorder.subscription.request(2);
+        assertEquals(List.of(0, 1), recorder.items);
+        assertEquals(2, context.interpreted);
+        assertFalse(recorder.completed);
+        recorder.subscription.request(2);
+        assertEquals(List.of(0, 1, 2, 3), recorder.items);
+        assertFalse(recorder.completed);
+        recorder.subscription.request(Long.MAX_VALUE);
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertEquals(List.of(0, 1, 2, 3, 4), recorder.items);
+        assertTrue(recorder.completed);
+        assertNull(recorder.error);
+    }
+
+    @Test
+    void cancellationStopsInterpretation() {
+        Counter context = new Counter();
+        Recorder<Integer> recorder = new Recorder<>();
+        new ResultPublisher<>(range(5), context).subscribe(recorder);
+        recorder.subscription.request(1);
+        recorder.subscription.cancel();
+        recorder.subscription.request(5);
+        assertEquals(List.of(0), recorder.items);
+        assertEquals(1, context.interpreted);
+        assertFalse(recorder.completed);
+    }
+
+    @Test
+    void cancellationFromOnNextStopsBeforeNextStep() {
+        Counter context = new Counter();
+        Recorder<Integer> recorder = new Recorder<>((self, item) -> {
+            if (item == 1) self.subscription.cancel();
+        });
+        new ResultPublisher<>(range(5), context).subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertEquals(List.of(0, 1), recorder.items);
+        assertEquals(2, context.interpreted);
+        assertFalse(recorder.completed);
+    }
+
+    @Test
+    void requestsFromOnNextDoNotRecurse() {
+        Recorder<Integer> recorder = new Recorder<>((self, item) -> self.subscription.request(1));
+        new ResultPublisher<>(range(100_000), new Counter()).subscribe(recorder);
+        recorder.subscription.request(1);
+        assertEquals(100_000, recorder.items.size());
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    void reportsInvalidRequest() {
+        Counter context = new Counter();
+        Recorder<Integer> recorder = new Recorder<>();
+        new ResultPublisher<>(range(3), context).subscribe(recorder);
+        recorder.subscription.request(0);
+        assertInstanceOf(IllegalArgumentException.class, recorder.error);
+        recorder.subscription.request(3);
+        assertEquals(List.of(), recorder.items);
+        assertEquals(0, context.interpreted);
+    }
+
+    @Test
+    void reportsErrorOfStep() {
+        Counter context = new Counter();
+        Recorder<Integer> recorder = new Recorder<>();
+        new ResultPublisher<>(steps(1, -1, 2), context).subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertEquals(List.of(1), recorder.items);
+        assertInstanceOf(SyntaxException.class, recorder.error);
+        assertEquals(2, context.interpreted);
+        assertFalse(recorder.completed);
+    }
+
+    @Test
+    void publishesWholeResultOfOtherTrees() {
+        Recorder<Integer> recorder = new Recorder<>();
+        new ResultPublisher<>(new Step(7), new Counter()).subscribe(recorder);
+        recorder.subscription.request(1);
+        assertEquals(List.of(7), recorder.items);
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    void acceptsOnlyOneSubscriber() {
+        ResultPublisher<Counter, Integer> publisher = new ResultPublisher<>(range(2), new Counter());
+        Recorder<Integer> first = new Recorder<>();
+        Recorder<Integer> second = new Recorder<>();
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+        assertInstanceOf(IllegalStateException.class, second.error);
+        first.subscription.request(2);
+        assertEquals(List.of(0, 1), first.items);
+        assertTrue(first.completed);
+    }
+
+    @Test
+    void interpretsInExecutorThreads() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<Thread> threads = new ArrayList<>();
+            Recorder<Integer> recorder = new Recorder<>((self, item) -> {
+                threads.add(Thread.currentThread());
+                self.subscription.request(1);
+            });
+            new ResultPublisher<>(range(1000), new Counter(), executor).subscribe(recorder);
+            recorder.subscription.request(1);
+            assertTrue(recorder.done.await(10, TimeUnit.SECONDS));
+            assertTrue(recorder.completed);
+            assertEquals(range(1000).steps().stream().map(Step::number).toList(), recorder.items);
+            assertTrue(threads.stream().allMatch(thread -> thread != Thread.currentThread()));
+        } finally {
+            executor.shutdown();
+        }
+
+        Recorder<Integer> rejected = new Recorder<>();
+        new ResultPublisher<>(range(2), new Counter(), task -> {
+            throw new RejectedExecutionException("Executor is shut down");
+        }).subscribe(rejected);
+        rejected.subscription.request(1);
+        assertInstanceOf(RejectedExecutionException.class, rejected.error);
+        assertEquals(List.of(), rejected.items);
+    }
+
+    @Test
+    void publishesResultsOfExampleInstructions() {
+        List<List<String>> results = new ArrayList<>();
+        Recorder<List<String>> recorder = new Recorder<>((self, item) -> results.add(List.copyOf(item)));
+        Flow.Publisher<List<String>> publisher = Example.publish(new StringReader("b\na\nORDER BY ASC\nc\n"), "d");
+        publisher.subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertEquals(List.of(List.of("d", "b"), List.of("d", "b", "a"), List.of("a", "b", "d"),
+                List.of("a", "b", "d", "c")), results);
+        assertTrue(recorder.completed);
+        assertNull(recorder.error);
+    }
+}
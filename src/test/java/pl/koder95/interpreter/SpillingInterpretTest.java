@@ -0,0 +1,98 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Porównuje interpretację z zapisem linii na dysku ({@link Example#interpret(Readable, long, Path,
+ * java.util.function.Consumer)}) z interpretacją w pamięci. Budżet pamięci jest tak mały, że linie trafiają
+ * do segmentów co drugą linię, więc każdy program sprawdza zapis segmentów, scalanie serii, odczyt segmentów
+ * od końca po {@code ORDER BY REV} i usuwanie plików po zakończeniu.
+ */
+class SpillingInterpretTest {
+
+    private static final long BUDGET = 64;
+    private static final String[] INSTRUCTIONS = {"ORDER BY ASC", "ORDER BY DSC", "ORDER BY REV", "ORDER BY"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void matchesInMemoryInterpretation() throws IOException {
+        Random random = new Random(16);
+        for (int run = 0; run < 500; run++) {
+            String source = randomProgram(random);
+            List<String> expected = new ArrayList<>(Example.interpret(new StringReader(source)));
+            List<String> actual = new ArrayList<>();
+            Example.interpret(new StringReader(source), BUDGET, directory, actual::add);
+            assertEquals(expected, actual, () -> "Source: " + source.replace("\n", "\\n"));
+            assertEquals(0, count(directory), "Segment files left after interpretation");
+        }
+    }
+
+    @Test
+    void mergesMoreRunsThanOneMergeAccepts() throws IOException {
+        // Kilkaset serii wymaga scalania w kilku przebiegach.
+        StringBuilder source = new StringBuilder();
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) source.append(random.nextInt(1_000_000)).append('\n');
+        source.append("ORDER BY REV\nORDER BY ASC\nORDER BY REV\n");
+        List<String> expected = new ArrayList<>(Example.interpret(new StringReader(source.toString())));
+        List<String> actual = new ArrayList<>();
+        Example.interpret(new StringReader(source.toString()), BUDGET, directory, actual::add);
+        assertEquals(expected, actual);
+        assertEquals(0, count(directory));
+    }
+
+    @Test
+    void abandonedReadClosesSegmentFiles() throws IOException {
+        Path descriptors = Path.of("/proc/self/fd");
+        assumeTrue(Files.isDirectory(descriptors), "Open file descriptors cannot be counted on this platform");
+        String source = "c\nb\na\nd\nORDER BY REV\ne\nf\n";
+        long before = count(descriptors);
+        for (int run = 0; run < 200; run++) {
+            assertThrows(IllegalStateException.class, () -> Example.interpret(new StringReader(source), BUDGET,
+                    directory, line -> {
+                        throw new IllegalStateException("Output stops after the first line");
+                    }));
+        }
+        assertEquals(0, count(directory));
+        long leaked = count(descriptors) - before;
+        assertTrue(leaked < 10, "File descriptors left open: " + leaked);
+    }
+
+    private static String randomProgram(Random random) {
+        StringBuilder source = new StringBuilder();
+        int lines = random.nextInt(30);
+        for (int i = 0; i < lines; i++) {
+            if (random.nextInt(5) == 0) {
+                source.append(INSTRUCTIONS[random.nextInt(INSTRUCTIONS.length)]);
+            } else {
+                int length = random.nextInt(6);
+                for (int c = 0; c < length; c++) source.append((char) ('a' + random.nextInt(4)));
+            }
+            source.append('\n');
+        }
+        return source.toString();
+    }
+
+    private static long count(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
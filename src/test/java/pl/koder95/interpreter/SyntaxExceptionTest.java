@@ -0,0 +1,35 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Sprawdza ślad stosu i opis {@link SyntaxException}.
+ */
+class SyntaxExceptionTest {
+
+    private static final SourceSpan SPAN = new SourceSpan(4, 16, 2, 1);
+
+    @Test
+    void stackTraceIsFilledOnlyWhenWritable() {
+        assertNotEquals(0, new SyntaxException("Unknown ordering type", SPAN).getStackTrace().length);
+        assertNotEquals(0, new SyntaxException("Unknown ordering type").getStackTrace().length);
+        SyntaxException stackless = new SyntaxException("Unknown ordering type", SPAN, false);
+        assertEquals(0, stackless.getStackTrace().length);
+        assertEquals(0, stackless.fillInStackTrace().getStackTrace().length);
+    }
+
+    @Test
+    void spanIsDescribedOnlyByToString() {
+        SyntaxException located = new SyntaxException("Unknown ordering type", SPAN, false);
+        assertEquals("Unknown ordering type", located.getMessage());
+        assertEquals(SyntaxException.class.getName() + ": Unknown ordering type at 2:1 [4..16)", located.toString());
+        assertEquals(2, located.getLine());
+        assertEquals(1, located.getColumn());
+        SyntaxException unlocated = new SyntaxException("Unknown ordering type");
+        assertEquals(SyntaxException.class.getName() + ": Unknown ordering type", unlocated.toString());
+        assertEquals(0, unlocated.getLine());
+    }
+}
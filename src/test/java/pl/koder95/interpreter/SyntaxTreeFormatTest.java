@@ -0,0 +1,243 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sprawdza {@link SyntaxTreeFormat}: zapis i odczyt drzew, odrzucanie plików nieaktualnych lub uszkodzonych
+ * ({@link StaleSyntaxTreeException}), ponowne budowanie drzewa przez {@link SyntaxTreeFormat#load} oraz pamięć
+ * podręczną drzew w {@link Example#interpret(Path, Path, String...)}.
+ */
+class SyntaxTreeFormatTest {
+
+    private static final int HEADER_SIZE = 26;
+
+    private record Leaf(long number, String text, boolean flag, byte code) implements TerminalExpression<Context, Long> {
+        @Override
+        public Long interpret(Context context) {
+            return number;
+        }
+
+        @Override
+        public String asString() {
+            return text;
+        }
+    }
+
+    private record Branch(List<TerminalExpression<Context, Long>> children) implements TerminalExpression<Context, Long> {
+        @Override
+        public Long interpret(Context context) {
+            long sum = 0;
+            for (TerminalExpression<Context, Long> child : children) sum += child.interpret(context);
+            return sum;
+        }
+
+        @Override
+        public String asString() {
+            return "BRANCH";
+        }
+    }
+
+    private static SyntaxTreeFormat<Context> format(int languageVersion) {
+        return new SyntaxTreeFormat<Context>(languageVersion)
+                .register(0, Branch.class, SyntaxTreeFormat.NodeType.of(SyntaxTreeFormatTest::write,
+                        SyntaxTreeFormatTest::readBranch))
+                .register(7, Leaf.class, SyntaxTreeFormat.NodeType.of((leaf, out) -> {
+                    out.writeLong(leaf.number());
+                    out.writeString(leaf.text());
+                    out.writeBoolean(leaf.flag());
+                    out.writeByte(leaf.code());
+                }, in -> new Leaf(in.readLong(), in.readString(), in.readBoolean(), in.readByte())));
+    }
+
+    private static void write(Branch branch, SyntaxTreeFormat.Output<Context> out) {
+        out.writeInt(branch.children().size());
+        for (TerminalExpression<Context, Long> child : branch.children()) out.writeNode(child);
+    }
+
+    private static Branch readBranch(SyntaxTreeFormat.Input<Context> in) {
+        int size = in.readInt();
+        List<TerminalExpression<Context, Long>> children = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) children.add(in.readNode());
+        return new Branch(children);
+    }
+
+    private static final SyntaxTreeFormat<Context> FORMAT = format(3);
+
+    private static final Branch TREE = new Branch(List.of(
+            new Leaf(0, null, false, (byte) 0),
+            new Leaf(-1, "", true, (byte) -128),
+            new Leaf(Long.MAX_VALUE, "zażółć 😀", false, (byte) 127),
+            new Branch(List.of(new Leaf(Long.MIN_VALUE, "zażółć 😀", true, (byte) 1), new Branch(List.of()))),
+            new Leaf(300, "repeated", false, (byte) 2),
+            new Leaf(-300, "repeated", false, (byte) 3)));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWrittenTree() throws IOException {
+        Path file = directory.resolve("tree.ast");
+        FORMAT.write(TREE, 42, file);
+        assertEquals(TREE, FORMAT.read(file, 42));
+        // Zapis przez plik tymczasowy nie zostawia innych plików w katalogu.
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(file), files.toList());
+        }
+        FORMAT.write(new Leaf(5, "x", true, (byte) 0), 42, file);
+        assertEquals(new Leaf(5, "x", true, (byte) 0), FORMAT.read(file, 42));
+    }
+
+    @Test
+    void writesRepeatedStringsOnce() throws IOException {
+        String text = "x".repeat(1000);
+        List<TerminalExpression<Context, Long>> leaves = new ArrayList<>();
+        for (int i = 0; i < 100; i++) leaves.add(new Leaf(i, text, false, (byte) 0));
+        Path file = directory.resolve("strings.ast");
+        FORMAT.write(new Branch(leaves), 0, file);
+        assertTrue(Files.size(file) < 2 * text.length(), "File size: " + Files.size(file));
+        assertEquals(new Branch(leaves), FORMAT.read(file, 0));
+    }
+
+    @Test
+    void rejectsOtherSourceOrLanguageVersion() throws IOException {
+        Path file = directory.resolve("tree.ast");
+        FORMAT.write(TREE, 42, file);
+        assertStale("Source has changed", () -> FORMAT.read(file, 43));
+        assertStale("Language version 3 does not match 4", () -> format(4).read(file, 42));
+    }
+
+    @Test
+    void rejectsCorruptedFiles() throws IOException {
+        Path file = directory.resolve("tree.ast");
+        FORMAT.write(TREE, 42, file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        byte[] flipped = bytes.clone();
+        flipped[HEADER_SIZE + 5] ^= 0x10;
+        Files.write(file, flipped);
+        assertStale("Checksum mismatch", () -> FORMAT.read(file, 42));
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertStale("Truncated syntax tree", () -> FORMAT.read(file, 42));
+
+        Files.write(file, Arrays.copyOf(bytes, HEADER_SIZE - 1));
+        assertStale("Truncated header", () -> FORMAT.read(file, 42));
+
+        Files.write(file, "not a syntax tree file".repeat(2).getBytes(StandardCharsets.US_ASCII));
+        assertStale("Not a syntax tree file", () -> FORMAT.read(file, 42));
+
+        byte[] version = bytes.clone();
+        version[5] = 9;
+        Files.write(file, version);
+        assertStale("Unsupported format version 9", () -> FORMAT.read(file, 42));
+    }
+
+    @Test
+    void rejectsTreesWithUnknownNodes() throws IOException {
+        Path file = directory.resolve("tree.ast");
+        FORMAT.write(TREE, 42, file);
+        SyntaxTreeFormat<Context> withoutLeaves = new SyntaxTreeFormat<Context>(3)
+                .register(0, Branch.class, SyntaxTreeFormat.NodeType.of(SyntaxTreeFormatTest::write,
+                        SyntaxTreeFormatTest::readBranch));
+        assertStale("Unknown node tag 7", () -> withoutLeaves.read(file, 42));
+        assertThrows(IllegalArgumentException.class, () -> withoutLeaves.write(TREE, 42, file));
+    }
+
+    @Test
+    void rejectsInvalidRegistrations() {
+        SyntaxTreeFormat.NodeType<Context, Leaf> leaves = SyntaxTreeFormat.NodeType.of((leaf, out) -> { },
+                in -> new Leaf(0, null, false, (byte) 0));
+        assertThrows(IllegalArgumentException.class, () -> FORMAT.register(-1, Leaf.class, leaves));
+        assertThrows(IllegalArgumentException.class, () -> format(3).register(7, Leaf.class, leaves));
+        assertThrows(IllegalArgumentException.class, () -> format(3).register(8, Leaf.class, leaves));
+        assertThrows(NullPointerException.class, () -> format(3).register(8, null, leaves));
+        assertThrows(NullPointerException.class, () -> SyntaxTreeFormat.NodeType.of(null, in -> null));
+    }
+
+    @Test
+    void loadRebuildsMissingOrStaleTrees() throws IOException {
+        Path file = directory.resolve("tree.ast");
+        AtomicInteger builds = new AtomicInteger();
+        assertEquals(TREE, FORMAT.load(file, 1, () -> {
+            builds.incrementAndGet();
+            return TREE;
+        }));
+        assertEquals(TREE, FORMAT.load(file, 1, () -> {
+            throw new AssertionError("Tree should be read from file");
+        }));
+        Leaf changed = new Leaf(1, "changed", false, (byte) 0);
+        assertEquals(changed, FORMAT.load(file, 2, () -> {
+            builds.incrementAndGet();
+            return changed;
+        }));
+        assertEquals(changed, FORMAT.read(file, 2));
+        assertEquals(2, builds.get());
+
+        Path invalid = directory.resolve("invalid.ast");
+        assertThrows(SyntaxException.class, () -> FORMAT.load(invalid, 1, () -> {
+            throw new SyntaxException("Unexpected token");
+        }));
+        assertFalse(Files.exists(invalid));
+    }
+
+    @Test
+    void fingerprintsDependOnContent() throws IOException {
+        assertEquals(SyntaxTreeFormat.fingerprint("abc"), SyntaxTreeFormat.fingerprint(new StringBuilder("abc")));
+        assertNotEquals(SyntaxTreeFormat.fingerprint("abc"), SyntaxTreeFormat.fingerprint("abd"));
+        String large = "ab".repeat(10_000);
+        assertNotEquals(SyntaxTreeFormat.fingerprint(large), SyntaxTreeFormat.fingerprint(large + "a"));
+
+        Path source = Files.writeString(directory.resolve("source.txt"), "a\nb\n");
+        long before = SyntaxTreeFormat.fingerprint(source);
+        assertEquals(before, SyntaxTreeFormat.fingerprint(source));
+        Files.writeString(source, "a\nc\n");
+        assertNotEquals(before, SyntaxTreeFormat.fingerprint(source));
+    }
+
+    @Test
+    void exampleCachesTreeOfScript() throws IOException {
+        Path script = Files.writeString(directory.resolve("script.txt"), "c\na\nORDER BY ASC\nb\n");
+        Path cache = directory.resolve("script.ast");
+        assertEquals(List.of("a", "c", "d", "b"), Example.interpret(script, cache, "d"));
+        assertTrue(Files.exists(cache));
+        long written = Files.getLastModifiedTime(cache).toMillis();
+        assertEquals(List.of("a", "c", "b"), Example.interpret(script, cache));
+        assertEquals(written, Files.getLastModifiedTime(cache).toMillis());
+
+        Files.writeString(script, "c\na\nORDER BY DSC\n");
+        assertEquals(List.of("c", "a"), Example.interpret(script, cache));
+
+        byte[] corrupted = Files.readAllBytes(cache);
+        corrupted[corrupted.length - 1] ^= 0x01;
+        Files.write(cache, corrupted);
+        assertEquals(List.of("c", "a"), Example.interpret(script, cache));
+        assertEquals(List.of("c", "a"), Example.interpret(script, cache));
+    }
+
+    private static void assertStale(String message, ReadAction action) {
+        StaleSyntaxTreeException e = assertThrows(StaleSyntaxTreeException.class, action::read);
+        assertEquals(message, e.getMessage());
+    }
+
+    @FunctionalInterface
+    private interface ReadAction {
+        void read() throws IOException;
+    }
+}
@@ -0,0 +1,183 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Sprawdza {@link SyntaxTreeOptimizer} i {@link RewriteRule#forType(Class, java.util.function.Function)} na prostym
+ * języku wyrażeń arytmetycznych oraz reguły optymalizacji języka z {@link Example}.
+ */
+class SyntaxTreeOptimizerTest {
+
+    private record Const(int value) implements TerminalExpression<Context, Integer> {
+        @Override
+        public Integer interpret(Context context) {
+            return value;
+        }
+
+        @Override
+        public String asString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private record Var(String name) implements TerminalExpression<Context, Integer> {
+        @Override
+        public Integer interpret(Context context) {
+            return 0;
+        }
+
+        @Override
+        public String asString() {
+            return name;
+        }
+    }
+
+    private record Sum(List<TerminalExpression<Context, ?>> children) implements RewritableExpression<Context, Integer> {
+        @Override
+        public Integer interpret(Context context) {
+            int sum = 0;
+            for (TerminalExpression<Context, ?> child : children) sum += (Integer) child.interpret(context);
+            return sum;
+        }
+
+        @Override
+        public String asString() {
+            List<String> operands = new ArrayList<>();
+            for (TerminalExpression<Context, ?> child : children) operands.add(child.asString());
+            return "(" + String.join(" + ", operands) + ")";
+        }
+
+        @Override
+        public Sum withChildren(List<TerminalExpression<Context, ?>> children) {
+            return new Sum(List.copyOf(children));
+        }
+    }
+
+    @SafeVarargs
+    private static Sum sum(TerminalExpression<Context, ?>... children) {
+        return new Sum(List.of(children));
+    }
+
+    /**
+     * Zwija sumę samych stałych do jednej stałej.
+     */
+    private static final RewriteRule<Context> FOLD = RewriteRule.forType(Sum.class, sum -> {
+        int value = 0;
+        for (TerminalExpression<Context, ?> child : sum.children()) {
+            if (!(child instanceof Const constant)) return sum;
+            value += constant.value();
+        }
+        return new Const(value);
+    });
+
+    private static final SyntaxTreeOptimizer<Context> OPTIMIZER = new SyntaxTreeOptimizer<>(List.of(FOLD));
+
+    @Test
+    void rewritesFromLeavesToRoot() {
+        TerminalExpression<Context, Integer> tree = sum(new Const(1), sum(new Const(2), sum(new Const(3))));
+        assertEquals(new Const(6), OPTIMIZER.optimize(tree));
+    }
+
+    @Test
+    void sharesUnchangedNodes() {
+        Var x = new Var("x");
+        Sum unchanged = sum(x, new Var("y"));
+        Sum tree = sum(unchanged, sum(new Const(1), new Const(2)), x);
+        TerminalExpression<Context, Integer> optimized = OPTIMIZER.optimize(tree);
+        assertEquals("((x + y) + 3 + x)", optimized.asString());
+        assertSame(unchanged, optimized.children().get(0));
+        assertSame(x, optimized.children().get(2));
+        assertEquals("((x + y) + (1 + 2) + x)", tree.asString());
+        assertSame(unchanged, OPTIMIZER.optimize(unchanged));
+    }
+
+    @Test
+    void appliesRulesOnlyToTheirType() {
+        RewriteRule<Context> negate = RewriteRule.forType(Const.class, c -> c.value() > 0 ? new Const(-c.value()) : c);
+        Var x = new Var("x");
+        assertSame(x, negate.rewrite(x));
+        assertEquals(new Const(-2), negate.rewrite(new Const(2)));
+        assertThrows(NullPointerException.class, () -> RewriteRule.<Context, Const>forType(null, c -> c));
+        assertThrows(NullPointerException.class, () -> RewriteRule.forType(Const.class, null));
+    }
+
+    @Test
+    void repeatsRulesUntilNodeIsStable() {
+        // Każde przepisanie zmniejsza stałą o jeden, więc stała 5 wymaga pięciu przepisań.
+        RewriteRule<Context> decrement = RewriteRule.forType(Const.class,
+                c -> c.value() > 0 ? new Const(c.value() - 1) : c);
+        assertEquals(new Const(0), new SyntaxTreeOptimizer<>(List.of(decrement)).optimize(new Const(5)));
+        assertEquals(new Const(2), new SyntaxTreeOptimizer<>(List.of(decrement), 3).optimize(new Const(5)));
+    }
+
+    @Test
+    void stopsRulesUndoingEachOther() {
+        RewriteRule<Context> toVar = RewriteRule.forType(Const.class, c -> new Var(c.asString()));
+        RewriteRule<Context> toConst = RewriteRule.forType(Var.class, v -> new Const(Integer.parseInt(v.name())));
+        SyntaxTreeOptimizer<Context> optimizer = new SyntaxTreeOptimizer<>(List.of(toVar, toConst), 3);
+        assertEquals(new Var("7"), optimizer.optimize(new Const(7)));
+    }
+
+    @Test
+    void handlesTrivialCases() {
+        assertNull(OPTIMIZER.optimize(null));
+        Sum tree = sum(new Const(1));
+        assertSame(tree, new SyntaxTreeOptimizer<>(List.of()).optimize(tree));
+        RewriteRule<Context> broken = node -> null;
+        assertThrows(NullPointerException.class, () -> new SyntaxTreeOptimizer<>(List.of(broken)).optimize(tree));
+        assertThrows(IllegalArgumentException.class, () -> new SyntaxTreeOptimizer<>(List.of(FOLD), 0));
+    }
+
+    @Test
+    void optimizesDeepTreesWithoutRecursion() {
+        TerminalExpression<Context, ?> tree = new Const(1);
+        for (int i = 0; i < 100_000; i++) tree = sum(tree);
+        assertEquals(new Const(1), OPTIMIZER.optimize(tree));
+    }
+
+    @Test
+    void exampleRulesFuseAndDropSorts() {
+        assertExampleRules(Example.newInterpreter());
+    }
+
+    private static <C extends Context> void assertExampleRules(Interpreter<C, List<String>> interpreter) {
+        Parser<C, List<String>> parser = interpreter.getParser();
+        SyntaxTreeOptimizer<C> optimizer = interpreter.getOptimizer();
+        TerminalExpression<C, List<String>> program = parser.buildAbstractSyntaxTree(new StringReader(
+                "b\nORDER BY ASC\nORDER BY REV\nORDER BY\nORDER BY REV\nORDER BY DSC\na\nORDER BY REV\nORDER BY REV\n"));
+        TerminalExpression<C, List<String>> optimized = optimizer.optimize(program);
+        // Sortowania przed "a" łączą się w jedno (DSC), a dwa odwrócenia po "a" znoszą się i zostają usunięte.
+        List<String> shape = new ArrayList<>();
+        for (TerminalExpression<C, ?> child : optimized.children()) shape.add(child.asString());
+        assertEquals(List.of("b", "ORDER BY DSC", "a"), shape);
+        assertSame(optimized, optimizer.optimize(optimized));
+
+        Random random = new Random(18);
+        String[] instructions = {"ORDER BY ASC", "ORDER BY DSC", "ORDER BY REV", "ORDER BY"};
+        for (int run = 0; run < 300; run++) {
+            StringBuilder source = new StringBuilder();
+            int lines = random.nextInt(15);
+            for (int i = 0; i < lines; i++) {
+                if (random.nextInt(2) == 0) source.append(instructions[random.nextInt(instructions.length)]);
+                else source.append((char) ('a' + random.nextInt(5)));
+                source.append('\n');
+            }
+            TerminalExpression<C, List<String>> tree = parser.buildAbstractSyntaxTree(new StringReader(source.toString()));
+            List<String> expected = List.copyOf(tree.interpret(interpreter.getContext()));
+            interpreter.getContext().reset();
+            assertEquals(expected, optimizer.optimize(tree).interpret(interpreter.getContext()),
+                    source.toString().replace("\n", "\\n"));
+            interpreter.getContext().reset();
+        }
+    }
+}
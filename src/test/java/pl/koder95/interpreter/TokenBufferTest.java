@@ -0,0 +1,151 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sprawdza {@link TokenBuffer}: kolejność pobierania, dostęp według indeksu, podgląd i powroty kursora,
+ * widok kolejki od kursora oraz parsowanie tokenów z bufora.
+ */
+class TokenBufferTest {
+
+    private record Token(int index) implements NonTerminalExpression<Integer> {
+        @Override
+        public Integer getObject() {
+            return index;
+        }
+    }
+
+    private static TokenBuffer filled(int capacity, int count) {
+        TokenBuffer buffer = new TokenBuffer(capacity);
+        for (int i = 0; i < count; i++) buffer.add(new Token(i));
+        return buffer;
+    }
+
+    private static List<Integer> polled(TokenBuffer buffer) {
+        List<Integer> indices = new ArrayList<>();
+        NonTerminalExpression<?> token;
+        while ((token = buffer.poll()) != null) indices.add(((Token) token).index());
+        return indices;
+    }
+
+    @Test
+    void pollsInInsertionOrderAndGrows() {
+        TokenBuffer buffer = filled(0, 200);
+        assertEquals(200, buffer.length());
+        assertEquals(200, buffer.size());
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) expected.add(i);
+        assertEquals(expected, polled(buffer));
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.size());
+        assertEquals(200, buffer.length());
+        assertNull(buffer.peek());
+        assertThrows(NoSuchElementException.class, buffer::remove);
+    }
+
+    @Test
+    void keepsPolledTokensAvailableByIndex() {
+        TokenBuffer buffer = filled(4, 5);
+        NonTerminalExpression<?> first = buffer.poll();
+        buffer.poll();
+        assertEquals(2, buffer.position());
+        assertSame(first, buffer.get(0));
+        assertEquals(new Token(4), buffer.get(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(-1));
+    }
+
+    @Test
+    void peeksRelativeToCursor() {
+        TokenBuffer buffer = filled(8, 5);
+        buffer.poll();
+        assertEquals(new Token(1), buffer.peek());
+        assertEquals(new Token(1), buffer.peek(0));
+        assertEquals(new Token(3), buffer.peek(2));
+        assertEquals(new Token(0), buffer.peek(-1));
+        assertNull(buffer.peek(4));
+        assertNull(buffer.peek(-2));
+        assertEquals(1, buffer.position());
+    }
+
+    @Test
+    void seekRewindsCursor() {
+        TokenBuffer buffer = filled(8, 4);
+        assertEquals(List.of(0, 1, 2, 3), polled(buffer));
+        buffer.seek(1);
+        assertEquals(3, buffer.size());
+        assertEquals(List.of(1, 2, 3), polled(buffer));
+        buffer.seek(4);
+        assertTrue(buffer.isEmpty());
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.seek(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.seek(-1));
+        assertEquals(4, buffer.position());
+    }
+
+    @Test
+    void iteratesFromCursor() {
+        TokenBuffer buffer = filled(8, 4);
+        buffer.poll();
+        List<NonTerminalExpression<?>> remaining = new ArrayList<>(buffer);
+        assertEquals(List.of(new Token(1), new Token(2), new Token(3)), remaining);
+        assertTrue(buffer.contains(new Token(2)));
+        assertFalse(buffer.contains(new Token(0)));
+
+        Iterator<NonTerminalExpression<?>> iterator = buffer.iterator();
+        iterator.next();
+        assertThrows(UnsupportedOperationException.class, iterator::remove);
+        buffer.add(new Token(4));
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+
+        Iterator<NonTerminalExpression<?>> exhausted = filled(1, 0).iterator();
+        assertFalse(exhausted.hasNext());
+        assertThrows(NoSuchElementException.class, exhausted::next);
+    }
+
+    @Test
+    void clearResetsCursor() {
+        TokenBuffer buffer = filled(2, 10);
+        buffer.poll();
+        buffer.clear();
+        assertEquals(0, buffer.length());
+        assertEquals(0, buffer.position());
+        assertTrue(buffer.isEmpty());
+        buffer.add(new Token(7));
+        assertEquals(List.of(7), polled(buffer));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBuffer(-1));
+        assertThrows(NullPointerException.class, () -> new TokenBuffer().offer(null));
+    }
+
+    @Test
+    void parsesBufferedTokens() {
+        assertBufferedParsing(Example.newInterpreter());
+    }
+
+    private static <C extends Context> void assertBufferedParsing(Interpreter<C, List<String>> interpreter) {
+        String source = "c\na\nORDER BY ASC\nb\nORDER BY DSC\n";
+        Parser<C, List<String>> parser = interpreter.getParser();
+        Tokenizer tokenizer = parser.newTokenizer();
+        tokenizer.setSource(new StringReader(source));
+        TokenBuffer tokens = tokenizer.buffer();
+        assertEquals(5, tokens.length());
+        assertEquals(List.of("c", "b", "a"), parser.buildAbstractSyntaxTree(tokens).interpret(interpreter.getContext()));
+    }
+}
@@ -0,0 +1,117 @@
+package pl.koder95.interpreter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sprawdza współdzielenie tokenów w {@link TokenPool}, ograniczenie jej pojemności i obie
+ * {@link TokenPool.Eviction strategie usuwania}.
+ */
+class TokenPoolTest {
+
+    private record Word(String content) implements NonTerminalExpression<String> {
+        @Override
+        public String getObject() {
+            return content;
+        }
+    }
+
+    @Test
+    void returnsSameTokenForSameContent() {
+        TokenPool<Word> pool = new TokenPool<>(16, Word::new);
+        Word word = pool.intern("word");
+        assertSame(word, pool.intern(new StringBuilder("word")));
+        assertSame(word, pool.intern("a word".toCharArray(), 2, 4));
+        assertEquals(1, pool.getMisses());
+        assertEquals(2, pool.getHits());
+        pool.clear();
+        assertNotSame(word, pool.intern("word"));
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getHits());
+    }
+
+    @Test
+    void doesNotStoreContentLongerThanMaxLength() {
+        TokenPool<Word> pool = new TokenPool<>(16, 3, TokenPool.Eviction.LEAST_RECENTLY_USED, Word::new);
+        assertSame(pool.intern("abc"), pool.intern("abc"));
+        Word first = pool.intern("abcd");
+        assertEquals("abcd", first.content());
+        assertNotSame(first, pool.intern("abcd"));
+    }
+
+    @Test
+    void leastRecentlyUsedEvictsTokenNotUsedLongest() {
+        // Pojemność 2: wszystkie ciągi trafiają na te same dwa miejsca.
+        TokenPool<Word> pool = new TokenPool<>(2, 16, TokenPool.Eviction.LEAST_RECENTLY_USED, Word::new);
+        Word a = pool.intern("a");
+        Word b = pool.intern("b");
+        assertSame(b, pool.intern("b"));
+        Word c = pool.intern("c");
+        assertSame(b, pool.intern("b"));
+        assertSame(c, pool.intern("c"));
+        assertNotSame(a, pool.intern("a"));
+    }
+
+    @Test
+    void retainExistingKeepsFirstTokens() {
+        TokenPool<Word> pool = new TokenPool<>(2, 16, TokenPool.Eviction.RETAIN_EXISTING, Word::new);
+        Word a = pool.intern("a");
+        Word b = pool.intern("b");
+        for (int i = 0; i < 100; i++) {
+            Word other = pool.intern("x" + i);
+            assertNotSame(other, pool.intern("x" + i));
+        }
+        assertSame(a, pool.intern("a"));
+        assertSame(b, pool.intern("b"));
+    }
+
+    @Test
+    void storesAtMostCapacityTokens() {
+        for (TokenPool.Eviction eviction : TokenPool.Eviction.values()) {
+            TokenPool<Word> pool = new TokenPool<>(16, 16, eviction, Word::new);
+            List<Word> first = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) first.add(pool.intern("w" + i));
+            int retained = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (pool.intern("w" + i) == first.get(i)) retained++;
+            }
+            assertTrue(retained <= 16, eviction + " retained " + retained + " tokens");
+        }
+    }
+
+    @Test
+    void concurrentInterningReturnsTokensWithRequestedContent() throws Exception {
+        TokenPool<Word> pool = new TokenPool<>(8, Word::new);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Map<Word, String>>> results = new ArrayList<>();
+            for (int task = 0; task < 8; task++) {
+                results.add(executor.submit(() -> {
+                    Map<Word, String> tokens = new IdentityHashMap<>();
+                    for (int i = 0; i < 20_000; i++) {
+                        String content = "k" + (i % 24);
+                        tokens.put(pool.intern(content), content);
+                    }
+                    return tokens;
+                }));
+            }
+            for (Future<Map<Word, String>> result : results) {
+                result.get().forEach((token, content) -> assertEquals(content, token.content()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package pl.koder95.interpreter.basic;
+
+import org.junit.jupiter.api.Test;
+import pl.koder95.interpreter.NonTerminalExpression;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static pl.koder95.interpreter.basic.TokenPattern.*;
+
+/**
+ * Porównuje {@link AggregatingTokenizer} z najdłuższym dopasowaniem wyrażeń regularnych {@link java.util.regex}
+ * i sprawdza, że najdłuższe dopasowanie działa w czasie liniowym.
+ */
+class AggregatingTokenizerTest {
+
+    private static final AggregationTable TABLE = AggregationTable.builder()
+            .rule("NUMBER", sequence(category(Character.DECIMAL_DIGIT_NUMBER),
+                    optional(sequence(literal("."), category(Character.DECIMAL_DIGIT_NUMBER)))))
+            .rule("IDENTIFIER", sequence(category(Character.LOWERCASE_LETTER),
+                    zeroOrMore(anyOf(category(Character.LOWERCASE_LETTER, Character.DECIMAL_DIGIT_NUMBER),
+                            literal("_")))))
+            .rule("SHOUT", sequence(oneOrMore(sequence(category(Character.UPPERCASE_LETTER),
+                    category(Character.DECIMAL_DIGIT_NUMBER))), literal("!")))
+            .build();
+
+    // Te same reguły nad ciągiem symboli podstawowych tokenów (zob. symbol(String)), w tej samej kolejności.
+    private static final String[] KINDS = {"NUMBER", "IDENTIFIER", "SHOUT"};
+    private static final Pattern[] PATTERNS = {
+            Pattern.compile("D(\\.D)?"), Pattern.compile("L[LD_]*"), Pattern.compile("(UD)+!")
+    };
+
+    @Test
+    void matchesRegularExpressionLongestMatch() {
+        Random random = new Random(20);
+        String alphabet = "ab12.._!!A B";
+        for (int run = 0; run < 20_000; run++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(24);
+            for (int i = 0; i < length; i++) text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            assertEquals(expected(text.toString()), actual(text.toString()), () -> "Input: \"" + text + '"');
+        }
+    }
+
+    @Test
+    void failedPartialMatchesAreNotRescanned() {
+        // Każdy token "A1A1…" rozpoczyna niedokończone dopasowanie SHOUT, które kończy się dopiero na końcu danych.
+        String text = "A1".repeat(200_000);
+        List<String> tokens = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> actual(text));
+        assertEquals(400_000, tokens.size());
+        assertEquals(expected("A1".repeat(100)), actual("A1".repeat(100)));
+    }
+
+    private static List<String> actual(String text) {
+        AggregatingTokenizer tokenizer = new AggregatingTokenizer(TABLE);
+        tokenizer.setSource(new StringReader(text));
+        List<String> tokens = new ArrayList<>();
+        while (tokenizer.hasNext()) {
+            NonTerminalExpression<?> token = tokenizer.next();
+            String kind = token instanceof CompoundToken compound ? compound.getKind() : "BASIC";
+            tokens.add(kind + ':' + token.asString());
+        }
+        return tokens;
+    }
+
+    private static List<String> expected(String text) {
+        BasicUnicodeTokenizer basic = new BasicUnicodeTokenizer();
+        basic.setSource(new StringReader(text));
+        List<String> contents = new ArrayList<>();
+        StringBuilder symbols = new StringBuilder();
+        while (basic.hasNext()) {
+            String content = basic.next().asString();
+            contents.add(content);
+            symbols.append(symbol(content));
+        }
+        List<String> tokens = new ArrayList<>();
+        int position = 0;
+        while (position < symbols.length()) {
+            int best = 0;
+            String kind = null;
+            for (int rule = 0; rule < PATTERNS.length; rule++) {
+                Matcher matcher = PATTERNS[rule].matcher(symbols).region(position, symbols.length());
+                if (matcher.lookingAt() && matcher.end() - position > best) {
+                    best = matcher.end() - position;
+                    kind = KINDS[rule];
+                }
+            }
+            if (kind == null) {
+                tokens.add("BASIC:" + contents.get(position++));
+            } else {
+                tokens.add(kind + ':' + String.join("", contents.subList(position, position + best)));
+                position += best;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Symbol podstawowego tokenu: kategoria albo treść występująca we wzorcach.
+     */
+    private static char symbol(String content) {
+        if (content.equals(".") || content.equals("_") || content.equals("!")) return content.charAt(0);
+        return switch (Character.getType(content.codePointAt(0))) {
+            case Character.LOWERCASE_LETTER -> 'L';
+            case Character.UPPERCASE_LETTER -> 'U';
+            case Character.DECIMAL_DIGIT_NUMBER -> 'D';
+            default -> '?';
+        };
+    }
+}
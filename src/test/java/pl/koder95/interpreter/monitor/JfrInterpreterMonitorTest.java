@@ -0,0 +1,76 @@
+package pl.koder95.interpreter.monitor;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Sprawdza zdarzenia JDK Flight Recorder zapisywane przez {@link JfrInterpreterMonitor}.
+ */
+class JfrInterpreterMonitorTest {
+
+    private static final String PHASE = "pl.koder95.interpreter.Phase";
+    private static final String COUNTER = "pl.koder95.interpreter.Counter";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsPhasesAndCounters() throws IOException {
+        JfrInterpreterMonitor monitor = new JfrInterpreterMonitor();
+        Path file = directory.resolve("interpreter.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PHASE);
+            recording.enable(COUNTER);
+            recording.start();
+            monitor.phaseCompleted(Phase.TOKENIZE, 1500);
+            monitor.bytesRead(10);
+            monitor.charactersRead(9);
+            monitor.tokensRead(3);
+            monitor.syntaxTreeBuilt(4);
+            recording.stop();
+            recording.dump(file);
+        }
+        List<String> phases = new ArrayList<>();
+        List<String> counters = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            switch (event.getEventType().getName()) {
+                case PHASE -> phases.add(event.getString("phase") + "=" + event.getDuration("elapsed").toNanos());
+                case COUNTER -> counters.add(event.getString("counter") + "=" + event.getLong("value"));
+                default -> { }
+            }
+        }
+        assertEquals(List.of("TOKENIZE=1500"), phases);
+        assertEquals(List.of("bytes=10", "characters=9", "tokens=3", "nodes=4"), counters);
+    }
+
+    @Test
+    void skipsEventsThatAreNotRecorded() throws IOException {
+        JfrInterpreterMonitor monitor = new JfrInterpreterMonitor();
+        Path file = directory.resolve("counters.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(COUNTER);
+            recording.disable(PHASE);
+            recording.start();
+            monitor.phaseCompleted(Phase.PARSE, 10);
+            monitor.tokensRead(2);
+            recording.stop();
+            recording.dump(file);
+        }
+        List<String> names = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            String name = event.getEventType().getName();
+            if (name.startsWith("pl.koder95.interpreter.")) names.add(name);
+        }
+        assertEquals(List.of(COUNTER), names);
+    }
+}
@@ -0,0 +1,135 @@
+package pl.koder95.interpreter.monitor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Sprawdza {@link MetricsRecorder}: histogramy czasów etapów, kwantyle, liczniki, niezmienność migawek,
+ * zapis z wielu wątków oraz składanie monitorów przez {@link InterpreterMonitor#of(InterpreterMonitor...)}.
+ */
+class MetricsRecorderTest {
+
+    @Test
+    void recordsLatenciesInPowerOfTwoBuckets() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        for (long nanos : new long[]{1, 3, 100, 1000, -5}) recorder.phaseCompleted(Phase.PARSE, nanos);
+        MetricsSnapshot.Latency latency = recorder.snapshot().latencies().get(Phase.PARSE);
+        assertEquals(5, latency.count());
+        assertEquals(1104, latency.totalNanos());
+        assertEquals(1000, latency.maxNanos());
+        assertEquals(1104 / 5.0, latency.meanNanos(), 1e-9);
+        long[] buckets = latency.buckets();
+        // Ujemny pomiar liczony jest jako zero, tak jak 1 ns trafia do pierwszego przedziału.
+        assertEquals(2, buckets[0]);
+        assertEquals(1, buckets[1]);
+        assertEquals(1, buckets[6]);
+        assertEquals(1, buckets[9]);
+        assertEquals(5, Arrays.stream(buckets).sum());
+    }
+
+    @Test
+    void estimatesQuantilesFromBuckets() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        for (long nanos : new long[]{1, 3, 100, 1000}) recorder.phaseCompleted(Phase.EVALUATE, nanos);
+        MetricsSnapshot.Latency latency = recorder.snapshot().latencies().get(Phase.EVALUATE);
+        assertEquals(1, latency.quantileNanos(0));
+        assertEquals(3, latency.quantileNanos(0.5));
+        assertEquals(127, latency.quantileNanos(0.75));
+        // Górna granica ostatniego przedziału (1023 ns) jest ograniczona przez największy pomiar.
+        assertEquals(1000, latency.quantileNanos(1));
+        assertThrows(IllegalArgumentException.class, () -> latency.quantileNanos(1.5));
+        assertThrows(IllegalArgumentException.class, () -> latency.quantileNanos(-0.1));
+
+        MetricsSnapshot.Latency empty = recorder.snapshot().latencies().get(Phase.TOKENIZE);
+        assertEquals(0, empty.count());
+        assertEquals(0, empty.meanNanos());
+        assertEquals(0, empty.quantileNanos(0.99));
+    }
+
+    @Test
+    void sumsCounters() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        recorder.bytesRead(10);
+        recorder.bytesRead(5);
+        recorder.charactersRead(12);
+        recorder.tokensRead(3);
+        recorder.syntaxTreeBuilt(4);
+        recorder.syntaxTreeBuilt(6);
+        MetricsSnapshot snapshot = recorder.snapshot();
+        assertEquals(15, snapshot.bytes());
+        assertEquals(12, snapshot.characters());
+        assertEquals(3, snapshot.tokens());
+        assertEquals(10, snapshot.nodes());
+        assertEquals(2, snapshot.syntaxTrees());
+        assertEquals(Phase.values().length, snapshot.latencies().size());
+    }
+
+    @Test
+    void snapshotsAreIndependentOfRecorder() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        recorder.phaseCompleted(Phase.OPTIMIZE, 8);
+        MetricsSnapshot snapshot = recorder.snapshot();
+        recorder.phaseCompleted(Phase.OPTIMIZE, 8);
+        MetricsSnapshot.Latency latency = snapshot.latencies().get(Phase.OPTIMIZE);
+        assertEquals(1, latency.count());
+        latency.buckets()[3] = 100;
+        assertEquals(1, latency.buckets()[3]);
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.latencies().remove(Phase.OPTIMIZE));
+        assertEquals(2, recorder.snapshot().latencies().get(Phase.OPTIMIZE).count());
+    }
+
+    @Test
+    void recordsFromManyThreads() throws InterruptedException {
+        MetricsRecorder recorder = new MetricsRecorder();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    recorder.phaseCompleted(Phase.TOKENIZE, i);
+                    recorder.tokensRead(1);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+        MetricsSnapshot snapshot = recorder.snapshot();
+        assertEquals(40_000, snapshot.latencies().get(Phase.TOKENIZE).count());
+        assertEquals(4L * (10_000L * 9_999 / 2), snapshot.latencies().get(Phase.TOKENIZE).totalNanos());
+        assertEquals(9_999, snapshot.latencies().get(Phase.TOKENIZE).maxNanos());
+        assertEquals(40_000, snapshot.tokens());
+    }
+
+    @Test
+    void composesEnabledMonitors() {
+        assertFalse(InterpreterMonitor.NONE.isEnabled());
+        assertSame(InterpreterMonitor.NONE, InterpreterMonitor.of());
+        assertSame(InterpreterMonitor.NONE, InterpreterMonitor.of(InterpreterMonitor.NONE));
+        MetricsRecorder first = new MetricsRecorder();
+        MetricsRecorder second = new MetricsRecorder();
+        assertSame(first, InterpreterMonitor.of(InterpreterMonitor.NONE, first));
+
+        InterpreterMonitor both = InterpreterMonitor.of(first, InterpreterMonitor.NONE, second);
+        both.phaseCompleted(Phase.PARSE, 7);
+        both.bytesRead(1);
+        both.charactersRead(2);
+        both.tokensRead(3);
+        both.syntaxTreeBuilt(4);
+        for (MetricsRecorder recorder : List.of(first, second)) {
+            MetricsSnapshot snapshot = recorder.snapshot();
+            assertEquals(7, snapshot.latencies().get(Phase.PARSE).totalNanos());
+            assertArrayEquals(new long[]{1, 2, 3, 4, 1},
+                    new long[]{snapshot.bytes(), snapshot.characters(), snapshot.tokens(), snapshot.nodes(),
+                            snapshot.syntaxTrees()});
+        }
+    }
+}